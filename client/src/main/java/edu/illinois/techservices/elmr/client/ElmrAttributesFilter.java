@@ -0,0 +1,111 @@
+package edu.illinois.techservices.elmr.client;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.SessionDataImpl;
+
+/**
+ * Filter for applications other than elmr that makes the attributes of the user's elmr session
+ * request attributes, as elmr's own {@code AttributesFilter} does.
+ *
+ * <p>
+ * Without the session key cookie the user is sent to elmr to sign in, and comes back to the
+ * requested Url afterwards. With it the request is passed on with the session's attributes, read
+ * from the store by an {@link ElmrClient} only if an attribute is read.
+ *
+ * <p>
+ * The filter is not annotated; declare it in the application's {@code web.xml} with these optional
+ * init parameters:
+ *
+ * <ul>
+ * <li>{@code hostname} and {@code port} of the session data store, {@code localhost} and
+ * {@code 6379} by default.
+ * <li>{@code maxConnections}, the size of the connection pool.
+ * <li>{@code nearCacheTtlMillis} and {@code nearCacheMaxEntries}, see {@link ElmrClient}.
+ * <li>{@code sessionUrl}, where elmr establishes sessions, {@code /elmr/session} by default.
+ * </ul>
+ */
+public class ElmrAttributesFilter extends HttpFilter {
+
+  private static final long serialVersionUID = 2467135312893104587L;
+
+  private static final Logger LOGGER = Logger.getLogger(ElmrAttributesFilter.class.getName());
+
+  static final String DEFAULT_SESSION_URL = "/elmr/session";
+
+  private transient ElmrClient client;
+
+  private String sessionUrl;
+
+  @Override
+  public void init() throws ServletException {
+    client = new ElmrClient(getParameter("hostname", SessionDataImpl.DEFAULT_HOSTNAME),
+        getParameter("port", SessionDataImpl.DEFAULT_PORT),
+        getParameter("maxConnections", SessionDataImpl.DEFAULT_MAX_CONNECTIONS),
+        getParameter("nearCacheTtlMillis", ElmrClient.DEFAULT_NEAR_CACHE_TTL_MILLIS),
+        getParameter("nearCacheMaxEntries", ElmrClient.DEFAULT_NEAR_CACHE_MAX_ENTRIES));
+    sessionUrl = getParameter("sessionUrl", DEFAULT_SESSION_URL);
+  }
+
+  @Override
+  protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+      throws IOException, ServletException {
+    String sessionKey = null;
+    if (req.getCookies() != null) {
+      for (Cookie c : req.getCookies()) {
+        if (c.getName().equals(ElmrClient.SESSION_KEY_COOKIE_NAME)) {
+          sessionKey = c.getValue();
+          break;
+        }
+      }
+    }
+    if (sessionKey == null) {
+      LOGGER.fine("Did not find a session key, redirecting to create a session.");
+      var serviceUrlCookie = new Cookie(ElmrClient.SERVICE_URL_COOKIE_NAME, req.getRequestURI());
+      serviceUrlCookie.setPath("/");
+      res.addCookie(serviceUrlCookie);
+      res.sendRedirect(sessionUrl);
+      return;
+    }
+    chain.doFilter(new ElmrAttributesRequest(req, client, sessionKey), res);
+  }
+
+  @Override
+  public void destroy() {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  /**
+   * Returns the client this filter reads sessions with, so the application can use it as well.
+   */
+  public ElmrClient getClient() {
+    return client;
+  }
+
+  private String getParameter(String name, String defaultValue) {
+    var value = getInitParameter(name);
+    return value == null || value.isEmpty() ? defaultValue : value;
+  }
+
+  private int getParameter(String name, int defaultValue) {
+    var value = getInitParameter(name);
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      LOGGER.warning("Init parameter " + name + " is not a number: " + value + ". Using "
+          + defaultValue + ".");
+      return defaultValue;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package edu.illinois.techservices.elmr.client;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Request whose attributes include the attributes of an elmr session, read the first time an
+ * attribute is read.
+ *
+ * <p>
+ * This behaves like the request elmr's own {@code AttributesFilter} passes on: session attributes
+ * take precedence over attributes of the wrapped request except those set or removed through this
+ * wrapper, and attributes whose names start with {@code javax.} or {@code org.apache.} never cause
+ * the session to be read.
+ */
+class ElmrAttributesRequest extends HttpServletRequestWrapper {
+
+  private final ElmrClient client;
+
+  private final String sessionKey;
+
+  private final Set<String> overridden = new HashSet<>();
+
+  private Map<String, Object> attributes;
+
+  private boolean loaded;
+
+  /**
+   * Constructs a new request.
+   *
+   * @param request    the request to wrap.
+   * @param client     the client to read the session with.
+   * @param sessionKey value of the session key cookie.
+   */
+  ElmrAttributesRequest(HttpServletRequest request, ElmrClient client, String sessionKey) {
+    super(request);
+    this.client = client;
+    this.sessionKey = sessionKey;
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    if (!isReserved(name) && !overridden.contains(name)) {
+      var data = attributes();
+      if (data != null && data.containsKey(name)) {
+        return data.get(name);
+      }
+    }
+    return super.getAttribute(name);
+  }
+
+  @Override
+  public Enumeration<String> getAttributeNames() {
+    var data = attributes();
+    if (data == null || data.isEmpty()) {
+      return super.getAttributeNames();
+    }
+    var names = new LinkedHashSet<String>(data.keySet());
+    names.removeAll(overridden);
+    for (var e = super.getAttributeNames(); e.hasMoreElements();) {
+      names.add(e.nextElement());
+    }
+    return Collections.enumeration(names);
+  }
+
+  @Override
+  public void setAttribute(String name, Object o) {
+    overridden.add(name);
+    super.setAttribute(name, o);
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    overridden.add(name);
+    super.removeAttribute(name);
+  }
+
+  private synchronized Map<String, Object> attributes() {
+    if (!loaded) {
+      loaded = true;
+      attributes = client.getAttributes(sessionKey);
+    }
+    return attributes;
+  }
+
+  private static boolean isReserved(String name) {
+    return name.startsWith("javax.") || name.startsWith("org.apache.");
+  }
+}
@@ -0,0 +1,186 @@
+package edu.illinois.techservices.elmr.client;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import edu.illinois.techservices.elmr.SessionData;
+import edu.illinois.techservices.elmr.SessionDataImpl;
+
+/**
+ * Reads elmr sessions straight from the session data store, for applications other than elmr.
+ *
+ * <p>
+ * Sessions are looked up by the value of the session key cookie elmr sets, named
+ * {@value #SESSION_KEY_COOKIE_NAME}. The key is decoded and the data read the same way elmr does,
+ * with a pool of connections of its own, so attribute values shared between sessions are resolved
+ * as well.
+ *
+ * <p>
+ * Sessions found are kept in a near cache for {@code nearCacheTtlMillis}, so an application reading
+ * the attributes of the same user on every request goes to the store at most once per that time.
+ * A session that signs out is still seen here until its entry expires, so
+ * {@code nearCacheTtlMillis} should stay short. Sessions that are not found are not cached, so a
+ * user who just signed in is seen at once. At most {@code nearCacheMaxEntries} sessions are
+ * cached; when full, expired entries are dropped and new sessions are not cached until there is
+ * room.
+ */
+public final class ElmrClient implements AutoCloseable {
+
+  /**
+   * Name of the cookie elmr puts the session key in.
+   */
+  public static final String SESSION_KEY_COOKIE_NAME =
+      "__edu.illinois.techservices.elmr.servlets.sessionKey";
+
+  /**
+   * Name of the cookie elmr reads the Url to return to after establishing a session from.
+   */
+  public static final String SERVICE_URL_COOKIE_NAME =
+      "__edu.illinois.techservices.elmr.serviceUrl";
+
+  public static final int DEFAULT_NEAR_CACHE_TTL_MILLIS = 1000;
+
+  public static final int DEFAULT_NEAR_CACHE_MAX_ENTRIES = 10_000;
+
+  private static final Logger LOGGER = Logger.getLogger(ElmrClient.class.getName());
+
+  private final SessionData sd;
+
+  private final long ttlNanos;
+
+  private final int maxEntries;
+
+  private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+  /**
+   * Connects to the session data store elmr uses.
+   *
+   * @param hostname            host of the Redis store.
+   * @param port                Redis port.
+   * @param maxConnections      maximum number of connections in the pool.
+   * @param nearCacheTtlMillis  number of milliseconds a session found is cached, or 0 to cache
+   *                            none.
+   * @param nearCacheMaxEntries maximum number of sessions cached.
+   */
+  public ElmrClient(String hostname, int port, int maxConnections, int nearCacheTtlMillis,
+      int nearCacheMaxEntries) {
+    this(new SessionDataImpl(hostname, port, SessionDataImpl.DEFAULT_MIN_CONNECTIONS,
+        maxConnections), nearCacheTtlMillis, nearCacheMaxEntries);
+    LOGGER.config("Constructed " + ElmrClient.class.getName() + " with hostname = " + hostname
+        + ", port = " + port + ", nearCacheTtlMillis = " + nearCacheTtlMillis);
+  }
+
+  /**
+   * Reads sessions from the given session data.
+   *
+   * @param sd                  session data to read.
+   * @param nearCacheTtlMillis  number of milliseconds a session found is cached, or 0 to cache
+   *                            none.
+   * @param nearCacheMaxEntries maximum number of sessions cached.
+   */
+  ElmrClient(SessionData sd, int nearCacheTtlMillis, int nearCacheMaxEntries) {
+    this.sd = sd;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(nearCacheTtlMillis);
+    this.maxEntries = nearCacheMaxEntries;
+  }
+
+  /**
+   * Returns the attributes of the session with the given key.
+   *
+   * @param sessionKey value of the session key cookie.
+   * @return the attributes, which cannot be modified, or {@code null} if there is no session for
+   *         the key.
+   */
+  public Map<String, Object> getAttributes(String sessionKey) {
+    var now = System.nanoTime();
+    var entry = cache.get(sessionKey);
+    if (entry != null) {
+      if (now - entry.expires < 0) {
+        return entry.attributes;
+      }
+      cache.remove(sessionKey, entry);
+    }
+    var attributes = sd.getAttributes(sessionKey.getBytes());
+    if (attributes == null) {
+      return null;
+    }
+    attributes = Collections.unmodifiableMap(attributes);
+    remember(sessionKey, attributes, System.nanoTime());
+    return attributes;
+  }
+
+  /**
+   * Returns whether the given value is the value, or one of the values, of the named attribute of
+   * the session with the given key. A session in the near cache is searched there, otherwise the
+   * store is asked without reading the session.
+   *
+   * @param sessionKey value of the session key cookie.
+   * @param attribute  name of the attribute.
+   * @param value      the value to look for.
+   * @return whether the attribute has the value, or {@code null} if there is no session for the
+   *         key.
+   */
+  public Boolean isMember(String sessionKey, String attribute, String value) {
+    var entry = cache.get(sessionKey);
+    if (entry != null && System.nanoTime() - entry.expires < 0) {
+      var values = entry.attributes.get(attribute);
+      return values instanceof List ? ((List<?>) values).contains(value) : value.equals(values);
+    }
+    return sd.isMember(sessionKey.getBytes(), attribute, value);
+  }
+
+  /**
+   * Drops the session with the given key from the near cache.
+   *
+   * @param sessionKey value of the session key cookie.
+   */
+  public void invalidate(String sessionKey) {
+    cache.remove(sessionKey);
+  }
+
+  /**
+   * Returns the number of sessions in the near cache, including expired ones not yet dropped.
+   */
+  public int nearCacheSize() {
+    return cache.size();
+  }
+
+  /**
+   * Closes the connections to the store.
+   */
+  @Override
+  public void close() {
+    cache.clear();
+    if (sd instanceof SessionDataImpl) {
+      ((SessionDataImpl) sd).close();
+    }
+  }
+
+  private void remember(String sessionKey, Map<String, Object> attributes, long now) {
+    if (ttlNanos <= 0) {
+      return;
+    }
+    if (cache.size() >= maxEntries) {
+      cache.values().removeIf(e -> now - e.expires >= 0);
+      if (cache.size() >= maxEntries) {
+        return;
+      }
+    }
+    cache.put(sessionKey, new Entry(attributes, now + ttlNanos));
+  }
+
+  private static final class Entry {
+
+    private final Map<String, Object> attributes;
+
+    private final long expires;
+
+    Entry(Map<String, Object> attributes, long expires) {
+      this.attributes = attributes;
+      this.expires = expires;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package edu.illinois.techservices.elmr.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import edu.illinois.techservices.elmr.InMemorySessionData;
+import edu.illinois.techservices.elmr.SessionData;
+
+class ElmrClientTest {
+
+  private static final String DATA = "{\"uid\":\"testuser1\",\"isMemberOf\":[\"staff\"]}";
+
+  @Test
+  void testSessionFoundIsCached() {
+    var store = new InMemorySessionData();
+    var gets = new AtomicInteger();
+    var client = new ElmrClient(counting(store, gets), 60_000, 10);
+    var key = new String(store.save(DATA));
+
+    assertEquals("testuser1", client.getAttributes(key).get("uid"));
+    assertEquals("testuser1", client.getAttributes(key).get("uid"));
+    assertEquals(1, gets.get());
+    assertEquals(true, client.isMember(key, "isMemberOf", "staff"));
+    assertEquals(false, client.isMember(key, "isMemberOf", "faculty"));
+    assertEquals(1, gets.get());
+    assertThrows(UnsupportedOperationException.class,
+        () -> client.getAttributes(key).put("uid", "testuser2"));
+
+    client.invalidate(key);
+    client.getAttributes(key);
+    assertEquals(2, gets.get());
+  }
+
+  @Test
+  void testSessionNotFoundIsNotCached() {
+    var store = new InMemorySessionData();
+    var client = new ElmrClient(store, 60_000, 10);
+    var key = new String(store.save(DATA));
+    store.destroy(key.getBytes());
+
+    assertNull(client.getAttributes(key));
+    assertNull(client.isMember(key, "isMemberOf", "staff"));
+    store.save(key.getBytes(), DATA);
+    assertEquals("testuser1", client.getAttributes(key).get("uid"));
+    assertNull(client.getAttributes("not base64!"));
+    assertNull(client.isMember("not base64!", "isMemberOf", "staff"));
+  }
+
+  @Test
+  void testFullCacheDoesNotGrow() {
+    var store = new InMemorySessionData();
+    var client = new ElmrClient(store, 60_000, 1);
+    client.getAttributes(new String(store.save(DATA)));
+    client.getAttributes(new String(store.save(DATA)));
+    assertEquals(1, client.nearCacheSize());
+
+    var uncached = new ElmrClient(store, 0, 10);
+    uncached.getAttributes(new String(store.save(DATA)));
+    assertEquals(0, uncached.nearCacheSize());
+  }
+
+  /*
+   * Wraps the given store, counting the lookups of session data.
+   */
+  private static SessionData counting(SessionData store, AtomicInteger gets) {
+    return new SessionData() {
+      public byte[] save(byte[] preComputedKey, String sessionData) {
+        return store.save(preComputedKey, sessionData);
+      }
+
+      public byte[] save(String sessionData) {
+        return store.save(sessionData);
+      }
+
+      public String get(byte[] key) {
+        gets.incrementAndGet();
+        return store.get(key);
+      }
+
+      public void destroy(byte[] key) {
+        store.destroy(key);
+      }
+
+      public boolean isConnected() {
+        return true;
+      }
+    };
+  }
+}
@@ -11,6 +11,13 @@ public class AttributeMapReader {
    */
   public static final String FILE_SYSPROP = AttributeMapReader.class.getName() + ".file";
 
+  /**
+   * Name of the system property and context parameter to stop reloading the
+   * {@code attribute-map.xml} file when it changes.
+   */
+  public static final String DISABLE_WATCH_SYSPROP =
+      AttributeMapReader.class.getName() + ".DisableWatch";
+
   /**
    * The default location of the {@code attribute-map.xml} file.
    */
@@ -0,0 +1,140 @@
+package edu.illinois.techservices.elmr;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * SessionData implementation that lets concurrent lookups of the same key share one call to
+ * another SessionData implementation and one decoded result.
+ *
+ * <p>
+ * A page load can send many requests at once carrying the same session key. Without this class
+ * each of them fetches and decodes the same session data. Results are not cached: a lookup that
+ * starts after another has finished fetches again. Saving or destroying a key makes lookups that
+ * start afterwards fetch again even if a lookup that started earlier is still in flight, so they
+ * never see data older than the write. Maps returned by {@link #getAttributes(byte[])} are shared
+ * between requests and cannot be modified.
+ */
+public final class CoalescingSessionData implements SessionData {
+
+  private static final Metrics.Counter COALESCED = Metrics.counter(
+      "elmr_session_data_coalesced_total",
+      "Session data lookups that shared a lookup already in flight for the same key.", null, null);
+
+  private final SessionData delegate;
+
+  private final SingleFlight<String, String> gets = new SingleFlight<>(COALESCED::increment);
+
+  private final SingleFlight<String, Map<String, Object>> decodes =
+      new SingleFlight<>(COALESCED::increment);
+
+  /**
+   * Constructs an instance in front of the given implementation.
+   *
+   * @param delegate the implementation doing the actual work.
+   */
+  public CoalescingSessionData(SessionData delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public byte[] save(byte[] preComputedKey, String sessionData) {
+    var key = delegate.save(preComputedKey, sessionData);
+    forget(key);
+    return key;
+  }
+
+  @Override
+  public byte[] save(String sessionData) {
+    var key = delegate.save(sessionData);
+    forget(key);
+    return key;
+  }
+
+  @Override
+  public byte[] save(byte[] preComputedKey, String sessionData, String user) {
+    var key = delegate.save(preComputedKey, sessionData, user);
+    forget(key);
+    return key;
+  }
+
+  @Override
+  public String get(byte[] key) {
+    return gets.execute(flightKey(key), () -> delegate.get(key));
+  }
+
+  @Override
+  public Map<String, Object> getAttributes(byte[] key) {
+    return decodes.execute(flightKey(key), () -> {
+      var attributes = Json.marshal(get(key));
+      return attributes == null ? null : Collections.unmodifiableMap(attributes);
+    });
+  }
+
+  @Override
+  public List<String> getAll(Collection<byte[]> keys) {
+    // Batches rarely overlap with each other or with single lookups.
+    return delegate.getAll(keys);
+  }
+
+  @Override
+  public Boolean isMember(byte[] key, String attribute, String value) {
+    return delegate.isMember(key, attribute, value);
+  }
+
+  @Override
+  public boolean update(byte[] key, String identifier, Map<String, Object> attributes) {
+    var updated = delegate.update(key, identifier, attributes);
+    forget(key);
+    return updated;
+  }
+
+  @Override
+  public void destroy(byte[] key) {
+    delegate.destroy(key);
+    forget(key);
+  }
+
+  @Override
+  public void destroy(byte[] key, String user) {
+    delegate.destroy(key, user);
+    forget(key);
+  }
+
+  @Override
+  public int destroyAll(String user) {
+    return delegate.destroyAll(user);
+  }
+
+  @Override
+  public void scan(int pageSize, Consumer<StoredSession> action) {
+    delegate.scan(pageSize, action);
+  }
+
+  @Override
+  public int purge(int pageSize, int maxPerSecond, Predicate<StoredSession> filter) {
+    return delegate.purge(pageSize, maxPerSecond, filter);
+  }
+
+  @Override
+  public boolean isConnected() {
+    return delegate.isConnected();
+  }
+
+  private void forget(byte[] key) {
+    if (key != null) {
+      var k = flightKey(key);
+      gets.forget(k);
+      decodes.forget(k);
+    }
+  }
+
+  private static String flightKey(byte[] key) {
+    return new String(key, StandardCharsets.ISO_8859_1);
+  }
+}
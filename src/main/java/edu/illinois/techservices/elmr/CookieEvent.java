@@ -0,0 +1,26 @@
+package edu.illinois.techservices.elmr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for reading, setting or unsetting one of elmr's cookies.
+ */
+@Name("edu.illinois.techservices.elmr.Cookie")
+@Label("Cookie")
+@Category({"elmr", "Cookies"})
+@Description("One of elmr's cookies read from a request or written to a response.")
+public class CookieEvent extends jdk.jfr.Event {
+
+  @Label("Cookie Name")
+  public String cookieName;
+
+  @Label("Action")
+  public String action;
+
+  @Label("Value Size")
+  @Description("Size of the cookie value in characters.")
+  public int valueSize;
+}
@@ -1,15 +1,37 @@
 package edu.illinois.techservices.elmr;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Implementation that stores SessionData in this application's memory.
+ *
+ * <p>
+ * Membership checks search a sorted copy of the attribute's values, made the first time the
+ * attribute is checked after the session data was saved.
+ *
+ * <p>
+ * {@link #update(byte[], String, Map)} merges the changed attributes into the decoded session data
+ * and replaces the data only if it is still the data decoded.
  */
 public final class InMemorySessionData implements SessionData {
 
   private final Map<String, String> data = new ConcurrentHashMap<>();
 
+  private final Map<String, Set<String>> keysByUser = new ConcurrentHashMap<>();
+
+  private final Map<String, String> owners = new ConcurrentHashMap<>();
+
+  private final Map<String, Members> members = new ConcurrentHashMap<>();
+
   private final CacheKey cacheKey = new SecureRandomCacheKey();
 
   public byte[] save(byte[] key, String sessionData) {
@@ -31,18 +53,163 @@ public final class InMemorySessionData implements SessionData {
     return cacheKey.encode(key);
   }
 
+  @Override
+  public byte[] save(byte[] preComputedKey, String sessionData, String user) {
+    var key = save(preComputedKey, sessionData);
+    var decodedKey = cacheKey.decode(key);
+    var previous = owners.put(decodedKey, user);
+    if (previous != null && !previous.equals(user)) {
+      unindex(previous, decodedKey);
+    }
+    keysByUser.computeIfAbsent(user, u -> ConcurrentHashMap.newKeySet()).add(decodedKey);
+    return key;
+  }
+
   @Override
   public String get(byte[] key) {
-    return data.getOrDefault(cacheKey.decode(key), null);
+    var decodedKey = sessionKey(key);
+    return decodedKey == null ? null : data.get(decodedKey);
+  }
+
+  @Override
+  public Boolean isMember(byte[] key, String attribute, String value) {
+    var decodedKey = sessionKey(key);
+    var sessionData = decodedKey == null ? null : data.get(decodedKey);
+    if (sessionData == null) {
+      return null;
+    }
+    var m = members.get(decodedKey);
+    if (m == null || m.sessionData != sessionData) {
+      m = new Members(sessionData);
+      members.put(decodedKey, m);
+    }
+    return Arrays.binarySearch(m.sorted(attribute), value) >= 0;
+  }
+
+  @Override
+  public boolean update(byte[] key, String identifier, Map<String, Object> attributes) {
+    var decodedKey = sessionKey(key);
+    var sessionData = decodedKey == null ? null : data.get(decodedKey);
+    if (sessionData == null || !sessionData.startsWith("{")) {
+      return false;
+    }
+    try {
+      var values = Json.renderValues(attributes);
+      var merged = new LinkedHashMap<String, Object>(Json.marshal(sessionData));
+      var stored = Json.renderValues(merged);
+      var user = values.get(identifier);
+      if (user == null || !user.equals(stored.get(identifier))) {
+        return false;
+      }
+      if (values.equals(stored)) {
+        return true;
+      }
+      // Attributes kept stay where they were and added ones go last, as in the Redis store.
+      merged.keySet().retainAll(values.keySet());
+      values.keySet().forEach(name -> merged.put(name, attributes.get(name)));
+      return data.replace(decodedKey, sessionData, Json.renderObject(merged));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   @Override
   public void destroy(byte[] key) {
-    data.remove(cacheKey.decode(key));
+    var decodedKey = sessionKey(key);
+    if (decodedKey != null) {
+      remove(decodedKey);
+    }
+  }
+
+  @Override
+  public void destroy(byte[] key, String user) {
+    var decodedKey = sessionKey(key);
+    if (decodedKey == null) {
+      return;
+    }
+    remove(decodedKey);
+    unindex(user, decodedKey);
+  }
+
+  @Override
+  public int destroyAll(String user) {
+    var keys = keysByUser.remove(user);
+    if (keys == null) {
+      return 0;
+    }
+    var destroyed = 0;
+    for (String k : keys) {
+      if (remove(k)) {
+        destroyed++;
+      }
+    }
+    return destroyed;
+  }
+
+  @Override
+  public void scan(int pageSize, Consumer<StoredSession> action) {
+    data.forEach((k, v) -> action.accept(new StoredSession(k, v, StoredSession.NO_EXPIRY)));
+  }
+
+  @Override
+  public int purge(int pageSize, int maxPerSecond, Predicate<StoredSession> filter) {
+    // Deleting from memory costs nothing worth limiting.
+    var purged = 0;
+    for (var e : data.entrySet()) {
+      if (filter.test(new StoredSession(e.getKey(), e.getValue(), StoredSession.NO_EXPIRY))
+          && data.remove(e.getKey(), e.getValue())) {
+        forget(e.getKey());
+        purged++;
+      }
+    }
+    return purged;
   }
 
   public void clear() {
     data.clear();
+    keysByUser.clear();
+    owners.clear();
+    members.clear();
+  }
+
+  /*
+   * Returns the given key decoded, or null if it is not Base64 and so not a key this store could
+   * have issued.
+   */
+  private String sessionKey(byte[] key) {
+    try {
+      return cacheKey.decode(key);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /*
+   * Deletes the data under the given decoded key. Returns whether there was data to delete.
+   */
+  private boolean remove(String decodedKey) {
+    var removed = data.remove(decodedKey) != null;
+    forget(decodedKey);
+    return removed;
+  }
+
+  /*
+   * Drops what is kept about the deleted data under the given decoded key, including the key in its
+   * user's index.
+   */
+  private void forget(String decodedKey) {
+    members.remove(decodedKey);
+    var owner = owners.remove(decodedKey);
+    if (owner != null) {
+      unindex(owner, decodedKey);
+    }
+  }
+
+  private void unindex(String user, String decodedKey) {
+    keysByUser.computeIfPresent(user, (u, keys) -> {
+      keys.remove(decodedKey);
+      return keys.isEmpty() ? null : keys;
+    });
   }
 
   @Override
@@ -50,4 +217,38 @@ public final class InMemorySessionData implements SessionData {
     // In memory stores are always connected.
     return true;
   }
+
+  /*
+   * Sorted values of the attributes of one version of a session's data.
+   */
+  private static final class Members {
+
+    private final String sessionData;
+
+    private final Map<String, String[]> sorted = new ConcurrentHashMap<>();
+
+    private Map<String, Object> attributes;
+
+    Members(String sessionData) {
+      this.sessionData = sessionData;
+    }
+
+    String[] sorted(String attribute) {
+      return sorted.computeIfAbsent(attribute, a -> {
+        var value = attributes().get(a);
+        var values = value instanceof List ? ((List<?>) value).stream()
+            .map(String::valueOf).toArray(String[]::new)
+            : value == null ? new String[0] : new String[] {String.valueOf(value)};
+        Arrays.sort(values);
+        return values;
+      });
+    }
+
+    private synchronized Map<String, Object> attributes() {
+      if (attributes == null) {
+        attributes = sessionData.startsWith("{") ? Json.marshal(sessionData) : Map.of();
+      }
+      return attributes;
+    }
+  }
 }
@@ -0,0 +1,247 @@
+package edu.illinois.techservices.elmr;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * SessionData implementation that records the latency of every operation of another SessionData
+ * implementation in {@link Metrics} and as {@link StoreOperationEvent}s.
+ */
+public final class InstrumentedSessionData implements SessionData {
+
+  private final SessionData delegate;
+
+  /**
+   * Constructs an instance that instruments the given implementation.
+   *
+   * @param delegate the implementation doing the actual work.
+   */
+  public InstrumentedSessionData(SessionData delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public byte[] save(byte[] preComputedKey, String sessionData) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    byte[] key = null;
+    try {
+      key = delegate.save(preComputedKey, sessionData);
+      return key;
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_SAVE.recordSince(start);
+      commit(event, "save", key == null ? preComputedKey : key, sessionData);
+    }
+  }
+
+  @Override
+  public byte[] save(String sessionData) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    byte[] key = null;
+    try {
+      key = delegate.save(sessionData);
+      return key;
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_SAVE.recordSince(start);
+      commit(event, "save", key, sessionData);
+    }
+  }
+
+  @Override
+  public byte[] save(byte[] preComputedKey, String sessionData, String user) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    byte[] key = null;
+    try {
+      key = delegate.save(preComputedKey, sessionData, user);
+      return key;
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_SAVE.recordSince(start);
+      commit(event, "save", key == null ? preComputedKey : key, sessionData);
+    }
+  }
+
+  @Override
+  public String get(byte[] key) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    String sessionData = null;
+    try {
+      sessionData = delegate.get(key);
+      return sessionData;
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_GET.recordSince(start);
+      event.found = sessionData != null;
+      commit(event, "get", key, sessionData);
+    }
+  }
+
+  @Override
+  public List<String> getAll(Collection<byte[]> keys) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    List<String> sessionData = null;
+    try {
+      sessionData = delegate.getAll(keys);
+      return sessionData;
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_GET_ALL.recordSince(start);
+      event.found = sessionData != null && sessionData.stream().anyMatch(d -> d != null);
+      commit(event, "getAll", null, null);
+    }
+  }
+
+  @Override
+  public Boolean isMember(byte[] key, String attribute, String value) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    Boolean member = null;
+    try {
+      member = delegate.isMember(key, attribute, value);
+      return member;
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_IS_MEMBER.recordSince(start);
+      event.found = member != null;
+      commit(event, "isMember", key, null);
+    }
+  }
+
+  @Override
+  public boolean update(byte[] key, String identifier, Map<String, Object> attributes) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    var updated = false;
+    try {
+      updated = delegate.update(key, identifier, attributes);
+      return updated;
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_UPDATE.recordSince(start);
+      event.found = updated;
+      commit(event, "update", key, null);
+    }
+  }
+
+  @Override
+  public void destroy(byte[] key) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    try {
+      delegate.destroy(key);
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_DESTROY.recordSince(start);
+      commit(event, "destroy", key, null);
+    }
+  }
+
+  @Override
+  public void destroy(byte[] key, String user) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    try {
+      delegate.destroy(key, user);
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_DESTROY.recordSince(start);
+      commit(event, "destroy", key, null);
+    }
+  }
+
+  @Override
+  public int destroyAll(String user) {
+    var event = new StoreOperationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    var destroyed = 0;
+    try {
+      destroyed = delegate.destroyAll(user);
+      return destroyed;
+    } catch (UnsupportedOperationException e) {
+      // The implementation can't do this; the store did not fail.
+      throw e;
+    } catch (RuntimeException e) {
+      Metrics.STORE_ERRORS.increment();
+      event.failed = true;
+      throw e;
+    } finally {
+      Metrics.STORE_DESTROY.recordSince(start);
+      event.found = destroyed > 0;
+      commit(event, "destroyAll", null, null);
+    }
+  }
+
+  @Override
+  public void scan(int pageSize, Consumer<StoredSession> action) {
+    // Scans are rare administrative operations whose duration depends on the caller.
+    delegate.scan(pageSize, action);
+  }
+
+  @Override
+  public int purge(int pageSize, int maxPerSecond, Predicate<StoredSession> filter) {
+    return delegate.purge(pageSize, maxPerSecond, filter);
+  }
+
+  @Override
+  public boolean isConnected() {
+    // Health probes are not a hot path and are tracked by SessionDataHealthMonitor.
+    return delegate.isConnected();
+  }
+
+  private static void commit(StoreOperationEvent event, String operation, byte[] key,
+      String sessionData) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.keySize = key == null ? 0 : key.length;
+      event.payloadSize = sessionData == null ? 0 : sessionData.length();
+      event.commit();
+    }
+  }
+}
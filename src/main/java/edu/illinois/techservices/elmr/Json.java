@@ -2,6 +2,7 @@ package edu.illinois.techservices.elmr;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -50,7 +51,7 @@ public final class Json {
    * The keys in the Map are String objects. The values are one of a Map whose keys are Strings and
    * whose values are in this list, a List whose types are a Map as previously described, String,
    * boolean, or number, or a String, boolean or Number type. The resulting String is 1 line and not
-   * formatted.
+   * formatted. Keys are rendered in the order the Map iterates them.
    * 
    * <p>
    * The example below shows how the Map is converted into json.
@@ -89,9 +90,50 @@ public final class Json {
    * @throws IOException if an IOException occurs during render.
    */
   public static String renderObject(Map<String, Object> object) throws IOException {
+    var event = new JsonCodecEvent();
+    event.begin();
+    var start = System.nanoTime();
     var buffer = new StringBuilder();
-    renderObject(object, buffer);
-    return buffer.toString();
+    try {
+      renderObject(object, buffer);
+      return buffer.toString();
+    } finally {
+      Metrics.JSON_ENCODE.recordSince(start);
+      RequestTimer.recordSince(RequestTimer.Stage.JSON, start);
+      commit(event, "encode", buffer.length());
+    }
+  }
+
+  /**
+   * Renders each value of the given Map as json, as {@link #renderObject(Map)} renders it, and
+   * returns them by their keys in the order the Map iterates them. Entries
+   * {@link #renderObject(Map)} leaves out, whose values are null or empty Strings, are left out.
+   *
+   * @param object a Map as passed to {@link #renderObject(Map)}.
+   * @return the json of each value by its key.
+   * @throws IOException if an IOException occurs during render.
+   */
+  public static Map<String, String> renderValues(Map<String, Object> object) throws IOException {
+    var event = new JsonCodecEvent();
+    event.begin();
+    var start = System.nanoTime();
+    var values = new LinkedHashMap<String, String>();
+    var length = 0;
+    try {
+      for (Entry<String, Object> e : object.entrySet()) {
+        if (ENTRY_HAS_VALUE.test(e)) {
+          var buffer = new StringBuilder();
+          renderValue(e.getValue(), buffer);
+          values.put(e.getKey(), buffer.toString());
+          length += buffer.length();
+        }
+      }
+      return values;
+    } finally {
+      Metrics.JSON_ENCODE.recordSince(start);
+      RequestTimer.recordSince(RequestTimer.Stage.JSON, start);
+      commit(event, "encode", length);
+    }
   }
 
   /**
@@ -137,14 +179,24 @@ public final class Json {
    * @throws IOException if an IOException is thrown during render.
    */
   public static String renderList(Iterable<? extends Object> values) throws IOException {
+    var event = new JsonCodecEvent();
+    event.begin();
+    var start = System.nanoTime();
     var buffer = new StringBuilder();
-    renderList(values, buffer);
-    return buffer.toString();
+    try {
+      renderList(values, buffer);
+      return buffer.toString();
+    } finally {
+      Metrics.JSON_ENCODE.recordSince(start);
+      RequestTimer.recordSince(RequestTimer.Stage.JSON, start);
+      commit(event, "encode", buffer.length());
+    }
   }
 
   private static void renderObject(Map<String, Object> data, Appendable buffer) throws IOException {
     var filteredData = data.entrySet().stream().filter(ENTRY_HAS_VALUE)
-        .collect(Collectors.toMap(k -> k.getKey(), v -> v.getValue()));
+        .collect(Collectors.toMap(k -> k.getKey(), v -> v.getValue(), (a, b) -> b,
+            LinkedHashMap::new));
     if (!filteredData.isEmpty()) {
       buffer.append("{");
       for (Iterator<String> keys = filteredData.keySet().iterator(); keys.hasNext();) {
@@ -347,6 +399,9 @@ public final class Json {
   public static Map<String, Object> marshal(String json) {
     // With great thanks to
     // http://www.adam-bien.com/roller/abien/entry/converting_json_to_map_with
+    var event = new JsonCodecEvent();
+    event.begin();
+    var start = System.nanoTime();
     var se = new ScriptEngineManager().getEngineByName("javascript");
     LOGGER.finer(() -> String.format("Marshalling %s", json));
 
@@ -354,6 +409,19 @@ public final class Json {
       return (Map<String, Object>) se.eval(String.format("Java.asJSONCompatible(%s)", json));
     } catch (ScriptException e) {
       throw new RuntimeException(e);
+    } finally {
+      Metrics.JSON_DECODE.recordSince(start);
+      RequestTimer.recordSince(RequestTimer.Stage.JSON, start);
+      commit(event, "decode", json == null ? 0 : json.length());
+    }
+  }
+
+  private static void commit(JsonCodecEvent event, String operation, int payloadSize) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.payloadSize = payloadSize;
+      event.commit();
     }
   }
 }
@@ -0,0 +1,23 @@
+package edu.illinois.techservices.elmr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for encoding or decoding json with {@link Json}.
+ */
+@Name("edu.illinois.techservices.elmr.JsonCodec")
+@Label("Json Encode/Decode")
+@Category({"elmr", "Json"})
+@Description("Session data rendered to or parsed from json.")
+public class JsonCodecEvent extends jdk.jfr.Event {
+
+  @Label("Operation")
+  public String operation;
+
+  @Label("Payload Size")
+  @Description("Size of the json in characters.")
+  public int payloadSize;
+}
@@ -0,0 +1,24 @@
+package edu.illinois.techservices.elmr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for generating, encoding or decoding a {@link CacheKey}.
+ */
+@Name("edu.illinois.techservices.elmr.KeyGeneration")
+@Label("Cache Key")
+@Category({"elmr", "Cache Key"})
+@Description("A session key generated, encoded or decoded.")
+public class KeyGenerationEvent extends jdk.jfr.Event {
+
+  @Label("Operation")
+  public String operation;
+
+  @Label("Key Size")
+  @DataAmount
+  public int keySize;
+}
@@ -0,0 +1,364 @@
+package edu.illinois.techservices.elmr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Answers session lookups over a plain TCP connection, for sidecars on the same host that would
+ * otherwise go through Apache, AJP and Tomcat to read a session.
+ *
+ * <p>
+ * Each request is a 4 byte big-endian length followed by that many bytes of a session key, the
+ * value of the session key cookie. Each response is a 4 byte big-endian length followed by that
+ * many bytes of the session data as stored, which is UTF-8 json. A length of {@value #NOT_FOUND}
+ * means there is no session for the key and {@value #STORE_ERROR} that the store could not be
+ * reached; neither is followed by data. Keys longer than {@value #MAX_KEY_LENGTH} bytes close the
+ * connection.
+ *
+ * <p>
+ * Requests may be pipelined: responses come back in the order the requests were sent. All
+ * requests read from a connection at once are looked up in one trip to the store. One thread
+ * accepts connections and moves bytes, and a fixed number of worker threads talk to the store.
+ * While a connection's lookups are in progress no more of its requests are read, so a client
+ * cannot make the server buffer more than one read's worth of lookups for it.
+ *
+ * <p>
+ * There is no authentication: anyone who can connect can read any session whose key they hold,
+ * just as with the session key cookie. Bind it to the loopback address.
+ */
+public final class LookupServer implements AutoCloseable {
+
+  /**
+   * Name of the system property and context parameter for the port to listen on. {@code 0}, the
+   * default, turns the server off.
+   */
+  public static final String PORT_SYSPROP = LookupServer.class.getName() + ".port";
+
+  /**
+   * Name of the system property and context parameter for the address to listen on.
+   */
+  public static final String ADDRESS_SYSPROP = LookupServer.class.getName() + ".address";
+
+  /**
+   * Name of the system property and context parameter for the number of worker threads.
+   */
+  public static final String WORKERS_SYSPROP = LookupServer.class.getName() + ".workers";
+
+  public static final int DEFAULT_PORT = 0;
+
+  public static final String DEFAULT_ADDRESS = "127.0.0.1";
+
+  public static final int DEFAULT_WORKERS = 2;
+
+  /**
+   * Response length meaning there is no session for the key.
+   */
+  public static final int NOT_FOUND = -1;
+
+  /**
+   * Response length meaning the session data store could not be reached.
+   */
+  public static final int STORE_ERROR = -2;
+
+  public static final int MAX_KEY_LENGTH = 1024;
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private static final Logger LOGGER = Logger.getLogger(LookupServer.class.getName());
+
+  private static final Metrics.Histogram BATCHES = Metrics.histogram(
+      "elmr_lookup_server_batch_seconds",
+      "Latency of looking up the keys read at once from a lookup server connection.", null, null);
+
+  private final SessionData sd;
+
+  private final ServerSocketChannel server;
+
+  private final Selector selector;
+
+  private final ExecutorService workers;
+
+  private final Thread selectorThread;
+
+  private final Queue<Connection> answered = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean closed;
+
+  /**
+   * Binds to the given address. Nothing is accepted until {@link #start()} is called.
+   *
+   * @param sd      the store to look sessions up in.
+   * @param address address to listen on.
+   * @param workers number of threads looking sessions up.
+   * @throws IOException if the address cannot be bound.
+   */
+  public LookupServer(SessionData sd, InetSocketAddress address, int workers)
+      throws IOException {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("Number of workers must be positive!");
+    }
+    this.sd = sd;
+    this.selector = Selector.open();
+    this.server = ServerSocketChannel.open();
+    try {
+      server.bind(address);
+      server.configureBlocking(false);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      server.close();
+      selector.close();
+      throw e;
+    }
+    var count = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(workers, r -> {
+      var t = new Thread(r, "elmr-lookup-worker-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    this.selectorThread = new Thread(this::run, "elmr-lookup-server");
+    selectorThread.setDaemon(true);
+  }
+
+  /**
+   * Starts accepting connections in the background.
+   */
+  public void start() {
+    selectorThread.start();
+    LOGGER.config("Answering session lookups on " + getLocalAddress() + ".");
+  }
+
+  /**
+   * Returns the address this server listens on, with the actual port if bound to port 0.
+   */
+  public InetSocketAddress getLocalAddress() {
+    try {
+      return (InetSocketAddress) server.getLocalAddress();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Stops accepting connections and closes the open ones.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    workers.shutdownNow();
+    if (selectorThread.isAlive()) {
+      // The selector thread closes the connections and the selector on its way out.
+      selector.wakeup();
+      try {
+        selectorThread.join(1000L);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    } else {
+      closeQuietly(selector);
+    }
+    closeQuietly(server);
+  }
+
+  private void run() {
+    try {
+      while (!closed) {
+        selector.select();
+        Connection c;
+        while ((c = answered.poll()) != null) {
+          c.write();
+        }
+        var keys = selector.selectedKeys();
+        for (SelectionKey key : keys) {
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+          } else if (key.isReadable()) {
+            ((Connection) key.attachment()).read();
+          } else if (key.isWritable()) {
+            ((Connection) key.attachment()).write();
+          }
+        }
+        keys.clear();
+      }
+    } catch (ClosedSelectorException e) {
+      // Closed while waiting.
+    } catch (IOException | RuntimeException e) {
+      if (!closed) {
+        LOGGER.log(Level.SEVERE, "Lookup server stopped.", e);
+      }
+    } finally {
+      if (selector.isOpen()) {
+        for (SelectionKey key : selector.keys()) {
+          if (key.channel() != server) {
+            closeQuietly(key.channel());
+          }
+        }
+        closeQuietly(selector);
+      }
+    }
+  }
+
+  private void accept() {
+    SocketChannel channel = null;
+    try {
+      channel = server.accept();
+      if (channel == null) {
+        return;
+      }
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      var c = new Connection(channel);
+      c.key = channel.register(selector, SelectionKey.OP_READ, c);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Failed to accept lookup connection.", e);
+      if (channel != null) {
+        closeQuietly(channel);
+      }
+    }
+  }
+
+  /*
+   * State of one client connection. Only the selector thread touches it, except that a worker sets
+   * the responses before handing it back through answered.
+   */
+  private final class Connection {
+
+    private final SocketChannel channel;
+
+    private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    private SelectionKey key;
+
+    private volatile ByteBuffer out;
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    void read() {
+      int read;
+      try {
+        read = channel.read(in);
+      } catch (IOException e) {
+        close();
+        return;
+      }
+      if (read < 0) {
+        close();
+        return;
+      }
+      var requested = new ArrayList<byte[]>();
+      in.flip();
+      while (in.remaining() >= Integer.BYTES) {
+        var length = in.getInt(in.position());
+        if (length < 0 || length > MAX_KEY_LENGTH) {
+          LOGGER.fine(() -> "Closing lookup connection that sent a key of " + length + " bytes.");
+          close();
+          return;
+        }
+        if (in.remaining() < Integer.BYTES + length) {
+          break;
+        }
+        in.position(in.position() + Integer.BYTES);
+        var requestedKey = new byte[length];
+        in.get(requestedKey);
+        requested.add(requestedKey);
+      }
+      in.compact();
+      if (requested.isEmpty()) {
+        return;
+      }
+      key.interestOps(0);
+      try {
+        workers.execute(() -> lookUp(requested));
+      } catch (RejectedExecutionException e) {
+        close();
+      }
+    }
+
+    /*
+     * Runs on a worker thread.
+     */
+    private void lookUp(List<byte[]> requested) {
+      var start = System.nanoTime();
+      List<String> sessionData;
+      try {
+        sessionData = sd.getAll(requested);
+      } catch (RuntimeException e) {
+        LOGGER.log(Level.WARNING, "Failed to look up " + requested.size() + " sessions.", e);
+        sessionData = null;
+      }
+      BATCHES.recordSince(start);
+      var responses = new ArrayList<byte[]>(requested.size());
+      var size = 0;
+      for (int i = 0; i < requested.size(); i++) {
+        var data = sessionData == null || sessionData.get(i) == null ? null
+            : sessionData.get(i).getBytes(StandardCharsets.UTF_8);
+        responses.add(data);
+        size += Integer.BYTES + (data == null ? 0 : data.length);
+      }
+      var buffer = ByteBuffer.allocate(size);
+      for (byte[] data : responses) {
+        if (data != null) {
+          buffer.putInt(data.length).put(data);
+        } else {
+          buffer.putInt(sessionData == null ? STORE_ERROR : NOT_FOUND);
+        }
+      }
+      out = buffer.flip();
+      answered.add(this);
+      selector.wakeup();
+    }
+
+    void write() {
+      if (!key.isValid()) {
+        return;
+      }
+      try {
+        channel.write(out);
+      } catch (IOException e) {
+        close();
+        return;
+      }
+      if (out.hasRemaining()) {
+        key.interestOps(SelectionKey.OP_WRITE);
+      } else {
+        out = null;
+        key.interestOps(SelectionKey.OP_READ);
+      }
+    }
+
+    void close() {
+      key.cancel();
+      closeQuietly(channel);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Problem closing " + closeable + ".", e);
+    }
+  }
+}
@@ -0,0 +1,214 @@
+package edu.illinois.techservices.elmr;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Logger;
+import javax.servlet.Filter;
+import javax.servlet.Servlet;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebServlet;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import edu.illinois.techservices.elmr.servlets.AdminConfigServlet;
+import edu.illinois.techservices.elmr.servlets.AdminFilter;
+import edu.illinois.techservices.elmr.servlets.AdminSessionsServlet;
+import edu.illinois.techservices.elmr.servlets.AttributesFilter;
+import edu.illinois.techservices.elmr.servlets.AttributesServlet;
+import edu.illinois.techservices.elmr.servlets.ConfigServlet;
+import edu.illinois.techservices.elmr.servlets.ElmrConfigContextListener;
+import edu.illinois.techservices.elmr.servlets.FirstRequestListener;
+import edu.illinois.techservices.elmr.servlets.MetricsFilter;
+import edu.illinois.techservices.elmr.servlets.MetricsServlet;
+import edu.illinois.techservices.elmr.servlets.RecordingServlet;
+import edu.illinois.techservices.elmr.servlets.RequestAttributesLoggingFilter;
+import edu.illinois.techservices.elmr.servlets.ServerTimingFilter;
+import edu.illinois.techservices.elmr.servlets.SessionAttributesServlet;
+import edu.illinois.techservices.elmr.servlets.SessionMemberServlet;
+import edu.illinois.techservices.elmr.servlets.SessionServlet;
+import edu.illinois.techservices.elmr.servlets.SessionsServlet;
+import edu.illinois.techservices.elmr.servlets.StartupContextListener;
+import edu.illinois.techservices.elmr.servlets.StatusServlet;
+
+/**
+ * Runs elmr in an embedded Tomcat instead of a Tomcat started by
+ * {@code org.apache.catalina.startup.Bootstrap}.
+ *
+ * <p>
+ * Servlets, filters and listeners are registered directly from the lists in this class, so Tomcat
+ * never scans jars or classes for annotations and does not read {@code server.xml},
+ * {@code web.xml} or {@code context.xml}. Url patterns and servlet names are still taken from each
+ * class's {@link WebServlet} and {@link WebFilter} annotation so they are declared in one place.
+ * Filters run in the order they are listed here.
+ *
+ * <p>
+ * Because everything is loaded from the application class path, the classes used at startup can
+ * be stored in a class data sharing archive to shorten startup further. {@code bin/appcds.sh}
+ * creates the archive and {@code bin/embedded.sh} runs this launcher with it.
+ *
+ * <p>
+ * Context parameters are not read from {@code context.xml}; set them as system properties instead.
+ * The following system properties configure the launcher:
+ *
+ * <dl>
+ * <dt>{@code edu.illinois.techservices.elmr.Main.port}
+ * <dd>Port to listen on. Default {@value #DEFAULT_PORT}.
+ * <dt>{@code edu.illinois.techservices.elmr.Main.protocol}
+ * <dd>Connector protocol. Default {@value #DEFAULT_PROTOCOL}; {@code HTTP/1.1} is useful for local
+ * testing without Apache.
+ * <dt>{@code edu.illinois.techservices.elmr.Main.contextPath}
+ * <dd>Path the application is served from. Default {@value #DEFAULT_CONTEXT_PATH}.
+ * <dt>{@code edu.illinois.techservices.elmr.Main.exitAfterStart}
+ * <dd>If {@code true}, stop as soon as the application has started. Used to record the classes
+ * loaded at startup for a class data sharing archive.
+ * </dl>
+ *
+ * <p>
+ * {@code catalina.base} sets the working directory for Tomcat (default the current directory).
+ */
+public final class Main {
+
+  private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
+
+  public static final String PORT_SYSPROP = Main.class.getName() + ".port";
+
+  public static final String PROTOCOL_SYSPROP = Main.class.getName() + ".protocol";
+
+  public static final String CONTEXT_PATH_SYSPROP = Main.class.getName() + ".contextPath";
+
+  public static final String EXIT_AFTER_START_SYSPROP = Main.class.getName() + ".exitAfterStart";
+
+  public static final int DEFAULT_PORT = 8009;
+
+  public static final String DEFAULT_PROTOCOL = "AJP/1.3";
+
+  public static final String DEFAULT_CONTEXT_PATH = "/auth/elmr";
+
+  static final List<Class<? extends Servlet>> SERVLETS =
+      List.of(SessionServlet.class, SessionAttributesServlet.class, SessionMemberServlet.class,
+          AttributesServlet.class, ConfigServlet.class,
+          StatusServlet.class, MetricsServlet.class, RecordingServlet.class,
+          AdminConfigServlet.class, AdminSessionsServlet.class, SessionsServlet.class);
+
+  static final List<Class<? extends Filter>> FILTERS =
+      List.of(ServerTimingFilter.class, MetricsFilter.class, AdminFilter.class,
+          RequestAttributesLoggingFilter.class, AttributesFilter.class);
+
+  static final List<Class<?>> LISTENERS = List.of(ElmrConfigContextListener.class,
+      StartupContextListener.class, FirstRequestListener.class);
+
+  private Main() {
+    // Empty constructor prevents instantiation.
+  }
+
+  /**
+   * Starts elmr and waits until the JVM is shut down.
+   *
+   * @param args ignored.
+   * @throws Exception if Tomcat cannot be started.
+   */
+  public static void main(String[] args) throws Exception {
+    var tomcat = newTomcat(Path.of(System.getProperty("catalina.base", ".")),
+        System.getProperty(PROTOCOL_SYSPROP, DEFAULT_PROTOCOL),
+        Integer.getInteger(PORT_SYSPROP, DEFAULT_PORT),
+        System.getProperty(CONTEXT_PATH_SYSPROP, DEFAULT_CONTEXT_PATH));
+    tomcat.start();
+    LOGGER.info("Tomcat started " + ManagementFactory.getRuntimeMXBean().getUptime()
+        + " ms after the JVM started.");
+
+    if (Boolean.getBoolean(EXIT_AFTER_START_SYSPROP)) {
+      stop(tomcat);
+      return;
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> stop(tomcat), "elmr-shutdown"));
+    tomcat.getServer().await();
+  }
+
+  /**
+   * Creates an embedded Tomcat serving elmr with one connector. Nothing is started.
+   *
+   * @param baseDir     working directory for Tomcat.
+   * @param protocol    connector protocol, such as {@code AJP/1.3} or {@code HTTP/1.1}.
+   * @param port        port the connector listens on.
+   * @param contextPath path the application is served from.
+   * @return the new Tomcat.
+   * @throws IOException if the working directory cannot be created.
+   */
+  static Tomcat newTomcat(Path baseDir, String protocol, int port, String contextPath)
+      throws IOException {
+    var tomcat = new Tomcat();
+    tomcat.setBaseDir(baseDir.toAbsolutePath().toString());
+
+    var connector = new Connector(protocol);
+    connector.setPort(port);
+    // Same settings as the connector and executor in conf/server.xml.
+    connector.setProperty("tomcatAuthentication", "false");
+    connector.setProperty("maxThreads", "150");
+    connector.setProperty("minSpareThreads", "4");
+    tomcat.getService().addConnector(connector);
+    tomcat.setConnector(connector);
+
+    // Nothing is served from the document base but Tomcat needs one.
+    var docBase = baseDir.resolve("work").resolve("elmr-docbase");
+    Files.createDirectories(docBase);
+    var context = tomcat.addContext(contextPath, docBase.toAbsolutePath().toString());
+    register(context);
+    return tomcat;
+  }
+
+  /**
+   * Registers elmr's listeners, servlets and filters with the given context.
+   *
+   * @param context the context to register with.
+   */
+  static void register(Context context) {
+    for (Class<?> listener : LISTENERS) {
+      context.addApplicationListener(listener.getName());
+    }
+
+    for (Class<? extends Servlet> servletClass : SERVLETS) {
+      var ws = servletClass.getAnnotation(WebServlet.class);
+      var name = ws.name().isEmpty() ? servletClass.getName() : ws.name();
+      var wrapper = context.createWrapper();
+      wrapper.setName(name);
+      wrapper.setServletClass(servletClass.getName());
+      context.addChild(wrapper);
+      for (String pattern : ws.urlPatterns().length > 0 ? ws.urlPatterns() : ws.value()) {
+        context.addServletMappingDecoded(pattern, name);
+      }
+    }
+
+    for (Class<? extends Filter> filterClass : FILTERS) {
+      var wf = filterClass.getAnnotation(WebFilter.class);
+      var name = wf.filterName().isEmpty() ? filterClass.getName() : wf.filterName();
+      var filterDef = new FilterDef();
+      filterDef.setFilterName(name);
+      filterDef.setFilterClass(filterClass.getName());
+      context.addFilterDef(filterDef);
+      var filterMap = new FilterMap();
+      filterMap.setFilterName(name);
+      for (String pattern : wf.urlPatterns().length > 0 ? wf.urlPatterns() : wf.value()) {
+        filterMap.addURLPatternDecoded(pattern);
+      }
+      for (String servletName : wf.servletNames()) {
+        filterMap.addServletName(servletName);
+      }
+      context.addFilterMap(filterMap);
+    }
+  }
+
+  private static void stop(Tomcat tomcat) {
+    try {
+      tomcat.stop();
+      tomcat.destroy();
+    } catch (LifecycleException e) {
+      LOGGER.warning("Problem stopping Tomcat: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,382 @@
+package edu.illinois.techservices.elmr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the counters, gauges and latency histograms elmr records about itself.
+ *
+ * <p>
+ * Recording is lock-free: counters and histogram buckets are {@link LongAdder}s, and histograms
+ * use a fixed set of buckets so recording an event is a short scan of a {@code long[]} and an
+ * increment. Nothing is allocated while recording. The registry is rendered in the Prometheus text
+ * exposition format by {@link #writePrometheus(Appendable)}.
+ *
+ * <p>
+ * Metrics are grouped into families by name. All members of a family share the same help text and
+ * type and are told apart by a single label.
+ */
+public final class Metrics {
+
+  private static final List<Metric> METRICS = new CopyOnWriteArrayList<>();
+
+  private static final Map<String, Gauge> GAUGES = new ConcurrentHashMap<>();
+
+  private static final String STORE_SECONDS = "elmr_session_data_seconds";
+
+  private static final String STORE_SECONDS_HELP = "Latency of session data store operations.";
+
+  private static final String JSON_SECONDS = "elmr_json_seconds";
+
+  private static final String JSON_SECONDS_HELP = "Time spent encoding and decoding json.";
+
+  /**
+   * Latency of {@link SessionData#get(byte[])}.
+   */
+  public static final Histogram STORE_GET =
+      histogram(STORE_SECONDS, STORE_SECONDS_HELP, "operation", "get");
+
+  /**
+   * Latency of {@link SessionData#getAll(java.util.Collection)}.
+   */
+  public static final Histogram STORE_GET_ALL =
+      histogram(STORE_SECONDS, STORE_SECONDS_HELP, "operation", "getAll");
+
+  /**
+   * Latency of {@link SessionData#isMember(byte[], String, String)}.
+   */
+  public static final Histogram STORE_IS_MEMBER =
+      histogram(STORE_SECONDS, STORE_SECONDS_HELP, "operation", "isMember");
+
+  /**
+   * Latency of the {@link SessionData} save methods.
+   */
+  public static final Histogram STORE_SAVE =
+      histogram(STORE_SECONDS, STORE_SECONDS_HELP, "operation", "save");
+
+  /**
+   * Latency of {@link SessionData#update(byte[], String, Map)}.
+   */
+  public static final Histogram STORE_UPDATE =
+      histogram(STORE_SECONDS, STORE_SECONDS_HELP, "operation", "update");
+
+  /**
+   * Latency of {@link SessionData#destroy(byte[])}.
+   */
+  public static final Histogram STORE_DESTROY =
+      histogram(STORE_SECONDS, STORE_SECONDS_HELP, "operation", "destroy");
+
+  /**
+   * Count of session data store operations that threw an exception.
+   */
+  public static final Counter STORE_ERRORS = counter("elmr_session_data_errors_total",
+      "Session data store operations that failed with an exception.", null, null);
+
+  /**
+   * Time spent rendering json.
+   */
+  public static final Histogram JSON_ENCODE =
+      histogram(JSON_SECONDS, JSON_SECONDS_HELP, "operation", "encode");
+
+  /**
+   * Time spent parsing json.
+   */
+  public static final Histogram JSON_DECODE =
+      histogram(JSON_SECONDS, JSON_SECONDS_HELP, "operation", "decode");
+
+  private Metrics() {
+    // Empty constructor prevents instantiation.
+  }
+
+  /**
+   * Creates and registers a new histogram.
+   *
+   * @param name       name of the metric family.
+   * @param help       description of the metric family.
+   * @param labelName  name of the label distinguishing members of the family or {@code null}.
+   * @param labelValue value of the label for this member or {@code null}.
+   * @return the new histogram.
+   */
+  public static Histogram histogram(String name, String help, String labelName,
+      String labelValue) {
+    var h = new Histogram(name, help, labels(labelName, labelValue));
+    METRICS.add(h);
+    return h;
+  }
+
+  /**
+   * Creates and registers a new counter.
+   *
+   * @param name       name of the metric family.
+   * @param help       description of the metric family.
+   * @param labelName  name of the label distinguishing members of the family or {@code null}.
+   * @param labelValue value of the label for this member or {@code null}.
+   * @return the new counter.
+   */
+  public static Counter counter(String name, String help, String labelName, String labelValue) {
+    var c = new Counter(name, help, labels(labelName, labelValue));
+    METRICS.add(c);
+    return c;
+  }
+
+  /**
+   * Registers a gauge whose value is read from the given supplier when metrics are rendered.
+   *
+   * <p>
+   * Registering a gauge with the same name and label as an existing gauge replaces it. This lets a
+   * component that is recreated (for instance on redeploy) point the gauge at its new instance.
+   *
+   * @param name       name of the metric family.
+   * @param help       description of the metric family.
+   * @param labelName  name of the label distinguishing members of the family or {@code null}.
+   * @param labelValue value of the label for this member or {@code null}.
+   * @param value      supplies the current value.
+   */
+  public static void gauge(String name, String help, String labelName, String labelValue,
+      LongSupplier value) {
+    var g = new Gauge(name, help, labels(labelName, labelValue), value);
+    var previous = GAUGES.put(name + g.labels, g);
+    if (previous != null) {
+      METRICS.remove(previous);
+    }
+    METRICS.add(g);
+  }
+
+  /**
+   * Writes every registered metric in the Prometheus text exposition format (version 0.0.4).
+   *
+   * @param out where the metrics are written to.
+   * @throws IOException if an IOException occurs during writing.
+   */
+  public static void writePrometheus(Appendable out) throws IOException {
+    // Members of a family may have been registered at different times; group them so each
+    // family's HELP and TYPE lines are written once.
+    var families = new ArrayList<String>();
+    for (Metric m : METRICS) {
+      if (!families.contains(m.name)) {
+        families.add(m.name);
+      }
+    }
+    for (String family : families) {
+      var first = true;
+      for (Metric m : METRICS) {
+        if (m.name.equals(family)) {
+          if (first) {
+            out.append("# HELP ").append(m.name).append(' ').append(m.help).append('\n');
+            out.append("# TYPE ").append(m.name).append(' ').append(m.type()).append('\n');
+            first = false;
+          }
+          m.write(out);
+        }
+      }
+    }
+  }
+
+  private static String labels(String labelName, String labelValue) {
+    if (labelName == null || labelValue == null) {
+      return "";
+    }
+    return labelName + "=\"" + labelValue.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  private static void appendSample(Appendable out, String name, String labels, String extraLabel,
+      String value) throws IOException {
+    out.append(name);
+    if (!labels.isEmpty() || extraLabel != null) {
+      out.append('{').append(labels);
+      if (extraLabel != null) {
+        if (!labels.isEmpty()) {
+          out.append(',');
+        }
+        out.append(extraLabel);
+      }
+      out.append('}');
+    }
+    out.append(' ').append(value).append('\n');
+  }
+
+  /**
+   * Base class of all metrics.
+   */
+  abstract static class Metric {
+
+    final String name;
+
+    final String help;
+
+    final String labels;
+
+    Metric(String name, String help, String labels) {
+      this.name = name;
+      this.help = help;
+      this.labels = labels;
+    }
+
+    abstract String type();
+
+    abstract void write(Appendable out) throws IOException;
+  }
+
+  /**
+   * A monotonically increasing count.
+   */
+  public static final class Counter extends Metric {
+
+    private final LongAdder count = new LongAdder();
+
+    private Counter(String name, String help, String labels) {
+      super(name, help, labels);
+    }
+
+    /**
+     * Adds 1 to the count.
+     */
+    public void increment() {
+      count.increment();
+    }
+
+    /**
+     * Returns the current count.
+     */
+    public long get() {
+      return count.sum();
+    }
+
+    @Override
+    String type() {
+      return "counter";
+    }
+
+    @Override
+    void write(Appendable out) throws IOException {
+      appendSample(out, name, labels, null, Long.toString(count.sum()));
+    }
+  }
+
+  /**
+   * A value read when metrics are rendered.
+   */
+  static final class Gauge extends Metric {
+
+    private final LongSupplier value;
+
+    private Gauge(String name, String help, String labels, LongSupplier value) {
+      super(name, help, labels);
+      this.value = value;
+    }
+
+    @Override
+    String type() {
+      return "gauge";
+    }
+
+    @Override
+    void write(Appendable out) throws IOException {
+      appendSample(out, name, labels, null, Long.toString(value.getAsLong()));
+    }
+  }
+
+  /**
+   * A latency distribution over a fixed set of buckets.
+   *
+   * <p>
+   * Durations are recorded in nanoseconds and rendered in seconds. Bucket upper bounds run from 50
+   * microseconds to 2.5 seconds, which covers everything from an in-memory lookup to a store
+   * operation that is about to time out.
+   */
+  public static final class Histogram extends Metric {
+
+    private static final long[] BOUNDS_NANOS = {50_000L, 100_000L, 250_000L, 500_000L, 1_000_000L,
+        2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L, 250_000_000L,
+        500_000_000L, 1_000_000_000L, 2_500_000_000L};
+
+    private static final String[] BOUNDS_LABELS = new String[BOUNDS_NANOS.length];
+
+    static {
+      for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+        BOUNDS_LABELS[i] = "le=\"" + toSeconds(BOUNDS_NANOS[i]) + "\"";
+      }
+    }
+
+    // One more bucket than bounds to catch everything above the last bound (+Inf).
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+
+    private final LongAdder sumNanos = new LongAdder();
+
+    private Histogram(String name, String help, String labels) {
+      super(name, help, labels);
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    /**
+     * Records an event that took the given number of nanoseconds.
+     *
+     * @param nanos duration of the event.
+     */
+    public void record(long nanos) {
+      var i = 0;
+      while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+        i++;
+      }
+      buckets[i].increment();
+      sumNanos.add(nanos);
+    }
+
+    /**
+     * Records an event that started at the given value of {@link System#nanoTime()} and ended now.
+     *
+     * @param startNanos value of {@link System#nanoTime()} when the event started.
+     */
+    public void recordSince(long startNanos) {
+      record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of events recorded.
+     */
+    public long getCount() {
+      var count = 0L;
+      for (LongAdder bucket : buckets) {
+        count += bucket.sum();
+      }
+      return count;
+    }
+
+    /**
+     * Returns the total duration of all events recorded in nanoseconds.
+     */
+    public long getSumNanos() {
+      return sumNanos.sum();
+    }
+
+    @Override
+    String type() {
+      return "histogram";
+    }
+
+    @Override
+    void write(Appendable out) throws IOException {
+      var cumulative = 0L;
+      for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+        cumulative += buckets[i].sum();
+        appendSample(out, name + "_bucket", labels, BOUNDS_LABELS[i], Long.toString(cumulative));
+      }
+      cumulative += buckets[BOUNDS_NANOS.length].sum();
+      appendSample(out, name + "_bucket", labels, "le=\"+Inf\"", Long.toString(cumulative));
+      appendSample(out, name + "_sum", labels, null, toSeconds(sumNanos.sum()));
+      appendSample(out, name + "_count", labels, null, Long.toString(cumulative));
+    }
+
+    private static String toSeconds(long nanos) {
+      return Double.toString(nanos / 1_000_000_000.0);
+    }
+  }
+}
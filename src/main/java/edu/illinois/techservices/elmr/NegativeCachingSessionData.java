@@ -0,0 +1,266 @@
+package edu.illinois.techservices.elmr;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * SessionData implementation that remembers for a short time which keys another SessionData
+ * implementation had no data for, and answers {@code null} for them without asking it again.
+ *
+ * <p>
+ * Expired, logged-out and forged session key cookies all end in a lookup that finds nothing. After
+ * the store is flushed every browser's cookie does. With this class each such key costs at most one
+ * trip to the store per {@code ttlMillis}.
+ *
+ * <p>
+ * The cache is kept in step with this instance's own writes. Saving under a key forgets that the
+ * key was missing. Destroying a key remembers it as missing. A lookup that races with a save is not
+ * remembered. Data saved under a remembered key by another elmr instance sharing the store is not
+ * seen here until the entry expires, so {@code ttlMillis} should stay short. At most
+ * {@code maxEntries} keys are remembered; when full, expired entries are dropped and new misses
+ * are not remembered until there is room.
+ */
+public final class NegativeCachingSessionData implements SessionData {
+
+  /**
+   * Name of context parameter and system property for the number of milliseconds a missing key is
+   * remembered. {@code 0} turns the cache off.
+   */
+  public static final String TTL_MILLIS_SYSPROP =
+      NegativeCachingSessionData.class.getName() + ".ttlMillis";
+
+  /**
+   * Name of context parameter and system property for the maximum number of missing keys
+   * remembered.
+   */
+  public static final String MAX_ENTRIES_SYSPROP =
+      NegativeCachingSessionData.class.getName() + ".maxEntries";
+
+  public static final int DEFAULT_TTL_MILLIS = 5000;
+
+  public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+  private static final Metrics.Counter HITS = Metrics.counter(
+      "elmr_session_data_negative_cache_hits_total",
+      "Lookups of keys known to be missing that were answered without the store.", null, null);
+
+  private final SessionData delegate;
+
+  private final long ttlNanos;
+
+  private final int maxEntries;
+
+  private final LongSupplier nanoTime;
+
+  private final Map<String, Long> misses = new ConcurrentHashMap<>();
+
+  /**
+   * Incremented by every save so lookups that overlap a save are not remembered as misses.
+   */
+  private final AtomicLong saves = new AtomicLong();
+
+  /**
+   * Constructs an instance in front of the given implementation.
+   *
+   * @param delegate   the implementation doing the actual work.
+   * @param ttlMillis  milliseconds a missing key is remembered.
+   * @param maxEntries maximum number of missing keys remembered.
+   */
+  public NegativeCachingSessionData(SessionData delegate, long ttlMillis, int maxEntries) {
+    this(delegate, ttlMillis, maxEntries, System::nanoTime);
+  }
+
+  /**
+   * Constructs an instance in front of the given implementation that tells time with the given
+   * source of nanoseconds.
+   *
+   * @param delegate   the implementation doing the actual work.
+   * @param ttlMillis  milliseconds a missing key is remembered.
+   * @param maxEntries maximum number of missing keys remembered.
+   * @param nanoTime   the current time in nanoseconds, as from {@link System#nanoTime()}.
+   */
+  NegativeCachingSessionData(SessionData delegate, long ttlMillis, int maxEntries,
+      LongSupplier nanoTime) {
+    this.delegate = delegate;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.maxEntries = maxEntries;
+    this.nanoTime = nanoTime;
+  }
+
+  @Override
+  public byte[] save(byte[] preComputedKey, String sessionData) {
+    saves.incrementAndGet();
+    var key = delegate.save(preComputedKey, sessionData);
+    forget(key);
+    return key;
+  }
+
+  @Override
+  public byte[] save(String sessionData) {
+    saves.incrementAndGet();
+    var key = delegate.save(sessionData);
+    forget(key);
+    return key;
+  }
+
+  @Override
+  public byte[] save(byte[] preComputedKey, String sessionData, String user) {
+    saves.incrementAndGet();
+    var key = delegate.save(preComputedKey, sessionData, user);
+    forget(key);
+    return key;
+  }
+
+  @Override
+  public String get(byte[] key) {
+    var k = cacheKey(key);
+    if (isKnownMissing(k, nanoTime.getAsLong())) {
+      HITS.increment();
+      return null;
+    }
+    var savesBefore = saves.get();
+    var sessionData = delegate.get(key);
+    if (sessionData == null && saves.get() == savesBefore) {
+      remember(k, nanoTime.getAsLong());
+    }
+    return sessionData;
+  }
+
+  @Override
+  public List<String> getAll(Collection<byte[]> keys) {
+    var now = nanoTime.getAsLong();
+    var sessionData = new ArrayList<String>(keys.size());
+    var asked = new ArrayList<byte[]>(keys.size());
+    var positions = new ArrayList<Integer>(keys.size());
+    for (byte[] key : keys) {
+      if (isKnownMissing(cacheKey(key), now)) {
+        HITS.increment();
+      } else {
+        positions.add(sessionData.size());
+        asked.add(key);
+      }
+      sessionData.add(null);
+    }
+    if (!asked.isEmpty()) {
+      var savesBefore = saves.get();
+      var found = delegate.getAll(asked);
+      var missed = saves.get() == savesBefore;
+      now = nanoTime.getAsLong();
+      for (int i = 0; i < asked.size(); i++) {
+        sessionData.set(positions.get(i), found.get(i));
+        if (found.get(i) == null && missed) {
+          remember(cacheKey(asked.get(i)), now);
+        }
+      }
+    }
+    return sessionData;
+  }
+
+  @Override
+  public Boolean isMember(byte[] key, String attribute, String value) {
+    var k = cacheKey(key);
+    if (isKnownMissing(k, nanoTime.getAsLong())) {
+      HITS.increment();
+      return null;
+    }
+    var savesBefore = saves.get();
+    var member = delegate.isMember(key, attribute, value);
+    if (member == null && saves.get() == savesBefore) {
+      remember(k, nanoTime.getAsLong());
+    }
+    return member;
+  }
+
+  @Override
+  public boolean update(byte[] key, String identifier, Map<String, Object> attributes) {
+    saves.incrementAndGet();
+    var updated = delegate.update(key, identifier, attributes);
+    forget(key);
+    return updated;
+  }
+
+  @Override
+  public void destroy(byte[] key) {
+    delegate.destroy(key);
+    remember(cacheKey(key), nanoTime.getAsLong());
+  }
+
+  @Override
+  public void destroy(byte[] key, String user) {
+    delegate.destroy(key, user);
+    remember(cacheKey(key), nanoTime.getAsLong());
+  }
+
+  @Override
+  public int destroyAll(String user) {
+    return delegate.destroyAll(user);
+  }
+
+  @Override
+  public void scan(int pageSize, Consumer<StoredSession> action) {
+    delegate.scan(pageSize, action);
+  }
+
+  @Override
+  public int purge(int pageSize, int maxPerSecond, Predicate<StoredSession> filter) {
+    return delegate.purge(pageSize, maxPerSecond, filter);
+  }
+
+  @Override
+  public boolean isConnected() {
+    return delegate.isConnected();
+  }
+
+  /**
+   * Returns the number of keys currently remembered as missing, including expired ones not yet
+   * dropped.
+   */
+  public int size() {
+    return misses.size();
+  }
+
+  /*
+   * Returns true if the given key is remembered as missing, dropping its entry if it expired.
+   */
+  private boolean isKnownMissing(String k, long now) {
+    var expires = misses.get(k);
+    if (expires == null) {
+      return false;
+    }
+    if (now - expires < 0) {
+      return true;
+    }
+    misses.remove(k, expires);
+    return false;
+  }
+
+  private void forget(byte[] key) {
+    if (key != null) {
+      misses.remove(cacheKey(key));
+    }
+  }
+
+  private void remember(String k, long now) {
+    if (misses.size() >= maxEntries) {
+      misses.values().removeIf(expires -> now - expires >= 0);
+      if (misses.size() >= maxEntries) {
+        return;
+      }
+    }
+    misses.put(k, now + ttlNanos);
+  }
+
+  private static String cacheKey(byte[] key) {
+    // Keys are printable ASCII; ISO-8859-1 maps each byte to one char without decoding errors.
+    return new String(key, StandardCharsets.ISO_8859_1);
+  }
+}
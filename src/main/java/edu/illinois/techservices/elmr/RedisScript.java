@@ -0,0 +1,173 @@
+package edu.illinois.techservices.elmr;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Lua script run by Redis with {@code EVALSHA} so only its SHA1 digest is sent with each call.
+ *
+ * <p>
+ * Redis keeps loaded scripts until it restarts or {@code SCRIPT FLUSH} is run. When it answers
+ * {@code NOSCRIPT} the script is loaded again and the call retried, so callers never see the
+ * error.
+ */
+final class RedisScript {
+
+  private static final Logger LOGGER = Logger.getLogger(RedisScript.class.getName());
+
+  private static final Metrics.Counter RELOADS = Metrics.counter(
+      "elmr_session_data_script_reloads_total",
+      "Scripts loaded again because the session data store did not have them.", null, null);
+
+  private final String name;
+
+  private final String source;
+
+  private final String sha1;
+
+  /**
+   * Constructs a script.
+   *
+   * @param name   name of the script for log messages.
+   * @param source Lua source of the script.
+   */
+  RedisScript(String name, String source) {
+    this.name = name;
+    this.source = source;
+    this.sha1 = sha1(source);
+  }
+
+  /**
+   * Returns the hex encoded SHA1 digest Redis knows the script by.
+   */
+  String getSha1() {
+    return sha1;
+  }
+
+  /**
+   * Loads the script into Redis.
+   *
+   * @param j connection to Redis.
+   */
+  void load(Jedis j) {
+    var loaded = j.scriptLoad(source);
+    if (!sha1.equals(loaded)) {
+      // Would mean Redis hashes scripts differently; calls would keep failing with NOSCRIPT.
+      throw new IllegalStateException(
+          "Redis loaded script " + name + " as " + loaded + " instead of " + sha1 + ".");
+    }
+  }
+
+  /**
+   * Runs the script, loading it first if Redis does not have it.
+   *
+   * @param j    connection to Redis.
+   * @param keys the keys the script reads and writes.
+   * @param args the other arguments of the script.
+   * @return the reply of the script.
+   */
+  Object eval(Jedis j, List<String> keys, List<String> args) {
+    try {
+      return j.evalsha(sha1, keys, args);
+    } catch (JedisDataException e) {
+      if (!isNoScript(e)) {
+        throw e;
+      }
+      reload(j);
+      return j.evalsha(sha1, keys, args);
+    }
+  }
+
+  /**
+   * Runs the script once for each of the given lists of keys, all with the same other arguments,
+   * in one pipeline. If Redis does not have the script it is loaded and the runs that failed are
+   * sent again in another pipeline.
+   *
+   * @param j    connection to Redis.
+   * @param keys the keys each run of the script reads and writes.
+   * @param args the other arguments of every run.
+   * @return the replies of the runs, in the order of the lists of keys.
+   */
+  List<Object> evalEach(Jedis j, List<List<String>> keys, List<String> args) {
+    var replies = new ArrayList<Object>(Collections.nCopies(keys.size(), null));
+    var binarySha1 = SafeEncoder.encode(sha1);
+    var binaryArgs = encode(args);
+    var pending = new ArrayList<Integer>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      pending.add(i);
+    }
+    var loaded = false;
+    while (true) {
+      var p = j.pipelined();
+      var responses = new ArrayList<Response<Object>>(pending.size());
+      for (int i : pending) {
+        // The String variant of evalsha in a pipeline would decode every reply as a String.
+        responses.add(p.evalsha(binarySha1, encode(keys.get(i)), binaryArgs));
+      }
+      p.sync();
+      var failed = new ArrayList<Integer>();
+      for (int r = 0; r < responses.size(); r++) {
+        try {
+          replies.set(pending.get(r), responses.get(r).get());
+        } catch (JedisDataException e) {
+          if (loaded || !isNoScript(e)) {
+            throw e;
+          }
+          failed.add(pending.get(r));
+        }
+      }
+      if (failed.isEmpty()) {
+        return replies;
+      }
+      reload(j);
+      loaded = true;
+      pending = failed;
+    }
+  }
+
+  private void reload(Jedis j) {
+    LOGGER.fine(() -> "Loading script " + name + " again.");
+    RELOADS.increment();
+    load(j);
+  }
+
+  private static boolean isNoScript(JedisDataException e) {
+    return e.getMessage() != null && e.getMessage().startsWith("NOSCRIPT");
+  }
+
+  private static List<byte[]> encode(List<String> strings) {
+    var encoded = new ArrayList<byte[]>(strings.size());
+    for (String s : strings) {
+      encoded.add(SafeEncoder.encode(s));
+    }
+    return encoded;
+  }
+
+  /**
+   * Returns the hex encoded SHA1 digest of the UTF-8 encoding of the given String, as Redis
+   * computes it for scripts and with {@code redis.sha1hex}.
+   */
+  static String sha1(String source) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-1")
+          .digest(source.getBytes(StandardCharsets.UTF_8));
+      var sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-1.
+      throw new IllegalStateException(e);
+    }
+  }
+}
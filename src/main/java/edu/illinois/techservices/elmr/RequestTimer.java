@@ -0,0 +1,188 @@
+package edu.illinois.techservices.elmr;
+
+/**
+ * Accumulates the time spent in each stage of serving a single request.
+ *
+ * <p>
+ * There is one timer per thread, reused from request to request, so timing a stage never allocates.
+ * A request is timed by calling {@link #begin()} before it is served and {@link #end()} afterwards.
+ * Code anywhere in between reports time with {@link #record(Stage, long)}; reports made on a
+ * thread that is not timing a request are ignored.
+ *
+ * <p>
+ * This assumes the servlet container serves a request on one thread from start to finish, which
+ * holds for elmr since none of its servlets are asynchronous.
+ */
+public final class RequestTimer {
+
+  /**
+   * Stages of serving a request that are timed.
+   */
+  public enum Stage {
+
+    /**
+     * Waiting to borrow a connection to the session data store.
+     */
+    STORE_WAIT("store-wait", "Session data store connection wait"),
+
+    /**
+     * Sending commands to the session data store and waiting for replies.
+     */
+    STORE_IO("store-io", "Session data store I/O"),
+
+    /**
+     * Rendering or parsing json.
+     */
+    JSON("json", "Json encode/decode"),
+
+    /**
+     * Rendering an Html page.
+     */
+    RENDER("html", "Html render"),
+
+    /**
+     * Generating, encoding or decoding session keys.
+     */
+    KEY("key", "Session key generation");
+
+    private final String metricName;
+
+    private final String description;
+
+    Stage(String metricName, String description) {
+      this.metricName = metricName;
+      this.description = description;
+    }
+
+    /**
+     * Returns the name of this stage in a {@code Server-Timing} header.
+     */
+    public String getMetricName() {
+      return metricName;
+    }
+
+    /**
+     * Returns a human readable description of this stage.
+     */
+    public String getDescription() {
+      return description;
+    }
+  }
+
+  private static final Stage[] STAGES = Stage.values();
+
+  private static final ThreadLocal<RequestTimer> TIMERS =
+      ThreadLocal.withInitial(RequestTimer::new);
+
+  private final long[] nanos = new long[STAGES.length];
+
+  private final int[] counts = new int[STAGES.length];
+
+  private long startNanos;
+
+  private boolean active;
+
+  private RequestTimer() {
+    // Instances are only created per thread.
+  }
+
+  /**
+   * Starts timing a request on the current thread, discarding anything recorded for a previous
+   * request.
+   */
+  public static void begin() {
+    var timer = TIMERS.get();
+    for (int i = 0; i < STAGES.length; i++) {
+      timer.nanos[i] = 0L;
+      timer.counts[i] = 0;
+    }
+    timer.startNanos = System.nanoTime();
+    timer.active = true;
+  }
+
+  /**
+   * Stops timing the request on the current thread.
+   */
+  public static void end() {
+    TIMERS.get().active = false;
+  }
+
+  /**
+   * Adds the given duration to a stage of the request being timed on the current thread.
+   *
+   * @param stage the stage that took the time.
+   * @param nanos the duration in nanoseconds.
+   */
+  public static void record(Stage stage, long nanos) {
+    var timer = TIMERS.get();
+    if (timer.active) {
+      timer.nanos[stage.ordinal()] += nanos;
+      timer.counts[stage.ordinal()]++;
+    }
+  }
+
+  /**
+   * Adds the time from the given value of {@link System#nanoTime()} until now to a stage of the
+   * request being timed on the current thread.
+   *
+   * @param stage      the stage that took the time.
+   * @param startNanos value of {@link System#nanoTime()} when the stage started.
+   */
+  public static void recordSince(Stage stage, long startNanos) {
+    record(stage, System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Returns the value of a {@code Server-Timing} header describing the request being timed on the
+   * current thread or an empty String if no request is being timed.
+   *
+   * <p>
+   * Each stage with recorded time is listed with its total duration in milliseconds, followed by a
+   * {@code total} entry for the time since {@link #begin()}. For example:
+   *
+   * <pre>
+   * store-wait;dur=0.021, store-io;dur=0.412, json;dur=0.087, total;dur=1.204
+   * </pre>
+   */
+  public static String toServerTiming() {
+    var timer = TIMERS.get();
+    if (!timer.active) {
+      return "";
+    }
+    var sb = new StringBuilder(128);
+    for (int i = 0; i < STAGES.length; i++) {
+      if (timer.counts[i] > 0) {
+        appendEntry(sb, STAGES[i].metricName, timer.nanos[i]);
+      }
+    }
+    appendEntry(sb, "total", System.nanoTime() - timer.startNanos);
+    return sb.toString();
+  }
+
+  /**
+   * Returns the total nanoseconds recorded for a stage of the request being timed on the current
+   * thread.
+   *
+   * @param stage the stage.
+   */
+  public static long getNanos(Stage stage) {
+    return TIMERS.get().nanos[stage.ordinal()];
+  }
+
+  private static void appendEntry(StringBuilder sb, String name, long nanos) {
+    if (sb.length() > 0) {
+      sb.append(", ");
+    }
+    // Milliseconds with microsecond precision without going through String.format.
+    var micros = nanos / 1000L;
+    var fraction = micros % 1000L;
+    sb.append(name).append(";dur=").append(micros / 1000L).append('.');
+    if (fraction < 100L) {
+      sb.append('0');
+    }
+    if (fraction < 10L) {
+      sb.append('0');
+    }
+    sb.append(fraction);
+  }
+}
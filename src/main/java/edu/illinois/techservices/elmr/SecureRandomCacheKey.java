@@ -12,16 +12,43 @@ public class SecureRandomCacheKey implements CacheKey {
 
   @Override
   public String generate() {
-    return Long.toString(secRandom.nextLong());
+    var event = new KeyGenerationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    var key = Long.toString(secRandom.nextLong());
+    RequestTimer.recordSince(RequestTimer.Stage.KEY, start);
+    commit(event, "generate", key.length());
+    return key;
   }
 
   @Override
   public byte[] encode(String key) {
-    return Base64.getEncoder().encode(key.getBytes());
+    var event = new KeyGenerationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    var encoded = Base64.getEncoder().encode(key.getBytes());
+    RequestTimer.recordSince(RequestTimer.Stage.KEY, start);
+    commit(event, "encode", encoded.length);
+    return encoded;
   }
 
   @Override
   public String decode(byte[] keybytes) {
-    return new String(Base64.getDecoder().decode(keybytes));
+    var event = new KeyGenerationEvent();
+    event.begin();
+    var start = System.nanoTime();
+    var decoded = new String(Base64.getDecoder().decode(keybytes));
+    RequestTimer.recordSince(RequestTimer.Stage.KEY, start);
+    commit(event, "decode", keybytes.length);
+    return decoded;
+  }
+
+  private static void commit(KeyGenerationEvent event, String operation, int keySize) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.keySize = keySize;
+      event.commit();
+    }
   }
 }
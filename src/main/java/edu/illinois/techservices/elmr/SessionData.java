@@ -1,5 +1,12 @@
 package edu.illinois.techservices.elmr;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
 /**
  * Manages session data.
  * 
@@ -37,14 +44,109 @@ public interface SessionData {
    */
   public byte[] save(String sessionData);
 
+  /**
+   * Saves the given session data using the pre-computed key like {@link #save(byte[], String)} and
+   * records the key as one of the given user's sessions for {@link #destroyAll(String)}.
+   *
+   * <p>
+   * This default implementation does not record the key.
+   *
+   * @param preComputedKey a pre-computed key to save the data with.
+   * @param sessionData    data to save.
+   * @param user           identifier of the user the data belongs to.
+   * @return the pre-computed key.
+   */
+  public default byte[] save(byte[] preComputedKey, String sessionData, String user) {
+    return save(preComputedKey, sessionData);
+  }
+
   /**
    * Returns the session data associated with the given key.
+   *
+   * <p>
+   * Keys this store could not have issued have no data.
    * 
    * @param key byte array of the key the data was stored under.
    * @return the session data associated with the given key or {@code null} if not found.
    */
   public String get(byte[] key);
 
+  /**
+   * Returns the session data associated with each of the given keys.
+   *
+   * <p>
+   * Keys this store could not have issued have no data. This default implementation calls
+   * {@link #get(byte[])} for each key; implementations should look them all up at once.
+   *
+   * @param keys byte arrays of the keys the data was stored under.
+   * @return the session data associated with each key, in the order of the keys, with {@code null}
+   *         for keys with no data.
+   */
+  public default List<String> getAll(Collection<byte[]> keys) {
+    var sessionData = new ArrayList<String>(keys.size());
+    for (byte[] key : keys) {
+      sessionData.add(get(key));
+    }
+    return sessionData;
+  }
+
+  /**
+   * Returns the session data associated with the given key decoded from json.
+   *
+   * <p>
+   * Implementations may share the returned Map between callers, so it must not be modified.
+   *
+   * @param key byte array of the key the data was stored under.
+   * @return the decoded session data or {@code null} if not found.
+   */
+  public default Map<String, Object> getAttributes(byte[] key) {
+    return Json.marshal(get(key));
+  }
+
+  /**
+   * Returns whether the given value is the value, or one of the values, of the named attribute of
+   * the session data associated with the given key.
+   *
+   * <p>
+   * This default implementation decodes the whole session data; implementations should answer
+   * without fetching it.
+   *
+   * @param key       byte array of the key the data was stored under.
+   * @param attribute name of the attribute.
+   * @param value     the value to look for.
+   * @return whether the attribute has the value, or {@code null} if there is no session data.
+   */
+  public default Boolean isMember(byte[] key, String attribute, String value) {
+    var attributes = getAttributes(key);
+    if (attributes == null) {
+      return null;
+    }
+    var values = attributes.get(attribute);
+    return values instanceof List ? ((List<?>) values).contains(value) : value.equals(values);
+  }
+
+  /**
+   * Makes the session data stored under the given key have the given attributes by sending only
+   * the attributes that were added, changed or removed, if the stored data has the same value of
+   * the given identifying attribute. Nothing is written if no attribute changed.
+   *
+   * <p>
+   * Values are compared as rendered by {@link Json#renderValues(Map)}, so attributes a full save
+   * leaves out are left out here too. Implementations that cannot change attributes this way
+   * return {@code false}, as does this default implementation, and callers then save the data in
+   * full.
+   *
+   * @param key        byte array of the key the data was stored under.
+   * @param identifier name of the attribute whose value identifies the session's user.
+   * @param attributes the session's attributes by name.
+   * @return {@code true} if the data stored under the key now has the given attributes,
+   *         {@code false} if there is no data under the key, it belongs to someone else or could
+   *         not be changed this way.
+   */
+  public default boolean update(byte[] key, String identifier, Map<String, Object> attributes) {
+    return false;
+  }
+
   /**
    * Deletes the session data associated with the given key.
    * 
@@ -55,6 +157,61 @@ public interface SessionData {
    */
   public void destroy(byte[] key);
 
+  /**
+   * Deletes the session data associated with the given key like {@link #destroy(byte[])} and
+   * forgets the key as one of the given user's sessions.
+   *
+   * @param key  byte array of the key whose data is to be deleted.
+   * @param user identifier of the user the data belongs to.
+   */
+  public default void destroy(byte[] key, String user) {
+    destroy(key);
+  }
+
+  /**
+   * Deletes the session data of every session saved for the given user with
+   * {@link #save(byte[], String, String)}.
+   *
+   * @param user identifier of the user.
+   * @return the number of sessions deleted.
+   * @throws UnsupportedOperationException if the implementation does not record the sessions of
+   *                                       each user, as is the case for this default
+   *                                       implementation.
+   */
+  public default int destroyAll(String user) {
+    throw new UnsupportedOperationException(
+        getClass().getName() + " does not record the sessions of each user.");
+  }
+
+  /**
+   * Passes every session in the store to the given action, reading the store a page at a time so
+   * neither the store nor this application has to hold all of them at once.
+   *
+   * @param pageSize number of sessions to read at a time; a hint the implementation may round.
+   * @param action   called for each session.
+   * @throws UnsupportedOperationException if the implementation cannot enumerate its sessions, as
+   *                                       is the case for this default implementation.
+   */
+  public default void scan(int pageSize, Consumer<StoredSession> action) {
+    throw new UnsupportedOperationException(
+        getClass().getName() + " cannot enumerate its sessions.");
+  }
+
+  /**
+   * Deletes every session in the store matching the given filter.
+   *
+   * @param pageSize     number of sessions to read and delete at a time.
+   * @param maxPerSecond most sessions to delete per second, so a purge does not crowd out requests.
+   * @param filter       selects the sessions to delete.
+   * @return the number of sessions deleted.
+   * @throws UnsupportedOperationException if the implementation cannot enumerate its sessions, as
+   *                                       is the case for this default implementation.
+   */
+  public default int purge(int pageSize, int maxPerSecond, Predicate<StoredSession> filter) {
+    throw new UnsupportedOperationException(
+        getClass().getName() + " cannot enumerate its sessions.");
+  }
+
   /**
    * Checks for connectivity with the session store.
    * 
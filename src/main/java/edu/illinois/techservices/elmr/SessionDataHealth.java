@@ -0,0 +1,89 @@
+package edu.illinois.techservices.elmr;
+
+/**
+ * Immutable snapshot of the health of a connection to a session data store.
+ *
+ * <p>
+ * Instances are produced by {@link SessionDataHealthMonitor} after every probe of the store and are
+ * safe to share between threads.
+ */
+public final class SessionDataHealth {
+
+  /**
+   * Health reported before the store has been probed for the first time.
+   */
+  public static final SessionDataHealth UNKNOWN = new SessionDataHealth(false, 0L, 0L, -1L, 0);
+
+  private final boolean connected;
+
+  private final long lastCheckedMillis;
+
+  private final long lastSuccessMillis;
+
+  private final long latencyNanos;
+
+  private final int consecutiveFailures;
+
+  SessionDataHealth(boolean connected, long lastCheckedMillis, long lastSuccessMillis,
+      long latencyNanos, int consecutiveFailures) {
+    this.connected = connected;
+    this.lastCheckedMillis = lastCheckedMillis;
+    this.lastSuccessMillis = lastSuccessMillis;
+    this.latencyNanos = latencyNanos;
+    this.consecutiveFailures = consecutiveFailures;
+  }
+
+  /**
+   * Returns {@code true} if the last probe of the store succeeded.
+   */
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * Returns the time in milliseconds since the epoch the store was last probed or {@code 0} if it
+   * has never been probed.
+   */
+  public long getLastCheckedMillis() {
+    return lastCheckedMillis;
+  }
+
+  /**
+   * Returns the time in milliseconds since the epoch the store was last successfully probed or
+   * {@code 0} if no probe has ever succeeded.
+   */
+  public long getLastSuccessMillis() {
+    return lastSuccessMillis;
+  }
+
+  /**
+   * Returns the round trip time in nanoseconds of the last probe or {@code -1} if the store has
+   * never been probed.
+   */
+  public long getLatencyNanos() {
+    return latencyNanos;
+  }
+
+  /**
+   * Returns the number of probes that have failed since the last successful probe.
+   */
+  public int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  /**
+   * Returns {@code true} if the store was probed at or after the given time.
+   *
+   * @param sinceMillis time in milliseconds since the epoch.
+   */
+  public boolean isCheckedSince(long sinceMillis) {
+    return lastCheckedMillis >= sinceMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "SessionDataHealth [connected=" + connected + ", lastCheckedMillis=" + lastCheckedMillis
+        + ", lastSuccessMillis=" + lastSuccessMillis + ", latencyNanos=" + latencyNanos
+        + ", consecutiveFailures=" + consecutiveFailures + "]";
+  }
+}
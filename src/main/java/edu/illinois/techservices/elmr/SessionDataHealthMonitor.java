@@ -0,0 +1,164 @@
+package edu.illinois.techservices.elmr;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically probes a {@link SessionData} store in the background and caches the result.
+ *
+ * <p>
+ * Health checks read the cached {@link SessionDataHealth} snapshot with {@link #getHealth()}
+ * instead of probing the store themselves, so frequent polling by load balancers and container
+ * health checks never borrows a connection from the store's pool.
+ *
+ * <p>
+ * While the store is unreachable, probes are retried with exponential backoff starting at
+ * {@value #INITIAL_RETRY_MILLIS} ms and capped at the probe interval, so a store that comes up a
+ * few seconds after elmr is noticed quickly without flooding the log or the network.
+ */
+public class SessionDataHealthMonitor implements AutoCloseable {
+
+  private static final Logger LOGGER = Logger.getLogger(SessionDataHealthMonitor.class.getName());
+
+  /**
+   * Name of the system property and context parameter for the number of milliseconds between
+   * probes.
+   */
+  public static final String INTERVAL_SYSPROP =
+      SessionDataHealthMonitor.class.getName() + ".interval";
+
+  public static final int DEFAULT_INTERVAL_MILLIS = 5000;
+
+  static final long INITIAL_RETRY_MILLIS = 250L;
+
+  private final SessionData sessionData;
+
+  private final long intervalMillis;
+
+  private final ScheduledExecutorService scheduler;
+
+  private volatile SessionDataHealth health = SessionDataHealth.UNKNOWN;
+
+  /**
+   * Constructs a monitor for the given store that will probe it every {@code intervalMillis}
+   * milliseconds once started.
+   *
+   * @param sessionData    the store to probe.
+   * @param intervalMillis milliseconds between probes.
+   */
+  public SessionDataHealthMonitor(SessionData sessionData, long intervalMillis) {
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException("Probe interval must be positive!");
+    }
+    this.sessionData = sessionData;
+    this.intervalMillis = intervalMillis;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      var t = new Thread(r, "elmr-session-data-health");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Starts probing the store in the background.
+   */
+  public void start() {
+    schedule(0L);
+    LOGGER.config("Probing session data store every " + intervalMillis + " ms.");
+  }
+
+  /**
+   * Probes the store once on the calling thread, updates the cached snapshot and returns it.
+   */
+  public SessionDataHealth probe() {
+    var previous = health;
+    var start = System.nanoTime();
+    var connected = false;
+    try {
+      connected = sessionData.isConnected();
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.FINE, "Probe of session data store failed.", e);
+    }
+    var latency = System.nanoTime() - start;
+    var now = System.currentTimeMillis();
+    SessionDataHealth current;
+    if (connected) {
+      current = new SessionDataHealth(true, now, now, latency, 0);
+      if (!previous.isConnected() && previous.getLastCheckedMillis() > 0) {
+        LOGGER.info("Connection to session data store restored after "
+            + previous.getConsecutiveFailures() + " failed probe(s).");
+      }
+    } else {
+      current = new SessionDataHealth(false, now, previous.getLastSuccessMillis(), latency,
+          previous.getConsecutiveFailures() + 1);
+      if (previous.isConnected()) {
+        LOGGER.warning("Lost connection to session data store.");
+      } else if (previous.getLastCheckedMillis() == 0) {
+        LOGGER.warning("Session data store is not reachable yet; retrying with backoff.");
+      }
+    }
+    health = current;
+    return current;
+  }
+
+  /**
+   * Returns the number of milliseconds to wait before the next probe after the given snapshot.
+   *
+   * @param h the snapshot from the last probe.
+   */
+  long nextDelayMillis(SessionDataHealth h) {
+    if (h.isConnected() || h.getConsecutiveFailures() == 0) {
+      return intervalMillis;
+    }
+    // Double the delay after each failure: 250, 500, 1000, ... up to the probe interval.
+    var shift = Math.min(h.getConsecutiveFailures() - 1, 20);
+    return Math.min(intervalMillis, INITIAL_RETRY_MILLIS << shift);
+  }
+
+  private void schedule(long delayMillis) {
+    try {
+      scheduler.schedule(() -> schedule(nextDelayMillis(probe())), delayMillis,
+          TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // The monitor has been closed.
+    }
+  }
+
+  /**
+   * Returns the most recent snapshot without contacting the store.
+   */
+  public SessionDataHealth getHealth() {
+    return health;
+  }
+
+  /**
+   * Returns the number of milliseconds between probes.
+   */
+  public long getIntervalMillis() {
+    return intervalMillis;
+  }
+
+  /**
+   * Returns {@code true} if the store was connected at the last probe and that probe is recent.
+   *
+   * <p>
+   * A probe is recent if it was made within 3 probe intervals. An older snapshot means the
+   * background probe has stalled and the cached value can no longer be trusted.
+   */
+  public boolean isReady() {
+    var h = health;
+    return h.isConnected() && h.isCheckedSince(System.currentTimeMillis() - 3 * intervalMillis);
+  }
+
+  /**
+   * Stops probing the store.
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+}
@@ -1,13 +1,88 @@
 package edu.illinois.techservices.elmr;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import edu.illinois.techservices.elmr.RequestTimer.Stage;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 /**
  * SessionData implementation connecting to a Redis store.
+ *
+ * <p>
+ * Data saved under a pre-computed key is stored with a fingerprint of its contents under
+ * {@value #FINGERPRINT_KEY_PREFIX}{@code <key>}. Saving data whose fingerprint matches the one
+ * stored for a key that still exists skips the write, so users re-authenticating with unchanged
+ * attributes do not rewrite their session data.
+ *
+ * <p>
+ * {@link #update(byte[], String, Map)} sends the SHA1 digest of the json of each attribute's value
+ * to a script that answers which attributes were added, changed or removed. Only those are sent to
+ * a second script, which writes them into the stored json as text, unless the data changed in
+ * between. Attributes kept are written back as stored rather than decoded and encoded again. What
+ * an update sends grows with the number of attributes and the size of the changes, not with the
+ * size of the session data.
+ *
+ * <p>
+ * Keys of data saved for a user are added to the set stored under
+ * {@value #USER_INDEX_KEY_PREFIX}{@code <user>} in the same transaction as the data, so
+ * {@link #destroyAll(String)} finds every session of a user without scanning the store. The name
+ * of that set is stored under {@value #OWNER_KEY_PREFIX}{@code <key>}, so a session deleted without
+ * naming its user, as {@link #destroy(byte[])} and {@link #purge(int, int, Predicate)} do, still
+ * leaves the index.
+ *
+ * <p>
+ * {@link #getAll(Collection)} looks up every key with one {@code MGET}.
+ *
+ * <p>
+ * Operations needing more than one command run as Lua scripts with {@code EVALSHA}, taking one
+ * round trip each. Scripts are loaded when {@link #isConnected()} first reaches the store, and
+ * again after it could not, since Redis forgets scripts when it restarts. A script Redis does not
+ * have is loaded when it is run.
+ *
+ * <p>
+ * Scripts find session keys in the user index and shared values by digest, so the store must be a
+ * single Redis instance rather than a cluster.
+ *
+ * <p>
+ * {@link #scan(int, Consumer)} and {@link #purge(int, int, Predicate)} walk the keyspace with
+ * {@code SCAN}, skipping keys starting with {@code elmr:}, and borrow a connection for one page at
+ * a time. A purge deletes the sessions of a page with one pipeline of script runs.
+ *
+ * <p>
+ * Attribute values whose json is at least as long as set with
+ * {@value #SHARED_VALUES_MIN_LENGTH_SYSPROP} can be stored once for all sessions having them, under
+ * {@value #SHARED_VALUE_KEY_PREFIX}{@code <digest>} with a count of the sessions referring to them.
+ * Values are deleted with the last session referring to them, and the most recently read are
+ * cached in memory. {@link #update(byte[], String, Map)} refuses session data with shared values
+ * so it is saved in full, which keeps the counts right. Session data saved while values were shared
+ * is still read and deleted correctly after sharing is turned off.
+ *
+ * <p>
+ * The values of the attributes named with {@value #SET_ATTRIBUTES_SYSPROP} are also stored as sets
+ * under {@value #SET_KEY_PREFIX}{@code <key>:<attribute>}, listed under
+ * {@value #SET_INDEX_KEY_PREFIX}{@code <key>}, so {@link #isMember(byte[], String, String)} is
+ * answered with {@code SISMEMBER}. Other attributes are searched by a script without sending the
+ * data back. Sets are written and deleted with the session data, and an update of session data with
+ * sets is refused like one with shared values.
  */
 public class SessionDataImpl implements SessionData {
 
@@ -27,12 +102,420 @@ public class SessionDataImpl implements SessionData {
   public static final String MAX_CONNECTIONS_SYSPROP =
       SessionDataImpl.class.getName() + ".maxConnections";
 
+  /**
+   * Prefix of the keys fingerprints of session data are stored under.
+   */
+  public static final String FINGERPRINT_KEY_PREFIX = "elmr:fp:";
+
+  /**
+   * Prefix of the keys the sets of session keys saved for each user are stored under.
+   */
+  public static final String USER_INDEX_KEY_PREFIX = "elmr:user:";
+
+  /**
+   * Prefix of the keys the name of the user index each session key is in is stored under.
+   */
+  public static final String OWNER_KEY_PREFIX = "elmr:owner:";
+
+  /**
+   * Prefix of the keys shared attribute values are stored under.
+   */
+  public static final String SHARED_VALUE_KEY_PREFIX = "elmr:blob:";
+
+  /**
+   * Name of the property setting the length of the json of the smallest attribute value shared
+   * between sessions, or 0 to share none.
+   */
+  public static final String SHARED_VALUES_MIN_LENGTH_SYSPROP =
+      SessionDataImpl.class.getName() + ".sharedValuesMinLength";
+
+  /**
+   * Name of the property setting the number of shared attribute values cached in memory.
+   */
+  public static final String SHARED_VALUES_CACHE_SIZE_SYSPROP =
+      SessionDataImpl.class.getName() + ".sharedValuesCacheSize";
+
+  /**
+   * Prefix of the keys the values of attributes stored as sets are stored under, followed by the
+   * session key, a colon and the name of the attribute.
+   */
+  public static final String SET_KEY_PREFIX = "elmr:set:";
+
+  /**
+   * Prefix of the keys the names of the attributes of a session stored as sets are stored under.
+   */
+  public static final String SET_INDEX_KEY_PREFIX = "elmr:sets:";
+
+  /**
+   * Name of the property listing the attributes, separated by commas, whose values are also stored
+   * as sets so {@link #isMember(byte[], String, String)} is answered with {@code SISMEMBER}.
+   */
+  public static final String SET_ATTRIBUTES_SYSPROP =
+      SessionDataImpl.class.getName() + ".setAttributes";
+
+  public static final int DEFAULT_SHARED_VALUES_MIN_LENGTH = 0;
+
+  public static final int DEFAULT_SHARED_VALUES_CACHE_SIZE = 1000;
+
+  /**
+   * Prefix of every key elmr stores besides session data.
+   */
+  public static final String ELMR_KEY_PREFIX = "elmr:";
+
   private static final byte[] EMPTY = new byte[0];
 
+  private static final Metrics.Counter UNCHANGED_SAVES = Metrics.counter(
+      "elmr_session_data_unchanged_saves_total",
+      "Saves skipped because the session data stored under the key was unchanged.", null, null);
+
+  /*
+   * Lua function deleting the attribute sets of the session data under the given key and dropping
+   * its references to shared values, deleting values no other session refers to.
+   */
+  private static final String RELEASE = "local function release(key, sessionData)\n"
+      + "  local sets = '" + SET_INDEX_KEY_PREFIX + "' .. key\n"
+      + "  for _, name in ipairs(redis.call('SMEMBERS', sets)) do\n"
+      + "    redis.call('DEL', '" + SET_KEY_PREFIX + "' .. key .. ':' .. name)\n"
+      + "  end\n"
+      + "  redis.call('DEL', sets)\n"
+      + "  if not sessionData or not string.find(sessionData, '\"" + SharedValues.SHARED_ATTRIBUTE
+      + "\"', 1, true) then\n"
+      + "    return\n"
+      + "  end\n"
+      + "  local attributes = cjson.decode(sessionData)\n"
+      + "  local shared = attributes['" + SharedValues.SHARED_ATTRIBUTE + "']\n"
+      + "  if type(shared) ~= 'table' then\n"
+      + "    return\n"
+      + "  end\n"
+      + "  for _, name in ipairs(shared) do\n"
+      + "    if type(attributes[name]) == 'string' then\n"
+      + "      local key = '" + SHARED_VALUE_KEY_PREFIX + "' .. attributes[name]\n"
+      + "      if redis.call('HINCRBY', key, 'refs', -1) <= 0 then\n"
+      + "        redis.call('DEL', key)\n"
+      + "      end\n"
+      + "    end\n"
+      + "  end\n"
+      + "end\n";
+
+  /*
+   * Lua function adding the given session key to the given user index, and removing it from the
+   * index of the user it was saved for before, if another.
+   */
+  private static final String INDEX = "local function index(key, userIndex)\n"
+      + "  local owner = '" + OWNER_KEY_PREFIX + "' .. key\n"
+      + "  local previous = redis.call('GET', owner)\n"
+      + "  if previous and previous ~= userIndex then\n"
+      + "    redis.call('SREM', previous, key)\n"
+      + "  end\n"
+      + "  redis.call('SADD', userIndex, key)\n"
+      + "  redis.call('SET', owner, userIndex)\n"
+      + "end\n";
+
+  /*
+   * Lua function deleting the session data, fingerprint and attribute sets under the given key,
+   * removing it from the index of the user it was saved for and releasing its shared values.
+   * Returns the number of sessions deleted, 0 or 1.
+   */
+  private static final String DELETE = "local function delete(key)\n"
+      + "  release(key, redis.call('GET', key))\n"
+      + "  local owner = '" + OWNER_KEY_PREFIX + "' .. key\n"
+      + "  local userIndex = redis.call('GET', owner)\n"
+      + "  if userIndex then\n"
+      + "    redis.call('SREM', userIndex, key)\n"
+      + "  end\n"
+      + "  redis.call('DEL', '" + FINGERPRINT_KEY_PREFIX + "' .. key, owner)\n"
+      + "  return redis.call('DEL', key)\n"
+      + "end\n";
+
+  /*
+   * Lua function returning the value of the named attribute of the given decoded session data,
+   * reading it from the store if it is shared. Returns nil and true if the shared value is missing
+   * from the store, as then the session data is corrupt.
+   */
+  private static final String VALUE_OF = "local function valueOf(attributes, name)\n"
+      + "  local value = attributes[name]\n"
+      + "  if value ~= nil and type(attributes['" + SharedValues.SHARED_ATTRIBUTE
+      + "']) == 'table' then\n"
+      + "    for _, shared in ipairs(attributes['" + SharedValues.SHARED_ATTRIBUTE + "']) do\n"
+      + "      if shared == name then\n"
+      + "        local json = type(value) == 'string' and redis.call('HGET', '"
+      + SHARED_VALUE_KEY_PREFIX + "' .. value, 'value')\n"
+      + "        if not json then\n"
+      + "          return nil, true\n"
+      + "        end\n"
+      + "        return cjson.decode(json)['value']\n"
+      + "      end\n"
+      + "    end\n"
+      + "  end\n"
+      + "  return value\n"
+      + "end\n";
+
+  /*
+   * KEYS[1] is the session key, KEYS[2] its fingerprint key, the optional KEYS[3] the index of the
+   * user's session keys, ARGV[1] the data, ARGV[2] its fingerprint and ARGV[3] the number n of
+   * attributes stored as sets, whose names follow. The rest of ARGV are pairs of the digest and
+   * json of each shared value the data refers to. Returns 0 if the write was skipped. Checking and
+   * writing in one script keeps a concurrent save or destroy from slipping between them. References
+   * are added before the replaced data's are dropped so values both refer to are kept.
+   */
+  private static final RedisScript SAVE_IF_CHANGED = new RedisScript("saveIfChanged",
+      RELEASE
+          + VALUE_OF
+          + INDEX
+          + "if KEYS[3] then\n"
+          + "  index(KEYS[1], KEYS[3])\n"
+          + "end\n"
+          + "if redis.call('GET', KEYS[2]) == ARGV[2] and redis.call('EXISTS', KEYS[1]) == 1 then\n"
+          + "  return 0\n"
+          + "end\n"
+          + "local setCount = tonumber(ARGV[3])\n"
+          + "for i = 4 + setCount, #ARGV, 2 do\n"
+          + "  local key = '" + SHARED_VALUE_KEY_PREFIX + "' .. ARGV[i]\n"
+          + "  redis.call('HSETNX', key, 'value', ARGV[i + 1])\n"
+          + "  redis.call('HINCRBY', key, 'refs', 1)\n"
+          + "end\n"
+          + "release(KEYS[1], redis.call('GET', KEYS[1]))\n"
+          + "redis.call('SET', KEYS[1], ARGV[1])\n"
+          + "redis.call('SET', KEYS[2], ARGV[2])\n"
+          + "if setCount > 0 then\n"
+          + "  local attributes = cjson.decode(ARGV[1])\n"
+          + "  for i = 4, 3 + setCount do\n"
+          + "    local values = valueOf(attributes, ARGV[i])\n"
+          + "    if type(values) ~= 'table' then\n"
+          + "      values = {values}\n"
+          + "    end\n"
+          + "    if #values > 0 then\n"
+          + "      local set = '" + SET_KEY_PREFIX + "' .. KEYS[1] .. ':' .. ARGV[i]\n"
+          + "      for j = 1, #values, 1000 do\n"
+          + "        redis.call('SADD', set, unpack(values, j, math.min(j + 999, #values)))\n"
+          + "      end\n"
+          + "      redis.call('SADD', '" + SET_INDEX_KEY_PREFIX + "' .. KEYS[1], ARGV[i])\n"
+          + "    end\n"
+          + "  end\n"
+          + "end\n"
+          + "return 1\n");
+
+  /*
+   * KEYS[1] is the session key, KEYS[2] the index of the user's session keys and ARGV[1] the data.
+   */
+  private static final RedisScript SAVE_INDEXED = new RedisScript("saveIndexed",
+      INDEX
+          + "redis.call('SET', KEYS[1], ARGV[1])\n"
+          + "index(KEYS[1], KEYS[2])\n"
+          + "return 1\n");
+
+  /*
+   * Lua function returning the names of the attributes of the given session data in order and the
+   * json of their values by name, both as rendered, or nil if the data is not a json object whose
+   * names need no escaping. The json is scanned rather than decoded so the values of attributes
+   * that are kept can be written back exactly as they were.
+   */
+  private static final String MEMBERS = "local function members(sessionData)\n"
+      + "  if string.sub(sessionData, 1, 1) ~= '{' then\n"
+      + "    return nil\n"
+      + "  end\n"
+      + "  local names, values = {}, {}\n"
+      + "  local i = 2\n"
+      + "  while i < #sessionData do\n"
+      + "    local colon = string.find(sessionData, '\":', i, true)\n"
+      + "    if not colon or string.sub(sessionData, i, i) ~= '\"' then\n"
+      + "      return nil\n"
+      + "    end\n"
+      + "    local depth, j = 0, colon + 2\n"
+      + "    while true do\n"
+      + "      j = string.find(sessionData, '[%[%]{}\",]', j)\n"
+      + "      if not j then\n"
+      + "        return nil\n"
+      + "      end\n"
+      + "      local c = string.sub(sessionData, j, j)\n"
+      + "      if c == '\"' then\n"
+      + "        repeat\n"
+      + "          j = string.find(sessionData, '[\\\\\"]', j + 1)\n"
+      + "          if not j then\n"
+      + "            return nil\n"
+      + "          end\n"
+      + "          c = string.sub(sessionData, j, j)\n"
+      + "          if c == '\\\\' then\n"
+      + "            j = j + 1\n"
+      + "          end\n"
+      + "        until c == '\"'\n"
+      + "      elseif c == '[' or c == '{' then\n"
+      + "        depth = depth + 1\n"
+      + "      elseif depth > 0 then\n"
+      + "        if c ~= ',' then\n"
+      + "          depth = depth - 1\n"
+      + "        end\n"
+      + "      elseif c == ']' then\n"
+      + "        return nil\n"
+      + "      else\n"
+      + "        break\n"
+      + "      end\n"
+      + "      j = j + 1\n"
+      + "    end\n"
+      + "    local name = string.sub(sessionData, i + 1, colon - 1)\n"
+      + "    names[#names + 1] = name\n"
+      + "    values[name] = string.sub(sessionData, colon + 2, j - 1)\n"
+      + "    i = j + 1\n"
+      + "  end\n"
+      + "  return names, values\n"
+      + "end\n";
+
+  /*
+   * KEYS[1] is the session key, ARGV[1] the name of the attribute identifying the user and the
+   * rest of ARGV pairs of the name of each attribute and the SHA1 digest of the json of its value.
+   * Returns the SHA1 digest of the data under the key, the names of the attributes added or changed
+   * and the names of the attributes removed, or 0 if the data is missing, is someone else's or has
+   * shared values or attribute sets, which only a full save keeps right.
+   */
+  private static final RedisScript CHANGES = new RedisScript("changes",
+      MEMBERS
+          + "local sessionData = redis.call('GET', KEYS[1])\n"
+          + "if not sessionData\n"
+          + "    or redis.call('EXISTS', '" + SET_INDEX_KEY_PREFIX + "' .. KEYS[1]) == 1 then\n"
+          + "  return 0\n"
+          + "end\n"
+          + "local names, values = members(sessionData)\n"
+          + "if not names or values['" + SharedValues.SHARED_ATTRIBUTE + "'] then\n"
+          + "  return 0\n"
+          + "end\n"
+          + "local digests = {}\n"
+          + "for i = 2, #ARGV, 2 do\n"
+          + "  digests[ARGV[i]] = ARGV[i + 1]\n"
+          + "end\n"
+          + "local user = values[ARGV[1]]\n"
+          + "if not user or redis.sha1hex(user) ~= digests[ARGV[1]] then\n"
+          + "  return 0\n"
+          + "end\n"
+          + "local changed, removed = {}, {}\n"
+          + "for i = 2, #ARGV, 2 do\n"
+          + "  if not values[ARGV[i]] or redis.sha1hex(values[ARGV[i]]) ~= ARGV[i + 1] then\n"
+          + "    changed[#changed + 1] = ARGV[i]\n"
+          + "  end\n"
+          + "end\n"
+          + "for _, name in ipairs(names) do\n"
+          + "  if not digests[name] then\n"
+          + "    removed[#removed + 1] = name\n"
+          + "  end\n"
+          + "end\n"
+          + "return {redis.sha1hex(sessionData), changed, removed}\n");
+
+  /*
+   * KEYS[1] is the session key and KEYS[2] its fingerprint key, ARGV[1] the SHA1 digest of the
+   * data CHANGES read under the key, ARGV[2] the fingerprint of the data once changed and ARGV[3]
+   * the number n of attributes added or changed. n pairs of the name of each and the json of its
+   * value follow, then the names of the attributes removed. Returns 0 if the data under the key
+   * changed since. Attributes kept stay where they were, with their json as stored unless changed,
+   * and added attributes go last.
+   */
+  private static final RedisScript UPDATE = new RedisScript("update",
+      MEMBERS
+          + "local sessionData = redis.call('GET', KEYS[1])\n"
+          + "if not sessionData or redis.sha1hex(sessionData) ~= ARGV[1]\n"
+          + "    or redis.call('EXISTS', '" + SET_INDEX_KEY_PREFIX + "' .. KEYS[1]) == 1 then\n"
+          + "  return 0\n"
+          + "end\n"
+          + "local names, values = members(sessionData)\n"
+          + "local last = 3 + 2 * tonumber(ARGV[3])\n"
+          + "local changed, removed = {}, {}\n"
+          + "for i = 4, last, 2 do\n"
+          + "  changed[ARGV[i]] = ARGV[i + 1]\n"
+          + "end\n"
+          + "for i = last + 1, #ARGV do\n"
+          + "  removed[ARGV[i]] = true\n"
+          + "end\n"
+          + "local kept = {}\n"
+          + "for _, name in ipairs(names) do\n"
+          + "  if not removed[name] then\n"
+          + "    kept[#kept + 1] = '\"' .. name .. '\":' .. (changed[name] or values[name])\n"
+          + "  end\n"
+          + "end\n"
+          + "for i = 4, last, 2 do\n"
+          + "  if not values[ARGV[i]] then\n"
+          + "    kept[#kept + 1] = '\"' .. ARGV[i] .. '\":' .. ARGV[i + 1]\n"
+          + "  end\n"
+          + "end\n"
+          + "redis.call('SET', KEYS[1], '{' .. table.concat(kept, ',') .. '}')\n"
+          + "redis.call('SET', KEYS[2], ARGV[2])\n"
+          + "return 1\n");
+
+  /*
+   * KEYS[1] is the session key and the optional KEYS[2] the index of the user's session keys, for
+   * keys saved before the index of each key was stored. Returns the number of sessions deleted.
+   */
+  private static final RedisScript DESTROY = new RedisScript("destroy",
+      RELEASE
+          + DELETE
+          + "if KEYS[2] then\n"
+          + "  redis.call('SREM', KEYS[2], KEYS[1])\n"
+          + "end\n"
+          + "return delete(KEYS[1])\n");
+
+  /*
+   * KEYS[1] is the index of the user's session keys. Returns the number of sessions deleted, which
+   * leaves out keys in the index whose data was already gone.
+   */
+  private static final RedisScript DESTROY_ALL = new RedisScript("destroyAll",
+      RELEASE
+          + DELETE
+          + "local deleted = 0\n"
+          + "for _, key in ipairs(redis.call('SMEMBERS', KEYS[1])) do\n"
+          + "  deleted = deleted + delete(key)\n"
+          + "end\n"
+          + "redis.call('DEL', KEYS[1])\n"
+          + "return deleted\n");
+
+  /*
+   * KEYS[1] is the session key, ARGV[1] the name of an attribute and ARGV[2] a value. Returns 1 if
+   * the value is or is one of the attribute's values, 0 if not and -1 if there is no data under the
+   * key or the attribute's shared value is missing. Attributes not stored as a set are searched for
+   * in the data without sending it back.
+   */
+  private static final RedisScript IS_MEMBER = new RedisScript("isMember",
+      VALUE_OF
+          + "if redis.call('SISMEMBER', '" + SET_INDEX_KEY_PREFIX
+          + "' .. KEYS[1], ARGV[1]) == 1 then\n"
+          + "  return redis.call('SISMEMBER', '" + SET_KEY_PREFIX
+          + "' .. KEYS[1] .. ':' .. ARGV[1], ARGV[2])\n"
+          + "end\n"
+          + "local sessionData = redis.call('GET', KEYS[1])\n"
+          + "if not sessionData then\n"
+          + "  return -1\n"
+          + "end\n"
+          + "local ok, attributes = pcall(cjson.decode, sessionData)\n"
+          + "if not ok or type(attributes) ~= 'table' then\n"
+          + "  return 0\n"
+          + "end\n"
+          + "local values, corrupt = valueOf(attributes, ARGV[1])\n"
+          + "if corrupt then\n"
+          + "  return -1\n"
+          + "end\n"
+          + "if type(values) ~= 'table' then\n"
+          + "  values = {values}\n"
+          + "end\n"
+          + "for _, value in ipairs(values) do\n"
+          + "  if tostring(value) == ARGV[2] then\n"
+          + "    return 1\n"
+          + "  end\n"
+          + "end\n"
+          + "return 0\n");
+
+  private static final List<RedisScript> SCRIPTS =
+      List.of(SAVE_IF_CHANGED, SAVE_INDEXED, CHANGES, UPDATE, DESTROY, DESTROY_ALL, IS_MEMBER);
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+  private static final long FNV_PRIME = 0x100000001b3L;
+
   private final JedisPool jp;
 
   private final CacheKey cacheKey = new SecureRandomCacheKey();
 
+  private final SharedValues sharedValues;
+
+  private final Set<String> setAttributes;
+
+  private volatile boolean scriptsLoaded;
+
   /**
    * Connects to a Redis store at {@value #DEFAULT_HOSTNAME} on port {@value #DEFAULT_PORT}.
    */
@@ -53,6 +536,45 @@ public class SessionDataImpl implements SessionData {
   }
 
   public SessionDataImpl(String hostname, int port, int minConnections, int maxConnections) {
+    this(hostname, port, minConnections, maxConnections, DEFAULT_SHARED_VALUES_MIN_LENGTH,
+        DEFAULT_SHARED_VALUES_CACHE_SIZE);
+  }
+
+  /**
+   * Connects to a Redis store at the given host name on the given port, sharing large attribute
+   * values between sessions.
+   *
+   * @param hostname              host of the Redis store.
+   * @param port                  Redis port.
+   * @param minConnections        minimum number of idle connections in the pool.
+   * @param maxConnections        maximum number of connections in the pool.
+   * @param sharedValuesMinLength length of the json of the smallest attribute value shared, or 0
+   *                              to share none.
+   * @param sharedValuesCacheSize number of shared attribute values cached in memory.
+   */
+  public SessionDataImpl(String hostname, int port, int minConnections, int maxConnections,
+      int sharedValuesMinLength, int sharedValuesCacheSize) {
+    this(hostname, port, minConnections, maxConnections, sharedValuesMinLength,
+        sharedValuesCacheSize, Set.of());
+  }
+
+  /**
+   * Connects to a Redis store at the given host name on the given port, sharing large attribute
+   * values between sessions and storing the values of the given attributes as sets.
+   *
+   * @param hostname              host of the Redis store.
+   * @param port                  Redis port.
+   * @param minConnections        minimum number of idle connections in the pool.
+   * @param maxConnections        maximum number of connections in the pool.
+   * @param sharedValuesMinLength length of the json of the smallest attribute value shared, or 0
+   *                              to share none.
+   * @param sharedValuesCacheSize number of shared attribute values cached in memory.
+   * @param setAttributes         names of the attributes whose values are also stored as sets.
+   */
+  public SessionDataImpl(String hostname, int port, int minConnections, int maxConnections,
+      int sharedValuesMinLength, int sharedValuesCacheSize, Set<String> setAttributes) {
+    sharedValues = new SharedValues(sharedValuesMinLength, sharedValuesCacheSize);
+    this.setAttributes = Set.copyOf(setAttributes);
     JedisPoolConfig jpConfig = new JedisPoolConfig();
     if (minConnections != DEFAULT_MIN_CONNECTIONS) {
       jpConfig.setMinIdle(minConnections);
@@ -62,16 +584,22 @@ public class SessionDataImpl implements SessionData {
     }
     jp = new JedisPool(jpConfig, hostname, port);
     LOGGER.config("Constructed " + SessionDataImpl.class.getName() + " with hostname = " + hostname
-        + ", port = " + port);
+        + ", port = " + port + ", sharedValuesMinLength = " + sharedValuesMinLength
+        + ", setAttributes = " + setAttributes);
   }
 
   public byte[] save(byte[] key, String sessionData) {
-    return doSaveReturningKey(key, sessionData);
+    return doSaveReturningKey(key, sessionData, null);
   }
 
   @Override
   public byte[] save(String sessionData) {
-    return doSaveReturningKey(EMPTY, sessionData);
+    return doSaveReturningKey(EMPTY, sessionData, null);
+  }
+
+  @Override
+  public byte[] save(byte[] preComputedKey, String sessionData, String user) {
+    return doSaveReturningKey(preComputedKey, sessionData, user);
   }
 
   @Override
@@ -79,61 +607,502 @@ public class SessionDataImpl implements SessionData {
     return doGetReturningData(key);
   }
 
+  @Override
+  public List<String> getAll(Collection<byte[]> keys) {
+    return doGetAll(keys);
+  }
+
+  @Override
+  public Boolean isMember(byte[] key, String attribute, String value) {
+    return doIsMember(key, attribute, value);
+  }
+
+  @Override
+  public boolean update(byte[] key, String identifier, Map<String, Object> attributes) {
+    return doUpdate(key, identifier, attributes);
+  }
+
   @Override
   public void destroy(byte[] key) {
-    doDestroy(key);
+    doDestroy(key, null);
+  }
+
+  @Override
+  public void destroy(byte[] key, String user) {
+    doDestroy(key, user);
+  }
+
+  @Override
+  public int destroyAll(String user) {
+    return doDestroyAll(user);
   }
 
   /*
    * Indirect method to avoid public methods overridden in a subclass.
    */
-  private byte[] doSaveReturningKey(byte[] preComputedKey, String sessionData) {
+  private byte[] doSaveReturningKey(byte[] preComputedKey, String sessionData, String user) {
     String key = "";
-    try (Jedis j = jp.getResource()) {
+    var values = new HashMap<String, String>();
+    var stored = sharedValues.share(sessionData, values);
+    var sets = setsIn(sessionData);
+    try (Jedis j = borrow()) {
       if (preComputedKey == null || preComputedKey.length == 0) {
         key = cacheKey.generate();
         // Key generation is random but not perfect so make sure a key that doesn't already exist is
         // generated.
-        while (j.exists(key)) {
+        while (exists(j, key)) {
           key = cacheKey.generate();
         }
+        var start = System.nanoTime();
+        if (!values.isEmpty() || !sets.isEmpty()) {
+          // Only the script counts references to shared values and stores sets.
+          SAVE_IF_CHANGED.eval(j, sessionKeys(key, user), saveArgs(stored, sets, values));
+        } else if (user == null) {
+          j.set(key, stored);
+        } else {
+          SAVE_INDEXED.eval(j, List.of(key, USER_INDEX_KEY_PREFIX + user), List.of(stored));
+        }
+        RequestTimer.recordSince(Stage.STORE_IO, start);
       } else {
         key = new String(preComputedKey);
+        var start = System.nanoTime();
+        var written =
+            SAVE_IF_CHANGED.eval(j, sessionKeys(key, user), saveArgs(stored, sets, values));
+        RequestTimer.recordSince(Stage.STORE_IO, start);
+        if (Long.valueOf(0L).equals(written)) {
+          UNCHANGED_SAVES.increment();
+        }
       }
-      j.set(key, sessionData);
     }
     return cacheKey.encode(key);
   }
 
+  private static List<String> sessionKeys(String key, String user) {
+    return user == null ? List.of(key, FINGERPRINT_KEY_PREFIX + key)
+        : List.of(key, FINGERPRINT_KEY_PREFIX + key, USER_INDEX_KEY_PREFIX + user);
+  }
+
+  private static List<String> saveArgs(String sessionData, List<String> sets,
+      Map<String, String> values) {
+    var args = new ArrayList<String>(3 + sets.size() + values.size() * 2);
+    args.add(sessionData);
+    args.add(fingerprint(sessionData));
+    args.add(Integer.toString(sets.size()));
+    args.addAll(sets);
+    values.forEach((digest, json) -> {
+      args.add(digest);
+      args.add(json);
+    });
+    return args;
+  }
+
+  /*
+   * Returns the names of the attributes stored as sets that the given session data may have. Only
+   * the json is searched, so the data is not decoded.
+   */
+  private List<String> setsIn(String sessionData) {
+    var sets = new ArrayList<String>(setAttributes.size());
+    for (String name : setAttributes) {
+      if (sessionData.contains("\"" + name + "\":")) {
+        sets.add(name);
+      }
+    }
+    return sets;
+  }
+
   /*
    * Indirect method to avoid public methods overridden in a subclass.
    */
   private String doGetReturningData(byte[] key) {
-    String decodedKey = cacheKey.decode(key);
-    String sessionData = null;
-    try (Jedis j = jp.getResource()) {
+    String decodedKey = sessionKey(key);
+    if (decodedKey == null) {
+      return null;
+    }
+    String sessionData;
+    try (Jedis j = borrow()) {
+      var start = System.nanoTime();
       sessionData = j.get(decodedKey);
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+      return resolve(j, sessionData);
+    }
+  }
+
+  /*
+   * Indirect method to avoid public methods overridden in a subclass.
+   */
+  private List<String> doGetAll(Collection<byte[]> keys) {
+    var decodedKeys = new ArrayList<String>(keys.size());
+    var lookedUp = new ArrayList<String>(keys.size());
+    for (byte[] key : keys) {
+      var decodedKey = sessionKey(key);
+      if (decodedKey != null) {
+        lookedUp.add(decodedKey);
+      }
+      decodedKeys.add(decodedKey);
+    }
+    var sessionData = new ArrayList<String>(keys.size());
+    if (lookedUp.isEmpty()) {
+      decodedKeys.forEach(k -> sessionData.add(null));
+      return sessionData;
+    }
+    try (Jedis j = borrow()) {
+      var start = System.nanoTime();
+      var values = j.mget(lookedUp.toArray(new String[0])).iterator();
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+      for (String decodedKey : decodedKeys) {
+        sessionData.add(decodedKey == null ? null : resolve(j, values.next()));
+      }
     }
     return sessionData;
   }
 
+  /*
+   * Returns the given key decoded, or null if it is not a key this store could have issued: one
+   * that is not Base64 or that names one of elmr's own bookkeeping keys.
+   */
+  private String sessionKey(byte[] key) {
+    String decodedKey;
+    try {
+      decodedKey = cacheKey.decode(key);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    return decodedKey.startsWith(ELMR_KEY_PREFIX) ? null : decodedKey;
+  }
+
+  /*
+   * Puts shared values back into the given session data, reading the ones not cached with the given
+   * connection.
+   */
+  private String resolve(Jedis j, String sessionData) {
+    return sharedValues.resolve(sessionData, digests -> {
+      var start = System.nanoTime();
+      var p = j.pipelined();
+      var values = new ArrayList<Response<String>>(digests.size());
+      for (String digest : digests) {
+        values.add(p.hget(SHARED_VALUE_KEY_PREFIX + digest, "value"));
+      }
+      p.sync();
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+      return values.stream().map(Response::get).collect(Collectors.toList());
+    });
+  }
+
   /*
    * Indirect method to avoid public methods overridden in a subclass.
    */
-  private void doDestroy(byte[] key) {
-    String decodedKey = cacheKey.decode(key);
-    try (Jedis j = jp.getResource()) {
-      j.del(decodedKey);
+  private Boolean doIsMember(byte[] key, String attribute, String value) {
+    String decodedKey = sessionKey(key);
+    if (decodedKey == null) {
+      return null;
+    }
+    try (Jedis j = borrow()) {
+      var start = System.nanoTime();
+      var member = (Long) IS_MEMBER.eval(j, List.of(decodedKey), List.of(attribute, value));
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+      return member < 0 ? null : member == 1L;
+    }
+  }
+
+  /*
+   * Indirect method to avoid public methods overridden in a subclass.
+   */
+  private boolean doUpdate(byte[] key, String identifier, Map<String, Object> attributes) {
+    String decodedKey = sessionKey(key);
+    if (decodedKey == null) {
+      return false;
+    }
+    Map<String, String> values;
+    try {
+      values = Json.renderValues(attributes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (!values.containsKey(identifier)) {
+      return false;
+    }
+    var digests = new ArrayList<String>(1 + 2 * values.size());
+    digests.add(identifier);
+    for (Map.Entry<String, String> e : values.entrySet()) {
+      if (setAttributes.contains(e.getKey()) || sharedValues.isShared(e.getValue())) {
+        // Only a full save counts references to shared values and stores sets.
+        return false;
+      }
+      digests.add(e.getKey());
+      digests.add(RedisScript.sha1(e.getValue()));
+    }
+    try (Jedis j = borrow()) {
+      var start = System.nanoTime();
+      var changes = CHANGES.eval(j, List.of(decodedKey), digests);
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+      if (!(changes instanceof List)) {
+        return false;
+      }
+      var changed = (List<?>) ((List<?>) changes).get(1);
+      var removed = (List<?>) ((List<?>) changes).get(2);
+      if (changed.isEmpty() && removed.isEmpty()) {
+        UNCHANGED_SAVES.increment();
+        return true;
+      }
+      var args = new ArrayList<String>(3 + 2 * changed.size() + removed.size());
+      args.add((String) ((List<?>) changes).get(0));
+      args.add(fingerprint(Json.renderObject(attributes)));
+      args.add(Integer.toString(changed.size()));
+      for (Object name : changed) {
+        args.add((String) name);
+        args.add(values.get(name));
+      }
+      for (Object name : removed) {
+        args.add((String) name);
+      }
+      start = System.nanoTime();
+      var updated =
+          UPDATE.eval(j, List.of(decodedKey, FINGERPRINT_KEY_PREFIX + decodedKey), args);
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+      return Long.valueOf(1L).equals(updated);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+   * Indirect method to avoid public methods overridden in a subclass.
+   */
+  private void doDestroy(byte[] key, String user) {
+    String decodedKey = sessionKey(key);
+    if (decodedKey == null) {
+      return;
+    }
+    try (Jedis j = borrow()) {
+      var start = System.nanoTime();
+      DESTROY.eval(j,
+          user == null ? List.of(decodedKey) : List.of(decodedKey, USER_INDEX_KEY_PREFIX + user),
+          List.of());
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+    }
+  }
+
+  /*
+   * Indirect method to avoid public methods overridden in a subclass.
+   */
+  private int doDestroyAll(String user) {
+    try (Jedis j = borrow()) {
+      var start = System.nanoTime();
+      var destroyed = DESTROY_ALL.eval(j, List.of(USER_INDEX_KEY_PREFIX + user), List.of());
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+      return ((Long) destroyed).intValue();
     }
   }
 
+  /*
+   * Borrows a connection from the pool, timing how long it takes.
+   */
+  private Jedis borrow() {
+    var start = System.nanoTime();
+    try {
+      return jp.getResource();
+    } finally {
+      RequestTimer.recordSince(Stage.STORE_WAIT, start);
+    }
+  }
+
+  /**
+   * Returns a 64-bit FNV-1a hash of the UTF-8 encoding of the given data in hexadecimal.
+   *
+   * @param sessionData data to fingerprint.
+   * @return the fingerprint.
+   */
+  static String fingerprint(String sessionData) {
+    var hash = FNV_OFFSET_BASIS;
+    for (byte b : sessionData.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= FNV_PRIME;
+    }
+    return Long.toHexString(hash);
+  }
+
+  private static boolean exists(Jedis j, String key) {
+    var start = System.nanoTime();
+    try {
+      return j.exists(key);
+    } finally {
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+    }
+  }
+
+  /**
+   * Returns the number of shared attribute values cached in memory.
+   */
+  public int getNumCachedSharedValues() {
+    return sharedValues.cacheSize();
+  }
+
+  /**
+   * Closes the connections in the pool. Applications embedding this class call this when they stop.
+   */
+  public void close() {
+    jp.close();
+  }
+
+  /**
+   * Returns the number of connections currently borrowed from the pool.
+   */
+  public int getNumActiveConnections() {
+    return jp.getNumActive();
+  }
+
+  /**
+   * Returns the number of idle connections in the pool.
+   */
+  public int getNumIdleConnections() {
+    return jp.getNumIdle();
+  }
+
+  /**
+   * Returns the number of threads waiting to borrow a connection from the pool.
+   */
+  public int getNumWaitingForConnection() {
+    return jp.getNumWaiters();
+  }
+
+  @Override
+  public void scan(int pageSize, Consumer<StoredSession> action) {
+    var page = new ArrayList<StoredSession>(pageSize);
+    var cursor = ScanParams.SCAN_POINTER_START;
+    do {
+      page.clear();
+      cursor = scanPage(cursor, pageSize, page);
+      page.forEach(action);
+    } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+  }
+
+  @Override
+  public int purge(int pageSize, int maxPerSecond, Predicate<StoredSession> filter) {
+    var start = System.nanoTime();
+    var purged = 0;
+    var page = new ArrayList<StoredSession>(pageSize);
+    var keys = new ArrayList<String>(pageSize);
+    var cursor = ScanParams.SCAN_POINTER_START;
+    do {
+      page.clear();
+      keys.clear();
+      cursor = scanPage(cursor, pageSize, page);
+      for (StoredSession session : page) {
+        if (filter.test(session)) {
+          keys.add(session.getKey());
+        }
+      }
+      if (!keys.isEmpty()) {
+        purged += deleteAll(keys);
+        if (!throttle(start, purged, maxPerSecond)) {
+          LOGGER.warning("Purge interrupted after deleting " + purged + " sessions.");
+          break;
+        }
+      }
+    } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+    return purged;
+  }
+
+  /*
+   * Adds the sessions of one page of keys to the given List and returns the cursor of the next
+   * page, which is the start cursor again after the last page.
+   */
+  private String scanPage(String cursor, int pageSize, List<StoredSession> page) {
+    try (Jedis j = borrow()) {
+      var start = System.nanoTime();
+      var result = j.scan(cursor, new ScanParams().count(pageSize));
+      var p = j.pipelined();
+      var keys = new ArrayList<String>(result.getResult().size());
+      var values = new ArrayList<Response<String>>(keys.size());
+      var ttls = new ArrayList<Response<Long>>(keys.size());
+      for (String key : result.getResult()) {
+        if (!key.startsWith(ELMR_KEY_PREFIX)) {
+          keys.add(key);
+          values.add(p.get(key));
+          ttls.add(p.ttl(key));
+        }
+      }
+      p.sync();
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+      for (int i = 0; i < keys.size(); i++) {
+        String sessionData;
+        try {
+          sessionData = values.get(i).get();
+        } catch (JedisDataException e) {
+          // Not a string, so not session data.
+          continue;
+        }
+        if (sessionData != null) {
+          sessionData = resolve(j, sessionData);
+          var ttl = ttls.get(i).get();
+          page.add(new StoredSession(keys.get(i), sessionData,
+              ttl == null || ttl < 0 ? StoredSession.NO_EXPIRY : ttl));
+        }
+      }
+      return result.getStringCursor();
+    }
+  }
+
+  /*
+   * Deletes the sessions under the given keys with one connection and one round trip. Each takes a
+   * script run so the references to shared values are dropped with the data.
+   */
+  private int deleteAll(List<String> keys) {
+    var each = keys.stream().map(List::of).collect(Collectors.toList());
+    try (Jedis j = borrow()) {
+      var start = System.nanoTime();
+      var deleted = 0;
+      for (Object reply : DESTROY.evalEach(j, each, List.of())) {
+        deleted += ((Long) reply).intValue();
+      }
+      RequestTimer.recordSince(Stage.STORE_IO, start);
+      return deleted;
+    }
+  }
+
+  /*
+   * Sleeps until deleting the given number of sessions since the given time is within the given
+   * rate. Returns false if interrupted.
+   */
+  private static boolean throttle(long startNanos, int deleted, int maxPerSecond) {
+    var waitNanos =
+        startNanos + TimeUnit.SECONDS.toNanos(deleted) / maxPerSecond - System.nanoTime();
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public boolean isConnected() {
     try (Jedis j = jp.getResource()) {
       var response = j.ping();
-      return response.equalsIgnoreCase("PONG");
+      var connected = response.equalsIgnoreCase("PONG");
+      if (connected && !scriptsLoaded) {
+        loadScripts(j);
+      }
+      return connected;
     } catch (JedisConnectionException e) {
+      scriptsLoaded = false;
       return false;
     }
   }
+
+  private void loadScripts(Jedis j) {
+    try {
+      for (RedisScript script : SCRIPTS) {
+        script.load(j);
+      }
+      scriptsLoaded = true;
+      LOGGER.config("Loaded " + SCRIPTS.size() + " scripts into the session data store.");
+    } catch (JedisDataException e) {
+      // Scripts are loaded again when they are run; the store itself is reachable.
+      LOGGER.log(Level.WARNING, "Could not load scripts into the session data store.", e);
+    }
+  }
 }
@@ -0,0 +1,345 @@
+package edu.illinois.techservices.elmr;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Moves large attribute values out of session data so sessions with the same value share one copy
+ * of it.
+ *
+ * <p>
+ * Values whose json is at least a given number of characters long are replaced by the hex encoded
+ * SHA-256 digest of their json, and the names of the replaced attributes are listed in the
+ * attribute {@value #SHARED_ATTRIBUTE}. The store keeps each value once under its digest. Values
+ * never change once stored under a digest, so the json of the most recently used ones is cached
+ * here without ever going stale.
+ */
+final class SharedValues {
+
+  /**
+   * Name of the attribute listing the attributes whose values are shared.
+   */
+  static final String SHARED_ATTRIBUTE = "elmr:shared";
+
+  private static final String SHARED_ATTRIBUTE_JSON = "\"" + SHARED_ATTRIBUTE + "\"";
+
+  /*
+   * How share renders the list of shared attributes. Quotes in json strings are escaped, so it is
+   * found unescaped only where it starts the list.
+   */
+  private static final String SHARED_MARKER = SHARED_ATTRIBUTE_JSON + ":[";
+
+  /*
+   * Shared values are stored as json objects with the value under "value".
+   */
+  private static final String VALUE_JSON_PREFIX = "{\"value\":";
+
+  private static final int DIGEST_LENGTH = 64;
+
+  private static final Logger LOGGER = Logger.getLogger(SharedValues.class.getName());
+
+  private static final Metrics.Counter CACHE_HITS = Metrics.counter(
+      "elmr_session_data_shared_value_lookups_total",
+      "Shared attribute values looked up when reading session data.", "result", "hit");
+
+  private static final Metrics.Counter CACHE_MISSES = Metrics.counter(
+      "elmr_session_data_shared_value_lookups_total",
+      "Shared attribute values looked up when reading session data.", "result", "miss");
+
+  private final int minLength;
+
+  private final Map<String, String> cache;
+
+  /**
+   * Constructs shared values.
+   *
+   * @param minLength length of the json of the smallest value shared, or 0 to share none.
+   * @param cacheSize number of values cached.
+   */
+  SharedValues(int minLength, int cacheSize) {
+    this.minLength = minLength;
+    this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > cacheSize;
+      }
+    });
+  }
+
+  /**
+   * Returns {@code true} if values are shared when saved.
+   */
+  boolean isEnabled() {
+    return minLength > 0;
+  }
+
+  /**
+   * Returns {@code true} if the value with the given json is shared when saved.
+   *
+   * @param valueJson json of an attribute's value.
+   */
+  boolean isShared(String valueJson) {
+    return isEnabled() && valueJson.length() >= minLength;
+  }
+
+  /**
+   * Returns {@code true} if the given session data has shared values, which is when it is a json
+   * object whose attribute {@value #SHARED_ATTRIBUTE} lists the attributes shared.
+   *
+   * @param sessionData session data as stored.
+   */
+  static boolean hasShared(String sessionData) {
+    return mayHaveShared(sessionData) && sharedNames(Json.marshal(sessionData)) != null;
+  }
+
+  /*
+   * Returns true unless the given session data cannot have shared values, without decoding it.
+   */
+  private static boolean mayHaveShared(String sessionData) {
+    return sessionData != null && sessionData.startsWith("{")
+        && sessionData.contains(SHARED_MARKER);
+  }
+
+  /*
+   * Returns the names of the shared attributes of the given decoded session data or null if it
+   * has none.
+   */
+  @SuppressWarnings("unchecked")
+  private static List<Object> sharedNames(Map<String, Object> attributes) {
+    var shared = attributes.get(SHARED_ATTRIBUTE);
+    return shared instanceof List ? (List<Object>) shared : null;
+  }
+
+  /**
+   * Replaces the large values of the given session data by their digests.
+   *
+   * <p>
+   * The attribute {@value #SHARED_ATTRIBUTE} is rendered last, so the session data can be put back
+   * together without decoding it.
+   *
+   * @param sessionData session data to save.
+   * @param values      Map the json of each value replaced is put in by its digest.
+   * @return the session data to store, which is the given session data if no value is shared.
+   */
+  String share(String sessionData, Map<String, String> values) {
+    if (!isEnabled() || sessionData.length() < minLength || !sessionData.startsWith("{")) {
+      return sessionData;
+    }
+    var attributes = new LinkedHashMap<String, Object>(Json.marshal(sessionData));
+    var shared = new ArrayList<String>();
+    try {
+      for (Map.Entry<String, Object> e : attributes.entrySet()) {
+        var json = Json.renderObject(Map.of("value", e.getValue()));
+        if (isShared(valueJson(json))) {
+          var digest = sha256(json);
+          values.put(digest, json);
+          cache.put(digest, valueJson(json));
+          e.setValue(digest);
+          shared.add(e.getKey());
+        }
+      }
+      if (shared.isEmpty()) {
+        return sessionData;
+      }
+      var json = Json.renderObject(attributes);
+      return json.substring(0, json.length() - 1) + "," + SHARED_ATTRIBUTE_JSON + ":"
+          + Json.renderList(shared) + "}";
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Puts the shared values back into the given session data.
+   *
+   * <p>
+   * The json of each shared value takes the place of its digest in the session data as stored, so
+   * session data saved by {@link #share(String, Map)} is not decoded. Other session data listing
+   * shared attributes is decoded and rendered again.
+   *
+   * @param sessionData session data as stored.
+   * @param load        returns the json of the values stored under the given digests, with
+   *                    {@code null} for digests the store has no value for.
+   * @return the session data as saved, or {@code null} if a shared value is missing from the store
+   *         or not referred to by a digest, as then the session data is corrupt.
+   */
+  String resolve(String sessionData, Function<List<String>, List<String>> load) {
+    if (!mayHaveShared(sessionData)) {
+      return sessionData;
+    }
+    var marker = sessionData.lastIndexOf(SHARED_MARKER);
+    var names = marker > 0 && sessionData.charAt(marker - 1) == ','
+        ? renderedNames(sessionData.substring(marker + SHARED_MARKER.length() - 1))
+        : null;
+    return names == null ? resolveDecoded(sessionData, load)
+        : resolveRendered(sessionData.substring(0, marker - 1) + "}", names, load);
+  }
+
+  /*
+   * Returns the names listed in the given end of session data rendered by share, or null if it is
+   * not a list of names that need no escaping followed by the end of the session data.
+   */
+  private static List<String> renderedNames(String end) {
+    if (!end.startsWith("[\"") || !end.endsWith("\"]}") || end.indexOf('\\') >= 0) {
+      return null;
+    }
+    var names = List.of(end.substring(2, end.length() - 3).split("\",\"", -1));
+    return names.stream().anyMatch(n -> n.isEmpty() || n.indexOf('"') >= 0) ? null : names;
+  }
+
+  /*
+   * Puts the json of the shared values in place of their digests in the given session data.
+   */
+  private String resolveRendered(String sessionData, List<String> names,
+      Function<List<String>, List<String>> load) {
+    var starts = new TreeMap<Integer, Integer>();
+    var digests = new ArrayList<String>(names.size());
+    for (String name : names) {
+      var key = "\"" + name + "\":\"";
+      var at = sessionData.indexOf(key);
+      var start = at + key.length();
+      if (at < 0 || start + DIGEST_LENGTH >= sessionData.length()
+          || sessionData.charAt(start + DIGEST_LENGTH) != '"') {
+        LOGGER.warning(() -> "Shared value of " + name + " is not stored under a digest.");
+        return null;
+      }
+      starts.put(start - 1, digests.size());
+      digests.add(sessionData.substring(start, start + DIGEST_LENGTH));
+    }
+    var jsons = valueJsons(names, digests, load);
+    if (jsons == null) {
+      return null;
+    }
+    var resolved = new StringBuilder(sessionData.length()
+        + jsons.stream().mapToInt(String::length).sum());
+    var from = 0;
+    for (Map.Entry<Integer, Integer> e : starts.entrySet()) {
+      resolved.append(sessionData, from, e.getKey()).append(jsons.get(e.getValue()));
+      from = e.getKey() + DIGEST_LENGTH + 2;
+    }
+    return resolved.append(sessionData, from, sessionData.length()).toString();
+  }
+
+  /*
+   * Decodes the given session data to put the shared values back.
+   */
+  private String resolveDecoded(String sessionData, Function<List<String>, List<String>> load) {
+    var attributes = new LinkedHashMap<String, Object>(Json.marshal(sessionData));
+    var shared = sharedNames(attributes);
+    if (shared == null) {
+      return sessionData;
+    }
+    attributes.remove(SHARED_ATTRIBUTE);
+    var names = new ArrayList<String>(shared.size());
+    var digests = new ArrayList<String>(shared.size());
+    for (Object name : shared) {
+      if (!(attributes.get(name) instanceof String)) {
+        LOGGER.warning(() -> "Shared value of " + name + " is not stored under a digest.");
+        return null;
+      }
+      names.add((String) name);
+      digests.add((String) attributes.get(name));
+    }
+    var jsons = valueJsons(names, digests, load);
+    if (jsons == null) {
+      return null;
+    }
+    for (int i = 0; i < names.size(); i++) {
+      var value = Json.marshal(VALUE_JSON_PREFIX + jsons.get(i) + "}").get("value");
+      attributes.put(names.get(i), value);
+    }
+    try {
+      return Json.renderObject(attributes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+   * Returns the json of the values stored under the given digests of the given attributes, from
+   * the cache or else loaded from the store, or null if one is missing.
+   */
+  private List<String> valueJsons(List<String> names, List<String> digests,
+      Function<List<String>, List<String>> load) {
+    var jsons = new ArrayList<String>(digests.size());
+    var missing = new ArrayList<String>();
+    for (String digest : digests) {
+      var json = cache.get(digest);
+      if (json == null) {
+        CACHE_MISSES.increment();
+        missing.add(digest);
+      } else {
+        CACHE_HITS.increment();
+      }
+      jsons.add(json);
+    }
+    if (!missing.isEmpty()) {
+      var loaded = load.apply(missing);
+      for (int i = 0; i < missing.size(); i++) {
+        var json = loaded.get(i) == null ? null : valueJson(loaded.get(i));
+        if (json != null) {
+          cache.put(missing.get(i), json);
+        }
+      }
+      for (int i = 0; i < digests.size(); i++) {
+        if (jsons.get(i) == null) {
+          var name = names.get(i);
+          var digest = digests.get(i);
+          var json = cache.get(digest);
+          if (json == null) {
+            LOGGER.warning(() -> "No shared value stored for " + name + " under " + digest + ".");
+            return null;
+          }
+          jsons.set(i, json);
+        }
+      }
+    }
+    return jsons;
+  }
+
+  /*
+   * Returns the json of the value in the given json stored for a shared value, or null if it is
+   * not the json share stores.
+   */
+  private static String valueJson(String stored) {
+    return stored.startsWith(VALUE_JSON_PREFIX) && stored.endsWith("}")
+        ? stored.substring(VALUE_JSON_PREFIX.length(), stored.length() - 1)
+        : null;
+  }
+
+  /**
+   * Returns the number of values cached.
+   */
+  int cacheSize() {
+    return cache.size();
+  }
+
+  private static String sha256(String json) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256")
+          .digest(json.getBytes(StandardCharsets.UTF_8));
+      var sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+}
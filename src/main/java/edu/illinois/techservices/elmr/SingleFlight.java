@@ -0,0 +1,85 @@
+package edu.illinois.techservices.elmr;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one call per key at a time; callers asking for a key that is already being loaded
+ * wait for that call and share its result instead of starting another.
+ *
+ * <p>
+ * Nothing is cached: once a call finishes the next caller for the key starts a new one. If the call
+ * throws, every caller waiting for it gets the same exception.
+ *
+ * @param <K> type of the keys.
+ * @param <V> type of the results.
+ */
+final class SingleFlight<K, V> {
+
+  private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  private final Runnable onJoin;
+
+  /**
+   * Constructs an instance.
+   *
+   * @param onJoin run each time a caller joins a call already in flight instead of starting one.
+   */
+  SingleFlight(Runnable onJoin) {
+    this.onJoin = onJoin;
+  }
+
+  /**
+   * Returns the result of the call in flight for the given key or, if there is none, of calling
+   * the given loader on this thread.
+   *
+   * @param key    key of the call.
+   * @param loader loads the result if no call is in flight.
+   * @return the result.
+   */
+  V execute(K key, Supplier<V> loader) {
+    var flight = new CompletableFuture<V>();
+    var existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      onJoin.run();
+      return await(existing);
+    }
+    try {
+      var result = loader.get();
+      flight.complete(result);
+      return result;
+    } catch (RuntimeException | Error e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Makes callers after this one start a new call for the given key even if one is in flight.
+   * Callers already waiting still get the result of the call they joined.
+   *
+   * @param key key of the call.
+   */
+  void forget(K key) {
+    inFlight.remove(key);
+  }
+
+  private static <V> V await(CompletableFuture<V> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
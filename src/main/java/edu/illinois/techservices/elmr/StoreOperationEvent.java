@@ -0,0 +1,35 @@
+package edu.illinois.techservices.elmr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for an operation on a {@link SessionData} store.
+ */
+@Name("edu.illinois.techservices.elmr.StoreOperation")
+@Label("Session Data Store Operation")
+@Category({"elmr", "Session Data"})
+@Description("An operation on the session data store.")
+public class StoreOperationEvent extends jdk.jfr.Event {
+
+  @Label("Operation")
+  public String operation;
+
+  @Label("Key Size")
+  @DataAmount
+  public int keySize;
+
+  @Label("Payload Size")
+  @Description("Size of the session data saved or retrieved in characters.")
+  public int payloadSize;
+
+  @Label("Found")
+  @Description("For reads, whether data was found for the key.")
+  public boolean found;
+
+  @Label("Failed")
+  public boolean failed;
+}
@@ -0,0 +1,67 @@
+package edu.illinois.techservices.elmr;
+
+import java.util.Map;
+
+/**
+ * A session as found in the session data store by {@link SessionData#scan}.
+ */
+public final class StoredSession {
+
+  /**
+   * Value of {@link #getTtlSeconds()} for sessions that do not expire.
+   */
+  public static final long NO_EXPIRY = -1L;
+
+  private final String key;
+
+  private final String sessionData;
+
+  private final long ttlSeconds;
+
+  private Map<String, Object> attributes;
+
+  /**
+   * Constructs a session.
+   *
+   * @param key         key the data is stored under in the store.
+   * @param sessionData the data.
+   * @param ttlSeconds  seconds until the data expires or {@value #NO_EXPIRY}.
+   */
+  public StoredSession(String key, String sessionData, long ttlSeconds) {
+    this.key = key;
+    this.sessionData = sessionData;
+    this.ttlSeconds = ttlSeconds;
+  }
+
+  /**
+   * Returns the key the data is stored under in the store, which is not necessarily the key set in
+   * the session key cookie.
+   */
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * Returns the data.
+   */
+  public String getSessionData() {
+    return sessionData;
+  }
+
+  /**
+   * Returns the seconds until the data expires or {@value #NO_EXPIRY} if it does not.
+   */
+  public long getTtlSeconds() {
+    return ttlSeconds;
+  }
+
+  /**
+   * Returns the data decoded from json, decoding it the first time this is called.
+   */
+  public Map<String, Object> getAttributes() {
+    if (attributes == null) {
+      attributes = Json.marshal(sessionData);
+    }
+    return attributes;
+  }
+}
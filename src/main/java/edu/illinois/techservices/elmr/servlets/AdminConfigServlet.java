@@ -0,0 +1,69 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.Json;
+
+/**
+ * Shows and reloads the {@link ElmrConfig} snapshot. Requests are:
+ *
+ * <dl>
+ * <dt>{@code GET /admin/config}
+ * <dd>Returns the current snapshot as json.
+ * <dt>{@code POST /admin/config?mode=reload}
+ * <dd>Resolves every parameter again from system properties and context parameters, replaces the
+ * snapshot and returns the new one as json.
+ * </dl>
+ *
+ * <p>
+ * Access is restricted to administrators by {@link AdminFilter}.
+ */
+@WebServlet("/admin/config")
+public class AdminConfigServlet extends HttpServlet {
+
+  private static final long serialVersionUID = -3497012553129540312L;
+
+  private static final Logger LOGGER = Logger.getLogger(AdminConfigServlet.class.getName());
+
+  private transient ElmrConfig.Reference config;
+
+  @Override
+  public void init() {
+    config = ElmrConfig.reference(getServletContext());
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    writeConfig(config.get(), response);
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    if ("reload".equals(request.getParameter("mode"))) {
+      var reloaded = config.reload();
+      LOGGER.info("Configuration reloaded.");
+      writeConfig(reloaded, response);
+    } else {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Set the parameter mode to reload.");
+    }
+  }
+
+  private static void writeConfig(ElmrConfig snapshot, HttpServletResponse response)
+      throws IOException {
+    var m = snapshot.toMap();
+    m.put("loadedMillis", snapshot.getLoadedMillis());
+    var json = Json.renderObject(m);
+    response.setContentType("application/json");
+    response.setContentLength(json.length());
+    var pw = response.getWriter();
+    pw.print(json);
+    pw.flush();
+  }
+}
@@ -0,0 +1,72 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Restricts the administration endpoints under {@code /admin} to members of a configured group.
+ *
+ * <p>
+ * The group is set with the system property or context parameter
+ * {@code edu.illinois.techservices.elmr.servlets.AdminGroup}. Membership is read from the
+ * Shibboleth request attribute named by
+ * {@code edu.illinois.techservices.elmr.servlets.AdminGroupAttribute} (default
+ * {@code isMemberOf}) whose values are separated by {@code ;}. If no group is configured, every
+ * request to an administration endpoint is forbidden.
+ *
+ * <p>
+ * <strong>Deployment Note:</strong> the url-pattern {@code /admin/*} must be Shibboleth-protected
+ * so that the group attribute is set by the web server and cannot be supplied by the client.
+ */
+@WebFilter(urlPatterns = {"/admin/*"})
+public class AdminFilter extends HttpFilter {
+
+  private static final long serialVersionUID = -1870913926018577094L;
+
+  private static final Logger LOGGER = Logger.getLogger(AdminFilter.class.getName());
+
+  private transient ElmrConfig.Reference config;
+
+  @Override
+  public void init() {
+    config = ElmrConfig.reference(getServletContext());
+    if (config.get().getAdminGroup().isEmpty()) {
+      LOGGER.config("No administrator group set; administration endpoints are disabled.");
+    }
+  }
+
+  @Override
+  protected void doFilter(HttpServletRequest request, HttpServletResponse response,
+      FilterChain chain) throws IOException, ServletException {
+    var snapshot = config.get();
+    var adminGroup = snapshot.getAdminGroup();
+    if (adminGroup.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN,
+          "Administration endpoints are disabled. Set " + ServletConstants.ADMIN_GROUP
+              + " to enable them.");
+    } else if (!isAdmin(request.getAttribute(snapshot.getAdminGroupAttribute()), adminGroup)) {
+      LOGGER.warning("Denied access to " + request.getRequestURI() + " for a non-administrator.");
+      response.sendError(HttpServletResponse.SC_FORBIDDEN, "Administrators only.");
+    } else {
+      chain.doFilter(request, response);
+    }
+  }
+
+  private static boolean isAdmin(Object groups, String adminGroup) {
+    if (groups == null) {
+      return false;
+    }
+    for (String group : groups.toString().split(";")) {
+      if (group.equals(adminGroup)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,267 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.Json;
+import edu.illinois.techservices.elmr.SessionData;
+import edu.illinois.techservices.elmr.StoredSession;
+
+/**
+ * Manages the sessions stored in the session data store. Requests are:
+ *
+ * <dl>
+ * <dt>{@code GET /admin/sessions}
+ * <dd>Streams every session as a line of json (NDJSON) with its {@code key}, the {@code size} of
+ * its data and its {@code ttl} in seconds ({@code -1} if it does not expire). The optional
+ * parameter {@code attributes} is a comma separated list of attributes to include, and
+ * {@code pageSize} (default {@value #DEFAULT_PAGE_SIZE}) the number of sessions read from the store
+ * at a time.
+ * <dt>{@code POST /admin/sessions?mode=purge&attribute=<name>&value=<value>}
+ * <dd>Deletes every session whose attribute {@code <name>} is or includes {@code <value>}, or,
+ * without {@code value}, every session without the attribute. At most {@code rate} (default
+ * {@value #DEFAULT_PURGE_RATE}) sessions are deleted per second, {@code pageSize} at a time.
+ * Returns the number of sessions deleted as json.
+ * <dt>{@code POST /admin/sessions?mode=revoke&user=<id>}
+ * <dd>Deletes the session data of every session of the user whose
+ * {@code edu.illinois.techservices.elmr.servlets.UserIndexAttribute} was {@code <id>} when the
+ * session was established, for instance after the account was compromised. Returns the number of
+ * sessions deleted as json.
+ * </dl>
+ *
+ * <p>
+ * Access is restricted to administrators by {@link AdminFilter}.
+ */
+@WebServlet("/admin/sessions")
+public class AdminSessionsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 6622398604214779353L;
+
+  private static final Logger LOGGER = Logger.getLogger(AdminSessionsServlet.class.getName());
+
+  private static final int DEFAULT_PAGE_SIZE = 100;
+
+  private static final int MAX_PAGE_SIZE = 10_000;
+
+  private static final int DEFAULT_PURGE_RATE = 500;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    var sd = sessionData(response);
+    if (sd == null) {
+      return;
+    }
+    var pageSize = intParameter(request, "pageSize", DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+    var attributeNames = request.getParameter("attributes") == null ? List.<String>of()
+        : Arrays.asList(request.getParameter("attributes").split(","));
+    if (pageSize < 1) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Set the parameter pageSize to a number from 1 to " + MAX_PAGE_SIZE + ".");
+      return;
+    }
+    response.setContentType("application/x-ndjson");
+    response.setCharacterEncoding("UTF-8");
+    var pw = response.getWriter();
+    var written = new int[1];
+    try {
+      sd.scan(pageSize, session -> {
+        try {
+          pw.println(Json.renderObject(describe(session, attributeNames)));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        // Stop reading the store once the client has gone away.
+        if (++written[0] % pageSize == 0 && pw.checkError()) {
+          throw new UncheckedIOException(new IOException("Client stopped reading sessions."));
+        }
+      });
+    } catch (UnsupportedOperationException e) {
+      response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED, e.getMessage());
+      return;
+    } catch (UncheckedIOException e) {
+      LOGGER.fine(() -> "Stopped listing sessions after " + written[0] + ": " + e.getMessage());
+      return;
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Failed to list sessions.", e);
+      if (!response.isCommitted()) {
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+            "Internal failure: could not connect to session data store!");
+      }
+      return;
+    }
+    pw.flush();
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    var mode = request.getParameter("mode");
+    if ("purge".equals(mode)) {
+      purge(request, response);
+    } else if ("revoke".equals(mode)) {
+      revoke(request, response);
+    } else {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Set the parameter mode to purge or revoke.");
+    }
+  }
+
+  private void purge(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    var attribute = request.getParameter("attribute");
+    if (attribute == null || attribute.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Set the parameter attribute to the attribute selecting the sessions to purge.");
+      return;
+    }
+    var pageSize = intParameter(request, "pageSize", DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+    var rate = intParameter(request, "rate", DEFAULT_PURGE_RATE, Integer.MAX_VALUE);
+    if (pageSize < 1 || rate < 1) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Set the parameters pageSize and rate to positive numbers.");
+      return;
+    }
+    var sd = sessionData(response);
+    if (sd == null) {
+      return;
+    }
+    var filter = matching(attribute, request.getParameter("value"));
+    int purged;
+    try {
+      purged = sd.purge(pageSize, rate, filter);
+    } catch (UnsupportedOperationException e) {
+      response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED, e.getMessage());
+      return;
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Failed to purge sessions.", e);
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "Internal failure: could not connect to session data store!");
+      return;
+    }
+    LOGGER.info("Purged " + purged + " sessions by " + attribute + ".");
+    Map<String, Object> m = new LinkedHashMap<>();
+    m.put("purged", purged);
+    writeJson(m, response);
+  }
+
+  private void revoke(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    var user = request.getParameter("user");
+    if (user == null || user.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Set the parameter user to the user whose sessions are revoked.");
+      return;
+    }
+    var sd = sessionData(response);
+    if (sd == null) {
+      return;
+    }
+    int revoked;
+    try {
+      revoked = sd.destroyAll(user);
+    } catch (UnsupportedOperationException e) {
+      response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED, e.getMessage());
+      return;
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Failed to revoke the sessions of " + user + ".", e);
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "Internal failure: could not connect to session data store!");
+      return;
+    }
+    LOGGER.info("Revoked " + revoked + " sessions of " + user + ".");
+    Map<String, Object> m = new LinkedHashMap<>();
+    m.put("user", user);
+    m.put("revoked", revoked);
+    writeJson(m, response);
+  }
+
+  private SessionData sessionData(HttpServletResponse response) throws IOException {
+    var sd = (SessionData) getServletContext()
+        .getAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME);
+    if (sd == null) {
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+          "Session data store not configured!");
+    }
+    return sd;
+  }
+
+  private static Map<String, Object> describe(StoredSession session, List<String> attributeNames) {
+    Map<String, Object> m = new LinkedHashMap<>();
+    m.put("key", session.getKey());
+    m.put("size", session.getSessionData().length());
+    m.put("ttl", session.getTtlSeconds());
+    if (!attributeNames.isEmpty()) {
+      Map<String, Object> selected = new LinkedHashMap<>();
+      var attributes = attributes(session);
+      if (attributes != null) {
+        for (String name : attributeNames) {
+          selected.put(name, attributes.get(name));
+        }
+      }
+      m.put("attributes", selected);
+    }
+    return m;
+  }
+
+  /*
+   * Selects sessions whose attribute is or includes the value, or that lack the attribute if the
+   * value is null. Sessions whose data is not json are never selected.
+   */
+  private static Predicate<StoredSession> matching(String attribute, String value) {
+    return session -> {
+      var attributes = attributes(session);
+      if (attributes == null) {
+        return false;
+      }
+      var v = attributes.get(attribute);
+      if (value == null) {
+        return v == null;
+      }
+      return v instanceof List ? ((List<?>) v).contains(value) : value.equals(v);
+    };
+  }
+
+  private static Map<String, Object> attributes(StoredSession session) {
+    try {
+      return session.getAttributes();
+    } catch (RuntimeException e) {
+      LOGGER.fine(() -> "Data under " + session.getKey() + " is not json.");
+      return null;
+    }
+  }
+
+  private static int intParameter(HttpServletRequest request, String name, int defaultValue,
+      int max) {
+    var value = request.getParameter(name);
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Math.min(Integer.parseInt(value), max);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void writeJson(Map<String, Object> m, HttpServletResponse response)
+      throws IOException {
+    var json = Json.renderObject(m);
+    response.setContentType("application/json");
+    response.setContentLength(json.length());
+    var pw = response.getWriter();
+    pw.print(json);
+    pw.flush();
+  }
+}
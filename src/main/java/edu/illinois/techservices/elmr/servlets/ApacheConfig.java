@@ -1,36 +1,80 @@
 package edu.illinois.techservices.elmr.servlets;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Represents data from an Apache configuration.
+ *
+ * <p>
+ * The configuration is parsed once when it is constructed into an immutable index of the
+ * {@code JkEnvVar} names it defines; nothing is parsed again when the index is read. Directive
+ * names are matched without regard to case and commented lines are skipped, as Apache does.
+ *
+ * <p>
+ * When loaded from a file with {@link #load(Path)}, {@code Include} and {@code IncludeOptional}
+ * directives are followed, including wildcards and directories, in the order Apache reads them.
+ * Relative paths are resolved against the last {@code ServerRoot} directive or, before any, against
+ * the directory holding the file that was loaded. Files of {@value #MAP_THRESHOLD} bytes or more
+ * are memory-mapped instead of copied onto the heap. Every file and directory read is remembered
+ * so {@link #isStale()} can tell when the configuration has to be loaded again.
  */
 public class ApacheConfig {
 
   private static int BUF_SZ = 0x1000;
 
+  /**
+   * Size in bytes at which a file is memory-mapped instead of read.
+   */
+  static final int MAP_THRESHOLD = 0x10000;
+
+  /**
+   * Maximum depth of nested includes, the same as Apache's.
+   */
+  static final int MAX_INCLUDE_DEPTH = 128;
+
   private static final Logger LOGGER = Logger.getLogger(ApacheConfig.class.getName());
 
-  private static final Pattern JK_ENV_VAR_PATTERN = Pattern.compile("JkEnvVar\\s(\\w+)");
+  private final Path file;
+
+  private final List<String> jkEnvVars;
+
+  private final Set<String> jkEnvVarSet;
 
-  private final byte[] apacheConfigBytes;
+  private final List<Path> inputs;
+
+  private final List<Object> stamps;
+
+  private final Set<Path> directories;
 
   /**
    * Construct an ApacheConfig object.
-   * 
+   *
+   * <p>
+   * Since the configuration is not read from a file, {@code Include} directives are ignored.
+   *
    * @param in InputStream representing an Apache configuration file.
-   * @throws IOException if there's a problem reading the file.
    */
   public ApacheConfig(InputStream in) {
     var bos = new ByteArrayOutputStream();
@@ -48,33 +92,361 @@ public class ApacheConfig {
     } catch (IOException e) {
       LOGGER.log(Level.WARNING, "Failed to cache input! Caching an empty byte array!", e);
       bytes = new byte[0];
-    } finally {
-      apacheConfigBytes = bytes;
     }
+    var loader = new Loader(null);
+    try {
+      loader.parse(ByteBuffer.wrap(bytes));
+    } catch (IOException e) {
+      // Not possible without a file to resolve includes against.
+      throw new AssertionError(e);
+    }
+    this.file = null;
+    this.jkEnvVars = List.copyOf(loader.jkEnvVars);
+    this.jkEnvVarSet = Set.copyOf(loader.jkEnvVars);
+    this.inputs = List.of();
+    this.stamps = List.of();
+    this.directories = Set.of();
+  }
+
+  private ApacheConfig(Path file, Loader loader) {
+    this.file = file;
+    this.jkEnvVars = List.copyOf(loader.jkEnvVars);
+    this.jkEnvVarSet = Set.copyOf(loader.jkEnvVars);
+    this.inputs = List.copyOf(loader.inputs);
+    this.stamps = Collections.unmodifiableList(new ArrayList<>(loader.stamps));
+    this.directories = Set.copyOf(loader.directories);
   }
 
   /**
-   * Returns a List of the value of all lines defining {@code JkEnvVar}s.
+   * Loads the given Apache configuration file and the files it includes.
+   *
+   * <p>
+   * Included files that cannot be found or read are logged and skipped.
+   *
+   * @param file the main configuration file.
+   * @return the loaded configuration.
+   * @throws IOException if the main configuration file cannot be read.
+   */
+  public static ApacheConfig load(Path file) throws IOException {
+    var absoluteFile = file.toAbsolutePath();
+    var loader = new Loader(absoluteFile.getParent());
+    loader.readFile(absoluteFile);
+    LOGGER.config("Loaded " + loader.jkEnvVars.size() + " JkEnvVars from "
+        + loader.inputs.size() + " files and directories starting at " + absoluteFile + ".");
+    return new ApacheConfig(absoluteFile, loader);
+  }
+
+  /**
+   * Returns a List of the value of all lines defining {@code JkEnvVar}s, without duplicates, in the
+   * order they were defined. The List cannot be modified.
    */
   public List<String> getJkEnvVars() {
-    List<String> jkEnvVars = new ArrayList<>();
-    String line = null;
-    try (var reader =
-        new BufferedReader(new InputStreamReader(new ByteArrayInputStream(apacheConfigBytes)))) {
-      Matcher m = null;
-      while ((line = reader.readLine()) != null) {
-        m = JK_ENV_VAR_PATTERN.matcher(line);
-        while (m.find()) {
-          String jkEnvVar = m.group(1);
+    return jkEnvVars;
+  }
+
+  /**
+   * Returns {@code true} if a {@code JkEnvVar} with the given name is defined.
+   *
+   * @param name name of the environment variable.
+   */
+  public boolean hasJkEnvVar(String name) {
+    return jkEnvVarSet.contains(name);
+  }
+
+  /**
+   * Returns the file this configuration was loaded from or {@code null} if it was read from a
+   * stream.
+   */
+  Path getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the directories that have to be watched to notice changes to this configuration.
+   */
+  Set<Path> getDirectories() {
+    return directories;
+  }
+
+  /**
+   * Returns {@code true} if a file or directory read while loading this configuration was changed,
+   * created or deleted since.
+   */
+  boolean isStale() {
+    for (int i = 0; i < inputs.size(); i++) {
+      if (!Objects.equals(stamp(inputs.get(i)), stamps.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Object stamp(Path path) {
+    try {
+      var realPath = path.toRealPath();
+      return List.of(realPath, Files.size(realPath), Files.getLastModifiedTime(realPath));
+    } catch (IOException e) {
+      // Missing; remembered so creating it is noticed.
+      return null;
+    }
+  }
+
+  /**
+   * Collects the index while one configuration is loaded.
+   */
+  private static final class Loader {
+
+    private final LinkedHashSet<String> jkEnvVars = new LinkedHashSet<>();
+
+    private final List<Path> inputs = new ArrayList<>();
+
+    private final List<Object> stamps = new ArrayList<>();
+
+    private final Set<Path> directories = new LinkedHashSet<>();
+
+    private final Deque<Path> including = new ArrayDeque<>();
+
+    private Path serverRoot;
+
+    private Loader(Path serverRoot) {
+      this.serverRoot = serverRoot;
+    }
+
+    private void remember(Path path, boolean isDirectory) {
+      inputs.add(path);
+      stamps.add(stamp(path));
+      directories.add(isDirectory ? path : path.getParent());
+    }
+
+    private void readFile(Path path) throws IOException {
+      remember(path, false);
+      var realPath = path.toRealPath();
+      if (including.contains(realPath)) {
+        LOGGER.warning("Ignoring recursive include of " + path + ".");
+        return;
+      }
+      if (including.size() >= MAX_INCLUDE_DEPTH) {
+        LOGGER.warning("Ignoring " + path + "; includes are nested more than "
+            + MAX_INCLUDE_DEPTH + " deep.");
+        return;
+      }
+      LOGGER.fine("Reading " + path);
+      including.push(realPath);
+      try {
+        parse(read(realPath));
+      } finally {
+        including.pop();
+      }
+    }
+
+    private void parse(ByteBuffer buf) throws IOException {
+      var pos = buf.position();
+      var limit = buf.limit();
+      while (pos < limit) {
+        var eol = pos;
+        while (eol < limit && buf.get(eol) != '\n') {
+          eol++;
+        }
+        parseLine(buf, pos, eol);
+        pos = eol + 1;
+      }
+    }
+
+    private void parseLine(ByteBuffer buf, int start, int end) throws IOException {
+      var directiveStart = skipSpace(buf, start, end);
+      if (directiveStart == end || buf.get(directiveStart) == '#') {
+        return;
+      }
+      var directiveEnd = skipToken(buf, directiveStart, end);
+      var argStart = skipSpace(buf, directiveEnd, end);
+      if (equalsIgnoreCase(buf, directiveStart, directiveEnd, "JkEnvVar")) {
+        if (argStart < end) {
+          var jkEnvVar = string(buf, argStart, skipToken(buf, argStart, end));
           LOGGER.finer("Found JkEnvVar " + jkEnvVar);
           jkEnvVars.add(jkEnvVar);
         }
+      } else if (equalsIgnoreCase(buf, directiveStart, directiveEnd, "Include")) {
+        include(argument(buf, argStart, end), false);
+      } else if (equalsIgnoreCase(buf, directiveStart, directiveEnd, "IncludeOptional")) {
+        include(argument(buf, argStart, end), true);
+      } else if (equalsIgnoreCase(buf, directiveStart, directiveEnd, "ServerRoot")) {
+        var root = argument(buf, argStart, end);
+        if (!root.isEmpty()) {
+          serverRoot = serverRoot == null ? Path.of(root) : serverRoot.resolve(root);
+        }
       }
-    } catch (IOException e) {
-      LOGGER.log(Level.WARNING, "Failed to read configuration, returning empty list of env vars!",
-          e);
     }
-    return jkEnvVars;
-  }
 
+    private void include(String pattern, boolean optional) throws IOException {
+      if (pattern.isEmpty()) {
+        return;
+      }
+      if (serverRoot == null) {
+        LOGGER.fine("Ignoring include of " + pattern + "; configuration was not read from a file.");
+        return;
+      }
+      var path = serverRoot.resolve(pattern).normalize();
+      if (!hasWildcard(pattern)) {
+        if (Files.isDirectory(path)) {
+          includeDirectory(path);
+        } else if (Files.exists(path)) {
+          readIncluded(path);
+        } else {
+          remember(path, false);
+          if (!optional) {
+            LOGGER.warning("Included file " + path + " not found.");
+          }
+        }
+        return;
+      }
+
+      // Expand wildcards one path component at a time; only directories match before the last.
+      var matches = new ArrayList<Path>();
+      matches.add(path.getRoot());
+      for (int i = 0; i < path.getNameCount(); i++) {
+        var name = path.getName(i).toString();
+        var last = i == path.getNameCount() - 1;
+        var next = new ArrayList<Path>();
+        for (Path match : matches) {
+          if (!hasWildcard(name)) {
+            var child = match.resolve(name);
+            if (last || Files.isDirectory(child)) {
+              next.add(child);
+            }
+            continue;
+          }
+          if (!Files.isDirectory(match)) {
+            continue;
+          }
+          remember(match, true);
+          var matcher = FileSystems.getDefault().getPathMatcher("glob:" + name);
+          for (Path child : list(match)) {
+            var childName = child.getFileName();
+            // A leading period has to be matched explicitly, as in Apache.
+            if (childName.toString().startsWith(".") && !name.startsWith(".")) {
+              continue;
+            }
+            if (matcher.matches(childName) && (last || Files.isDirectory(child))) {
+              next.add(child);
+            }
+          }
+        }
+        matches = next;
+      }
+      if (matches.isEmpty() && !optional) {
+        LOGGER.warning("No files match included pattern " + path + ".");
+      }
+      for (Path match : matches) {
+        if (Files.isDirectory(match)) {
+          includeDirectory(match);
+        } else if (Files.exists(match)) {
+          readIncluded(match);
+        }
+      }
+    }
+
+    private void includeDirectory(Path directory) throws IOException {
+      remember(directory, true);
+      for (Path child : list(directory)) {
+        if (Files.isDirectory(child)) {
+          includeDirectory(child);
+        } else {
+          readIncluded(child);
+        }
+      }
+    }
+
+    private void readIncluded(Path path) throws IOException {
+      try {
+        readFile(path);
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Problem reading included file " + path + "; skipping it.", e);
+      }
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+      var children = new TreeSet<Path>();
+      try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+        for (Path child : ds) {
+          children.add(child);
+        }
+      } catch (NoSuchFileException e) {
+        // Deleted while loading; noticed through its stamp.
+      }
+      return new ArrayList<>(children);
+    }
+
+    private static ByteBuffer read(Path path) throws IOException {
+      try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        var size = channel.size();
+        if (size >= MAP_THRESHOLD) {
+          // The mapping stays valid after the channel is closed.
+          return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        var buf = ByteBuffer.allocate((int) size);
+        while (buf.hasRemaining() && channel.read(buf) >= 0) {
+          // Keep reading until the buffer is full or the end of the file.
+        }
+        buf.flip();
+        return buf;
+      }
+    }
+
+    private static boolean hasWildcard(String s) {
+      return s.indexOf('*') >= 0 || s.indexOf('?') >= 0 || s.indexOf('[') >= 0;
+    }
+
+    private static boolean isSpace(byte b) {
+      return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static int skipSpace(ByteBuffer buf, int pos, int end) {
+      while (pos < end && isSpace(buf.get(pos))) {
+        pos++;
+      }
+      return pos;
+    }
+
+    private static int skipToken(ByteBuffer buf, int pos, int end) {
+      while (pos < end && !isSpace(buf.get(pos))) {
+        pos++;
+      }
+      return pos;
+    }
+
+    /**
+     * Returns the argument starting at the given position, without quotes if it is quoted.
+     */
+    private static String argument(ByteBuffer buf, int start, int end) {
+      if (start < end && buf.get(start) == '"') {
+        var close = start + 1;
+        while (close < end && buf.get(close) != '"') {
+          close++;
+        }
+        return string(buf, start + 1, close);
+      }
+      return string(buf, start, skipToken(buf, start, end));
+    }
+
+    private static boolean equalsIgnoreCase(ByteBuffer buf, int start, int end, String s) {
+      if (end - start != s.length()) {
+        return false;
+      }
+      for (int i = 0; i < s.length(); i++) {
+        if (Character.toLowerCase((char) buf.get(start + i)) != Character
+            .toLowerCase(s.charAt(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static String string(ByteBuffer buf, int start, int end) {
+      var bytes = new byte[end - start];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = buf.get(start + i);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
 }
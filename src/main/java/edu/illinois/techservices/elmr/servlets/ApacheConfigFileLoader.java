@@ -1,16 +1,16 @@
 package edu.illinois.techservices.elmr.servlets;
 
 import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
-import javax.servlet.annotation.WebListener;
 
 /**
  * Loads an apache configuration file.
- * 
+ *
  * <p>
  * The name for the configuration file can be set 2 ways and are searched in this order:
  * <ol>
@@ -19,35 +19,71 @@ import javax.servlet.annotation.WebListener;
  * <li>The value of the context parameter
  * {@code edu.illinois.techservices.elmr.servlets.ApacheConfigFile}.
  * </ol>
- * 
+ *
  * <p>
  * If the file cannot be found, rather than fail the startup, this listener will load an empty
  * configuration and empty values will be returned from it.
+ *
+ * <p>
+ * Files included by the configuration file are loaded with it (see {@link ApacheConfig}). Unless
+ * {@code edu.illinois.techservices.elmr.servlets.ApacheConfig.DisableWatch} is set to
+ * {@code true}, the files are watched by an {@link ApacheConfigWatcher} and the context parameter
+ * is replaced with a new configuration whenever any of them change.
+ *
+ * <p>
+ * Run at startup by {@link StartupContextListener}.
  */
-@WebListener
 public class ApacheConfigFileLoader implements ServletContextListener {
 
   private static final Logger LOGGER = Logger.getLogger(ApacheConfigFileLoader.class.getName());
 
+  private ApacheConfigWatcher watcher;
+
   @Override
   public void contextInitialized(ServletContextEvent sce) {
     LOGGER.config("Initializing data from Apache config file...");
 
-    var apacheConfigFilename = ElmrParameters.getString(sce.getServletContext(),
+    var sc = sce.getServletContext();
+    var apacheConfigFilename = ElmrParameters.getString(sc,
         ServletConstants.APACHE_CONFIG_CONTEXT_PARAM_NAME, ServletConstants.EMPTY_STRING);
 
     ApacheConfig acf = null;
-    try {
-      acf = (apacheConfigFilename == null || apacheConfigFilename.isEmpty())
-          ? new ApacheConfig(new ByteArrayInputStream(new byte[0]))
-          : new ApacheConfig(new FileInputStream(apacheConfigFilename));
-    } catch (NullPointerException | FileNotFoundException e) {
-      LOGGER.warning("Apache config file not found. Creating an empty Apache config.");
+    if (apacheConfigFilename != null && !apacheConfigFilename.isEmpty()) {
+      try {
+        acf = ApacheConfig.load(Path.of(apacheConfigFilename));
+      } catch (IOException e) {
+        LOGGER.warning("Apache config file not found. Creating an empty Apache config.");
+      }
+    }
+    if (acf == null) {
       acf = new ApacheConfig(new ByteArrayInputStream(ServletConstants.EMPTY_BYTE_ARRAY));
     }
 
-    sce.getServletContext().setAttribute(ServletConstants.APACHE_CONFIG_CONTEXT_PARAM_NAME, acf);
+    sc.setAttribute(ServletConstants.APACHE_CONFIG_CONTEXT_PARAM_NAME, acf);
     LOGGER.config("Apache configuration cached; access with context property "
         + ServletConstants.APACHE_CONFIG_CONTEXT_PARAM_NAME);
+
+    if (acf.getFile() == null
+        || ElmrParameters.getBoolean(sc, ServletConstants.APACHE_CONFIG_DISABLE_WATCH, false)) {
+      return;
+    }
+    try {
+      watcher = new ApacheConfigWatcher(acf,
+          c -> sc.setAttribute(ServletConstants.APACHE_CONFIG_CONTEXT_PARAM_NAME, c),
+          ApacheConfigWatcher.DEFAULT_QUIET_MILLIS);
+      watcher.start();
+    } catch (IOException e) {
+      // Not fatal: the configuration loaded above is still good.
+      LOGGER.log(Level.WARNING, "Cannot watch " + apacheConfigFilename
+          + " for changes; restart to pick up changes.", e);
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    if (watcher != null) {
+      watcher.close();
+      watcher = null;
+    }
   }
 }
@@ -0,0 +1,87 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the files of an {@link ApacheConfig} and publishes a new one whenever any of them, or the
+ * set of files matched by its includes, changes.
+ *
+ * <p>
+ * Every directory holding a file that was read, or that was searched for included files, is
+ * watched as described in {@link DirectoryWatcher}. A reload only happens if
+ * {@link ApacheConfig#isStale()} says so. If the main file cannot be read the current configuration
+ * is kept and the problem is logged.
+ */
+final class ApacheConfigWatcher extends DirectoryWatcher {
+
+  private static final Logger LOGGER = Logger.getLogger(ApacheConfigWatcher.class.getName());
+
+  static final long DEFAULT_QUIET_MILLIS = 500L;
+
+  private final Consumer<ApacheConfig> publisher;
+
+  private volatile ApacheConfig current;
+
+  /**
+   * Constructs a watcher for the files of the given configuration.
+   *
+   * @param initial     the configuration loaded at startup; must have been loaded from a file.
+   * @param publisher   called with each newly loaded configuration.
+   * @param quietMillis milliseconds without changes to wait before reloading.
+   * @throws IOException if the directories cannot be watched.
+   */
+  ApacheConfigWatcher(ApacheConfig initial, Consumer<ApacheConfig> publisher, long quietMillis)
+      throws IOException {
+    super("apache-config", quietMillis);
+    this.current = initial;
+    this.publisher = publisher;
+    watchDirectories(initial);
+  }
+
+  /**
+   * Returns the most recently loaded configuration.
+   */
+  ApacheConfig getCurrent() {
+    return current;
+  }
+
+  /**
+   * Reloads the configuration on the calling thread if any of its files changed since it was last
+   * loaded and publishes the new configuration.
+   *
+   * @return {@code true} if a new configuration was published.
+   */
+  @Override
+  synchronized boolean reload() {
+    if (!current.isStale()) {
+      return false;
+    }
+    var file = current.getFile();
+    try {
+      var config = ApacheConfig.load(file);
+      // Includes may now match files in directories that were not watched before.
+      watchDirectories(config);
+      current = config;
+      publisher.accept(config);
+      LOGGER.info("Reloaded " + config.getJkEnvVars().size() + " JkEnvVars from " + file + ".");
+      return true;
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING,
+          "Problem reloading " + file + "! Keeping the current Apache configuration.", e);
+      return false;
+    }
+  }
+
+  private void watchDirectories(ApacheConfig config) throws IOException {
+    for (Path directory : config.getDirectories()) {
+      if (Files.isDirectory(directory)) {
+        watchDirectory(directory);
+      }
+    }
+  }
+}
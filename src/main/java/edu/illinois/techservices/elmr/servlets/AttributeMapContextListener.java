@@ -1,23 +1,17 @@
 package edu.illinois.techservices.elmr.servlets;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Collections;
+import java.nio.file.Path;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
-import javax.servlet.annotation.WebListener;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParserFactory;
 import org.xml.sax.SAXException;
-import edu.illinois.techservices.elmr.AttributeMapHandler;
 import edu.illinois.techservices.elmr.AttributeMapReader;
 
 /**
  * Loads a List of attribute names at startup and caches it in a context parameter.
- * 
+ *
  * <p>
  * The name for an {@code attribute-map.xml} file can be set 3 ways and are searched in this order:
  * <ol>
@@ -28,40 +22,71 @@ import edu.illinois.techservices.elmr.AttributeMapReader;
  * <li>The default location of the file {@code /etc/shibboleth/attribute-map.xml} (if neither of the
  * above are set).
  * </ol>
- * 
+ *
  * <p>
  * When set, the file is loaded and parsed for the {@code id} values of the {@code Attribute}
- * elements. These are stored in a List that is saved to a context parameter named
- * {@code edu.illinois.techservices.elmr.servlets.attributes}. This List can be accessed from the
- * servlets in this application.
+ * elements. These are stored in an {@link AttributeTable} that is saved to a context parameter
+ * named {@code edu.illinois.techservices.elmr.servlets.attributes}. This List can be accessed from
+ * the servlets in this application.
+ *
+ * <p>
+ * Unless {@code edu.illinois.techservices.elmr.AttributeMapReader.DisableWatch} is set to
+ * {@code true}, the file is watched by an {@link AttributeMapWatcher} and the context parameter is
+ * replaced with a new table whenever the file changes.
+ *
+ * <p>
+ * Run at startup by {@link StartupContextListener}.
  */
-@WebListener
 public class AttributeMapContextListener implements ServletContextListener {
 
   private static final Logger LOGGER =
       Logger.getLogger(AttributeMapContextListener.class.getName());
 
+  private AttributeMapWatcher watcher;
+
   @Override
   public void contextInitialized(ServletContextEvent sce) {
     LOGGER.config("Initializing attribute map ids...");
 
-    var fileLocation = ElmrParameters.getString(sce.getServletContext(),
-        AttributeMapReader.FILE_SYSPROP, AttributeMapReader.DEFAULT_FILE_LOCATION);
+    var sc = sce.getServletContext();
+    var fileLocation = ElmrParameters.getString(sc, AttributeMapReader.FILE_SYSPROP,
+        AttributeMapReader.DEFAULT_FILE_LOCATION);
 
     LOGGER.config("Caching Shibboleth attributes from file " + fileLocation);
-    AttributeMapHandler amh = new AttributeMapHandler();
-    try (var in = new FileInputStream(new File(fileLocation))) {
-      var parserFactory = SAXParserFactory.newInstance();
-      var parser = parserFactory.newSAXParser();
-      parser.parse(in, amh);
-    } catch (ParserConfigurationException | SAXException | IOException e) {
+    var file = Path.of(fileLocation);
+    AttributeTable table;
+    try {
+      table = AttributeTable.parse(file, 1L);
+    } catch (SAXException | IOException e) {
       LOGGER.log(Level.SEVERE, "Problem reading " + fileLocation + "! Cannot start application!",
           e);
       throw new RuntimeException(e);
     }
-    sce.getServletContext().setAttribute(ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME,
-        Collections.unmodifiableList(amh.getAttributeNames()));
+    sc.setAttribute(ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME, table);
     LOGGER.config("Attributes cached; access with context property "
         + ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME);
+
+    if (ElmrParameters.getBoolean(sc, AttributeMapReader.DISABLE_WATCH_SYSPROP, false)) {
+      LOGGER.config("Not watching " + fileLocation + " for changes.");
+      return;
+    }
+    try {
+      watcher = new AttributeMapWatcher(file, table,
+          t -> sc.setAttribute(ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME, t),
+          AttributeMapWatcher.DEFAULT_QUIET_MILLIS);
+      watcher.start();
+    } catch (IOException e) {
+      // Not fatal: the attribute names loaded above are still good.
+      LOGGER.log(Level.WARNING,
+          "Cannot watch " + fileLocation + " for changes; restart to pick up changes.", e);
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    if (watcher != null) {
+      watcher.close();
+      watcher = null;
+    }
   }
 }
@@ -0,0 +1,101 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.xml.sax.SAXException;
+
+/**
+ * Watches an {@code attribute-map.xml} file and publishes a new {@link AttributeTable} whenever it
+ * changes.
+ *
+ * <p>
+ * The directory holding the file is watched as described in {@link DirectoryWatcher}. A reload
+ * only happens if the file's real path, size or modification time changed. If the new file cannot
+ * be parsed the current table is kept and the problem is logged.
+ */
+final class AttributeMapWatcher extends DirectoryWatcher {
+
+  private static final Logger LOGGER = Logger.getLogger(AttributeMapWatcher.class.getName());
+
+  static final long DEFAULT_QUIET_MILLIS = 500L;
+
+  private final Path file;
+
+  private final Consumer<AttributeTable> publisher;
+
+  private volatile AttributeTable current;
+
+  private Object stamp;
+
+  /**
+   * Constructs a watcher for the given file.
+   *
+   * @param file        the file to watch.
+   * @param initial     the table loaded from the file at startup.
+   * @param publisher   called with each newly loaded table.
+   * @param quietMillis milliseconds without changes to wait before reloading.
+   * @throws IOException if the directory holding the file cannot be watched.
+   */
+  AttributeMapWatcher(Path file, AttributeTable initial, Consumer<AttributeTable> publisher,
+      long quietMillis) throws IOException {
+    super("attribute-map", quietMillis);
+    this.file = file.toAbsolutePath();
+    this.current = initial;
+    this.publisher = publisher;
+    this.stamp = stamp();
+    watchDirectory(this.file.getParent());
+  }
+
+  /**
+   * Returns the most recently loaded table.
+   */
+  AttributeTable getCurrent() {
+    return current;
+  }
+
+  /**
+   * Reloads the file on the calling thread if it changed since it was last loaded and publishes
+   * the new table.
+   *
+   * @return {@code true} if a new table was published.
+   */
+  @Override
+  synchronized boolean reload() {
+    var newStamp = stamp();
+    if (newStamp == null || newStamp.equals(stamp)) {
+      return false;
+    }
+    try {
+      var table = AttributeTable.parse(file, current.getVersion() + 1);
+      stamp = newStamp;
+      current = table;
+      publisher.accept(table);
+      LOGGER.info("Reloaded " + table.size() + " attribute names from " + file + " (version "
+          + table.getVersion() + ").");
+      return true;
+    } catch (IOException | SAXException e) {
+      LOGGER.log(Level.WARNING,
+          "Problem reloading " + file + "! Keeping attribute names from version "
+              + current.getVersion() + ".",
+          e);
+      // Remember the broken file so it is not parsed again until it changes.
+      stamp = newStamp;
+      return false;
+    }
+  }
+
+  private Object stamp() {
+    try {
+      var realPath = file.toRealPath();
+      return List.of(realPath, Files.size(realPath), Files.getLastModifiedTime(realPath));
+    } catch (IOException e) {
+      // The file is missing, possibly in the middle of being replaced.
+      return null;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.SAXException;
+import edu.illinois.techservices.elmr.AttributeMapHandler;
+
+/**
+ * Immutable, versioned List of the attribute names read from an {@code attribute-map.xml} file.
+ *
+ * <p>
+ * A table never changes once loaded. When the file changes a new table with a higher version is
+ * loaded and replaces the old one in the context parameter
+ * {@code edu.illinois.techservices.elmr.servlets.attributes}, so a request that reads the context
+ * parameter once sees a consistent set of names for its whole duration. The table is a
+ * {@link List} so code that reads the context parameter as a List of names keeps working.
+ */
+final class AttributeTable extends AbstractList<String> implements RandomAccess {
+
+  private final List<String> names;
+
+  private final Set<String> nameSet;
+
+  private final long version;
+
+  private final long loadedMillis;
+
+  AttributeTable(List<String> names, long version) {
+    this.names = List.copyOf(names);
+    // Attribute maps may list the same id more than once; the Set only speeds up contains.
+    this.nameSet = Set.copyOf(names);
+    this.version = version;
+    this.loadedMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * Parses an {@code attribute-map.xml} file into a new table.
+   *
+   * @param file    the file to parse.
+   * @param version version of the new table.
+   * @return the new table.
+   * @throws IOException  if the file cannot be read.
+   * @throws SAXException if the file cannot be parsed.
+   */
+  static AttributeTable parse(Path file, long version) throws IOException, SAXException {
+    var amh = new AttributeMapHandler();
+    try (var in = Files.newInputStream(file)) {
+      var parserFactory = SAXParserFactory.newInstance();
+      var parser = parserFactory.newSAXParser();
+      parser.parse(in, amh);
+    } catch (ParserConfigurationException e) {
+      throw new SAXException(e);
+    }
+    return new AttributeTable(amh.getAttributeNames(), version);
+  }
+
+  /**
+   * Returns the version of this table. Each reload increments the version by 1.
+   */
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the time this table was loaded in milliseconds since the epoch.
+   */
+  long getLoadedMillis() {
+    return loadedMillis;
+  }
+
+  @Override
+  public String get(int index) {
+    return names.get(index);
+  }
+
+  @Override
+  public int size() {
+    return names.size();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return nameSet.contains(o);
+  }
+}
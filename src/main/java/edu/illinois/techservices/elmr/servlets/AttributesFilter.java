@@ -10,11 +10,16 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpFilter;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import edu.illinois.techservices.elmr.Json;
+import edu.illinois.techservices.elmr.CookieEvent;
 import edu.illinois.techservices.elmr.SessionData;
 
 /**
  * WebFilter that is a companion to {@link AttributesServlet} that will redirect
+ *
+ * <p>
+ * When the session key cookie is present the request is passed on as a
+ * {@link SessionAttributesRequest}, so the stored session data is only fetched if an attribute is
+ * read.
  */
 @WebFilter(servletNames = {"AttributesServlet"})
 public class AttributesFilter extends HttpFilter {
@@ -26,6 +31,8 @@ public class AttributesFilter extends HttpFilter {
   @Override
   protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
       throws IOException, ServletException {
+    var cookieEvent = new CookieEvent();
+    cookieEvent.begin();
     var cookies = req.getCookies();
     var sessionKeyCookieFound = false;
     var encodedKey = "";
@@ -39,6 +46,13 @@ public class AttributesFilter extends HttpFilter {
         }
       }
     }
+    cookieEvent.end();
+    if (cookieEvent.shouldCommit()) {
+      cookieEvent.cookieName = ServletConstants.SESSION_KEY_COOKIE_NAME;
+      cookieEvent.action = sessionKeyCookieFound ? "read" : "missing";
+      cookieEvent.valueSize = encodedKey.length();
+      cookieEvent.commit();
+    }
 
     if (!sessionKeyCookieFound) {
       LOGGER.fine("Did not find a session key, redirecting to create a session.");
@@ -58,12 +72,8 @@ public class AttributesFilter extends HttpFilter {
         LOGGER.warning("Session data object not set!");
         return "Session data object not set!";
       });
-      var sessionDataJson = sd.get(encodedKey.getBytes());
-      var sessionData = Json.marshal(sessionDataJson);
-      if (sessionData != null) {
-        sessionData.keySet().stream().forEach(k -> req.setAttribute(k, sessionData.get(k)));
-      }
-      chain.doFilter(req, res);
+      // Session data is fetched and decoded only when the request reads an attribute.
+      chain.doFilter(new SessionAttributesRequest(req, sd, encodedKey.getBytes()), res);
     }
   }
 }
@@ -2,7 +2,6 @@ package edu.illinois.techservices.elmr.servlets;
 
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.ServletException;
@@ -34,18 +33,15 @@ public class AttributesServlet extends HttpServlet {
     var attrNames = (List<String>) getServletContext()
         .getAttribute(ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME);
 
+    // Only the configured attributes are shown, so only those are looked up.
     Map<String, Object> reqAttrs = new HashMap<>();
-    for (Iterator<String> reqAttrNames = req.getAttributeNames().asIterator(); reqAttrNames
-        .hasNext();) {
-      String reqAttrName = reqAttrNames.next();
-      reqAttrs.put(reqAttrName, req.getAttribute(reqAttrName));
+    for (String attrName : attrNames) {
+      reqAttrs.put(attrName, req.getAttribute(attrName));
     }
     var logoutUrl = getServletContext().getContextPath() + "/session?mode=logout";
-    var html = HtmlSupport.renderAttributesPage(logoutUrl, attrNames, reqAttrs);
     resp.setContentType("text/html; charset=UTF-8");
-    resp.setContentLength(html.length);
     try (var os = resp.getOutputStream()) {
-      os.write(html);
+      HtmlSupport.writeAttributesPage(os, logoutUrl, attrNames, reqAttrs);
     }
   }
 }
@@ -11,12 +11,18 @@ import javax.servlet.http.HttpServletResponse;
 
 /**
  * Servlet that will return a page listing the Apache, Tomcat and Shibboleth configuration.
- * 
+ *
  * <p>
  * This is a diagnostics servlet and is not intended for production use. It should be protected in
  * such a way that only administrators can get to it. The page shows only the attributes configured;
  * no user specific information is displayed.
- * 
+ *
+ * <p>
+ * The page only depends on the attribute names from {@code attribute-map.xml} and the Apache
+ * configuration, so it is rendered once and the bytes are kept until either of them is reloaded.
+ * Responses carry an {@code ETag}; a request with a matching {@code If-None-Match} header is
+ * answered with {@link HttpServletResponse#SC_NOT_MODIFIED Not Modified} and no body.
+ *
  * <p>
  * This servlet only responds to a GET request. All other methods will respond with a
  * {@link HttpServletResponse#SC_METHOD_NOT_ALLOWED Method Not Allowed} status.
@@ -26,6 +32,8 @@ public class ConfigServlet extends HttpServlet {
 
   private static final long serialVersionUID = 6843101899645906297L;
 
+  private transient volatile RenderedPage page;
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException {
@@ -42,6 +50,30 @@ public class ConfigServlet extends HttpServlet {
     @SuppressWarnings("unchecked")
     List<String> userAttributes = (List<String>) getServletContext()
         .getAttribute(ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME);
+
+    var current = page;
+    if (current == null || !current.isFor(userAttributes, apacheConfig)) {
+      // Reloads replace the context attributes with new instances, so a different instance means
+      // the page is stale. Two requests racing here both render the same bytes.
+      current = render(userAttributes, apacheConfig);
+      page = current;
+    }
+
+    response.setHeader(ETags.ETAG_HEADER, current.etag);
+    response.setHeader("Cache-Control", "no-cache");
+    if (ETags.matches(request.getHeader(ETags.IF_NONE_MATCH_HEADER), current.etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    response.setContentType("text/html; charset=UTF-8");
+    response.setContentLength(current.html.length);
+    try (var os = response.getOutputStream()) {
+      os.write(current.html);
+    }
+  }
+
+  private RenderedPage render(List<String> userAttributes, ApacheConfig apacheConfig)
+      throws IOException {
     var jkEnvVars = apacheConfig.getJkEnvVars();
 
     var allAttrs = new TreeSet<String>();
@@ -49,11 +81,32 @@ public class ConfigServlet extends HttpServlet {
     allAttrs.addAll(jkEnvVars);
 
     var logoutUrl = getServletContext().getContextPath() + "/session?mode=logout";
-    var html = HtmlSupport.renderConfigPage(logoutUrl, allAttrs, apacheConfig.getJkEnvVars(), userAttributes);
-    response.setContentType("text/html; charset=UTF-8");
-    response.setContentLength(html.length);
-    try (var os = response.getOutputStream()) {
-      os.write(html);
+    var html = HtmlSupport.renderConfigPage(logoutUrl, allAttrs, jkEnvVars, userAttributes);
+    return new RenderedPage(userAttributes, apacheConfig, html);
+  }
+
+  /**
+   * Rendered bytes of the page and the configuration they were rendered from.
+   */
+  private static final class RenderedPage {
+
+    private final List<String> userAttributes;
+
+    private final ApacheConfig apacheConfig;
+
+    private final byte[] html;
+
+    private final String etag;
+
+    private RenderedPage(List<String> userAttributes, ApacheConfig apacheConfig, byte[] html) {
+      this.userAttributes = userAttributes;
+      this.apacheConfig = apacheConfig;
+      this.html = html;
+      this.etag = ETags.of(html);
+    }
+
+    private boolean isFor(List<String> userAttributes, ApacheConfig apacheConfig) {
+      return this.userAttributes == userAttributes && this.apacheConfig == apacheConfig;
     }
   }
 }
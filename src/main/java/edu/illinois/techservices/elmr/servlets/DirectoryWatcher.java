@@ -0,0 +1,111 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches directories holding configuration files and calls {@link #reload()} after they change.
+ *
+ * <p>
+ * The directories are watched with a {@link WatchService} on a single daemon thread, so parsing
+ * never happens while serving a request. Editors and configuration management tools often replace
+ * a file in several steps (truncate and write, write and rename, or swap a symbolic link), so after
+ * the first event the watcher waits until the directories have been quiet for {@code quietMillis}
+ * before reloading. Subclasses decide whether anything they read actually changed.
+ */
+abstract class DirectoryWatcher implements AutoCloseable {
+
+  private static final Logger LOGGER = Logger.getLogger(DirectoryWatcher.class.getName());
+
+  private final String description;
+
+  private final long quietMillis;
+
+  private final WatchService watchService;
+
+  private final Thread thread;
+
+  private final Set<Path> directories = new HashSet<>();
+
+  /**
+   * Constructs a watcher that is not yet watching any directories.
+   *
+   * @param description what is being watched, used in the thread name and log messages.
+   * @param quietMillis milliseconds without changes to wait before reloading.
+   * @throws IOException if a watch service cannot be created.
+   */
+  DirectoryWatcher(String description, long quietMillis) throws IOException {
+    this.description = description;
+    this.quietMillis = quietMillis;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    this.thread = new Thread(this::watch, "elmr-" + description + "-watcher");
+    this.thread.setDaemon(true);
+  }
+
+  /**
+   * Watches the given directory for created, modified and deleted entries. Watching a directory
+   * more than once has no effect.
+   *
+   * @param directory the directory to watch.
+   * @throws IOException if the directory cannot be watched.
+   */
+  synchronized void watchDirectory(Path directory) throws IOException {
+    var dir = directory.toAbsolutePath();
+    if (directories.add(dir)) {
+      dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+  }
+
+  /**
+   * Starts watching in the background.
+   */
+  void start() {
+    thread.start();
+    LOGGER.config("Watching " + description + " for changes in " + directories + ".");
+  }
+
+  /**
+   * Reloads on the calling thread if anything changed since it was last loaded.
+   *
+   * @return {@code true} if something new was loaded.
+   */
+  abstract boolean reload();
+
+  @Override
+  public void close() {
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Problem closing watch service.", e);
+    }
+    thread.interrupt();
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        var key = watchService.take();
+        key.pollEvents();
+        key.reset();
+        // Wait for the directories to be quiet so a file being rewritten is not read half-written.
+        while ((key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+          key.pollEvents();
+          key.reset();
+        }
+        reload();
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      LOGGER.config("Stopped watching " + description + ".");
+    }
+  }
+}
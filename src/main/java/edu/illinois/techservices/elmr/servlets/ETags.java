@@ -0,0 +1,65 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Utilities for entity tags used to answer conditional requests.
+ */
+final class ETags {
+
+  static final String ETAG_HEADER = "ETag";
+
+  static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+  private ETags() {
+    // Empty constructor prevents instantiation.
+  }
+
+  /**
+   * Returns a strong entity tag for the given bytes, including the surrounding quotes. The tag is
+   * the unpadded Base64url encoded SHA-256 digest of the bytes, so different representations do
+   * not get the same tag.
+   *
+   * @param bytes the representation to tag.
+   * @return the entity tag.
+   */
+  static String of(byte[] bytes) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+      return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the value of an {@code If-None-Match} header matches the given entity
+   * tag. Weak comparison is used as required for {@code If-None-Match}, so {@code W/} prefixes are
+   * ignored.
+   *
+   * @param ifNoneMatch value of the header; may be {@code null}.
+   * @param etag        the current entity tag.
+   * @return {@code true} if the client's copy is current.
+   */
+  static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      var tag = candidate.trim();
+      if (tag.equals("*")) {
+        return true;
+      }
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
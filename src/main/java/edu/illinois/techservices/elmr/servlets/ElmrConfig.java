@@ -0,0 +1,197 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.servlet.ServletContext;
+
+/**
+ * Immutable snapshot of the application parameters read while serving requests.
+ *
+ * <p>
+ * Parameters are resolved once with {@link ElmrParameters} when a snapshot is loaded, so serving a
+ * request never reads system properties or context parameters. Servlets and filters look up the
+ * {@link Reference} in {@link #reference(ServletContext)} when they are initialized and call
+ * {@link Reference#get()} for each request. {@link Reference#reload()} replaces the snapshot for
+ * every reader at once.
+ */
+final class ElmrConfig {
+
+  private static final Logger LOGGER = Logger.getLogger(ElmrConfig.class.getName());
+
+  private final String logoutUrl;
+
+  private final String uniqueUserIdentifier;
+
+  private final boolean secureCookiesDisabled;
+
+  private final String adminGroup;
+
+  private final String adminGroupAttribute;
+
+  private final String userIndexAttribute;
+
+  private final int maxBatchSize;
+
+  private final long loadedMillis;
+
+  private ElmrConfig(ServletContext sc) {
+    logoutUrl =
+        ElmrParameters.getString(sc, ServletConstants.LOGOUT_URL, ServletConstants.EMPTY_STRING);
+    uniqueUserIdentifier = ElmrParameters.getString(sc, ServletConstants.UNIQUE_USER_ID_PARAM_NAME,
+        ServletConstants.DEFAULT_UNIQUE_USER_ID);
+    secureCookiesDisabled =
+        ElmrParameters.getBoolean(sc, ServletConstants.SESSION_KEY_DISABLE_SECURE, false);
+    adminGroup =
+        ElmrParameters.getString(sc, ServletConstants.ADMIN_GROUP, ServletConstants.EMPTY_STRING);
+    adminGroupAttribute = ElmrParameters.getString(sc, ServletConstants.ADMIN_GROUP_ATTRIBUTE,
+        ServletConstants.DEFAULT_ADMIN_GROUP_ATTRIBUTE);
+    userIndexAttribute =
+        ElmrParameters.getString(sc, ServletConstants.USER_INDEX_ATTRIBUTE, uniqueUserIdentifier);
+    maxBatchSize = ElmrParameters.getInteger(sc, ServletConstants.MAX_BATCH_SIZE,
+        ServletConstants.DEFAULT_MAX_BATCH_SIZE);
+    loadedMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * Resolves every parameter into a new snapshot.
+   *
+   * @param sc the ServletContext whose parameters are read.
+   * @return the new snapshot.
+   */
+  static ElmrConfig load(ServletContext sc) {
+    var config = new ElmrConfig(sc);
+    LOGGER.config("Loaded configuration " + config.toMap());
+    return config;
+  }
+
+  /**
+   * Returns the Reference to the current snapshot for the given context, creating and loading it if
+   * {@link ElmrConfigContextListener} has not done so yet.
+   *
+   * @param sc the ServletContext.
+   * @return the Reference to the current snapshot.
+   */
+  static Reference reference(ServletContext sc) {
+    // Listeners run before servlets and filters are initialized, so this only creates the Reference
+    // when a component is used without the listener, as in tests.
+    synchronized (ElmrConfig.class) {
+      var ref = (Reference) sc.getAttribute(ServletConstants.CONFIG_CONTEXT_PARAM_NAME);
+      if (ref == null) {
+        ref = new Reference(sc);
+        sc.setAttribute(ServletConstants.CONFIG_CONTEXT_PARAM_NAME, ref);
+      }
+      return ref;
+    }
+  }
+
+  /**
+   * Returns the Url to redirect to after logging out or an empty String if not set.
+   */
+  String getLogoutUrl() {
+    return logoutUrl;
+  }
+
+  /**
+   * Returns the name of the request attribute that uniquely identifies a user.
+   */
+  String getUniqueUserIdentifier() {
+    return uniqueUserIdentifier;
+  }
+
+  /**
+   * Returns {@code true} if session key cookies may be set without the secure flag.
+   */
+  boolean isSecureCookiesDisabled() {
+    return secureCookiesDisabled;
+  }
+
+  /**
+   * Returns the group whose members may use the administration endpoints or an empty String if
+   * they are disabled.
+   */
+  String getAdminGroup() {
+    return adminGroup;
+  }
+
+  /**
+   * Returns the name of the request attribute listing the groups a user is a member of.
+   */
+  String getAdminGroupAttribute() {
+    return adminGroupAttribute;
+  }
+
+  /**
+   * Returns the name of the request attribute whose value the session keys of each user are
+   * indexed under. Defaults to the unique user identifier.
+   */
+  String getUserIndexAttribute() {
+    return userIndexAttribute;
+  }
+
+  /**
+   * Returns the most session keys looked up by one request to {@code /admin/sessions/lookup}.
+   */
+  int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Returns the time this snapshot was loaded in milliseconds since the epoch.
+   */
+  long getLoadedMillis() {
+    return loadedMillis;
+  }
+
+  /**
+   * Returns the parameters of this snapshot keyed by parameter name, in a form suitable for
+   * rendering as json.
+   */
+  Map<String, Object> toMap() {
+    Map<String, Object> m = new LinkedHashMap<>();
+    m.put(ServletConstants.LOGOUT_URL, logoutUrl);
+    m.put(ServletConstants.UNIQUE_USER_ID_PARAM_NAME, uniqueUserIdentifier);
+    m.put(ServletConstants.SESSION_KEY_DISABLE_SECURE, secureCookiesDisabled);
+    m.put(ServletConstants.ADMIN_GROUP, adminGroup);
+    m.put(ServletConstants.ADMIN_GROUP_ATTRIBUTE, adminGroupAttribute);
+    m.put(ServletConstants.USER_INDEX_ATTRIBUTE, userIndexAttribute);
+    m.put(ServletConstants.MAX_BATCH_SIZE, maxBatchSize);
+    return m;
+  }
+
+  /**
+   * Holds the current snapshot for a ServletContext.
+   */
+  static final class Reference {
+
+    private final ServletContext sc;
+
+    private volatile ElmrConfig current;
+
+    private Reference(ServletContext sc) {
+      this.sc = sc;
+      this.current = load(sc);
+    }
+
+    /**
+     * Returns the current snapshot.
+     */
+    ElmrConfig get() {
+      return current;
+    }
+
+    /**
+     * Resolves every parameter again and makes the result the current snapshot.
+     *
+     * <p>
+     * Requests already being served keep the snapshot they started with if they read it once.
+     *
+     * @return the new snapshot.
+     */
+    ElmrConfig reload() {
+      var config = load(sc);
+      current = config;
+      return config;
+    }
+  }
+}
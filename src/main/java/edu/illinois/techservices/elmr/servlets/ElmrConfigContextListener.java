@@ -0,0 +1,24 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.util.logging.Logger;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Loads the {@link ElmrConfig} snapshot at startup and caches its {@link ElmrConfig.Reference} in a
+ * context parameter named {@code edu.illinois.techservices.elmr.servlets.config}.
+ */
+@WebListener
+public class ElmrConfigContextListener implements ServletContextListener {
+
+  private static final Logger LOGGER = Logger.getLogger(ElmrConfigContextListener.class.getName());
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    LOGGER.config("Loading configuration...");
+    ElmrConfig.reference(sce.getServletContext());
+    LOGGER.config("Configuration loaded; access with context property "
+        + ServletConstants.CONFIG_CONTEXT_PARAM_NAME);
+  }
+}
@@ -0,0 +1,36 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.annotation.WebListener;
+import edu.illinois.techservices.elmr.Metrics;
+
+/**
+ * Logs how long after the JVM started the first request arrived.
+ *
+ * <p>
+ * This is the time a deploy waits before elmr can serve traffic, whichever way Tomcat was started,
+ * so it is the number to compare between launchers. It is also published as
+ * {@code elmr_startup_milliseconds{step="first_request"}}.
+ */
+@WebListener
+public class FirstRequestListener implements ServletRequestListener {
+
+  private static final Logger LOGGER = Logger.getLogger(FirstRequestListener.class.getName());
+
+  private final AtomicBoolean seen = new AtomicBoolean();
+
+  @Override
+  public void requestInitialized(ServletRequestEvent sre) {
+    if (!seen.get() && seen.compareAndSet(false, true)) {
+      var sinceJvmStartMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+      LOGGER.info("First request received " + sinceJvmStartMillis + " ms after the JVM started.");
+      Metrics.gauge(StartupContextListener.STARTUP_MILLISECONDS,
+          StartupContextListener.STARTUP_MILLISECONDS_HELP, "step", "first_request",
+          () -> sinceJvmStartMillis);
+    }
+  }
+}
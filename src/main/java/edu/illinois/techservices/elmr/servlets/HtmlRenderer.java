@@ -53,7 +53,7 @@ class HtmlRenderer {
   /**
    * Indicates output should be formatted.
    */
-  private static final boolean FORMATTED_HTML =
+  static final boolean FORMATTED_HTML =
       Boolean.getBoolean(HtmlRenderer.class.getName() + ".formattedHtml");
 
   private static final int DEFAULT_INDENT_SPACES = 2;
@@ -2,6 +2,7 @@ package edu.illinois.techservices.elmr.servlets;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -10,9 +11,16 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import edu.illinois.techservices.elmr.RequestTimer;
 
 /**
  * Utilities for generating Html documents.
+ *
+ * <p>
+ * Pages are written from {@link HtmlTemplate}s: the fixed parts of each page are encoded once when
+ * this class is loaded and only the attribute names and values are escaped and encoded per
+ * request. When formatted output is turned on in {@link HtmlRenderer} pages are instead built as a
+ * {@link Document} and rendered by {@link HtmlRenderer}, which is slower but indents the output.
  */
 class HtmlSupport {
 
@@ -28,6 +36,37 @@ class HtmlSupport {
 
   private static final String NO = "No";
 
+  private static final String BOOTSTRAP_HREF =
+      "https://stackpath.bootstrapcdn.com/bootstrap/4.1.3/css/bootstrap.min.css";
+
+  private static final String BOOTSTRAP_INTEGRITY =
+      "sha384-MCw98/SFnGE8fJT3GXwEOngsV7Zt27NXFoaoApmYm81iuXoPkFOJwJ8ERdknLPMO";
+
+  private static final String ATTRIBUTES_INTRO =
+      "The following attributes were found for the current user:";
+
+  private static final String CONFIG_INTRO =
+      "The following attributes are exposed to this application:";
+
+  private static final HtmlTemplate ATTRIBUTES_PAGE_START =
+      HtmlTemplate.compile(pageStart(USER_ATTRIBUTES_TITLE, ATTRIBUTES_INTRO, "User Attributes",
+          "<th>Name</th><th class=\"text-center\">Value</th>"));
+
+  private static final HtmlTemplate ATTRIBUTES_ROW = HtmlTemplate
+      .compile("<tr><td>{{name}}</td><td class=\"text-center\">{{value}}</td></tr>");
+
+  private static final HtmlTemplate CONFIG_PAGE_START =
+      HtmlTemplate.compile(pageStart(CONFIG_PAGE_TITLE, CONFIG_INTRO, "Configured Attribute Names",
+          "<th>Attribute Name</th><th class=\"text-center\">In Apache Configuration</th>"
+              + "<th class=\"text-center\">In attributes-map.xml</th>"));
+
+  private static final HtmlTemplate CONFIG_ROW =
+      HtmlTemplate.compile("<tr><td>{{name}}</td><td class=\"text-center\">{{inApache}}</td>"
+          + "<td class=\"text-center\">{{inAttributeMap}}</td></tr>");
+
+  private static final HtmlTemplate PAGE_END = HtmlTemplate
+      .compile("</tbody></table><p><a href=\"{{logoutUrl}}\">Logout</a></div></body></html>");
+
   private HtmlSupport() {
     // Empty constructor prevents instantiation.
   }
@@ -43,6 +82,44 @@ class HtmlSupport {
    */
   static byte[] renderAttributesPage(String logoutUrl, Collection<String> userAttributes,
       Map<String, Object> reqAttrs) throws IOException {
+    var bos = new ByteArrayOutputStream();
+    writeAttributesPage(bos, logoutUrl, userAttributes, reqAttrs);
+    return bos.toByteArray();
+  }
+
+  /**
+   * Writes an Html page of user attribute values to the given stream.
+   *
+   * @param os             stream to write the page to; it is not closed.
+   * @param logoutUrl      Url to redirect logout requests to.
+   * @param userAttributes Collection of user attribute names.
+   * @param reqAttrs       request attributes mapped to the current user's request.
+   * @throws IOException if an IOException occurs while the page is written.
+   */
+  static void writeAttributesPage(OutputStream os, String logoutUrl,
+      Collection<String> userAttributes, Map<String, Object> reqAttrs) throws IOException {
+    var start = System.nanoTime();
+    try {
+      if (HtmlRenderer.FORMATTED_HTML) {
+        os.write(renderAttributesDocument(logoutUrl, userAttributes, reqAttrs));
+        return;
+      }
+      ATTRIBUTES_PAGE_START.write(os);
+      for (String userAttribute : userAttributes) {
+        ATTRIBUTES_ROW.write(os, userAttribute, attributeValue(reqAttrs.get(userAttribute)));
+      }
+      PAGE_END.write(os, logoutUrl);
+    } finally {
+      RequestTimer.recordSince(RequestTimer.Stage.RENDER, start);
+    }
+  }
+
+  /**
+   * Generates an Html page of user attribute values by building and rendering a {@link Document}.
+   * Used when formatted output is turned on in {@link HtmlRenderer}.
+   */
+  static byte[] renderAttributesDocument(String logoutUrl, Collection<String> userAttributes,
+      Map<String, Object> reqAttrs) throws IOException {
     try {
 
       var page = createDocument();
@@ -67,26 +144,14 @@ class HtmlSupport {
 
         tr.appendChild(createTdTh(page, TD, userAttribute));
 
-        // The value of the userAttribute is either a list or a scalar.
-        var attrVal = reqAttrs.get(userAttribute);
-        if (attrVal instanceof List) {
-          @SuppressWarnings("unchecked")
-          List<String> attrList = (List<String>) attrVal;
-          StringJoiner sj = new StringJoiner(", ");
-          for (String attr : attrList) {
-            sj.add(attr);
-          }
-          tr.appendChild(createTdTh(page, TD, sj.toString(), "text-center"));
-        } else {
-          tr.appendChild(createTdTh(page, TD, attrVal == null ? "no-value" : attrVal.toString(),
-              "text-center"));
-        }
+        tr.appendChild(createTdTh(page, TD, attributeValue(reqAttrs.get(userAttribute)),
+            "text-center"));
         tbody.appendChild(tr);
       }
       table.appendChild(tbody);
 
       var p0 = page.createElement("p");
-      p0.setTextContent("The following attributes were found for the current user:");
+      p0.setTextContent(ATTRIBUTES_INTRO);
       p0.appendChild(table);
 
       var p1 = page.createElement("p");
@@ -128,6 +193,30 @@ class HtmlSupport {
    */
   static byte[] renderConfigPage(String logoutUrl, Collection<String> allAttributeNames,
       Collection<String> jkEnvVars, Collection<String> userAttributeNames) throws IOException {
+    var start = System.nanoTime();
+    try {
+      if (HtmlRenderer.FORMATTED_HTML) {
+        return renderConfigDocument(logoutUrl, allAttributeNames, jkEnvVars, userAttributeNames);
+      }
+      var bos = new ByteArrayOutputStream();
+      CONFIG_PAGE_START.write(bos);
+      for (String attrname : allAttributeNames) {
+        CONFIG_ROW.write(bos, attrname, jkEnvVars.contains(attrname) ? YES : NO,
+            userAttributeNames.contains(attrname) ? YES : NO);
+      }
+      PAGE_END.write(bos, logoutUrl);
+      return bos.toByteArray();
+    } finally {
+      RequestTimer.recordSince(RequestTimer.Stage.RENDER, start);
+    }
+  }
+
+  /**
+   * Generates an Html page of configuration values by building and rendering a {@link Document}.
+   * Used when formatted output is turned on in {@link HtmlRenderer}.
+   */
+  static byte[] renderConfigDocument(String logoutUrl, Collection<String> allAttributeNames,
+      Collection<String> jkEnvVars, Collection<String> userAttributeNames) throws IOException {
     try {
 
       var page = createDocument();
@@ -160,7 +249,7 @@ class HtmlSupport {
       table.appendChild(tbody);
 
       var p0 = page.createElement("p");
-      p0.setTextContent("The following attributes are exposed to this application:");
+      p0.setTextContent(CONFIG_INTRO);
       p0.appendChild(table);
 
       var p1 = page.createElement("p");
@@ -189,6 +278,33 @@ class HtmlSupport {
     }
   }
 
+  private static String attributeValue(Object attrVal) {
+    // The value of the userAttribute is either a list or a scalar.
+    if (attrVal instanceof List) {
+      @SuppressWarnings("unchecked")
+      List<String> attrList = (List<String>) attrVal;
+      StringJoiner sj = new StringJoiner(", ");
+      for (String attr : attrList) {
+        sj.add(attr);
+      }
+      return sj.toString();
+    }
+    return attrVal == null ? "no-value" : attrVal.toString();
+  }
+
+  private static String pageStart(String title, String intro, String caption, String headerCells) {
+    return "<!DOCTYPE html><html><head><meta charset=\"UTF-8\">"
+        + "<meta content=\"IE=edge\" http-equiv=\"X-UA-Compatible\">"
+        + "<meta content=\"width=device-width, initial-scale=1, shrink-to-fit=no\""
+        + " name=\"viewport\">"
+        + "<title>" + title + "</title>"
+        + "<link crossorigin=\"anonymous\" href=\"" + BOOTSTRAP_HREF + "\" integrity=\""
+        + BOOTSTRAP_INTEGRITY + "\" rel=\"stylesheet\"></head>"
+        + "<body><div class=\"container\"><h1>" + title + "</h1>"
+        + "<p>" + intro + "<table class=\"table table-striped\"><caption>" + caption
+        + "</caption><thead><tr>" + headerCells + "</tr></thead><tbody>";
+  }
+
   private static Element createHtmlHead(Document page, String pageTitle) {
     var head = page.createElement("head");
     head.appendChild(createMetaCharset(page));
@@ -214,10 +330,10 @@ class HtmlSupport {
   private static Element createBootstrapLink(Document page) {
     var link = page.createElement("link");
     link.setAttribute("href",
-        "https://stackpath.bootstrapcdn.com/bootstrap/4.1.3/css/bootstrap.min.css");
+        BOOTSTRAP_HREF);
     link.setAttribute("rel", "stylesheet");
     link.setAttribute("integrity",
-        "sha384-MCw98/SFnGE8fJT3GXwEOngsV7Zt27NXFoaoApmYm81iuXoPkFOJwJ8ERdknLPMO");
+        BOOTSTRAP_INTEGRITY);
     link.setAttribute("crossorigin", "anonymous");
     return link;
   }
@@ -0,0 +1,134 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A fragment of Html compiled once into UTF-8 encoded byte chunks separated by slots for values.
+ *
+ * <p>
+ * Slots are written as {@code {{name}}} in the source. Writing the template copies the chunks to
+ * an {@link OutputStream} unchanged and writes each value between them, escaped for use in Html
+ * text or a quoted attribute value. Nothing but the values is encoded while writing, so a page is
+ * streamed to the response without building a document first.
+ */
+final class HtmlTemplate {
+
+  private static final Pattern SLOT = Pattern.compile("\\{\\{(\\w+)\\}\\}");
+
+  private static final byte[] AMP = "&amp;".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] LT = "&lt;".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] GT = "&gt;".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] QUOT = "&quot;".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] APOS = "&#39;".getBytes(StandardCharsets.UTF_8);
+
+  private final byte[][] chunks;
+
+  private final List<String> slotNames;
+
+  private HtmlTemplate(byte[][] chunks, List<String> slotNames) {
+    this.chunks = chunks;
+    this.slotNames = slotNames;
+  }
+
+  /**
+   * Compiles the given source into a template.
+   *
+   * @param source Html with {@code {{name}}} slots; text outside the slots is copied as is.
+   * @return the compiled template.
+   */
+  static HtmlTemplate compile(String source) {
+    var chunks = new ArrayList<byte[]>();
+    var slotNames = new ArrayList<String>();
+    var m = SLOT.matcher(source);
+    var start = 0;
+    while (m.find()) {
+      chunks.add(source.substring(start, m.start()).getBytes(StandardCharsets.UTF_8));
+      slotNames.add(m.group(1));
+      start = m.end();
+    }
+    chunks.add(source.substring(start).getBytes(StandardCharsets.UTF_8));
+    return new HtmlTemplate(chunks.toArray(new byte[0][]), List.copyOf(slotNames));
+  }
+
+  /**
+   * Returns the names of the slots in the order their values are passed to
+   * {@link #write(OutputStream, String...)}.
+   */
+  List<String> getSlotNames() {
+    return slotNames;
+  }
+
+  /**
+   * Writes the template to the given stream with the values escaped in place of the slots.
+   *
+   * @param os     stream to write to.
+   * @param values one value for each slot, in order.
+   * @throws IOException if an IOException occurs while writing.
+   * @throws IllegalArgumentException if the number of values does not match the number of slots.
+   */
+  void write(OutputStream os, String... values) throws IOException {
+    if (values.length != slotNames.size()) {
+      throw new IllegalArgumentException(
+          "Expected values for " + slotNames + " but got " + values.length + " values.");
+    }
+    os.write(chunks[0]);
+    for (int i = 0; i < values.length; i++) {
+      escape(values[i], os);
+      os.write(chunks[i + 1]);
+    }
+  }
+
+  /**
+   * Writes the given String to the stream as UTF-8, escaping the characters that are special in
+   * Html text and attribute values.
+   *
+   * @param s  String to write.
+   * @param os stream to write to.
+   * @throws IOException if an IOException occurs while writing.
+   */
+  static void escape(String s, OutputStream os) throws IOException {
+    var start = 0;
+    for (int i = 0; i < s.length(); i++) {
+      byte[] entity;
+      switch (s.charAt(i)) {
+        case '&':
+          entity = AMP;
+          break;
+        case '<':
+          entity = LT;
+          break;
+        case '>':
+          entity = GT;
+          break;
+        case '"':
+          entity = QUOT;
+          break;
+        case '\'':
+          entity = APOS;
+          break;
+        default:
+          continue;
+      }
+      writeRun(s, start, i, os);
+      os.write(entity);
+      start = i + 1;
+    }
+    writeRun(s, start, s.length(), os);
+  }
+
+  private static void writeRun(String s, int start, int end, OutputStream os) throws IOException {
+    if (start < end) {
+      var run = (start == 0 && end == s.length()) ? s : s.substring(start, end);
+      os.write(run.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.util.Map;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.Metrics;
+
+/**
+ * Records the rate and latency of requests to elmr's servlets in {@link Metrics}.
+ *
+ * <p>
+ * The count of each histogram is the number of requests served, so request rates are derived from
+ * it by whatever scrapes {@link MetricsServlet}.
+ */
+@WebFilter(urlPatterns = {"/session", "/session/attributes", "/session/member",
+    "/admin/sessions/lookup", "/attributes", "/config", "/status", "/status/*"})
+public class MetricsFilter extends HttpFilter {
+
+  private static final long serialVersionUID = 2404546771917370470L;
+
+  private static final String REQUEST_SECONDS = "elmr_http_request_seconds";
+
+  private static final String REQUEST_SECONDS_HELP = "Latency of requests by servlet path.";
+
+  private static final Map<String, Metrics.Histogram> REQUESTS = Map.of(
+      "/session", requests("/session"),
+      "/session/attributes", requests("/session/attributes"),
+      "/session/member", requests("/session/member"),
+      "/admin/sessions/lookup", requests("/admin/sessions/lookup"),
+      "/attributes", requests("/attributes"),
+      "/config", requests("/config"),
+      "/status", requests("/status"),
+      "/status/live", requests("/status/live"),
+      "/status/ready", requests("/status/ready"));
+
+  @Override
+  protected void doFilter(HttpServletRequest request, HttpServletResponse response,
+      FilterChain chain) throws IOException, ServletException {
+    var start = System.nanoTime();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      var histogram = REQUESTS.get(request.getServletPath());
+      if (histogram != null) {
+        histogram.recordSince(start);
+      }
+    }
+  }
+
+  private static Metrics.Histogram requests(String path) {
+    return Metrics.histogram(REQUEST_SECONDS, REQUEST_SECONDS_HELP, "path", path);
+  }
+}
@@ -0,0 +1,41 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.Metrics;
+
+/**
+ * Exposes elmr's {@link Metrics} in the Prometheus text exposition format.
+ *
+ * <p>
+ * Like {@link ConfigServlet}, this servlet is for operators and should not be exposed to the
+ * public. No user specific information is included in the output.
+ *
+ * <p>
+ * <strong>Deployment Note:</strong> the url-pattern associated with this servlet should only be
+ * reachable by the Prometheus server scraping it; the sample {@code mod_jk.conf} only lets
+ * requests from the host itself through.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = -3021626426466458806L;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws IOException, ServletException {
+    var sb = new StringBuilder(0x2000);
+    Metrics.writePrometheus(sb);
+    var bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+    response.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+    response.setContentLength(bytes.length);
+    try (var os = response.getOutputStream()) {
+      os.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import edu.illinois.techservices.elmr.Json;
+
+/**
+ * Starts, stops and dumps a Flight Recorder recording of elmr's events.
+ *
+ * <p>
+ * The recording uses the JDK's {@code default} settings with elmr's own events enabled from the
+ * settings file {@code elmr.jfc}. Only one recording is managed at a time. Requests are:
+ *
+ * <dl>
+ * <dt>{@code GET /admin/recording}
+ * <dd>Returns the state of the recording as json.
+ * <dt>{@code GET /admin/recording?mode=dump}
+ * <dd>Returns the data recorded so far as a {@code .jfr} file. Works while recording or after the
+ * recording has been stopped.
+ * <dt>{@code POST /admin/recording?mode=start}
+ * <dd>Starts a new recording, discarding any previous one. The optional parameters {@code maxAge}
+ * (seconds, default {@value #DEFAULT_MAX_AGE_SECONDS}) and {@code maxSize} (bytes, default
+ * {@value #DEFAULT_MAX_SIZE_BYTES}) bound how much data is kept; values that are not positive
+ * numbers are a bad request.
+ * <dt>{@code POST /admin/recording?mode=stop}
+ * <dd>Stops the recording. Its data can still be dumped.
+ * </dl>
+ *
+ * <p>
+ * Access is restricted to administrators by {@link AdminFilter}.
+ */
+@WebServlet("/admin/recording")
+public class RecordingServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 4181771430546207287L;
+
+  private static final Logger LOGGER = Logger.getLogger(RecordingServlet.class.getName());
+
+  private static final String SETTINGS_RESOURCE = "elmr.jfc";
+
+  private static final String RECORDING_NAME = "elmr";
+
+  private static final long DEFAULT_MAX_AGE_SECONDS = 600L;
+
+  private static final long DEFAULT_MAX_SIZE_BYTES = 0x4000000L;
+
+  private Recording recording;
+
+  @Override
+  protected synchronized void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    if ("dump".equals(request.getParameter("mode"))) {
+      if (recording == null || recording.getState() == RecordingState.NEW) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No recording has been started.");
+        return;
+      }
+      response.setContentType("application/octet-stream");
+      response.setHeader("Content-Disposition",
+          "attachment; filename=\"elmr-" + System.currentTimeMillis() + ".jfr\"");
+      try (var in = recording.getStream(null, null); var os = response.getOutputStream()) {
+        if (in != null) {
+          in.transferTo(os);
+        }
+      }
+    } else {
+      Map<String, Object> status = new HashMap<>();
+      status.put("state", recording == null ? "NONE" : recording.getState().name());
+      if (recording != null) {
+        status.put("name", recording.getName());
+        status.put("startTime", recording.getStartTime() == null ? null
+            : recording.getStartTime().toString());
+        status.put("size", recording.getSize());
+      }
+      var json = Json.renderObject(status);
+      response.setContentType("application/json");
+      response.setContentLength(json.length());
+      var pw = response.getWriter();
+      pw.print(json);
+      pw.flush();
+    }
+  }
+
+  @Override
+  protected synchronized void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    var mode = request.getParameter("mode");
+    if ("start".equals(mode)) {
+      var maxAge = parseLong(request.getParameter("maxAge"), DEFAULT_MAX_AGE_SECONDS);
+      var maxSize = parseLong(request.getParameter("maxSize"), DEFAULT_MAX_SIZE_BYTES);
+      if (maxAge < 1 || maxSize < 1) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+            "Set the parameters maxAge and maxSize to positive numbers.");
+        return;
+      }
+      Map<String, String> settings;
+      try {
+        settings = loadSettings();
+      } catch (ParseException e) {
+        LOGGER.log(Level.SEVERE, "Could not parse Flight Recorder settings!", e);
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+            "Could not parse Flight Recorder settings!");
+        return;
+      }
+      if (recording != null) {
+        recording.close();
+      }
+      recording = new Recording(settings);
+      recording.setName(RECORDING_NAME);
+      recording.setToDisk(true);
+      recording.setMaxAge(Duration.ofSeconds(maxAge));
+      recording.setMaxSize(maxSize);
+      recording.start();
+      LOGGER.info("Started Flight Recorder recording " + recording.getId() + ".");
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    } else if ("stop".equals(mode)) {
+      if (recording == null || recording.getState() != RecordingState.RUNNING) {
+        response.sendError(HttpServletResponse.SC_CONFLICT, "No recording is running.");
+        return;
+      }
+      recording.stop();
+      LOGGER.info("Stopped Flight Recorder recording " + recording.getId() + ".");
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    } else {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Set the parameter mode to start or stop.");
+    }
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (recording != null) {
+      recording.close();
+      recording = null;
+    }
+  }
+
+  private Map<String, String> loadSettings() throws IOException, ParseException {
+    Map<String, String> settings =
+        new HashMap<>(Configuration.getConfiguration("default").getSettings());
+    try (var reader = new InputStreamReader(
+        RecordingServlet.class.getResourceAsStream(SETTINGS_RESOURCE), StandardCharsets.UTF_8)) {
+      settings.putAll(Configuration.create(reader).getSettings());
+    }
+    return settings;
+  }
+
+  private long parseLong(String value, long defaultValue) {
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return -1L;
+    }
+  }
+}
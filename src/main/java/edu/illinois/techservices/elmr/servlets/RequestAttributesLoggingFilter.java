@@ -26,6 +26,13 @@ public class RequestAttributesLoggingFilter extends HttpFilter {
   private static final Logger LOGGER =
       Logger.getLogger(RequestAttributesLoggingFilter.class.getName());
 
+  private transient ElmrConfig.Reference config;
+
+  @Override
+  public void init() {
+    config = ElmrConfig.reference(getServletContext());
+  }
+
   @Override
   protected void doFilter(HttpServletRequest request, HttpServletResponse response,
       FilterChain chain) throws IOException, ServletException {
@@ -56,8 +63,7 @@ public class RequestAttributesLoggingFilter extends HttpFilter {
                 : request.getAttribute(userAttribute).toString())
             .toString()));
 
-    var uniqueUserId = ElmrParameters.getString(getServletContext(),
-        ServletConstants.UNIQUE_USER_ID_PARAM_NAME, ServletConstants.DEFAULT_UNIQUE_USER_ID);
+    var uniqueUserId = config.get().getUniqueUserIdentifier();
     sj0.add(new StringJoiner(": ").add(uniqueUserId)
         .add((request.getAttribute(uniqueUserId) == null) ? "null"
             : request.getAttribute(uniqueUserId).toString())
@@ -0,0 +1,183 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import edu.illinois.techservices.elmr.RequestTimer;
+
+/**
+ * Adds a {@code Server-Timing} header breaking down where elmr spent its time serving a request.
+ *
+ * <p>
+ * The breakdown comes from the {@link RequestTimer} of the thread serving the request. The header
+ * has to be set before the response is committed, so it is added as soon as the servlet flushes or
+ * closes its output stream, writes all of the content length it set or more than fits in the
+ * response buffer, starts writing with a writer, redirects or sends an error, and otherwise when
+ * the servlet returns. A page streamed to the output stream that fits in the buffer is therefore
+ * timed until it is written; time spent after the header is added is not included.
+ *
+ * <p>
+ * To write the breakdown to the access log as well, add {@code %{Server-Timing}o} to the pattern of
+ * the {@code AccessLogValve} in {@code conf/server.xml}.
+ */
+@WebFilter(urlPatterns = {"/session", "/session/attributes", "/session/member", "/attributes",
+    "/status", "/status/*"})
+public class ServerTimingFilter extends HttpFilter {
+
+  private static final long serialVersionUID = -5806430993016325914L;
+
+  static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+  @Override
+  protected void doFilter(HttpServletRequest request, HttpServletResponse response,
+      FilterChain chain) throws IOException, ServletException {
+    RequestTimer.begin();
+    try {
+      var timedResponse = new ServerTimingResponse(response);
+      chain.doFilter(request, timedResponse);
+      timedResponse.addServerTiming();
+    } finally {
+      RequestTimer.end();
+    }
+  }
+
+  /**
+   * Adds the {@code Server-Timing} header before anything commits the response.
+   */
+  private static final class ServerTimingResponse extends HttpServletResponseWrapper {
+
+    private boolean serverTimingAdded = false;
+
+    private ServerTimingOutputStream outputStream;
+
+    private long contentLength = -1L;
+
+    private ServerTimingResponse(HttpServletResponse response) {
+      super(response);
+    }
+
+    private void addServerTiming() {
+      if (!serverTimingAdded && !isCommitted()) {
+        serverTimingAdded = true;
+        var serverTiming = RequestTimer.toServerTiming();
+        if (!serverTiming.isEmpty()) {
+          addHeader(SERVER_TIMING_HEADER, serverTiming);
+        }
+      }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (outputStream == null) {
+        outputStream = new ServerTimingOutputStream(super.getOutputStream());
+      }
+      return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      addServerTiming();
+      return super.getWriter();
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      addServerTiming();
+      super.sendRedirect(location);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      addServerTiming();
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      addServerTiming();
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void setContentLength(int len) {
+      contentLength = len;
+      super.setContentLength(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+      contentLength = len;
+      super.setContentLengthLong(len);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      addServerTiming();
+      super.flushBuffer();
+    }
+
+    /**
+     * Adds the {@code Server-Timing} header before the bytes written could commit the response,
+     * which happens when they fill the response buffer or reach the content length set.
+     */
+    private final class ServerTimingOutputStream extends ServletOutputStream {
+
+      private final ServletOutputStream os;
+
+      private long written = 0L;
+
+      private ServerTimingOutputStream(ServletOutputStream os) {
+        this.os = os;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        beforeWriting(1);
+        os.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        beforeWriting(len);
+        os.write(b, off, len);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        addServerTiming();
+        os.flush();
+      }
+
+      @Override
+      public void close() throws IOException {
+        addServerTiming();
+        os.close();
+      }
+
+      @Override
+      public boolean isReady() {
+        return os.isReady();
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        os.setWriteListener(writeListener);
+      }
+
+      private void beforeWriting(int len) {
+        written += len;
+        if (written >= getBufferSize() || contentLength >= 0 && written >= contentLength) {
+          addServerTiming();
+        }
+      }
+    }
+  }
+}
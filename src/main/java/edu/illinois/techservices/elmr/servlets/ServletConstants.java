@@ -9,18 +9,54 @@ final class ServletConstants {
     // empty constructor to prevent instantiation.
   }
 
+  /**
+   * Name of context parameter and system property for the group whose members may use the
+   * administration endpoints under {@code /admin}.
+   */
+  static final String ADMIN_GROUP = ServletConstants.class.getPackageName() + ".AdminGroup";
+
+  /**
+   * Name of context parameter and system property for the request attribute listing the groups a
+   * user is a member of.
+   */
+  static final String ADMIN_GROUP_ATTRIBUTE =
+      ServletConstants.class.getPackageName() + ".AdminGroupAttribute";
+
+  static final String DEFAULT_ADMIN_GROUP_ATTRIBUTE = "isMemberOf";
+
   /**
    * Name of the context variable that the Apache config file contents can be accessed from.
    */
   static final String APACHE_CONFIG_CONTEXT_PARAM_NAME =
       ServletConstants.class.getPackageName() + ".ApacheConfig";
 
+  /**
+   * Name of context parameter and system property to stop watching the Apache config file for
+   * changes.
+   */
+  static final String APACHE_CONFIG_DISABLE_WATCH =
+      APACHE_CONFIG_CONTEXT_PARAM_NAME + ".DisableWatch";
+
   /**
    * Name of the context variable with the configured Shibboleth attribute names.
    */
   static final String ATTRIBUTES_CONTEXT_PARAM_NAME =
       ServletConstants.class.getPackageName() + ".attributes";
 
+  /**
+   * Name of the context variable that the {@link ElmrConfig.Reference} is stored in.
+   */
+  static final String CONFIG_CONTEXT_PARAM_NAME =
+      ServletConstants.class.getPackageName() + ".config";
+
+  /**
+   * Name of context parameter and system property for the most session keys looked up by one
+   * request to {@code /admin/sessions/lookup}.
+   */
+  static final String MAX_BATCH_SIZE = ServletConstants.class.getPackageName() + ".MaxBatchSize";
+
+  static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
   /**
    * Url to logout of Shibboleth from.
    */
@@ -37,6 +73,18 @@ final class ServletConstants {
   static final String SESSION_DATA_CONTEXT_PARAM_NAME =
       ServletConstants.class.getPackageName() + ".sessionData";
 
+  /**
+   * Name of the context variable that the session data store health monitor is stored in.
+   */
+  static final String SESSION_DATA_HEALTH_CONTEXT_PARAM_NAME =
+      ServletConstants.class.getPackageName() + ".sessionDataHealth";
+
+  /**
+   * Name of the context variable that the lookup server is stored in, if it is running.
+   */
+  static final String LOOKUP_SERVER_CONTEXT_PARAM_NAME =
+      ServletConstants.class.getPackageName() + ".lookupServer";
+
   /**
    * Name of the cookie that has the key for session data.
    */
@@ -54,6 +102,13 @@ final class ServletConstants {
 
   static final String DEFAULT_UNIQUE_USER_ID = "Shib-Session-ID";
 
+  /**
+   * Name of context parameter and system property for the request attribute whose value the
+   * session keys of each user are indexed under, so all of them can be revoked at once.
+   */
+  static final String USER_INDEX_ATTRIBUTE =
+      ServletConstants.class.getPackageName() + ".UserIndexAttribute";
+
   static final String EMPTY_STRING = "";
 
   static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
@@ -0,0 +1,104 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import edu.illinois.techservices.elmr.SessionData;
+
+/**
+ * Request whose attributes include the session data stored under a key, fetched and decoded the
+ * first time an attribute is read.
+ *
+ * <p>
+ * Session data is fetched at most once per request and not at all if the request never reads an
+ * attribute. Session data takes precedence over attributes of the wrapped request, as it did when
+ * it was copied onto the request, except for attributes set or removed through this wrapper after
+ * it was created. Attributes whose names start with {@code javax.} or {@code org.apache.} are
+ * reserved for the container and never cause session data to be fetched.
+ */
+class SessionAttributesRequest extends HttpServletRequestWrapper {
+
+  private final SessionData sd;
+
+  private final byte[] key;
+
+  private final Set<String> overridden = new HashSet<>();
+
+  private Map<String, Object> sessionData;
+
+  private boolean loaded;
+
+  /**
+   * Constructs a new request.
+   *
+   * @param request the request to wrap.
+   * @param sd      the session data store.
+   * @param key     key of the session data.
+   */
+  SessionAttributesRequest(HttpServletRequest request, SessionData sd, byte[] key) {
+    super(request);
+    this.sd = sd;
+    this.key = key;
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    if (!isReserved(name) && !overridden.contains(name)) {
+      var data = sessionData();
+      if (data != null && data.containsKey(name)) {
+        return data.get(name);
+      }
+    }
+    return super.getAttribute(name);
+  }
+
+  @Override
+  public Enumeration<String> getAttributeNames() {
+    var data = sessionData();
+    if (data == null || data.isEmpty()) {
+      return super.getAttributeNames();
+    }
+    var names = new LinkedHashSet<String>(data.keySet());
+    names.removeAll(overridden);
+    for (var e = super.getAttributeNames(); e.hasMoreElements();) {
+      names.add(e.nextElement());
+    }
+    return Collections.enumeration(names);
+  }
+
+  @Override
+  public void setAttribute(String name, Object o) {
+    overridden.add(name);
+    super.setAttribute(name, o);
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    overridden.add(name);
+    super.removeAttribute(name);
+  }
+
+  /**
+   * Returns {@code true} if session data has been fetched for this request.
+   */
+  synchronized boolean isLoaded() {
+    return loaded;
+  }
+
+  private synchronized Map<String, Object> sessionData() {
+    if (!loaded) {
+      loaded = true;
+      sessionData = sd.getAttributes(key);
+    }
+    return sessionData;
+  }
+
+  private static boolean isReserved(String name) {
+    return name.startsWith("javax.") || name.startsWith("org.apache.");
+  }
+}
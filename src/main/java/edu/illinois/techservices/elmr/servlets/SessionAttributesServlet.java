@@ -0,0 +1,125 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.Json;
+import edu.illinois.techservices.elmr.SessionData;
+
+/**
+ * Returns the attributes of the current session as a json object, for consumers that cannot read
+ * request attributes such as single page applications.
+ *
+ * <p>
+ * The session is the one whose key is in the session key cookie. Without the cookie, or if the
+ * session no longer exists, the response is {@link HttpServletResponse#SC_UNAUTHORIZED
+ * Unauthorized} so the caller can send the user to {@code /session} to sign in.
+ *
+ * <p>
+ * The optional parameter {@code fields} is a comma separated list of the attributes to return, in
+ * the order they are returned. Without it the session data is written as saved, since it already
+ * is a json object, and is not decoded; shared values are put back in place of their digests as
+ * text.
+ *
+ * <p>
+ * Responses carry a strong {@code ETag}, the SHA-256 digest of the body, and
+ * {@code Cache-Control: private, no-cache}, so only the user's browser keeps a copy and checks it
+ * is current before using it. A request with a matching {@code If-None-Match} header is answered
+ * with {@link HttpServletResponse#SC_NOT_MODIFIED Not Modified} and no body.
+ */
+@WebServlet("/session/attributes")
+public class SessionAttributesServlet extends HttpServlet {
+
+  private static final long serialVersionUID = -2269021386880815466L;
+
+  private static final Logger LOGGER = Logger.getLogger(SessionAttributesServlet.class.getName());
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    var key = sessionKey(request);
+    if (key == null) {
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "No session.");
+      return;
+    }
+    var sd = (SessionData) getServletContext()
+        .getAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME);
+    if (sd == null) {
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+          "Session data store not configured!");
+      return;
+    }
+    var fields = request.getParameter("fields");
+    String json;
+    try {
+      json = fields == null || fields.isEmpty() ? sd.get(key) : project(sd.getAttributes(key),
+          fields.split(","));
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Failed to get session attributes.", e);
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "Internal failure: could not connect to session data store!");
+      return;
+    }
+    if (json == null) {
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "No session.");
+      return;
+    }
+
+    var body = (json.isEmpty() ? "{}" : json).getBytes(StandardCharsets.UTF_8);
+    var etag = ETags.of(body);
+    response.setHeader(ETags.ETAG_HEADER, etag);
+    response.setHeader("Cache-Control", "private, no-cache");
+    response.setHeader("Vary", "Cookie");
+    if (ETags.matches(request.getHeader(ETags.IF_NONE_MATCH_HEADER), etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    response.setContentType("application/json; charset=UTF-8");
+    response.setContentLength(body.length);
+    try (var os = response.getOutputStream()) {
+      os.write(body);
+    }
+  }
+
+  /*
+   * Returns the key in the session key cookie, or null if there is none.
+   */
+  static byte[] sessionKey(HttpServletRequest request) {
+    if (request.getCookies() == null) {
+      return null;
+    }
+    for (Cookie c : request.getCookies()) {
+      if (c.getName().equals(ServletConstants.SESSION_KEY_COOKIE_NAME) && c.getValue() != null) {
+        return c.getValue().getBytes();
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Renders the given attributes that are present in the session in the order given, or returns
+   * null if there is no session.
+   */
+  private static String project(Map<String, Object> attributes, String[] fields)
+      throws IOException {
+    if (attributes == null) {
+      return null;
+    }
+    Map<String, Object> selected = new LinkedHashMap<>();
+    for (String field : fields) {
+      if (attributes.containsKey(field)) {
+        selected.put(field, attributes.get(field));
+      }
+    }
+    return Json.renderObject(selected);
+  }
+}
@@ -1,10 +1,20 @@
 package edu.illinois.techservices.elmr.servlets;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
-import javax.servlet.annotation.WebListener;
+import edu.illinois.techservices.elmr.CoalescingSessionData;
+import edu.illinois.techservices.elmr.InstrumentedSessionData;
+import edu.illinois.techservices.elmr.LookupServer;
+import edu.illinois.techservices.elmr.Metrics;
+import edu.illinois.techservices.elmr.NegativeCachingSessionData;
 import edu.illinois.techservices.elmr.SessionData;
+import edu.illinois.techservices.elmr.SessionDataHealthMonitor;
 import edu.illinois.techservices.elmr.SessionDataImpl;
 
 /**
@@ -31,10 +41,45 @@ import edu.illinois.techservices.elmr.SessionDataImpl;
  * </ol>
  * 
  * <p>
- * When set, a connection to the external datasource is established. If the connection fails, a
- * default in-memory cache is created and used instead.
+ * The connection to the external datasource is made lazily, so startup does not wait for the store
+ * and does not fail if the store is not up yet.
+ *
+ * <p>
+ * A {@link SessionDataHealthMonitor} probes the store in the background, retrying with backoff
+ * until it answers, and is cached in the context parameter
+ * {@code edu.illinois.techservices.elmr.servlets.sessionDataHealth}.
+ * The number of milliseconds between probes is set with the system property or context parameter
+ * {@code edu.illinois.techservices.elmr.SessionDataHealthMonitor.interval}.
+ *
+ * <p>
+ * Keys the store has no data for are remembered for a short time by a
+ * {@link NegativeCachingSessionData}, configured with
+ * {@code edu.illinois.techservices.elmr.NegativeCachingSessionData.ttlMillis} and
+ * {@code edu.illinois.techservices.elmr.NegativeCachingSessionData.maxEntries}. Concurrent lookups
+ * of the same key share one trip to the store through a {@link CoalescingSessionData}.
+ *
+ * <p>
+ * Large attribute values many sessions have in common, such as group memberships, are stored once
+ * if {@code edu.illinois.techservices.elmr.SessionDataImpl.sharedValuesMinLength} is set to the
+ * length of the json of the smallest value to share. The number of these values cached in memory is
+ * set with {@code edu.illinois.techservices.elmr.SessionDataImpl.sharedValuesCacheSize}.
+ *
+ * <p>
+ * The values of the attributes listed, comma separated, in
+ * {@code edu.illinois.techservices.elmr.SessionDataImpl.setAttributes} are also stored as sets so
+ * membership checks are answered by the store without reading the session data.
+ *
+ * <p>
+ * If {@code edu.illinois.techservices.elmr.LookupServer.port} is set, a {@link LookupServer}
+ * answers session lookups on that port of the address set with
+ * {@code edu.illinois.techservices.elmr.LookupServer.address}, the loopback address by default,
+ * using {@code edu.illinois.techservices.elmr.LookupServer.workers} threads. It is cached in the
+ * context parameter
+ * {@code edu.illinois.techservices.elmr.servlets.lookupServer}.
+ *
+ * <p>
+ * Run at startup by {@link StartupContextListener}.
  */
-@WebListener
 public class SessionDataContextListener implements ServletContextListener {
 
   private static final Logger LOGGER = Logger.getLogger(SessionDataContextListener.class.getName());
@@ -55,17 +100,108 @@ public class SessionDataContextListener implements ServletContextListener {
     var maxConnections = ElmrParameters.getInteger(sce.getServletContext(),
         SessionDataImpl.MAX_CONNECTIONS_SYSPROP, SessionDataImpl.DEFAULT_MAX_CONNECTIONS);
 
-    SessionData sd = new SessionDataImpl(hostname, port, minConnections, maxConnections);
-
-    if (sd.isConnected()) {
-      sce.getServletContext().setAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME, sd);
-      LOGGER.config("SessionData object configured; access with context property "
-          + ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME);
-    } else {
-      LOGGER.severe(
-          "Unable to connect to session data store at " + SessionData.SESSION_DATA_HOSTNAME_SYSPROP
-              + " on port " + SessionData.SESSION_DATA_PORT_SYSPROP + "!");
-      throw new RuntimeException("Failed to establish connection to session data store!");
+    var healthInterval = ElmrParameters.getInteger(sce.getServletContext(),
+        SessionDataHealthMonitor.INTERVAL_SYSPROP,
+        SessionDataHealthMonitor.DEFAULT_INTERVAL_MILLIS);
+
+    var negativeCacheTtl = ElmrParameters.getInteger(sce.getServletContext(),
+        NegativeCachingSessionData.TTL_MILLIS_SYSPROP,
+        NegativeCachingSessionData.DEFAULT_TTL_MILLIS);
+
+    var negativeCacheMaxEntries = ElmrParameters.getInteger(sce.getServletContext(),
+        NegativeCachingSessionData.MAX_ENTRIES_SYSPROP,
+        NegativeCachingSessionData.DEFAULT_MAX_ENTRIES);
+
+    var sharedValuesMinLength = ElmrParameters.getInteger(sce.getServletContext(),
+        SessionDataImpl.SHARED_VALUES_MIN_LENGTH_SYSPROP,
+        SessionDataImpl.DEFAULT_SHARED_VALUES_MIN_LENGTH);
+
+    var sharedValuesCacheSize = ElmrParameters.getInteger(sce.getServletContext(),
+        SessionDataImpl.SHARED_VALUES_CACHE_SIZE_SYSPROP,
+        SessionDataImpl.DEFAULT_SHARED_VALUES_CACHE_SIZE);
+
+    var setAttributes = Arrays.stream(ElmrParameters.getString(sce.getServletContext(),
+        SessionDataImpl.SET_ATTRIBUTES_SYSPROP, "").split(",")).map(String::trim)
+        .filter(a -> !a.isEmpty()).collect(Collectors.toSet());
+
+    var store = new SessionDataImpl(hostname, port, minConnections, maxConnections,
+        sharedValuesMinLength, sharedValuesCacheSize, setAttributes);
+    SessionData sd = new InstrumentedSessionData(store);
+    if (negativeCacheTtl > 0) {
+      var negativeCache =
+          new NegativeCachingSessionData(sd, negativeCacheTtl, negativeCacheMaxEntries);
+      Metrics.gauge("elmr_session_data_negative_cache_entries",
+          "Keys remembered as missing from the session data store.", null, null,
+          negativeCache::size);
+      sd = negativeCache;
+    }
+    sd = new CoalescingSessionData(sd);
+    var monitor = new SessionDataHealthMonitor(store, healthInterval);
+
+    // Nothing connects to the store here: the pool opens connections when they are first needed
+    // and the monitor keeps probing in the background until the store answers. Until then
+    // requests that need the store fail with 503 and /status/ready reports not ready.
+    sce.getServletContext().setAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME, sd);
+    LOGGER.config("SessionData object configured; access with context property "
+        + ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME);
+    sce.getServletContext().setAttribute(ServletConstants.SESSION_DATA_HEALTH_CONTEXT_PARAM_NAME,
+        monitor);
+    registerGauges(store, monitor);
+    monitor.start();
+    startLookupServer(sce, sd);
+  }
+
+  private void startLookupServer(ServletContextEvent sce, SessionData sd) {
+    var port = ElmrParameters.getInteger(sce.getServletContext(), LookupServer.PORT_SYSPROP,
+        LookupServer.DEFAULT_PORT);
+    if (port <= 0) {
+      return;
+    }
+    var address = ElmrParameters.getString(sce.getServletContext(), LookupServer.ADDRESS_SYSPROP,
+        LookupServer.DEFAULT_ADDRESS);
+    var workers = ElmrParameters.getInteger(sce.getServletContext(), LookupServer.WORKERS_SYSPROP,
+        LookupServer.DEFAULT_WORKERS);
+    try {
+      var server = new LookupServer(sd, new InetSocketAddress(address, port), workers);
+      server.start();
+      sce.getServletContext().setAttribute(ServletConstants.LOOKUP_SERVER_CONTEXT_PARAM_NAME,
+          server);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not listen for lookups on " + address + ":" + port, e);
+    }
+  }
+
+  private void registerGauges(SessionDataImpl store, SessionDataHealthMonitor monitor) {
+    Metrics.gauge("elmr_session_data_pool_connections", "Connections in the session data pool.",
+        "state", "active", store::getNumActiveConnections);
+    Metrics.gauge("elmr_session_data_pool_connections", "Connections in the session data pool.",
+        "state", "idle", store::getNumIdleConnections);
+    Metrics.gauge("elmr_session_data_pool_waiters",
+        "Threads waiting to borrow a connection from the session data pool.", null, null,
+        store::getNumWaitingForConnection);
+    Metrics.gauge("elmr_session_data_shared_value_cache_entries",
+        "Shared attribute values cached in memory.", null, null, store::getNumCachedSharedValues);
+    Metrics.gauge("elmr_session_data_up",
+        "1 if the last probe of the session data store succeeded, otherwise 0.", null, null,
+        () -> monitor.getHealth().isConnected() ? 1 : 0);
+    Metrics.gauge("elmr_session_data_probe_failures",
+        "Probes of the session data store that have failed since the last success.", null, null,
+        () -> monitor.getHealth().getConsecutiveFailures());
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    var monitor = (SessionDataHealthMonitor) sce.getServletContext()
+        .getAttribute(ServletConstants.SESSION_DATA_HEALTH_CONTEXT_PARAM_NAME);
+    if (monitor != null) {
+      monitor.close();
+      LOGGER.config("Stopped probing session data store.");
+    }
+    var lookupServer = (LookupServer) sce.getServletContext()
+        .getAttribute(ServletConstants.LOOKUP_SERVER_CONTEXT_PARAM_NAME);
+    if (lookupServer != null) {
+      lookupServer.close();
+      LOGGER.config("Stopped answering session lookups.");
     }
   }
 }
@@ -0,0 +1,82 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.Json;
+import edu.illinois.techservices.elmr.SessionData;
+
+/**
+ * Answers whether the current session has a value in a multi-valued attribute, such as a group in
+ * {@code isMemberOf}, without sending the attribute's values to the caller.
+ *
+ * <p>
+ * The parameter {@code value} is the value to look for and the optional parameter
+ * {@code attribute} names the attribute, {@value #DEFAULT_ATTRIBUTE} by default. The response is
+ * the json object {@code {"member":true}} or {@code {"member":false}}. Without a session the
+ * response is {@link HttpServletResponse#SC_UNAUTHORIZED Unauthorized}, as for
+ * {@link SessionAttributesServlet}.
+ */
+@WebServlet("/session/member")
+public class SessionMemberServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 6904312218736625077L;
+
+  private static final Logger LOGGER = Logger.getLogger(SessionMemberServlet.class.getName());
+
+  static final String DEFAULT_ATTRIBUTE = "isMemberOf";
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    var value = request.getParameter("value");
+    if (value == null || value.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Set the parameter value to the value to look for.");
+      return;
+    }
+    var attribute = request.getParameter("attribute");
+    if (attribute == null || attribute.isEmpty()) {
+      attribute = DEFAULT_ATTRIBUTE;
+    }
+    var key = SessionAttributesServlet.sessionKey(request);
+    if (key == null) {
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "No session.");
+      return;
+    }
+    var sd = (SessionData) getServletContext()
+        .getAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME);
+    if (sd == null) {
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+          "Session data store not configured!");
+      return;
+    }
+    Boolean member;
+    try {
+      member = sd.isMember(key, attribute, value);
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Failed to check membership in " + attribute + ".", e);
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "Internal failure: could not connect to session data store!");
+      return;
+    }
+    if (member == null) {
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "No session.");
+      return;
+    }
+
+    response.setHeader("Cache-Control", "private, no-cache");
+    response.setHeader("Vary", "Cookie");
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    var pw = response.getWriter();
+    pw.print(Json.renderObject(Map.of("member", member)));
+    pw.flush();
+  }
+}
@@ -16,6 +16,7 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.CookieEvent;
 import edu.illinois.techservices.elmr.Json;
 import edu.illinois.techservices.elmr.SessionData;
 
@@ -29,13 +30,13 @@ public class SessionServlet extends HttpServlet {
 
   private static final Logger LOGGER = Logger.getLogger(SessionServlet.class.getName());
 
-  private String uniqueUserIdentifier;
+  private transient ElmrConfig.Reference config;
 
   @Override
   public void init() {
-    uniqueUserIdentifier = ElmrParameters.getString(getServletContext(),
-        ServletConstants.UNIQUE_USER_ID_PARAM_NAME, ServletConstants.DEFAULT_UNIQUE_USER_ID);
-    LOGGER.config("Unique user identifier attribute name: " + uniqueUserIdentifier);
+    config = ElmrConfig.reference(getServletContext());
+    LOGGER.config(
+        "Unique user identifier attribute name: " + config.get().getUniqueUserIdentifier());
   }
 
   @Override
@@ -46,9 +47,13 @@ public class SessionServlet extends HttpServlet {
         (request.getParameter("mode") == null || request.getParameter("mode").isEmpty()) ? "create"
             : request.getParameter("mode");
 
+    // Read the snapshot once so the whole request sees the same configuration.
+    var snapshot = config.get();
+    var uniqueUserIdentifier = snapshot.getUniqueUserIdentifier();
+
     if (mode.equals("logout")) {
-      if (sessionDestroyed(request, response)) {
-        redirectToLogout(response);
+      if (sessionDestroyed(request, response, snapshot)) {
+        redirectToLogout(response, snapshot.getLogoutUrl());
       }
     } else {
       var serviceUrl = request.getCookies() != null ? getServiceUrl(request.getCookies()) : "";
@@ -63,7 +68,7 @@ public class SessionServlet extends HttpServlet {
           response.sendError(HttpServletResponse.SC_BAD_REQUEST,
               "Failed to find a request attribute named " + uniqueUserIdentifier
                   + ". Please check your web server configuration.");
-        } else if (sessionCreated(request, response)) {
+        } else if (sessionCreated(request, response, snapshot)) {
           response.sendRedirect(serviceUrl);
         }
       } catch (RuntimeException e) {
@@ -77,8 +82,8 @@ public class SessionServlet extends HttpServlet {
     return;
   }
 
-  private boolean sessionCreated(HttpServletRequest request, HttpServletResponse response)
-      throws IOException, ServletException {
+  private boolean sessionCreated(HttpServletRequest request, HttpServletResponse response,
+      ElmrConfig snapshot) throws IOException, ServletException {
 
     var sd = (SessionData) getServletContext()
         .getAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME);
@@ -109,11 +114,19 @@ public class SessionServlet extends HttpServlet {
       response.setStatus(HttpServletResponse.SC_NO_CONTENT);
       return false;
     } else {
-      var json = Json.renderObject(output);
-      var preComputedKey = request.getAttribute(uniqueUserIdentifier).toString().getBytes();
-      var key = sd.save(preComputedKey, json);
+      var uniqueUserIdentifier = snapshot.getUniqueUserIdentifier();
+      var key = sessionUpdated(request, sd, output, uniqueUserIdentifier);
+      if (key == null) {
+        var json = Json.renderObject(output);
+        var preComputedKey = request.getAttribute(uniqueUserIdentifier).toString().getBytes();
+        var user = request.getAttribute(snapshot.getUserIndexAttribute());
+        key = user == null ? sd.save(preComputedKey, json)
+            : sd.save(preComputedKey, json, user.toString());
+      }
+      var cookieEvent = new CookieEvent();
+      cookieEvent.begin();
       var cookie = new Cookie(ServletConstants.SESSION_KEY_COOKIE_NAME, new String(key));
-      if (!isSecureCookiesDisabled()) {
+      if (!snapshot.isSecureCookiesDisabled()) {
         cookie.setSecure(true);
         if (!request.isSecure()) {
           response.sendError(HttpServletResponse.SC_BAD_REQUEST,
@@ -125,20 +138,48 @@ public class SessionServlet extends HttpServlet {
       }
       cookie.setPath("/");
       response.addCookie(cookie);
+      cookieEvent.end();
+      if (cookieEvent.shouldCommit()) {
+        cookieEvent.cookieName = cookie.getName();
+        cookieEvent.action = "set";
+        cookieEvent.valueSize = cookie.getValue().length();
+        cookieEvent.commit();
+      }
       LOGGER.info(
           "Session " + request.getAttribute(uniqueUserIdentifier).toString() + " established.");
       return true;
     }
   }
 
+  /*
+   * Sends the attributes of a returning user whose session key cookie is still set that were added,
+   * changed or removed to the store, which writes nothing if none were. Returns the key of the
+   * session data, or null if it has to be saved in full because there is none, it belongs to
+   * someone else or it could not be changed this way.
+   */
+  private byte[] sessionUpdated(HttpServletRequest request, SessionData sd,
+      Map<String, Object> output, String uniqueUserIdentifier) {
+    if (output.get(uniqueUserIdentifier) == null || request.getCookies() == null) {
+      return null;
+    }
+    Optional<Cookie> maybeHaveSessionKeyCookie = Arrays.stream(request.getCookies())
+        .filter(c -> c.getName().equals(ServletConstants.SESSION_KEY_COOKIE_NAME)).findAny();
+    if (!maybeHaveSessionKeyCookie.isPresent()
+        || maybeHaveSessionKeyCookie.get().getValue() == null) {
+      return null;
+    }
+    var key = maybeHaveSessionKeyCookie.get().getValue().getBytes();
+    return sd.update(key, uniqueUserIdentifier, output) ? key : null;
+  }
+
   private String getServiceUrl(Cookie[] cookies) {
     Optional<Cookie> maybeHaveServiceUrlCookie = Arrays.stream(cookies)
         .filter(c -> c.getName().equals(ServletConstants.SERVICE_URL_COOKIE_NAME)).findAny();
     return maybeHaveServiceUrlCookie.isPresent() ? maybeHaveServiceUrlCookie.get().getValue() : "";
   }
 
-  private boolean sessionDestroyed(HttpServletRequest request, HttpServletResponse response)
-      throws IOException, ServletException {
+  private boolean sessionDestroyed(HttpServletRequest request, HttpServletResponse response,
+      ElmrConfig snapshot) throws IOException, ServletException {
 
     var sd = (SessionData) getServletContext()
         .getAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME);
@@ -158,7 +199,12 @@ public class SessionServlet extends HttpServlet {
       for (Cookie c : cookies) {
         if (c.getName().equals(ServletConstants.SESSION_KEY_COOKIE_NAME)) {
           byte[] key = c.getValue().getBytes();
-          sd.destroy(key);
+          var user = request.getAttribute(snapshot.getUserIndexAttribute());
+          if (user == null) {
+            sd.destroy(key);
+          } else {
+            sd.destroy(key, user.toString());
+          }
           response.addCookie(createCookieToUnset(ServletConstants.SESSION_KEY_COOKIE_NAME));
           sessionKeyCookieDestroyed = true;
         } else if (c.getName().equals(ServletConstants.SERVICE_URL_COOKIE_NAME)) {
@@ -171,30 +217,33 @@ public class SessionServlet extends HttpServlet {
       }
     }
     // If we get this far, logout has happened.
-    LOGGER.info("Session " + request.getAttribute(uniqueUserIdentifier).toString() + " destroyed.");
+    LOGGER.info("Session "
+        + request.getAttribute(snapshot.getUniqueUserIdentifier()).toString() + " destroyed.");
     return true;
   }
 
   private Cookie createCookieToUnset(String name) {
+    var cookieEvent = new CookieEvent();
+    cookieEvent.begin();
     Cookie toUnset = new Cookie(name, null);
     toUnset.setMaxAge(0);
     toUnset.setPath("/");
+    cookieEvent.end();
+    if (cookieEvent.shouldCommit()) {
+      cookieEvent.cookieName = name;
+      cookieEvent.action = "unset";
+      cookieEvent.commit();
+    }
     return toUnset;
   }
 
-  private void redirectToLogout(HttpServletResponse response) throws IOException, ServletException {
-    var logoutUrl = System.getProperty(ServletConstants.LOGOUT_URL,
-        getServletContext().getInitParameter(ServletConstants.LOGOUT_URL));
-    if (logoutUrl == null || logoutUrl.isEmpty()) {
+  private void redirectToLogout(HttpServletResponse response, String logoutUrl)
+      throws IOException, ServletException {
+    if (logoutUrl.isEmpty()) {
       response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
           "Redirect URL for logout not set!");
     } else {
       response.sendRedirect(logoutUrl);
     }
   }
-
-  private boolean isSecureCookiesDisabled() {
-    return ElmrParameters.getBoolean(getServletContext(),
-        ServletConstants.SESSION_KEY_DISABLE_SECURE, false);
-  }
 }
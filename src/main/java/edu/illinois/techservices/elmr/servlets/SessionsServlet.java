@@ -0,0 +1,107 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.Json;
+import edu.illinois.techservices.elmr.SessionData;
+
+/**
+ * Looks up the session data of many sessions at once for back-end services.
+ *
+ * <p>
+ * A {@code POST} with one or more {@code key} parameters, each the value of a session key cookie,
+ * streams back one line of json per key (NDJSON) in the order the keys were given. Each line has
+ * the {@code key}, whether session data was {@code found} for it, and if so the session's
+ * {@code attributes}. All keys are looked up in one trip to the session data store. Requests with
+ * more keys than {@code edu.illinois.techservices.elmr.servlets.MaxBatchSize} are refused with
+ * status 413 to bound how long a request takes.
+ *
+ * <p>
+ * Anyone holding session keys could read those sessions here, so the servlet is mapped under
+ * {@code /admin} and only members of the administrator group are let through by
+ * {@link AdminFilter}. Back-end services using it sign in as such members.
+ */
+@WebServlet(urlPatterns = {"/admin/sessions/lookup"}, name = "SessionsServlet")
+public class SessionsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 4385066419253530457L;
+
+  private static final Logger LOGGER = Logger.getLogger(SessionsServlet.class.getName());
+
+  private transient ElmrConfig.Reference config;
+
+  @Override
+  public void init() {
+    config = ElmrConfig.reference(getServletContext());
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    var keys = request.getParameterValues("key");
+    if (keys == null || keys.length == 0) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Set the parameter key to each session key to look up.");
+      return;
+    }
+    var maxBatchSize = config.get().getMaxBatchSize();
+    if (keys.length > maxBatchSize) {
+      response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+          "Look up at most " + maxBatchSize + " session keys at a time.");
+      return;
+    }
+    var sd = (SessionData) getServletContext()
+        .getAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME);
+    if (sd == null) {
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+          "Session data store not configured!");
+      return;
+    }
+    var keyBytes = new ArrayList<byte[]>(keys.length);
+    for (String key : keys) {
+      keyBytes.add(key.getBytes());
+    }
+    List<String> sessions;
+    try {
+      sessions = sd.getAll(keyBytes);
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Failed to look up " + keys.length + " sessions.", e);
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "Internal failure: could not connect to session data store!");
+      return;
+    }
+    response.setContentType("application/x-ndjson");
+    response.setCharacterEncoding("UTF-8");
+    var pw = response.getWriter();
+    for (int i = 0; i < keys.length; i++) {
+      pw.println(line(keys[i], sessions.get(i)));
+    }
+    pw.flush();
+  }
+
+  /*
+   * Renders the line for one key. Session data is already a json object, so it is written as is
+   * instead of being decoded and rendered again.
+   */
+  private static String line(String key, String sessionData) throws IOException {
+    Map<String, Object> m = new LinkedHashMap<>();
+    m.put("key", key);
+    m.put("found", sessionData != null);
+    var json = Json.renderObject(m);
+    if (sessionData == null) {
+      return json;
+    }
+    return json.substring(0, json.length() - 1) + ",\"attributes\":"
+        + (sessionData.isEmpty() ? "{}" : sessionData) + "}";
+  }
+}
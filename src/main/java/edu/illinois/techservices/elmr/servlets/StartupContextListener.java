@@ -0,0 +1,129 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import edu.illinois.techservices.elmr.Metrics;
+
+/**
+ * Initializes the application by running {@link AttributeMapContextListener},
+ * {@link ApacheConfigFileLoader} and {@link SessionDataContextListener} in parallel.
+ *
+ * <p>
+ * None of the three depend on each other, so startup takes as long as the slowest of them instead
+ * of their sum. This listener waits for all of them before returning so the container does not
+ * serve requests until every context parameter is set. If any of them fails, startup fails with the
+ * same exception it would have without this listener. They are destroyed in reverse order.
+ *
+ * <p>
+ * The time taken by each and in total is logged and published as the gauge
+ * {@code elmr_startup_milliseconds}, along with the time since the JVM started.
+ */
+@WebListener
+public class StartupContextListener implements ServletContextListener {
+
+  private static final Logger LOGGER = Logger.getLogger(StartupContextListener.class.getName());
+
+  static final String STARTUP_MILLISECONDS = "elmr_startup_milliseconds";
+
+  static final String STARTUP_MILLISECONDS_HELP =
+      "Milliseconds taken by each step of starting elmr.";
+
+  private final List<Step> steps =
+      List.of(new Step("attribute_map", new AttributeMapContextListener()),
+          new Step("apache_config", new ApacheConfigFileLoader()),
+          new Step("session_data", new SessionDataContextListener()));
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    var start = System.nanoTime();
+    var executor = newExecutor(steps.size());
+    try {
+      var futures = new ArrayList<CompletableFuture<Void>>();
+      for (Step step : steps) {
+        futures.add(CompletableFuture.runAsync(() -> step.run(sce), executor));
+      }
+      for (CompletableFuture<Void> future : futures) {
+        try {
+          future.join();
+        } catch (CompletionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    var totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    var sinceJvmStartMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    var sb = new StringBuilder("Initialized in ").append(totalMillis).append(" ms (");
+    for (Step step : steps) {
+      sb.append(step.name).append(' ').append(step.millis).append(" ms, ");
+      Metrics.gauge(STARTUP_MILLISECONDS, STARTUP_MILLISECONDS_HELP, "step", step.name,
+          () -> step.millis);
+    }
+    sb.append(sinceJvmStartMillis).append(" ms since the JVM started).");
+    LOGGER.info(sb.toString());
+    Metrics.gauge(STARTUP_MILLISECONDS, STARTUP_MILLISECONDS_HELP, "step", "total",
+        () -> totalMillis);
+    Metrics.gauge(STARTUP_MILLISECONDS, STARTUP_MILLISECONDS_HELP, "step", "jvm",
+        () -> sinceJvmStartMillis);
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    for (int i = steps.size() - 1; i >= 0; i--) {
+      steps.get(i).listener.contextDestroyed(sce);
+    }
+  }
+
+  private static ExecutorService newExecutor(int threads) {
+    // Threads created here inherit the web application's context class loader, which the listeners
+    // need to find the XML parser and their own resources.
+    var count = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, r -> {
+      var t = new Thread(r, "elmr-startup-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * A listener run at startup and the time it took.
+   */
+  private static final class Step {
+
+    private final String name;
+
+    private final ServletContextListener listener;
+
+    private volatile long millis;
+
+    private Step(String name, ServletContextListener listener) {
+      this.name = name;
+      this.listener = listener;
+    }
+
+    private void run(ServletContextEvent sce) {
+      var start = System.nanoTime();
+      try {
+        listener.contextInitialized(sce);
+      } finally {
+        millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      }
+    }
+  }
+}
@@ -9,15 +9,32 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import edu.illinois.techservices.elmr.Json;
 import edu.illinois.techservices.elmr.SessionData;
+import edu.illinois.techservices.elmr.SessionDataHealthMonitor;
 
 /**
  * Servlet that can be used as a status/health check for elmr.
+ *
+ * <p>
+ * Responses are answered from the snapshot cached by a {@link SessionDataHealthMonitor} so polling
+ * these endpoints never contacts the session data store. Three endpoints are available:
+ *
+ * <dl>
+ * <dt>{@code /status/live}
+ * <dd>Liveness: succeeds whenever the web application is able to serve requests.
+ * <dt>{@code /status/ready}
+ * <dd>Readiness: succeeds only if the last background probe of the session data store succeeded and
+ * is recent.
+ * <dt>{@code /status}
+ * <dd>Same as {@code /status/ready}; kept for existing health checks.
+ * </dl>
  */
-@WebServlet("/status")
+@WebServlet({"/status", "/status/live", "/status/ready"})
 public class StatusServlet extends HttpServlet {
 
   private static final long serialVersionUID = 7601036418589497112L;
 
+  private static final String LIVENESS_PATH = "/status/live";
+
   /**
    * Check the status of a connection to the session data store.
    * 
@@ -32,8 +49,8 @@ public class StatusServlet extends HttpServlet {
    * connection to the session data store. Usually means the application was reconfigured and the
    * session data object was not instantiated and set as an attribute in the servlet context.
    * <dt>{@value HttpServletResponse#SC_SERVICE_UNAVAILABLE}
-   * <dd><strong>FAILURE</strong>: Session data object was found, but there is no connection to the
-   * actual store.
+   * <dd><strong>FAILURE</strong>: Session data object was found, but the last probe of the actual
+   * store failed or is out of date.
    * </dl>
    * 
    * <p>
@@ -50,23 +67,35 @@ public class StatusServlet extends HttpServlet {
    * 
    * { 
    *   "httpStatus": 503, 
-   *   "msg": "Could not connect to session data store."
+   *   "msg": "Could not connect to session data store.",
+   *   "consecutiveFailures": 3
    * }
    * 
    * }
    * </pre>
+   *
+   * <p>
+   * Requests to {@code /status/live} always succeed with
+   * {@value HttpServletResponse#SC_NO_CONTENT}.
    */
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException {
+    if (LIVENESS_PATH.equals(request.getServletPath())) {
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+      return;
+    }
+
     var sd = (SessionData) getServletContext()
         .getAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME);
+    var monitor = (SessionDataHealthMonitor) getServletContext()
+        .getAttribute(ServletConstants.SESSION_DATA_HEALTH_CONTEXT_PARAM_NAME);
     var sc = HttpServletResponse.SC_NO_CONTENT;
     var msg = "";
-    if (sd == null) {
+    if (sd == null || monitor == null) {
       sc = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
       msg = "Session data store not set in web application.";
-    } else if (!sd.isConnected()) {
+    } else if (!monitor.isReady()) {
       sc = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
       msg = "Could not connect to session data store.";
     }
@@ -74,7 +103,7 @@ public class StatusServlet extends HttpServlet {
     if (isSuccessStatus(sc)) {
       response.setStatus(sc);
     } else {
-      var json = Json.renderObject(generateErrorResponseObject(sc, msg));
+      var json = Json.renderObject(generateErrorResponseObject(sc, msg, monitor));
       response.setContentLength(json.length());
       response.setContentType("application/json");
       response.setStatus(sc);
@@ -85,8 +114,13 @@ public class StatusServlet extends HttpServlet {
     return;
   }
 
-  private Map<String, Object> generateErrorResponseObject(int statusCode, String message) {
-    return Map.of("httpStatus", statusCode, "message", message);
+  private Map<String, Object> generateErrorResponseObject(int statusCode, String message,
+      SessionDataHealthMonitor monitor) {
+    if (monitor == null) {
+      return Map.of("httpStatus", statusCode, "message", message);
+    }
+    return Map.of("httpStatus", statusCode, "message", message, "consecutiveFailures",
+        monitor.getHealth().getConsecutiveFailures());
   }
 
   private boolean isSuccessStatus(int sc) {
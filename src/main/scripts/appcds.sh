@@ -0,0 +1,36 @@
+#!/bin/sh
+# -----------------------------------------------------------------------------
+#
+# appcds.sh
+#
+# Creates elmr.jsa, a class data sharing archive of the classes loaded while
+# elmr starts in bin/embedded.sh. Loading classes from the archive is faster
+# than loading them from jars.
+#
+# Run this with the same java and ELMR_BASE that embedded.sh will use; java
+# ignores the archive if either changes. Arguments are passed to java while
+# elmr starts, for instance to point at an attribute-map.xml file. The session
+# data store does not need to be running.
+#
+# Only shell builtins are used so this runs in a minimal container image.
+#
+# -----------------------------------------------------------------------------
+
+if [ -z "$ELMR_BASE" ]; then
+  ELMR_BASE=`cd "${0%/*}/.." && pwd`
+fi
+JAVA="${JAVA:-java}"
+
+# Keep in step with embedded.sh; the archive is only used if the class path matches.
+ELMR_CLASSPATH="$ELMR_BASE/lib/*:$ELMR_BASE/bin/tomcat-juli.jar:$ELMR_BASE/webapps/auth#elmr/WEB-INF/lib/*"
+
+# Start elmr once, stopping as soon as it is up, and record every class loaded.
+"$JAVA" -Xshare:off -XX:DumpLoadedClassList="$ELMR_BASE/temp/elmr.classlist" "$@" \
+  -Dcatalina.base="$ELMR_BASE" \
+  -Dedu.illinois.techservices.elmr.Main.exitAfterStart=true \
+  -cp "$ELMR_CLASSPATH" \
+  edu.illinois.techservices.elmr.Main || exit 1
+
+"$JAVA" -Xshare:dump -XX:SharedClassListFile="$ELMR_BASE/temp/elmr.classlist" \
+  -XX:SharedArchiveFile="$ELMR_BASE/elmr.jsa" \
+  -cp "$ELMR_CLASSPATH" || exit 1
@@ -0,0 +1,33 @@
+#!/bin/sh
+# -----------------------------------------------------------------------------
+#
+# embedded.sh
+#
+# Runs elmr in an embedded Tomcat (edu.illinois.techservices.elmr.Main)
+# instead of through Bootstrap. Nothing is read from conf/server.xml,
+# conf/web.xml or conf/context.xml; set context parameters as system
+# properties in JAVA_OPTS.
+#
+# If bin/appcds.sh has created the class data sharing archive elmr.jsa, it is
+# used to load classes at startup.
+#
+# Only shell builtins are used so this runs in a minimal container image.
+#
+# -----------------------------------------------------------------------------
+
+if [ -z "$ELMR_BASE" ]; then
+  ELMR_BASE=`cd "${0%/*}/.." && pwd`
+fi
+JAVA="${JAVA:-java}"
+
+# Keep in step with appcds.sh; the archive is only used if the class path matches.
+ELMR_CLASSPATH="$ELMR_BASE/lib/*:$ELMR_BASE/bin/tomcat-juli.jar:$ELMR_BASE/webapps/auth#elmr/WEB-INF/lib/*"
+
+if [ -r "$ELMR_BASE/elmr.jsa" ]; then
+  JAVA_OPTS="-Xshare:auto -XX:SharedArchiveFile=$ELMR_BASE/elmr.jsa $JAVA_OPTS"
+fi
+
+exec "$JAVA" $JAVA_OPTS "$@" \
+  -Dcatalina.base="$ELMR_BASE" \
+  -cp "$ELMR_CLASSPATH" \
+  edu.illinois.techservices.elmr.Main
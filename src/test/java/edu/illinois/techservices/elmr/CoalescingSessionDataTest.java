@@ -0,0 +1,158 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CoalescingSessionDataTest {
+
+  private static final int THREADS = 16;
+
+  private static final String DATA = "{\"uid\":\"testuser1\"}";
+
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void testConcurrentLookupsShareOneCall() throws Exception {
+    var store = new CountingSessionData();
+    var key = store.save(DATA);
+    var sd = new CoalescingSessionData(store);
+
+    store.getGate = new CountDownLatch(1);
+    store.getStarted = new CountDownLatch(1);
+    var ready = new CountDownLatch(THREADS);
+    var results = new ArrayList<Future<Map<String, Object>>>();
+    for (int i = 0; i < THREADS; i++) {
+      results.add(executor.submit(() -> {
+        ready.countDown();
+        return sd.getAttributes(key);
+      }));
+    }
+    ready.await(10L, TimeUnit.SECONDS);
+    assertTrue(store.getStarted.await(10L, TimeUnit.SECONDS));
+    // Give the other threads time to join the call in flight before it finishes.
+    Thread.sleep(100L);
+    store.getGate.countDown();
+
+    var first = results.get(0).get(10L, TimeUnit.SECONDS);
+    assertEquals("testuser1", first.get("uid"));
+    for (Future<Map<String, Object>> result : results) {
+      assertSame(first, result.get(10L, TimeUnit.SECONDS));
+    }
+    assertEquals(1, store.gets.get());
+    assertThrows(UnsupportedOperationException.class, () -> first.put("uid", "changed"));
+  }
+
+  @Test
+  void testLookupsAfterCallFinishesFetchAgain() {
+    var store = new CountingSessionData();
+    var key = store.save(DATA);
+    var sd = new CoalescingSessionData(store);
+
+    assertEquals(DATA, sd.get(key));
+    assertEquals(DATA, sd.get(key));
+    assertEquals(2, store.gets.get());
+  }
+
+  @Test
+  void testLookupStartedAfterSaveIsNotStale() throws Exception {
+    var store = new CountingSessionData();
+    var key = store.save(DATA);
+    var sd = new CoalescingSessionData(store);
+
+    store.getGate = new CountDownLatch(1);
+    store.getStarted = new CountDownLatch(1);
+    var before = executor.submit(() -> sd.get(key));
+    assertTrue(store.getStarted.await(10L, TimeUnit.SECONDS));
+
+    // Saved while the first lookup is still in flight.
+    var changed = "{\"uid\":\"testuser2\"}";
+    sd.save(key, changed);
+    store.getGate.countDown();
+    var after = executor.submit(() -> sd.get(key));
+
+    assertEquals(changed, after.get(10L, TimeUnit.SECONDS));
+    before.get(10L, TimeUnit.SECONDS);
+    assertEquals(2, store.gets.get());
+
+    sd.destroy(key);
+    assertNull(sd.get(key));
+  }
+
+  @Test
+  void testFailureReachesEveryCaller() throws Exception {
+    var flight = new SingleFlight<String, String>(() -> {
+    });
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var owner = executor.submit(() -> flight.execute("k", () -> {
+      started.countDown();
+      await(release);
+      throw new IllegalStateException("store down");
+    }));
+    assertTrue(started.await(10L, TimeUnit.SECONDS));
+    var joiner = executor.submit(() -> flight.execute("k", () -> "not called"));
+    Thread.sleep(100L);
+    release.countDown();
+
+    for (Future<String> f : List.of(owner, joiner)) {
+      var e = assertThrows(ExecutionException.class, () -> f.get(10L, TimeUnit.SECONDS));
+      assertTrue(e.getCause() instanceof IllegalStateException, e.toString());
+    }
+    assertEquals("next", flight.execute("k", () -> "next"));
+  }
+
+  @Test
+  void testNoCallIsLostUnderContention() throws Exception {
+    var calls = new AtomicInteger();
+    var joins = new AtomicInteger();
+    var flight = new SingleFlight<Integer, Integer>(joins::incrementAndGet);
+    var rounds = 2000;
+    var results = new ArrayList<Future<Integer>>();
+    for (int i = 0; i < rounds; i++) {
+      var key = i % 8;
+      results.add(executor.submit(() -> flight.execute(key, () -> {
+        calls.incrementAndGet();
+        return key;
+      })));
+    }
+    for (int i = 0; i < rounds; i++) {
+      assertEquals(Integer.valueOf(i % 8), results.get(i).get(10L, TimeUnit.SECONDS));
+    }
+    // Every caller either made a call or joined one.
+    assertEquals(rounds, calls.get() + joins.get());
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
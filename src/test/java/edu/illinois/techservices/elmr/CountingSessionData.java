@@ -0,0 +1,67 @@
+package edu.illinois.techservices.elmr;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SessionData implementation for tests that stores data in memory and counts the calls made to it.
+ */
+class CountingSessionData implements SessionData {
+
+  final InMemorySessionData store = new InMemorySessionData();
+
+  final AtomicInteger gets = new AtomicInteger();
+
+  final AtomicInteger saves = new AtomicInteger();
+
+  final AtomicInteger destroys = new AtomicInteger();
+
+  /**
+   * If set, {@link #get(byte[])} waits for it to be counted down before reading the store.
+   */
+  volatile CountDownLatch getGate;
+
+  /**
+   * Counted down each time {@link #get(byte[])} is called, before waiting for {@link #getGate}.
+   */
+  volatile CountDownLatch getStarted = new CountDownLatch(0);
+
+  @Override
+  public byte[] save(byte[] preComputedKey, String sessionData) {
+    saves.incrementAndGet();
+    return store.save(preComputedKey, sessionData);
+  }
+
+  @Override
+  public byte[] save(String sessionData) {
+    saves.incrementAndGet();
+    return store.save(sessionData);
+  }
+
+  @Override
+  public String get(byte[] key) {
+    gets.incrementAndGet();
+    getStarted.countDown();
+    var gate = getGate;
+    if (gate != null) {
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    }
+    return store.get(key);
+  }
+
+  @Override
+  public void destroy(byte[] key) {
+    destroys.incrementAndGet();
+    store.destroy(key);
+  }
+
+  @Override
+  public boolean isConnected() {
+    return true;
+  }
+}
@@ -0,0 +1,53 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+class FlightRecorderEventsTest {
+
+  @Test
+  void testStoreOperationEventsCarrySizes() throws Exception {
+    var sd = new InstrumentedSessionData(new InMemorySessionData());
+    var data = "{\"uid\":\"testuser1\"}";
+    var jfr = Files.createTempFile(FlightRecorderEventsTest.class.getSimpleName(), ".jfr");
+    try (var recording = new Recording()) {
+      recording.enable(StoreOperationEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+      var key = sd.save(data);
+      sd.get(key);
+      sd.destroy(key);
+      sd.get(key);
+      recording.stop();
+      recording.dump(jfr);
+
+      var events = RecordingFile.readAllEvents(jfr).stream()
+          .filter(e -> e.getEventType().getName()
+              .equals("edu.illinois.techservices.elmr.StoreOperation"))
+          .collect(Collectors.toList());
+      assertEquals(4, events.size());
+
+      RecordedEvent save = events.get(0);
+      assertEquals("save", save.getString("operation"));
+      assertEquals(key.length, save.getInt("keySize"));
+      assertEquals(data.length(), save.getInt("payloadSize"));
+
+      RecordedEvent hit = events.get(1);
+      assertEquals("get", hit.getString("operation"));
+      assertTrue(hit.getBoolean("found"));
+
+      RecordedEvent miss = events.get(3);
+      assertFalse(miss.getBoolean("found"));
+      assertEquals(0, miss.getInt("payloadSize"));
+    } finally {
+      Files.deleteIfExists(jfr);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class InMemorySessionDataTest {
+
+  private static final String DATA =
+      "{\"uid\":\"testuser1\",\"displayName\":\"Test User\",\"isMemberOf\":[\"staff\"]}";
+
+  @Test
+  void testUpdateMergesChangedAttributes() {
+    var sd = new InMemorySessionData();
+    var key = sd.save(DATA);
+
+    assertTrue(sd.update(key, "uid", Map.of("uid", "testuser1", "isMemberOf",
+        List.of("staff", "faculty"), "mail", "testuser1@example.edu")));
+
+    assertEquals("{\"uid\":\"testuser1\",\"isMemberOf\":[\"staff\",\"faculty\"],"
+        + "\"mail\":\"testuser1@example.edu\"}", sd.get(key));
+  }
+
+  @Test
+  void testUnchangedAttributesAreNotWritten() {
+    var sd = new InMemorySessionData();
+    var key = sd.save(DATA);
+    var stored = sd.get(key);
+    // Empty values are left out of session data, so they do not count as changes.
+    var attributes = new HashMap<String, Object>(Json.marshal(DATA));
+    attributes.put("mail", "");
+
+    assertTrue(sd.update(key, "uid", attributes));
+
+    assertSame(stored, sd.get(key), "Unchanged session data was rewritten!");
+  }
+
+  @Test
+  void testOnlyTheSameUsersSessionIsUpdated() {
+    var sd = new InMemorySessionData();
+    var key = sd.save(DATA);
+
+    assertFalse(sd.update(key, "uid", Map.of("uid", "testuser2", "displayName", "Test User")));
+    assertFalse(sd.update(key, "uid", Map.of("displayName", "Test User")));
+    assertFalse(sd.update("MTIzNA==".getBytes(), "uid", Map.of("uid", "testuser1")));
+    assertEquals(DATA, sd.get(key));
+  }
+}
@@ -0,0 +1,238 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import edu.illinois.techservices.elmr.servlets.AttributesFilter;
+import edu.illinois.techservices.elmr.servlets.AttributesServlet;
+
+class LookupServerTest {
+
+  private static final Logger LOGGER = Logger.getLogger(LookupServerTest.class.getName());
+
+  private static final String DATA =
+      "{\"uid\":\"testuser1\",\"displayName\":\"Test Usér\",\"isMemberOf\":[\"staff\"]}";
+
+  @Test
+  void testPipelinedLookupsAreAnsweredInOrder() throws IOException {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+    var missing = new String(sd.save(DATA));
+    sd.destroy(missing.getBytes());
+
+    try (var server = start(sd); var socket = connect(server)) {
+      var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      for (String k : List.of(key, missing, "not base64!", key)) {
+        writeKey(out, k);
+      }
+      out.flush();
+      assertEquals(DATA, readData(in));
+      assertEquals(LookupServer.NOT_FOUND, in.readInt());
+      assertEquals(LookupServer.NOT_FOUND, in.readInt());
+      assertEquals(DATA, readData(in));
+
+      // The connection stays open for more lookups.
+      writeKey(out, key);
+      out.flush();
+      assertEquals(DATA, readData(in));
+    }
+  }
+
+  @Test
+  void testStoreFailureIsReported() throws IOException {
+    var store = new InMemorySessionData();
+    var key = new String(store.save(DATA));
+    var sd = new SessionData() {
+      public byte[] save(byte[] preComputedKey, String sessionData) {
+        return store.save(preComputedKey, sessionData);
+      }
+
+      public byte[] save(String sessionData) {
+        return store.save(sessionData);
+      }
+
+      public String get(byte[] key) {
+        return store.get(key);
+      }
+
+      public List<String> getAll(Collection<byte[]> keys) {
+        throw new IllegalStateException("Store is down.");
+      }
+
+      public void destroy(byte[] key) {
+        store.destroy(key);
+      }
+
+      public boolean isConnected() {
+        return false;
+      }
+    };
+
+    try (var server = start(sd); var socket = connect(server)) {
+      var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      writeKey(out, key);
+      out.flush();
+      assertEquals(LookupServer.STORE_ERROR,
+          new DataInputStream(new BufferedInputStream(socket.getInputStream())).readInt());
+    }
+  }
+
+  @Test
+  void testOversizedKeyClosesConnection() throws IOException {
+    try (var server = start(new InMemorySessionData()); var socket = connect(server)) {
+      var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.writeInt(LookupServer.MAX_KEY_LENGTH + 1);
+      out.flush();
+      var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      assertThrows(EOFException.class, in::readInt);
+    }
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "edu.illinois.techservices.elmr.Benchmark", matches = "true")
+  void benchmarkLookupAgainstAttributesServlet() throws Exception {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+    var lookups = 5000;
+
+    var baseDir = Files.createTempDirectory("elmr-benchmark");
+    var tomcat = new Tomcat();
+    tomcat.setBaseDir(baseDir.toString());
+    var connector = new Connector("HTTP/1.1");
+    connector.setPort(0);
+    tomcat.getService().addConnector(connector);
+    tomcat.setConnector(connector);
+    var context = tomcat.addContext("/elmr", baseDir.toString());
+    context.addServletContainerInitializer((classes, ctx) -> {
+      ctx.setAttribute(AttributesFilter.class.getPackageName() + ".sessionData", sd);
+      ctx.setAttribute(AttributesFilter.class.getPackageName() + ".attributes",
+          List.of("uid", "displayName", "isMemberOf"));
+    }, null);
+    Tomcat.addServlet(context, "AttributesServlet", new AttributesServlet());
+    context.addServletMappingDecoded("/attributes", "AttributesServlet");
+    var filterDef = new FilterDef();
+    filterDef.setFilterName("AttributesFilter");
+    filterDef.setFilter(new AttributesFilter());
+    context.addFilterDef(filterDef);
+    var filterMap = new FilterMap();
+    filterMap.setFilterName("AttributesFilter");
+    filterMap.addServletName("AttributesServlet");
+    context.addFilterMap(filterMap);
+    tomcat.start();
+    long httpMicros;
+    try {
+      var url = new URL("http://127.0.0.1:" + connector.getLocalPort() + "/elmr/attributes");
+      for (int i = 0; i < 500; i++) {
+        getAttributesPage(url, key);
+      }
+      var start = System.nanoTime();
+      for (int i = 0; i < lookups; i++) {
+        getAttributesPage(url, key);
+      }
+      httpMicros = (System.nanoTime() - start) / 1000 / lookups;
+    } finally {
+      tomcat.stop();
+      tomcat.destroy();
+    }
+
+    long sequentialMicros;
+    long pipelinedMicros;
+    try (var server = start(sd); var socket = connect(server)) {
+      var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      for (int i = 0; i < 500; i++) {
+        writeKey(out, key);
+        out.flush();
+        readData(in);
+      }
+      var start = System.nanoTime();
+      for (int i = 0; i < lookups; i++) {
+        writeKey(out, key);
+        out.flush();
+        readData(in);
+      }
+      sequentialMicros = (System.nanoTime() - start) / 1000 / lookups;
+
+      var batch = 50;
+      start = System.nanoTime();
+      for (int i = 0; i < lookups; i += batch) {
+        for (int j = 0; j < batch; j++) {
+          writeKey(out, key);
+        }
+        out.flush();
+        for (int j = 0; j < batch; j++) {
+          readData(in);
+        }
+      }
+      pipelinedMicros = (System.nanoTime() - start) / 1000 / lookups;
+    }
+    LOGGER.info(String.format(
+        "Per lookup: %d us through /attributes over HTTP, %d us through the lookup server, "
+            + "%d us pipelined",
+        httpMicros, sequentialMicros, pipelinedMicros));
+    assertTrue(sequentialMicros < httpMicros);
+  }
+
+  private static LookupServer start(SessionData sd) throws IOException {
+    var server = new LookupServer(sd, new InetSocketAddress("127.0.0.1", 0), 2);
+    server.start();
+    return server;
+  }
+
+  private static Socket connect(LookupServer server) throws IOException {
+    var socket = new Socket();
+    socket.setTcpNoDelay(true);
+    socket.setSoTimeout(5000);
+    socket.connect(server.getLocalAddress());
+    return socket;
+  }
+
+  private static void writeKey(DataOutputStream out, String key) throws IOException {
+    var bytes = key.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readData(DataInputStream in) throws IOException {
+    var length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    var bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void getAttributesPage(URL url, String key) throws IOException {
+    var connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestProperty("Cookie",
+        "__edu.illinois.techservices.elmr.servlets.sessionKey=" + key);
+    assertEquals(200, connection.getResponseCode());
+    try (var in = connection.getInputStream()) {
+      in.transferTo(new ByteArrayOutputStream());
+    }
+  }
+}
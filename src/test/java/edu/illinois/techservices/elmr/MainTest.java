@@ -0,0 +1,98 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.lang.annotation.Annotation;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebListener;
+import javax.servlet.annotation.WebServlet;
+import org.apache.catalina.Context;
+import org.junit.jupiter.api.Test;
+import edu.illinois.techservices.elmr.servlets.SessionServlet;
+
+class MainTest {
+
+  @Test
+  void testServletsFiltersAndListenersRegistered() throws Exception {
+    var baseDir = Files.createTempDirectory(MainTest.class.getSimpleName());
+    var tomcat = Main.newTomcat(baseDir, "HTTP/1.1", 0, "/elmr");
+    var context = (Context) tomcat.getHost().findChild("/elmr");
+    assertNotNull(context);
+
+    assertEquals("SessionServlet", context.findServletMapping("/session"));
+    assertEquals("AttributesServlet", context.findServletMapping("/attributes"));
+    assertEquals("edu.illinois.techservices.elmr.servlets.StatusServlet",
+        context.findServletMapping("/status/ready"));
+    assertEquals("edu.illinois.techservices.elmr.servlets.RecordingServlet",
+        context.findServletMapping("/admin/recording"));
+    assertEquals(Main.SERVLETS.size(), context.findChildren().length);
+
+    var filterNames = Arrays.stream(context.findFilterMaps()).map(m -> m.getFilterName())
+        .collect(Collectors.toList());
+    assertEquals(Main.FILTERS.stream().map(Class::getName).collect(Collectors.toList()),
+        filterNames);
+    var attributesFilterMap = context.findFilterMaps()[filterNames.size() - 1];
+    assertEquals(List.of("AttributesServlet"),
+        Arrays.asList(attributesFilterMap.getServletNames()));
+
+    var listeners = Arrays.asList(context.findApplicationListeners());
+    for (Class<?> listener : Main.LISTENERS) {
+      assertTrue(listeners.contains(listener.getName()), listener + " not registered!");
+    }
+  }
+
+  @Test
+  void testEveryAnnotatedClassRegistered() throws Exception {
+    // The launcher does not scan for annotations, so each class has to be listed.
+    var baseDir = Files.createTempDirectory(MainTest.class.getSimpleName());
+    var tomcat = Main.newTomcat(baseDir, "HTTP/1.1", 0, "/elmr");
+    var context = (Context) tomcat.getHost().findChild("/elmr");
+    for (Class<?> servlet : annotatedServletClasses(WebServlet.class)) {
+      assertTrue(Main.SERVLETS.contains(servlet), servlet + " not in Main.SERVLETS!");
+      var webServlet = servlet.getAnnotation(WebServlet.class);
+      var urlPatterns = webServlet.urlPatterns().length > 0 ? webServlet.urlPatterns()
+          : webServlet.value();
+      for (String urlPattern : urlPatterns) {
+        assertNotNull(context.findServletMapping(urlPattern), urlPattern + " not mapped!");
+      }
+    }
+    for (Class<?> filter : annotatedServletClasses(WebFilter.class)) {
+      assertTrue(Main.FILTERS.contains(filter), filter + " not in Main.FILTERS!");
+    }
+    for (Class<?> listener : annotatedServletClasses(WebListener.class)) {
+      assertTrue(Main.LISTENERS.contains(listener), listener + " not in Main.LISTENERS!");
+    }
+  }
+
+  /*
+   * Returns the classes in the servlets package with the given annotation, found by listing the
+   * directory the package was compiled to.
+   */
+  private static List<Class<?>> annotatedServletClasses(Class<? extends Annotation> annotation)
+      throws Exception {
+    var packageName = SessionServlet.class.getPackageName();
+    var url = SessionServlet.class.getResource(SessionServlet.class.getSimpleName() + ".class");
+    var annotated = new ArrayList<Class<?>>();
+    try (var files = Files.list(Path.of(url.toURI()).getParent())) {
+      for (Path file : files.collect(Collectors.toList())) {
+        var name = file.getFileName().toString();
+        if (name.endsWith(".class") && !name.contains("$")) {
+          var c = Class.forName(packageName + "." + name.substring(0, name.length() - 6));
+          if (c.isAnnotationPresent(annotation)) {
+            annotated.add(c);
+          }
+        }
+      }
+    }
+    assertFalse(annotated.isEmpty(), "No classes annotated with " + annotation + " found!");
+    return annotated;
+  }
+}
@@ -0,0 +1,84 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+
+  @Test
+  void testHistogramBuckets() throws Exception {
+    var h = Metrics.histogram("elmr_test_histogram_seconds", "Test histogram.", "case", "buckets");
+    h.record(10_000L);
+    h.record(50_000L);
+    h.record(3_000_000L);
+    h.record(10_000_000_000L);
+
+    assertEquals(4, h.getCount());
+    assertEquals(10_003_060_000L, h.getSumNanos());
+
+    var sb = new StringBuilder();
+    Metrics.writePrometheus(sb);
+    var text = sb.toString();
+    assertTrue(text.contains("# TYPE elmr_test_histogram_seconds histogram\n"), text);
+    assertTrue(
+        text.contains("elmr_test_histogram_seconds_bucket{case=\"buckets\",le=\"5.0E-5\"} 2\n"),
+        text);
+    assertTrue(
+        text.contains("elmr_test_histogram_seconds_bucket{case=\"buckets\",le=\"0.005\"} 3\n"),
+        text);
+    assertTrue(
+        text.contains("elmr_test_histogram_seconds_bucket{case=\"buckets\",le=\"2.5\"} 3\n"),
+        text);
+    assertTrue(
+        text.contains("elmr_test_histogram_seconds_bucket{case=\"buckets\",le=\"+Inf\"} 4\n"),
+        text);
+    assertTrue(text.contains("elmr_test_histogram_seconds_count{case=\"buckets\"} 4\n"), text);
+  }
+
+  @Test
+  void testFamilyHeaderWrittenOnce() throws Exception {
+    Metrics.counter("elmr_test_family_total", "Test family.", "member", "a").increment();
+    Metrics.counter("elmr_test_family_total", "Test family.", "member", "b");
+
+    var sb = new StringBuilder();
+    Metrics.writePrometheus(sb);
+    var text = sb.toString();
+    assertEquals(text.indexOf("# HELP elmr_test_family_total"),
+        text.lastIndexOf("# HELP elmr_test_family_total"));
+    assertTrue(text.contains("elmr_test_family_total{member=\"a\"} 1\n"), text);
+    assertTrue(text.contains("elmr_test_family_total{member=\"b\"} 0\n"), text);
+  }
+
+  @Test
+  void testGaugeReplacedOnReregistration() throws Exception {
+    Metrics.gauge("elmr_test_gauge", "Test gauge.", null, null, () -> 1L);
+    Metrics.gauge("elmr_test_gauge", "Test gauge.", null, null, () -> 2L);
+
+    var sb = new StringBuilder();
+    Metrics.writePrometheus(sb);
+    var text = sb.toString();
+    assertTrue(text.contains("elmr_test_gauge 2\n"), text);
+    assertEquals(text.indexOf("\nelmr_test_gauge "), text.lastIndexOf("\nelmr_test_gauge "));
+  }
+
+  @Test
+  void testInstrumentedSessionDataRecordsOperations() {
+    var sd = new InstrumentedSessionData(new InMemorySessionData());
+    var saves = Metrics.STORE_SAVE.getCount();
+    var gets = Metrics.STORE_GET.getCount();
+    var destroys = Metrics.STORE_DESTROY.getCount();
+    var errors = Metrics.STORE_ERRORS.get();
+
+    var key = sd.save("some-test-data");
+    assertEquals("some-test-data", sd.get(key));
+    sd.destroy(key);
+    assertThrows(RuntimeException.class, () -> sd.get(null));
+
+    assertEquals(saves + 1, Metrics.STORE_SAVE.getCount());
+    assertEquals(gets + 2, Metrics.STORE_GET.getCount());
+    assertEquals(destroys + 1, Metrics.STORE_DESTROY.getCount());
+    assertEquals(errors + 1, Metrics.STORE_ERRORS.get());
+  }
+}
@@ -0,0 +1,94 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class NegativeCachingSessionDataTest {
+
+  private static final String DATA = "{\"uid\":\"testuser1\"}";
+
+  private final CacheKey cacheKey = new SecureRandomCacheKey();
+
+  @Test
+  void testMissIsRemembered() {
+    var store = new CountingSessionData();
+    var sd = new NegativeCachingSessionData(store, 60_000L, 10);
+    var key = cacheKey.encode(cacheKey.generate());
+
+    assertNull(sd.get(key));
+    assertNull(sd.get(key));
+    assertNull(sd.get(key));
+    assertEquals(1, store.gets.get());
+    assertEquals(1, sd.size());
+  }
+
+  @Test
+  void testSaveForgetsMissAndDestroyRemembersIt() {
+    var store = new CountingSessionData();
+    var sd = new NegativeCachingSessionData(store, 60_000L, 10);
+    var key = cacheKey.encode(cacheKey.generate());
+
+    assertNull(sd.get(key));
+    sd.save(key, DATA);
+    assertEquals(DATA, sd.get(key));
+    assertEquals(2, store.gets.get());
+
+    sd.destroy(key);
+    assertNull(sd.get(key));
+    assertEquals(2, store.gets.get());
+  }
+
+  @Test
+  void testGetAllOnlyAsksForKeysNotKnownToBeMissing() {
+    var store = new CountingSessionData();
+    var sd = new NegativeCachingSessionData(store, 60_000L, 10);
+    var missing = cacheKey.encode(cacheKey.generate());
+    var found = store.save(DATA);
+
+    assertNull(sd.get(missing));
+    assertEquals(Arrays.asList(null, DATA), sd.getAll(List.of(missing, found)));
+    assertEquals(2, store.gets.get());
+
+    var other = cacheKey.encode(cacheKey.generate());
+    assertEquals(Arrays.asList(DATA, null), sd.getAll(List.of(found, other)));
+    assertNull(sd.get(other));
+    assertEquals(4, store.gets.get());
+  }
+
+  @Test
+  void testMissExpires() {
+    var store = new CountingSessionData();
+    var now = new AtomicLong();
+    var sd = new NegativeCachingSessionData(store, 20L, 10, now::get);
+    var key = cacheKey.encode(cacheKey.generate());
+
+    assertNull(sd.get(key));
+    // Saved by another elmr instance sharing the store.
+    store.save(key, DATA);
+    assertNull(sd.get(key));
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(20L));
+    assertEquals(DATA, sd.get(key));
+    assertEquals(2, store.gets.get());
+  }
+
+  @Test
+  void testEntriesAreBounded() {
+    var store = new CountingSessionData();
+    var now = new AtomicLong();
+    var sd = new NegativeCachingSessionData(store, 20L, 3, now::get);
+    for (int i = 0; i < 5; i++) {
+      sd.get(cacheKey.encode(cacheKey.generate()));
+    }
+    assertEquals(3, sd.size());
+
+    // Expired entries make room for new ones.
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(20L));
+    sd.get(cacheKey.encode(cacheKey.generate()));
+    assertEquals(1, sd.size());
+  }
+}
@@ -0,0 +1,157 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+class RedisScriptTest {
+
+  @Test
+  void testSha1MatchesRedis() {
+    // Digest returned by SCRIPT LOAD "return 1".
+    assertEquals("e0e1f9fabfc9d4800c877a703b823ac0578ff8db",
+        new RedisScript("one", "return 1").getSha1());
+  }
+
+  @Test
+  void testScriptIsLoadedAgainOnNoScript() {
+    var j = new FakeJedis();
+    var script = new RedisScript("one", "return 1");
+
+    assertEquals(1L, script.eval(j, List.of(), List.of()));
+    assertEquals(List.of("evalsha", "scriptLoad", "evalsha"), j.calls);
+
+    j.calls.clear();
+    assertEquals(1L, script.eval(j, List.of(), List.of()));
+    assertEquals(List.of("evalsha"), j.calls);
+  }
+
+  @Test
+  void testOtherErrorsAreThrown() {
+    var j = new FakeJedis();
+    j.error = "ERR Error running script";
+    var script = new RedisScript("one", "return 1");
+
+    assertThrows(JedisDataException.class, () -> script.eval(j, List.of(), List.of()));
+    assertEquals(List.of("evalsha"), j.calls);
+  }
+
+  @Test
+  void testRunsForEachKeyArePipelined() {
+    var j = new FakeJedis();
+    var script = new RedisScript("one", "return 1");
+    var keys = List.of(List.of("1"), List.of("2"), List.of("3"));
+
+    assertEquals(List.of(1L, 2L, 3L), script.evalEach(j, keys, List.of()));
+    assertEquals(List.of("evalsha", "evalsha", "evalsha", "sync", "scriptLoad", "evalsha",
+        "evalsha", "evalsha", "sync"), j.calls);
+
+    j.calls.clear();
+    assertEquals(List.of(1L, 2L, 3L), script.evalEach(j, keys, List.of()));
+    assertEquals(List.of("evalsha", "evalsha", "evalsha", "sync"), j.calls);
+  }
+
+  @Test
+  void testOnlyRunsFailingWithNoScriptAreSentAgain() {
+    var j = new FakeJedis();
+    var script = new RedisScript("one", "return 1");
+    script.load(j);
+    // Redis restarts after the first run.
+    j.forgetAfter = 1;
+    j.calls.clear();
+
+    assertEquals(List.of(1L, 2L, 3L),
+        script.evalEach(j, List.of(List.of("1"), List.of("2"), List.of("3")), List.of()));
+    assertEquals(List.of("evalsha", "evalsha", "evalsha", "sync", "scriptLoad", "evalsha",
+        "evalsha", "sync"), j.calls);
+  }
+
+  @Test
+  void testOtherErrorsInPipelineAreThrown() {
+    var j = new FakeJedis();
+    j.error = "ERR Error running script";
+    var script = new RedisScript("one", "return 1");
+
+    assertThrows(JedisDataException.class,
+        () -> script.evalEach(j, List.of(List.of("1")), List.of()));
+    assertEquals(List.of("evalsha", "sync"), j.calls);
+  }
+
+  /**
+   * Stands in for a Redis connection that starts without any scripts loaded.
+   */
+  private static final class FakeJedis extends Jedis {
+
+    final List<String> calls = new ArrayList<>();
+
+    String error;
+
+    /**
+     * If not negative, the number of runs after which the loaded script is forgotten.
+     */
+    int forgetAfter = -1;
+
+    private String loaded;
+
+    @Override
+    public Object evalsha(String sha1, List<String> keys, List<String> args) {
+      return run(sha1, keys);
+    }
+
+    @Override
+    public Pipeline pipelined() {
+      // Runs each script at once, as a pipeline of one.
+      return new Pipeline() {
+        @Override
+        public Response<Object> evalsha(byte[] sha1, List<byte[]> keys, List<byte[]> args) {
+          var response = new Response<Object>(BuilderFactory.EVAL_BINARY_RESULT);
+          try {
+            response.set(run(SafeEncoder.encode(sha1),
+                keys.stream().map(SafeEncoder::encode).collect(Collectors.toList())));
+          } catch (JedisDataException e) {
+            response.set(e);
+          }
+          return response;
+        }
+
+        @Override
+        public void sync() {
+          calls.add("sync");
+        }
+      };
+    }
+
+    /*
+     * Returns the first key as a number, or 1 without keys.
+     */
+    private Object run(String sha1, List<String> keys) {
+      calls.add("evalsha");
+      if (error != null) {
+        throw new JedisDataException(error);
+      }
+      if (forgetAfter-- == 0) {
+        loaded = null;
+      }
+      if (!sha1.equals(loaded)) {
+        throw new JedisDataException("NOSCRIPT No matching script. Please use EVAL.");
+      }
+      return keys.isEmpty() ? 1L : Long.valueOf(keys.get(0));
+    }
+
+    @Override
+    public String scriptLoad(String script) {
+      calls.add("scriptLoad");
+      loaded = new RedisScript("loaded", script).getSha1();
+      return loaded;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import edu.illinois.techservices.elmr.RequestTimer.Stage;
+import org.junit.jupiter.api.Test;
+
+class RequestTimerTest {
+
+  @Test
+  void testRecordedStagesAreListedInOrder() {
+    RequestTimer.begin();
+    try {
+      RequestTimer.record(Stage.JSON, 87_000L);
+      RequestTimer.record(Stage.STORE_WAIT, 21_000L);
+      RequestTimer.record(Stage.STORE_IO, 400_000L);
+      RequestTimer.record(Stage.STORE_IO, 12_000L);
+
+      assertEquals(412_000L, RequestTimer.getNanos(Stage.STORE_IO));
+      var serverTiming = RequestTimer.toServerTiming();
+      assertTrue(serverTiming
+          .startsWith("store-wait;dur=0.021, store-io;dur=0.412, json;dur=0.087, total;dur="),
+          serverTiming);
+    } finally {
+      RequestTimer.end();
+    }
+  }
+
+  @Test
+  void testBeginDiscardsPreviousRequest() {
+    RequestTimer.begin();
+    RequestTimer.record(Stage.KEY, 5_000_000L);
+    RequestTimer.end();
+
+    RequestTimer.begin();
+    try {
+      assertEquals(0L, RequestTimer.getNanos(Stage.KEY));
+      assertTrue(RequestTimer.toServerTiming().startsWith("total;dur="));
+    } finally {
+      RequestTimer.end();
+    }
+  }
+
+  @Test
+  void testNothingRecordedWhenInactive() {
+    RequestTimer.begin();
+    RequestTimer.end();
+    RequestTimer.record(Stage.RENDER, 1_000L);
+    assertEquals(0L, RequestTimer.getNanos(Stage.RENDER));
+    assertEquals("", RequestTimer.toServerTiming());
+  }
+}
@@ -0,0 +1,120 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class SessionDataHealthMonitorTest {
+
+  @Test
+  void testHealthIsUnknownBeforeFirstProbe() {
+    try (var monitor = new SessionDataHealthMonitor(new InMemorySessionData(), 1000L)) {
+      assertSame(SessionDataHealth.UNKNOWN, monitor.getHealth());
+      assertFalse(monitor.isReady());
+    }
+  }
+
+  @Test
+  void testProbeConnectedStore() {
+    try (var monitor = new SessionDataHealthMonitor(new InMemorySessionData(), 1000L)) {
+      var health = monitor.probe();
+      assertTrue(health.isConnected());
+      assertEquals(0, health.getConsecutiveFailures());
+      assertTrue(health.getLatencyNanos() >= 0);
+      assertEquals(health.getLastCheckedMillis(), health.getLastSuccessMillis());
+      assertSame(health, monitor.getHealth());
+      assertTrue(monitor.isReady());
+    }
+  }
+
+  @Test
+  void testProbeFailuresAreCountedAndReset() {
+    var store = new FlakySessionData();
+    try (var monitor = new SessionDataHealthMonitor(store, 1000L)) {
+      var success = monitor.probe();
+      store.connected = false;
+      monitor.probe();
+      var failed = monitor.probe();
+      assertFalse(failed.isConnected());
+      assertEquals(2, failed.getConsecutiveFailures());
+      assertEquals(success.getLastSuccessMillis(), failed.getLastSuccessMillis());
+      assertFalse(monitor.isReady());
+
+      store.connected = true;
+      var restored = monitor.probe();
+      assertTrue(restored.isConnected());
+      assertEquals(0, restored.getConsecutiveFailures());
+      assertTrue(monitor.isReady());
+    }
+  }
+
+  @Test
+  void testProbeExceptionIsAFailure() {
+    var store = new FlakySessionData();
+    store.fail = true;
+    try (var monitor = new SessionDataHealthMonitor(store, 1000L)) {
+      var health = monitor.probe();
+      assertFalse(health.isConnected());
+      assertEquals(1, health.getConsecutiveFailures());
+    }
+  }
+
+  @Test
+  void testRetriesBackOffUpToInterval() {
+    try (var monitor = new SessionDataHealthMonitor(new InMemorySessionData(), 1000L)) {
+      assertEquals(1000L, monitor.nextDelayMillis(SessionDataHealth.UNKNOWN));
+      assertEquals(250L, monitor.nextDelayMillis(new SessionDataHealth(false, 1L, 0L, 0L, 1)));
+      assertEquals(500L, monitor.nextDelayMillis(new SessionDataHealth(false, 1L, 0L, 0L, 2)));
+      assertEquals(1000L, monitor.nextDelayMillis(new SessionDataHealth(false, 1L, 0L, 0L, 3)));
+      assertEquals(1000L, monitor.nextDelayMillis(new SessionDataHealth(false, 1L, 0L, 0L, 99)));
+      assertEquals(1000L, monitor.nextDelayMillis(new SessionDataHealth(true, 1L, 1L, 0L, 0)));
+    }
+  }
+
+  @Test
+  void testIntervalMustBePositive() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new SessionDataHealthMonitor(new InMemorySessionData(), 0L));
+  }
+
+  /**
+   * Store whose connectivity can be switched on and off by the test.
+   */
+  private static final class FlakySessionData implements SessionData {
+
+    private volatile boolean connected = true;
+
+    private volatile boolean fail = false;
+
+    @Override
+    public byte[] save(byte[] preComputedKey, String sessionData) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] save(String sessionData) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String get(byte[] key) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void destroy(byte[] key) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isConnected() {
+      if (fail) {
+        throw new IllegalStateException("Probe failed for test.");
+      }
+      return connected;
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link SessionDataImpl} that do not need a Redis store. See {@link SessionDataImplTests}
+ * for the ones that do.
+ */
+class SessionDataImplTest {
+
+  @Test
+  void testFingerprintDependsOnContents() {
+    var data = "{\"uid\":\"elmr-test-user\"}";
+    assertEquals(SessionDataImpl.fingerprint(data), SessionDataImpl.fingerprint(new String(data)));
+    assertNotEquals(SessionDataImpl.fingerprint(data),
+        SessionDataImpl.fingerprint(data.replace('u', 'U')));
+    assertEquals("cbf29ce484222325", SessionDataImpl.fingerprint(""));
+  }
+}
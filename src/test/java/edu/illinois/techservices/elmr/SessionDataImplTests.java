@@ -1,10 +1,21 @@
 package edu.illinois.techservices.elmr;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 
 /**
@@ -19,6 +30,8 @@ import redis.clients.jedis.exceptions.JedisConnectionException;
     matches = "true")
 class SessionDataImplTests {
 
+  private static final Logger LOGGER = Logger.getLogger(SessionDataImplTests.class.getName());
+
   @Test
   void testSaveDataThenGetDataThenDestroyData() {
     try {
@@ -34,4 +47,284 @@ class SessionDataImplTests {
       fail("Couldn't connect to redis to run tests. Check connection and try again.");
     }
   }
+
+  @Test
+  void testSaveUnderPreComputedKeySkipsUnchangedData() {
+    try {
+      var sd = new SessionDataImpl();
+      var preComputedKey = "elmr-test-user".getBytes();
+      var data = "{\"uid\":\"elmr-test-user\"}";
+      // The key returned is the one to look the data up with.
+      var key = sd.save(preComputedKey, data);
+      assertEquals(new String(key), new String(sd.save(preComputedKey, data)));
+      assertEquals(data, sd.get(key));
+      var changed = "{\"uid\":\"elmr-test-user\",\"mail\":\"test@example.com\"}";
+      sd.save(preComputedKey, changed);
+      assertEquals(changed, sd.get(key));
+      sd.destroy(key);
+      assertNull(sd.get(key));
+      // The fingerprint went with the data so saving the same data again writes it.
+      sd.save(preComputedKey, changed);
+      assertEquals(changed, sd.get(key));
+      sd.destroy(key);
+    } catch (JedisConnectionException e) {
+      fail("Couldn't connect to redis to run tests. Check connection and try again.");
+    }
+  }
+
+  @Test
+  void testUpdateWritesOnlyChangedAttributes() throws IOException {
+    try {
+      var sd = new SessionDataImpl();
+      var data = "{\"uid\":\"elmr-test-user\",\"groups\":[],\"url\":\"https://example.edu/\","
+          + "\"mail\":\"old@example.edu\"}";
+      var key = sd.save("elmr-test-user".getBytes(), data);
+      assertFalse(sd.update(key, "uid", Map.of("uid", "elmr-test-user2")));
+      assertEquals(data, sd.get(key));
+      assertTrue(sd.update(key, "uid", Map.of("uid", "elmr-test-user", "groups", List.of(), "url",
+          "https://example.edu/", "mail", "old@example.edu", "displayName", "")));
+      assertEquals(data, sd.get(key));
+      // Kept attributes are not decoded and encoded again, which would turn [] into {} and escape
+      // the slash.
+      Map<String, Object> updated = Map.of("uid", "elmr-test-user", "groups", List.of(), "url",
+          "https://example.edu/", "displayName", "Test User");
+      assertTrue(sd.update(key, "uid", updated));
+      var expected = "{\"uid\":\"elmr-test-user\",\"groups\":[],\"url\":\"https://example.edu/\","
+          + "\"displayName\":\"Test User\"}";
+      assertEquals(expected, sd.get(key));
+      // The fingerprint was updated with the data so saving the same attributes again is skipped.
+      var saved = sd.save("elmr-test-user".getBytes(), Json.renderObject(updated));
+      assertEquals(new String(key), new String(saved));
+      assertEquals(expected, sd.get(key));
+      sd.destroy(key);
+      assertFalse(sd.update(key, "uid", updated));
+      assertNull(sd.get(key));
+    } catch (JedisConnectionException e) {
+      fail("Couldn't connect to redis to run tests. Check connection and try again.");
+    }
+  }
+
+  @Test
+  void testSessionsDeletedWithoutTheirUserLeaveTheUserIndex() {
+    var sd = new SessionDataImpl();
+    var index = SessionDataImpl.USER_INDEX_KEY_PREFIX + "elmr-test-user";
+    try (var j = new Jedis(SessionDataImpl.DEFAULT_HOSTNAME, SessionDataImpl.DEFAULT_PORT)) {
+      var destroyed = sd.save("elmr-test-user1".getBytes(), "{\"uid\":\"elmr-test-user1\"}",
+          "elmr-test-user");
+      sd.save("elmr-test-user2".getBytes(), "{\"uid\":\"elmr-test-user2\"}", "elmr-test-user");
+      sd.save("elmr-test-user3".getBytes(), "{\"uid\":\"elmr-test-user3\"}", "elmr-test-user");
+      // Moving a session to another user takes it out of the first user's index.
+      var moved = sd.save("elmr-test-user4".getBytes(), "{\"uid\":\"elmr-test-user4\"}",
+          "elmr-test-user");
+      sd.save("elmr-test-user4".getBytes(), "{\"uid\":\"elmr-test-user4\"}", "elmr-test-other");
+      sd.destroy(destroyed);
+      assertEquals(1, sd.purge(100, 1000,
+          s -> "elmr-test-user2".equals(s.getAttributes().get("uid"))));
+      assertEquals(Set.of("elmr-test-user3"), j.smembers(index));
+      assertFalse(j.exists(SessionDataImpl.OWNER_KEY_PREFIX + "elmr-test-user2"));
+
+      // A key whose data is already gone is not counted.
+      j.sadd(index, "elmr-test-gone");
+      assertEquals(1, sd.destroyAll("elmr-test-user"));
+      assertFalse(j.exists(index));
+      assertFalse(j.exists(SessionDataImpl.OWNER_KEY_PREFIX + "elmr-test-user3"));
+      sd.destroy(moved, "elmr-test-other");
+      assertFalse(j.exists(SessionDataImpl.USER_INDEX_KEY_PREFIX + "elmr-test-other"));
+    } catch (JedisConnectionException e) {
+      fail("Couldn't connect to redis to run tests. Check connection and try again.");
+    }
+  }
+
+  @Test
+  void testGetAllLooksUpEveryKeyInOrder() {
+    try {
+      var sd = new SessionDataImpl();
+      var first = sd.save("{\"uid\":\"elmr-test-user1\"}");
+      var second = sd.save("{\"uid\":\"elmr-test-user2\"}");
+      var missing = Base64.getEncoder().encode("elmr-test-missing".getBytes());
+      var bookkeeping = Base64.getEncoder()
+          .encode((SessionDataImpl.FINGERPRINT_KEY_PREFIX + "elmr-test-user1").getBytes());
+      assertEquals(Arrays.asList("{\"uid\":\"elmr-test-user2\"}", null, null,
+          "{\"uid\":\"elmr-test-user1\"}"),
+          sd.getAll(List.of(second, missing, bookkeeping, first)));
+      sd.destroy(first);
+      sd.destroy(second);
+    } catch (JedisConnectionException e) {
+      fail("Couldn't connect to redis to run tests. Check connection and try again.");
+    }
+  }
+
+  @Test
+  void testKeysThisStoreCouldNotHaveIssuedHaveNoSession() {
+    try {
+      var sd = new SessionDataImpl();
+      var key = sd.save(new byte[0], "{\"uid\":\"elmr-test-user1\"}", "elmr-test-user1");
+      var index = Base64.getEncoder()
+          .encode((SessionDataImpl.USER_INDEX_KEY_PREFIX + "elmr-test-user1").getBytes());
+      for (byte[] k : List.of(index, "not base64!".getBytes())) {
+        assertNull(sd.get(k));
+        assertNull(sd.isMember(k, "uid", "elmr-test-user1"));
+        assertFalse(sd.update(k, "uid", Map.of("uid", "elmr-test-user1")));
+        sd.destroy(k);
+      }
+      assertEquals(1, sd.destroyAll("elmr-test-user1"));
+      assertNull(sd.get(key));
+    } catch (JedisConnectionException e) {
+      fail("Couldn't connect to redis to run tests. Check connection and try again.");
+    }
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "edu.illinois.techservices.elmr.Benchmark", matches = "true")
+  void benchmarkScriptAgainstSeparateCommands() {
+    var sd = new SessionDataImpl();
+    assertTrue(sd.isConnected());
+    var rounds = 10_000;
+    var data = "{\"uid\":\"elmr-bench-user\",\"displayName\":\"Bench User\"}";
+    var key = "elmr-bench-user";
+    var fpKey = SessionDataImpl.FINGERPRINT_KEY_PREFIX + key;
+    var indexKey = SessionDataImpl.USER_INDEX_KEY_PREFIX + key;
+    var ownerKey = SessionDataImpl.OWNER_KEY_PREFIX + key;
+
+    var start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      sd.save(key.getBytes(), data + i, key);
+    }
+    var scriptMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+
+    // The same save as separate commands, one round trip each.
+    double commandMicros;
+    try (var j = new Jedis(SessionDataImpl.DEFAULT_HOSTNAME, SessionDataImpl.DEFAULT_PORT)) {
+      start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) {
+        var value = data + i;
+        var fp = SessionDataImpl.fingerprint(value);
+        j.get(ownerKey);
+        j.sadd(indexKey, key);
+        j.set(ownerKey, indexKey);
+        if (!(fp.equals(j.get(fpKey)) && j.exists(key))) {
+          j.set(key, value);
+          j.set(fpKey, fp);
+        }
+      }
+      commandMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+    }
+    assertEquals(1, sd.destroyAll(key));
+
+    LOGGER.info(String.format("save with index: script %.1f us, separate commands %.1f us",
+        scriptMicros, commandMicros));
+  }
+
+  @Test
+  void testSharedValueIsStoredOnceAndDeletedWithLastSession() {
+    var sd = new SessionDataImpl(SessionDataImpl.DEFAULT_HOSTNAME, SessionDataImpl.DEFAULT_PORT,
+        SessionDataImpl.DEFAULT_MIN_CONNECTIONS, SessionDataImpl.DEFAULT_MAX_CONNECTIONS, 64, 10);
+    var groups = groups("elmr-test-dept", 10);
+    var first = "{\"uid\":\"elmr-test-user1\",\"isMemberOf\":" + groups + "}";
+    var second = "{\"uid\":\"elmr-test-user2\",\"isMemberOf\":" + groups + "}";
+    try (var j = new Jedis(SessionDataImpl.DEFAULT_HOSTNAME, SessionDataImpl.DEFAULT_PORT)) {
+      var before = j.keys(SessionDataImpl.SHARED_VALUE_KEY_PREFIX + "*").size();
+      var firstKey = sd.save("elmr-test-user1".getBytes(), first);
+      var secondKey = sd.save(second);
+      var valueKeys = j.keys(SessionDataImpl.SHARED_VALUE_KEY_PREFIX + "*");
+      assertEquals(before + 1, valueKeys.size());
+      assertTrue(j.get("elmr-test-user1").length() < first.length());
+      assertEquals(Json.marshal(first).get("isMemberOf").toString(),
+          sd.getAttributes(firstKey).get("isMemberOf").toString());
+
+      // Saving the same data again does not count the session twice.
+      sd.save("elmr-test-user1".getBytes(), first);
+      sd.destroy(secondKey);
+      assertEquals(before + 1, j.keys(SessionDataImpl.SHARED_VALUE_KEY_PREFIX + "*").size());
+      sd.destroy(firstKey);
+      assertEquals(before, j.keys(SessionDataImpl.SHARED_VALUE_KEY_PREFIX + "*").size());
+    } catch (JedisConnectionException e) {
+      fail("Couldn't connect to redis to run tests. Check connection and try again.");
+    }
+  }
+
+  @Test
+  void testMembershipIsCheckedInStore() {
+    var sd = new SessionDataImpl(SessionDataImpl.DEFAULT_HOSTNAME, SessionDataImpl.DEFAULT_PORT,
+        SessionDataImpl.DEFAULT_MIN_CONNECTIONS, SessionDataImpl.DEFAULT_MAX_CONNECTIONS, 64, 10,
+        Set.of("isMemberOf"));
+    var data = "{\"uid\":\"elmr-test-user1\",\"affiliation\":[\"staff\",\"member\"],"
+        + "\"isMemberOf\":" + groups("elmr-test-dept", 10) + "}";
+    try (var j = new Jedis(SessionDataImpl.DEFAULT_HOSTNAME, SessionDataImpl.DEFAULT_PORT)) {
+      var key = sd.save("elmr-test-user1".getBytes(), data);
+      assertTrue(j.exists(SessionDataImpl.SET_KEY_PREFIX + "elmr-test-user1:isMemberOf"));
+      assertEquals(Boolean.TRUE, sd.isMember(key, "isMemberOf",
+          "cn=elmr-test-dept-group3,ou=groups,dc=example,dc=edu"));
+      assertEquals(Boolean.FALSE, sd.isMember(key, "isMemberOf", "cn=other"));
+      // Attributes not stored as sets are searched by script.
+      assertEquals(Boolean.TRUE, sd.isMember(key, "affiliation", "staff"));
+      assertEquals(Boolean.FALSE, sd.isMember(key, "affiliation", "student"));
+      assertEquals(Boolean.FALSE, sd.isMember(key, "mail", "staff"));
+      assertNull(sd.isMember(Base64.getEncoder().encode("elmr-test-missing".getBytes()),
+          "isMemberOf", "cn=other"));
+
+      sd.destroy(key);
+      assertFalse(j.exists(SessionDataImpl.SET_KEY_PREFIX + "elmr-test-user1:isMemberOf"));
+      assertFalse(j.exists(SessionDataImpl.SET_INDEX_KEY_PREFIX + "elmr-test-user1"));
+    } catch (JedisConnectionException e) {
+      fail("Couldn't connect to redis to run tests. Check connection and try again.");
+    }
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "edu.illinois.techservices.elmr.Benchmark", matches = "true")
+  void benchmarkSharedValuesMemory() {
+    // Campus-like data: each user is in one of 20 departments whose members share about 150 groups.
+    var sessions = 10_000;
+    var departments = new ArrayList<String>();
+    for (int d = 0; d < 20; d++) {
+      departments.add(groups("elmr-bench-dept" + d, 150));
+    }
+    var plain = new SessionDataImpl();
+    var shared = new SessionDataImpl(SessionDataImpl.DEFAULT_HOSTNAME,
+        SessionDataImpl.DEFAULT_PORT, SessionDataImpl.DEFAULT_MIN_CONNECTIONS,
+        SessionDataImpl.DEFAULT_MAX_CONNECTIONS, 256, 100);
+    assertTrue(shared.isConnected());
+    long plainBytes;
+    long sharedBytes;
+    try (var j = new Jedis(SessionDataImpl.DEFAULT_HOSTNAME, SessionDataImpl.DEFAULT_PORT)) {
+      plainBytes = memoryUsedBySessions(j, plain, sessions, departments);
+      sharedBytes = memoryUsedBySessions(j, shared, sessions, departments);
+    }
+    LOGGER.info(String.format(
+        "%d sessions: %d KiB without sharing, %d KiB sharing values, %.0f%% saved", sessions,
+        plainBytes / 1024, sharedBytes / 1024, 100.0 * (plainBytes - sharedBytes) / plainBytes));
+    assertTrue(sharedBytes < plainBytes);
+  }
+
+  private static long memoryUsedBySessions(Jedis j, SessionDataImpl sd, int sessions,
+      List<String> departments) {
+    var before = usedMemory(j);
+    var keys = new ArrayList<byte[]>(sessions);
+    for (int i = 0; i < sessions; i++) {
+      var uid = "elmr-bench-user" + i;
+      keys.add(sd.save(uid.getBytes(), "{\"uid\":\"" + uid + "\",\"mail\":\"" + uid
+          + "@example.edu\",\"isMemberOf\":" + departments.get(i % departments.size()) + "}"));
+    }
+    var used = usedMemory(j) - before;
+    keys.forEach(sd::destroy);
+    return used;
+  }
+
+  private static long usedMemory(Jedis j) {
+    for (String line : j.info("memory").split("\r\n")) {
+      if (line.startsWith("used_memory:")) {
+        return Long.parseLong(line.substring("used_memory:".length()));
+      }
+    }
+    throw new IllegalStateException("Redis did not report used_memory.");
+  }
+
+  private static String groups(String department, int count) {
+    var groups = new ArrayList<String>(count);
+    for (int g = 0; g < count; g++) {
+      groups.add("\"cn=" + department + "-group" + g + ",ou=groups,dc=example,dc=edu\"");
+    }
+    return "[" + String.join(",", groups) + "]";
+  }
 }
@@ -0,0 +1,181 @@
+package edu.illinois.techservices.elmr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class SharedValuesTest {
+
+  private static final Logger LOGGER = Logger.getLogger(SharedValuesTest.class.getName());
+
+  private static final String GROUPS =
+      "[\"cn=staff,ou=groups,dc=example,dc=edu\",\"cn=everyone,ou=groups,dc=example,dc=edu\"]";
+
+  @Test
+  void testLargeValuesAreSharedAndResolved() {
+    var sessionData = "{\"uid\":\"testuser1\",\"isMemberOf\":" + GROUPS + "}";
+    var values = new HashMap<String, String>();
+    var sv = new SharedValues(64, 10);
+
+    var stored = sv.share(sessionData, values);
+
+    assertTrue(SharedValues.hasShared(stored));
+    assertEquals(1, values.size());
+    var attributes = Json.marshal(stored);
+    assertEquals("testuser1", attributes.get("uid"));
+    assertEquals(List.of("isMemberOf"), attributes.get(SharedValues.SHARED_ATTRIBUTE));
+    assertTrue(values.containsKey(attributes.get("isMemberOf")));
+
+    // Another instance has an empty cache so has to load the value.
+    var loads = new ArrayList<List<String>>();
+    var resolved = new SharedValues(64, 10).resolve(stored, digests -> {
+      loads.add(digests);
+      return digests.stream().map(values::get).collect(Collectors.toList());
+    });
+    assertEquals(attributes(sessionData), attributes(resolved));
+    assertEquals(List.of(new ArrayList<>(values.keySet())), loads);
+  }
+
+  @Test
+  void testResolvedDataIsTheDataSaved() {
+    var sessionData = "{\"uid\":\"testuser1\",\"isMemberOf\":" + GROUPS
+        + ",\"displayName\":\"Test User\",\"eduPersonAffiliation\":" + GROUPS + "}";
+    var values = new HashMap<String, String>();
+    var stored = new SharedValues(64, 10).share(sessionData, values);
+
+    assertTrue(stored.endsWith(",\"elmr:shared\":[\"isMemberOf\",\"eduPersonAffiliation\"]}"));
+    assertEquals(sessionData, new SharedValues(64, 10).resolve(stored,
+        digests -> digests.stream().map(values::get).collect(Collectors.toList())));
+  }
+
+  @Test
+  void testValuesTakeThePlaceOfTheirDigests() {
+    var digest = "0123456789abcdef".repeat(4);
+    var stored = "{\"uid\":\"testuser1\",\"isMemberOf\":\"" + digest
+        + "\",\"mail\":\"testuser1@example.edu\",\"elmr:shared\":[\"isMemberOf\"]}";
+
+    var resolved = new SharedValues(64, 10).resolve(stored, digests -> {
+      assertEquals(List.of(digest), digests);
+      return List.of("{\"value\":" + GROUPS + "}");
+    });
+
+    assertEquals("{\"uid\":\"testuser1\",\"isMemberOf\":" + GROUPS
+        + ",\"mail\":\"testuser1@example.edu\"}", resolved);
+  }
+
+  @Test
+  void testSameValueHasSameDigest() {
+    var first = new HashMap<String, String>();
+    var second = new HashMap<String, String>();
+    var sv = new SharedValues(64, 10);
+    sv.share("{\"uid\":\"testuser1\",\"isMemberOf\":" + GROUPS + "}", first);
+    sv.share("{\"uid\":\"testuser2\",\"isMemberOf\":" + GROUPS + "}", second);
+    assertEquals(first, second);
+  }
+
+  @Test
+  void testCachedValuesAreNotLoaded() {
+    var sessionData = "{\"uid\":\"testuser1\",\"isMemberOf\":" + GROUPS + "}";
+    var sv = new SharedValues(64, 10);
+    var stored = sv.share(sessionData, new HashMap<>());
+    var resolved = sv.resolve(stored, digests -> {
+      throw new AssertionError("Loaded " + digests);
+    });
+    assertEquals(attributes(sessionData), attributes(resolved));
+    assertEquals(1, sv.cacheSize());
+  }
+
+  @Test
+  void testMissingValueMeansNoSessionData() {
+    var sessionData = "{\"uid\":\"testuser1\",\"isMemberOf\":" + GROUPS + "}";
+    var stored = new SharedValues(64, 10).share(sessionData, new HashMap<>());
+    assertNull(new SharedValues(64, 10).resolve(stored,
+        digests -> digests.stream().map(d -> (String) null).collect(Collectors.toList())));
+    assertNull(new SharedValues(64, 10).resolve(
+        "{\"uid\":\"testuser1\",\"isMemberOf\":[\"staff\"],\"elmr:shared\":[\"isMemberOf\"]}",
+        digests -> {
+          throw new AssertionError("Loaded " + digests);
+        }));
+  }
+
+  @Test
+  void testMarkerInValuesIsNotShared() {
+    var sv = new SharedValues(64, 10);
+    for (String sessionData : List.of("{\"uid\":\"elmr:shared\"}",
+        "{\"uid\":\"testuser1\",\"isMemberOf\":[\"staff\",\"elmr:shared\"]}",
+        "{\"uid\":\"testuser1\",\"elmr:shared\":\"uid\"}")) {
+      assertFalse(SharedValues.hasShared(sessionData), sessionData);
+      assertSame(sessionData, sv.resolve(sessionData, digests -> {
+        throw new AssertionError("Loaded " + digests);
+      }));
+    }
+  }
+
+  @Test
+  void testSmallValuesAreNotShared() {
+    var sessionData = "{\"uid\":\"testuser1\",\"isMemberOf\":" + GROUPS + "}";
+    var values = new HashMap<String, String>();
+    assertSame(sessionData, new SharedValues(1000, 10).share(sessionData, values));
+    assertSame(sessionData, new SharedValues(0, 10).share(sessionData, values));
+    assertTrue(values.isEmpty());
+    assertFalse(SharedValues.hasShared(sessionData));
+    assertSame(sessionData, new SharedValues(64, 10).resolve(sessionData, digests -> {
+      throw new AssertionError("Loaded " + digests);
+    }));
+  }
+
+  @Test
+  void testSharingShrinksCampusLikeData() {
+    // Fewer sessions of the data set of benchmarkSharedValuesMemory in SessionDataImplTests: each
+    // user is in one of 20 departments whose members share about 150 groups. Counts the bytes of
+    // data stored, not the memory Redis uses to store them.
+    var sessions = 200;
+    var departments = new ArrayList<String>();
+    for (int d = 0; d < 20; d++) {
+      var groups = new ArrayList<String>();
+      for (int g = 0; g < 150; g++) {
+        groups.add("\"cn=elmr-bench-dept" + d + "-group" + g + ",ou=groups,dc=example,dc=edu\"");
+      }
+      departments.add("[" + String.join(",", groups) + "]");
+    }
+    var sv = new SharedValues(256, 100);
+    var values = new HashMap<String, String>();
+    long plainBytes = 0L;
+    long sharedBytes = 0L;
+    for (int i = 0; i < sessions; i++) {
+      var uid = "elmr-bench-user" + i;
+      var sessionData = "{\"uid\":\"" + uid + "\",\"mail\":\"" + uid
+          + "@example.edu\",\"isMemberOf\":" + departments.get(i % departments.size()) + "}";
+      plainBytes += sessionData.length();
+      sharedBytes += sv.share(sessionData, values).length();
+    }
+    for (Map.Entry<String, String> e : values.entrySet()) {
+      sharedBytes += "elmr:blob:".length() + e.getKey().length() + e.getValue().length();
+    }
+    LOGGER.info(String.format(
+        "%d sessions: %d KiB of data without sharing, %d KiB sharing values, %.0f%% saved",
+        sessions, plainBytes / 1024, sharedBytes / 1024,
+        100.0 * (plainBytes - sharedBytes) / plainBytes));
+    assertEquals(departments.size(), values.size());
+    assertTrue(sharedBytes < plainBytes / 5);
+  }
+
+  /*
+   * Decodes json into plain Maps and Lists that compare by contents.
+   */
+  private static Map<String, Object> attributes(String json) {
+    var attributes = new HashMap<String, Object>();
+    Json.marshal(json).forEach((name, value) -> attributes.put(name,
+        value instanceof List ? new ArrayList<>((List<?>) value) : value));
+    return attributes;
+  }
+}
@@ -0,0 +1,80 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+
+class AdminFilterTest {
+
+  private static final String ADMIN_GROUP = "elmr-admins";
+
+  private static final String REQUEST_URI = "/elmr/admin/recording";
+
+  @Test
+  void testMemberOfAdminGroupIsAllowed() throws Exception {
+    var chain = runFilter(Map.of(ServletConstants.ADMIN_GROUP, ADMIN_GROUP),
+        Map.of("isMemberOf", "staff;" + ADMIN_GROUP + ";students"), null);
+    assertTrue(chain.doFilterWasCalled());
+  }
+
+  @Test
+  void testNonMemberIsForbidden() throws Exception {
+    var response = new ServletApiInvocationHandler.Builder().build();
+    var chain = runFilter(Map.of(ServletConstants.ADMIN_GROUP, ADMIN_GROUP),
+        Map.of("isMemberOf", "staff;students"), response);
+    assertFalse(chain.doFilterWasCalled());
+    assertEquals(HttpServletResponse.SC_FORBIDDEN, response.getStatusCode());
+  }
+
+  @Test
+  void testGroupPrefixIsNotMembership() throws Exception {
+    var response = new ServletApiInvocationHandler.Builder().build();
+    var chain = runFilter(Map.of(ServletConstants.ADMIN_GROUP, ADMIN_GROUP),
+        Map.of("isMemberOf", ADMIN_GROUP + "-readonly"), response);
+    assertFalse(chain.doFilterWasCalled());
+    assertEquals(HttpServletResponse.SC_FORBIDDEN, response.getStatusCode());
+  }
+
+  @Test
+  void testCustomGroupAttribute() throws Exception {
+    var chain = runFilter(
+        Map.of(ServletConstants.ADMIN_GROUP, ADMIN_GROUP, ServletConstants.ADMIN_GROUP_ATTRIBUTE,
+            "eduPersonEntitlement"),
+        Map.of("eduPersonEntitlement", ADMIN_GROUP), null);
+    assertTrue(chain.doFilterWasCalled());
+  }
+
+  @Test
+  void testDisabledWithoutAdminGroup() throws Exception {
+    var response = new ServletApiInvocationHandler.Builder().build();
+    var chain = runFilter(Map.of(), Map.of("isMemberOf", ADMIN_GROUP), response);
+    assertFalse(chain.doFilterWasCalled());
+    assertEquals(HttpServletResponse.SC_FORBIDDEN, response.getStatusCode());
+  }
+
+  private ServletApiInvocationHandler runFilter(Map<String, String> initParameters,
+      Map<String, Object> requestAttributes, ServletApiInvocationHandler responseInvocationHandler)
+      throws Exception {
+    var servletContext = ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder().addInitParameters(initParameters).build());
+    var filterConfig = ProxyFactories.createFilterConfigProxy(
+        new ServletApiInvocationHandler.Builder().filterName("AdminFilter")
+            .servletContext(servletContext).build());
+    var request = ProxyFactories.createHttpServletRequestProxy(
+        new ServletApiInvocationHandler.Builder().addAttributes(requestAttributes)
+            .requestUri(REQUEST_URI).build());
+    var response = ProxyFactories.createHttpServletResponseProxy(
+        responseInvocationHandler == null ? new ServletApiInvocationHandler.Builder().build()
+            : responseInvocationHandler);
+    var chainInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var chain = ProxyFactories.createFilterChainProxy(chainInvocationHandler);
+
+    var adminFilter = new AdminFilter();
+    adminFilter.init(filterConfig);
+    adminFilter.doFilter(request, response, chain);
+    return chainInvocationHandler;
+  }
+}
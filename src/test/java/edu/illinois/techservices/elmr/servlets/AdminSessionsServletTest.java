@@ -0,0 +1,189 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import edu.illinois.techservices.elmr.InMemorySessionData;
+import edu.illinois.techservices.elmr.Json;
+import edu.illinois.techservices.elmr.SessionData;
+
+class AdminSessionsServletTest {
+
+  @Test
+  void testRevokeDeletesEverySessionOfTheUser() {
+    var sd = new InMemorySessionData();
+    var first = sd.save("1234".getBytes(), "{\"uid\":\"testuser1\"}", "testuser1");
+    var second = sd.save(null, "{\"uid\":\"testuser1\"}", "testuser1");
+    var other = sd.save("5678".getBytes(), "{\"uid\":\"testuser2\"}", "testuser2");
+
+    var response = post(sd, Map.of("mode", List.of("revoke"), "user", List.of("testuser1")));
+
+    assertFalse(response.sendErrorWasCalled(), "HttpServletResponse.sendError was called!");
+    var body = Json.marshal(new String(response.getResponseBody(), StandardCharsets.UTF_8));
+    assertEquals("testuser1", body.get("user"));
+    assertEquals(2, ((Number) body.get("revoked")).intValue());
+    assertNull(sd.get(first));
+    assertNull(sd.get(second));
+    assertNotNull(sd.get(other));
+    assertEquals(0, sd.destroyAll("testuser1"));
+  }
+
+  @Test
+  void testDestroyedSessionIsNoLongerIndexed() {
+    var sd = new InMemorySessionData();
+    var key = sd.save("1234".getBytes(), "{\"uid\":\"testuser1\"}", "testuser1");
+    sd.destroy(key, "testuser1");
+    assertEquals(0, sd.destroyAll("testuser1"));
+  }
+
+  @Test
+  void testSessionsDeletedWithoutTheirUserAreNoLongerIndexed() {
+    var sd = new InMemorySessionData();
+    var destroyed = sd.save("1234".getBytes(), "{\"uid\":\"testuser1\"}", "testuser1");
+    sd.save("5678".getBytes(), "{\"uid\":\"testuser1\",\"affiliation\":\"guest\"}",
+        "testuser1");
+    var kept = sd.save(null, "{\"uid\":\"testuser1\"}", "testuser1");
+    sd.destroy(destroyed);
+    assertEquals(1, sd.purge(10, 100, s -> s.getAttributes().containsKey("affiliation")));
+
+    // The destroyed and purged sessions are not counted.
+    assertEquals(1, sd.destroyAll("testuser1"));
+    assertNull(sd.get(kept));
+  }
+
+  @Test
+  void testRevokeWithoutUserIsBadRequest() {
+    var response = post(new InMemorySessionData(), Map.of("mode", List.of("revoke")));
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatusCode());
+  }
+
+  @Test
+  void testRevokeNotSupportedByStore() {
+    var store = new InMemorySessionData();
+    // Only implements the abstract methods so destroyAll is the default.
+    var sd = new SessionData() {
+      public byte[] save(byte[] preComputedKey, String sessionData) {
+        return store.save(preComputedKey, sessionData);
+      }
+
+      public byte[] save(String sessionData) {
+        return store.save(sessionData);
+      }
+
+      public String get(byte[] key) {
+        return store.get(key);
+      }
+
+      public void destroy(byte[] key) {
+        store.destroy(key);
+      }
+
+      public boolean isConnected() {
+        return true;
+      }
+    };
+    var response = post(sd, Map.of("mode", List.of("revoke"), "user", List.of("testuser1")));
+    assertEquals(HttpServletResponse.SC_NOT_IMPLEMENTED, response.getStatusCode());
+  }
+
+  @Test
+  void testListStreamsOneLinePerSession() {
+    var sd = new InMemorySessionData();
+    sd.save("{\"uid\":\"testuser1\",\"displayName\":\"Test User\"}");
+    sd.save("{\"uid\":\"testuser2\",\"displayName\":\"Other User\"}");
+
+    var response = get(sd, Map.of("attributes", List.of("uid"), "pageSize", List.of("1")));
+
+    assertFalse(response.sendErrorWasCalled(), "HttpServletResponse.sendError was called!");
+    var lines = new String(response.getResponseBody(), StandardCharsets.UTF_8).split("\n");
+    assertEquals(2, lines.length);
+    var uids = new HashSet<Object>();
+    for (String line : lines) {
+      var session = Json.marshal(line);
+      assertEquals(-1, ((Number) session.get("ttl")).intValue());
+      assertTrue(((Number) session.get("size")).intValue() > 0);
+      @SuppressWarnings("unchecked")
+      var attributes = (Map<String, Object>) session.get("attributes");
+      assertFalse(attributes.containsKey("displayName"));
+      uids.add(attributes.get("uid"));
+    }
+    assertEquals(Set.of("testuser1", "testuser2"), uids);
+  }
+
+  @Test
+  void testPurgeDeletesMatchingSessions() {
+    var sd = new InMemorySessionData();
+    var staff = sd.save("{\"uid\":\"testuser1\",\"affiliation\":[\"staff\",\"member\"]}");
+    var student = sd.save("{\"uid\":\"testuser2\",\"affiliation\":\"student\"}");
+    var none = sd.save("{\"uid\":\"testuser3\"}");
+    var notJson = sd.save("not json");
+
+    var response = post(sd, Map.of("mode", List.of("purge"), "attribute", List.of("affiliation"),
+        "value", List.of("staff")));
+    assertFalse(response.sendErrorWasCalled(), "HttpServletResponse.sendError was called!");
+    var body = Json.marshal(new String(response.getResponseBody(), StandardCharsets.UTF_8));
+    assertEquals(1, ((Number) body.get("purged")).intValue());
+    assertNull(sd.get(staff));
+    assertNotNull(sd.get(student));
+
+    // Without a value, sessions lacking the attribute are purged.
+    post(sd, Map.of("mode", List.of("purge"), "attribute", List.of("affiliation")));
+    assertNull(sd.get(none));
+    assertNotNull(sd.get(student));
+    assertNotNull(sd.get(notJson));
+  }
+
+  @Test
+  void testPurgeWithoutAttributeIsBadRequest() {
+    var response = post(new InMemorySessionData(), Map.of("mode", List.of("purge")));
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatusCode());
+  }
+
+  private static ServletApiInvocationHandler get(SessionData sd,
+      Map<String, List<String>> parameters) {
+    return service(sd, parameters, false);
+  }
+
+  private static ServletApiInvocationHandler post(SessionData sd,
+      Map<String, List<String>> parameters) {
+    return service(sd, parameters, true);
+  }
+
+  private static ServletApiInvocationHandler service(SessionData sd,
+      Map<String, List<String>> parameters, boolean post) {
+    var servletContext = ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder()
+            .addAttributes(Map.of(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME, sd)).build());
+    var servletConfig = ProxyFactories.createServletConfigProxy(
+        new ServletApiInvocationHandler.Builder().servletName("AdminSessionsServlet")
+            .servletContext(servletContext).build());
+    var request = ProxyFactories.createHttpServletRequestProxy(
+        new ServletApiInvocationHandler.Builder().addRequestParameters(parameters)
+            .requestUri("/elmr/admin/sessions").servletContext(servletContext).build());
+    var responseInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var response = ProxyFactories.createHttpServletResponseProxy(responseInvocationHandler);
+
+    var servlet = new AdminSessionsServlet();
+    try {
+      servlet.init(servletConfig);
+      if (post) {
+        servlet.doPost(request, response);
+      } else {
+        servlet.doGet(request, response);
+      }
+    } catch (Exception e) {
+      fail("Unexpected error!", e);
+    }
+    return responseInvocationHandler;
+  }
+}
@@ -1,17 +1,39 @@
 package edu.illinois.techservices.elmr.servlets;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 
 class ApacheConfigTest {
 
+  private static final Logger LOGGER = Logger.getLogger(ApacheConfigTest.class.getName());
+
   private static ByteArrayInputStream inputBytes;
 
+  private Path serverRoot;
+
   @BeforeAll
   static void setupTestClass() {
     StringBuilder apacheConf = new StringBuilder();
@@ -99,4 +121,183 @@ class ApacheConfigTest {
       fail(e);
     }
   }
+
+  @BeforeEach
+  void setUp() throws IOException {
+    serverRoot = Files.createTempDirectory(ApacheConfigTest.class.getSimpleName());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (var paths = Files.walk(serverRoot)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Test
+  void testDirectivesAreParsedLikeApache() {
+    var conf = "  jkenvvar displayName\n# JkEnvVar commentedOut\nJkEnvVar\tShib-Session-ID\r\n"
+        + "JkEnvVar displayName\nJkEnvVarSomething else\n";
+    var config = new ApacheConfig(new ByteArrayInputStream(conf.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(List.of("displayName", "Shib-Session-ID"), config.getJkEnvVars());
+    assertTrue(config.hasJkEnvVar("Shib-Session-ID"));
+    assertFalse(config.hasJkEnvVar("commentedOut"));
+  }
+
+  @Test
+  void testIncludesAreFollowed() throws Exception {
+    write("conf/httpd.conf", "ServerRoot \"" + serverRoot + "\"\n"
+        + "JkEnvVar uid\n"
+        + "Include conf.modules.d/*.conf\n"
+        + "IncludeOptional conf.d/*.conf\n"
+        + "IncludeOptional conf.d/missing.conf\n"
+        + "Include shib\n"
+        + "Include conf/httpd.conf\n");
+    write("conf.modules.d/10-jk.conf", "JkEnvVar mail\n");
+    write("conf.modules.d/00-base.conf", "JkEnvVar displayName\n");
+    write("conf.modules.d/.hidden.conf", "JkEnvVar hidden\n");
+    write("conf.d/elmr.conf", "<Location /elmr>\n  JkEnvVar eduPersonPrincipalName\n</Location>\n");
+    write("shib/a/attrs.conf", "JkEnvVar isMemberOf\n");
+
+    var config = ApacheConfig.load(serverRoot.resolve("conf/httpd.conf"));
+    assertEquals(
+        List.of("uid", "displayName", "mail", "eduPersonPrincipalName", "isMemberOf"),
+        config.getJkEnvVars());
+    assertFalse(config.isStale());
+  }
+
+  @Test
+  void testRelativeIncludesUseDirectoryOfFileWithoutServerRoot() throws Exception {
+    write("mod_jk.conf", "JkEnvVar uid\nIncludeOptional jk.d/*.conf\n");
+    write("jk.d/more.conf", "JkEnvVar mail\n");
+
+    var config = ApacheConfig.load(serverRoot.resolve("mod_jk.conf"));
+    assertEquals(List.of("uid", "mail"), config.getJkEnvVars());
+  }
+
+  @Test
+  void testLargeFilesAreMapped() throws Exception {
+    var sb = new StringBuilder();
+    var i = 0;
+    while (sb.length() < ApacheConfig.MAP_THRESHOLD * 2) {
+      sb.append("JkEnvVar attr").append(i++).append('\n');
+    }
+    write("big.conf", sb.toString());
+
+    var config = ApacheConfig.load(serverRoot.resolve("big.conf"));
+    assertEquals(i, config.getJkEnvVars().size());
+    assertTrue(config.hasJkEnvVar("attr" + (i - 1)));
+  }
+
+  @Test
+  void testChangesAreNoticed() throws Exception {
+    write("httpd.conf", "JkEnvVar uid\nIncludeOptional conf.d/*.conf\n");
+    Files.createDirectories(serverRoot.resolve("conf.d"));
+    var config = ApacheConfig.load(serverRoot.resolve("httpd.conf"));
+    assertFalse(config.isStale());
+
+    var published = new LinkedBlockingQueue<ApacheConfig>();
+    try (var watcher = new ApacheConfigWatcher(config, published::add, 50L)) {
+      watcher.start();
+      write("conf.d/elmr.conf", "JkEnvVar mail\n");
+
+      var reloaded = published.poll(10L, TimeUnit.SECONDS);
+      assertNotNull(reloaded, "New included file was not noticed!");
+      assertEquals(List.of("uid", "mail"), reloaded.getJkEnvVars());
+      assertSame(reloaded, watcher.getCurrent());
+      assertTrue(config.isStale());
+      assertFalse(watcher.reload());
+    }
+  }
+
+  /**
+   * Loads a split configuration like a RHEL httpd install with many virtual hosts and compares
+   * lookups in the index against scanning the configuration with a regular expression.
+   */
+  @Test
+  @EnabledIfSystemProperty(named = "edu.illinois.techservices.elmr.Benchmark", matches = "true")
+  void benchmarkLoadAndLookup() throws Exception {
+    var sb = new StringBuilder("ServerRoot \"" + serverRoot + "\"\n");
+    sb.append("Include conf.modules.d/*.conf\nIncludeOptional conf.d/*.conf\n");
+    for (int i = 0; i < 200; i++) {
+      sb.append("# ").append("x".repeat(70)).append('\n');
+    }
+    write("conf/httpd.conf", sb.toString());
+    for (int m = 0; m < 40; m++) {
+      write(String.format("conf.modules.d/%02d-module.conf", m),
+          "LoadModule module" + m + " modules/mod_" + m + ".so\n");
+    }
+    var names = new ArrayList<String>();
+    for (int v = 0; v < 300; v++) {
+      var vhost = new StringBuilder("<VirtualHost *:443>\n  ServerName host" + v + "\n");
+      for (int l = 0; l < 100; l++) {
+        vhost.append("  Header set X-Line-").append(l).append(" value\n");
+      }
+      for (int j = 0; j < 20; j++) {
+        var name = "attr" + v + "_" + j;
+        names.add(name);
+        vhost.append("  JkEnvVar ").append(name).append('\n');
+      }
+      vhost.append("</VirtualHost>\n");
+      write("conf.d/vhost" + v + ".conf", vhost.toString());
+    }
+    var main = serverRoot.resolve("conf/httpd.conf");
+
+    var loads = 50;
+    ApacheConfig config = null;
+    var start = System.nanoTime();
+    for (int i = 0; i < loads; i++) {
+      config = ApacheConfig.load(main);
+    }
+    var loadMicros = (System.nanoTime() - start) / 1000 / loads;
+    assertEquals(names.size(), config.getJkEnvVars().size());
+
+    // What getJkEnvVars() used to do on every call, over the same bytes.
+    var all = new StringBuilder();
+    try (var files = Files.walk(serverRoot)) {
+      for (Path p : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+        all.append(Files.readString(p));
+      }
+    }
+    var pattern = Pattern.compile("JkEnvVar\\s(\\w+)");
+    var scans = 50;
+    start = System.nanoTime();
+    for (int i = 0; i < scans; i++) {
+      var found = new ArrayList<String>();
+      var m = pattern.matcher(all);
+      while (m.find()) {
+        found.add(m.group(1));
+      }
+      assertEquals(names.size(), found.size());
+    }
+    var scanMicros = (System.nanoTime() - start) / 1000 / scans;
+
+    var lookups = 1_000_000;
+    start = System.nanoTime();
+    var hits = 0;
+    for (int i = 0; i < lookups; i++) {
+      if (config.hasJkEnvVar(names.get(i % names.size()))) {
+        hits++;
+      }
+    }
+    var lookupNanos = (System.nanoTime() - start) / lookups;
+    assertEquals(lookups, hits);
+
+    LOGGER.info(String.format(
+        "%d files, %d JkEnvVars: load %d us, regex scan %d us, index lookup %d ns",
+        341, names.size(), loadMicros, scanMicros, lookupNanos));
+  }
+
+  private void write(String name, String content) throws IOException {
+    var path = serverRoot.resolve(name);
+    Files.createDirectories(path.getParent());
+    var existed = Files.exists(path);
+    Files.writeString(path, content);
+    if (existed) {
+      // Make sure the change is visible even on file systems with coarse timestamps.
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() + 2000L));
+    }
+  }
 }
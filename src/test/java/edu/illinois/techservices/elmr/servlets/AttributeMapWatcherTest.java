@@ -0,0 +1,102 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AttributeMapWatcherTest {
+
+  private Path dir;
+
+  private Path file;
+
+  private long lastModifiedMillis = System.currentTimeMillis();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    dir = Files.createTempDirectory(AttributeMapWatcherTest.class.getSimpleName());
+    file = dir.resolve("attribute-map.xml");
+    writeAttributeMap(List.of("uid", "mail"));
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    Files.deleteIfExists(file);
+    Files.deleteIfExists(dir);
+  }
+
+  @Test
+  void testTableIsListOfNames() throws Exception {
+    var table = AttributeTable.parse(file, 1L);
+    assertEquals(List.of("uid", "mail"), table);
+    assertTrue(table.contains("mail"));
+    assertFalse(table.contains("displayName"));
+    assertEquals(1L, table.getVersion());
+  }
+
+  @Test
+  void testChangedFileIsPublished() throws Exception {
+    var published = new LinkedBlockingQueue<AttributeTable>();
+    try (var watcher =
+        new AttributeMapWatcher(file, AttributeTable.parse(file, 1L), published::add, 50L)) {
+      watcher.start();
+      writeAttributeMap(List.of("uid", "mail", "displayName"));
+
+      var table = published.poll(10L, TimeUnit.SECONDS);
+      assertNotNull(table, "Change to " + file + " was not published!");
+      assertEquals(List.of("uid", "mail", "displayName"), table);
+      assertEquals(2L, table.getVersion());
+      assertSame(table, watcher.getCurrent());
+    }
+  }
+
+  @Test
+  void testUnparseableFileKeepsCurrentTable() throws Exception {
+    var published = new LinkedBlockingQueue<AttributeTable>();
+    var initial = AttributeTable.parse(file, 1L);
+    try (var watcher = new AttributeMapWatcher(file, initial, published::add, 50L)) {
+      Files.writeString(file, "<Attributes><Attribute id=\"uid\">");
+      touch();
+
+      assertFalse(watcher.reload());
+      assertSame(initial, watcher.getCurrent());
+      assertTrue(published.isEmpty());
+
+      // Nothing changed since the failed attempt.
+      assertFalse(watcher.reload());
+
+      writeAttributeMap(List.of("mail"));
+      assertTrue(watcher.reload());
+      assertEquals(List.of("mail"), watcher.getCurrent());
+      assertEquals(2L, watcher.getCurrent().getVersion());
+    }
+  }
+
+  private void writeAttributeMap(List<String> ids) throws Exception {
+    var sb = new StringBuilder("<Attributes xmlns=\"urn:mace:shibboleth:2.0:attribute-map\">\n");
+    for (String id : ids) {
+      sb.append("  <Attribute name=\"urn:test:").append(id).append("\" id=\"").append(id)
+          .append("\"/>\n");
+    }
+    sb.append("</Attributes>\n");
+    Files.writeString(file, sb);
+    touch();
+  }
+
+  private void touch() throws Exception {
+    // Coarse file system clocks could otherwise hide a rewrite of the same size.
+    lastModifiedMillis += 2000L;
+    Files.setLastModifiedTime(file, FileTime.fromMillis(lastModifiedMillis));
+  }
+}
@@ -5,13 +5,18 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.http.Cookie;
 import org.junit.jupiter.api.Test;
 import edu.illinois.techservices.elmr.InMemorySessionData;
+import edu.illinois.techservices.elmr.SessionData;
 
 class AttributesFilterTest {
 
@@ -119,13 +124,73 @@ class AttributesFilterTest {
         .filter(c -> c.getName().equals(ServletConstants.SERVICE_URL_COOKIE_NAME)).findAny();
     assertFalse(maybeHaveServiceUrlCookie.isPresent());
 
-    var attributes = requestInvocationHandler.getAttributes();
-    assertEquals(EXPECTED_ATTRIBUTES.size(), attributes.size());
+    // Session data is read through the request passed down the chain, not copied onto the
+    // original request.
+    assertTrue(filterChainInvocationHandler.doFilterWasCalled());
+    assertTrue(requestInvocationHandler.getAttributes().isEmpty());
+    var filteredRequest =
+        (SessionAttributesRequest) filterChainInvocationHandler.getFilteredRequest();
+    assertFalse(filteredRequest.isLoaded());
     for (String attributeName : EXPECTED_ATTRIBUTES.keySet()) {
-      assertTrue(attributes.containsKey(attributeName));
-      assertTrue(attributes.get(attributeName).equals(EXPECTED_ATTRIBUTES.get(attributeName)));
+      assertEquals(EXPECTED_ATTRIBUTES.get(attributeName),
+          filteredRequest.getAttribute(attributeName));
     }
-    assertTrue(filterChainInvocationHandler.doFilterWasCalled());
+    assertTrue(filteredRequest.isLoaded());
+    assertEquals(EXPECTED_ATTRIBUTES.keySet(),
+        Set.copyOf(Collections.list(filteredRequest.getAttributeNames())));
+  }
+
+  @Test
+  void testSessionDataIsFetchedLazilyAndOnce() {
+    var gets = new AtomicInteger();
+    var store = new InMemorySessionData();
+    var key = store.save(TEST_DATA);
+    var sd = (SessionData) Proxy.newProxyInstance(SessionData.class.getClassLoader(),
+        new Class<?>[] {SessionData.class}, (proxy, method, args) -> {
+          if (method.getName().startsWith("get")) {
+            gets.incrementAndGet();
+          }
+          return method.invoke(store, args);
+        });
+    var servletContext = ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder()
+            .addAttributes(Map.of(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME, sd)).build());
+    var filterConfig = ProxyFactories.createFilterConfigProxy(
+        new ServletApiInvocationHandler.Builder().filterName(FILTER_NAME)
+            .servletContext(servletContext).build());
+    var requestInvocationHandler = new ServletApiInvocationHandler.Builder().requestUri(REQUEST_URI)
+        .addAttributes(Map.of("uid", "from-request", "org.apache.tomcat.sendfile.support", true))
+        .cookies(List.of(new Cookie(ServletConstants.SESSION_KEY_COOKIE_NAME, new String(key))))
+        .build();
+    var request = ProxyFactories.createHttpServletRequestProxy(requestInvocationHandler);
+    var response = ProxyFactories
+        .createHttpServletResponseProxy(new ServletApiInvocationHandler.Builder().build());
+    var filterChainInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var chain = ProxyFactories.createFilterChainProxy(filterChainInvocationHandler);
+
+    var attributesFilter = new AttributesFilter();
+    try {
+      attributesFilter.init(filterConfig);
+      attributesFilter.doFilter(request, response, chain);
+    } catch (Exception e) {
+      fail("Test error!", e);
+    }
+
+    var filteredRequest =
+        (SessionAttributesRequest) filterChainInvocationHandler.getFilteredRequest();
+    assertEquals(0, gets.get());
+
+    // Container attributes never fetch session data.
+    assertEquals(true, filteredRequest.getAttribute("org.apache.tomcat.sendfile.support"));
+    assertEquals(0, gets.get());
+
+    // Session data takes precedence until an attribute is set on the wrapper.
+    assertEquals("abcd1234", filteredRequest.getAttribute("uid"));
+    assertEquals("for-test", filteredRequest.getAttribute("displayName"));
+    assertEquals(null, filteredRequest.getAttribute("mail"));
+    filteredRequest.setAttribute("uid", "set-later");
+    assertEquals("set-later", filteredRequest.getAttribute("uid"));
+    assertEquals(1, gets.get());
   }
   @Test
   void testNoSessionDataObjectOnContext() {
@@ -0,0 +1,91 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConfigServletTest {
+
+  private static final String APACHE_CONFIG = "JkEnvVar uid\nJkEnvVar mail\n";
+
+  private ServletContext servletContext;
+
+  private ConfigServlet servlet;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    var contextAttributes = new HashMap<String, Object>();
+    contextAttributes.put(ServletConstants.APACHE_CONFIG_CONTEXT_PARAM_NAME,
+        new ApacheConfig(new ByteArrayInputStream(APACHE_CONFIG.getBytes(StandardCharsets.UTF_8))));
+    contextAttributes.put(ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME,
+        List.of("uid", "displayName"));
+    servletContext = ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder().addAttributes(contextAttributes)
+            .contextPath("/elmr").build());
+    servlet = new ConfigServlet();
+    servlet.init(ProxyFactories.createServletConfigProxy(
+        new ServletApiInvocationHandler.Builder().servletContext(servletContext).build()));
+  }
+
+  @Test
+  void testPageIsRenderedOnceAndRevalidated() throws Exception {
+    var first = get(Map.of());
+    var etag = first.getResponseHeader(ETags.ETAG_HEADER);
+    assertNotNull(etag);
+    var body = new String(first.getResponseBody(), StandardCharsets.UTF_8);
+    assertTrue(body.contains("<td>displayName</td>"), body);
+    assertTrue(body.contains("<td>mail</td>"), body);
+
+    var second = get(Map.of());
+    assertEquals(etag, second.getResponseHeader(ETags.ETAG_HEADER));
+    assertArrayEquals(first.getResponseBody(), second.getResponseBody());
+
+    var conditional = get(Map.of(ETags.IF_NONE_MATCH_HEADER, etag));
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, conditional.getStatusCode());
+    assertEquals(0, conditional.getResponseBody().length);
+  }
+
+  @Test
+  void testPageIsRenderedAgainAfterReload() throws Exception {
+    var etag = get(Map.of()).getResponseHeader(ETags.ETAG_HEADER);
+
+    servletContext.setAttribute(ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME,
+        List.of("uid", "displayName", "eduPersonPrincipalName"));
+
+    var reloaded = get(Map.of(ETags.IF_NONE_MATCH_HEADER, etag));
+    assertNotEquals(HttpServletResponse.SC_NOT_MODIFIED, reloaded.getStatusCode());
+    assertNotEquals(etag, reloaded.getResponseHeader(ETags.ETAG_HEADER));
+    var body = new String(reloaded.getResponseBody(), StandardCharsets.UTF_8);
+    assertTrue(body.contains("<td>eduPersonPrincipalName</td>"), body);
+  }
+
+  @Test
+  void testIfNoneMatch() {
+    assertTrue(ETags.matches("\"a\"", "\"a\""));
+    assertTrue(ETags.matches("\"b\", W/\"a\"", "\"a\""));
+    assertTrue(ETags.matches("*", "\"a\""));
+    assertFalse(ETags.matches("\"b\"", "\"a\""));
+    assertFalse(ETags.matches(null, "\"a\""));
+  }
+
+  private ServletApiInvocationHandler get(Map<String, String> headers) throws Exception {
+    var request = ProxyFactories.createHttpServletRequestProxy(
+        new ServletApiInvocationHandler.Builder().addHeaders(headers).build());
+    var responseInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    servlet.doGet(request,
+        ProxyFactories.createHttpServletResponseProxy(responseInvocationHandler));
+    return responseInvocationHandler;
+  }
+}
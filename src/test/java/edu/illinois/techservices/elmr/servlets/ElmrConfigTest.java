@@ -0,0 +1,68 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Map;
+import javax.servlet.ServletContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ElmrConfigTest {
+
+  @AfterEach
+  void tearDown() {
+    System.clearProperty(ServletConstants.ADMIN_GROUP);
+  }
+
+  @Test
+  void testDefaults() {
+    var config = ElmrConfig.reference(createServletContext(Map.of())).get();
+    assertEquals("", config.getLogoutUrl());
+    assertEquals(ServletConstants.DEFAULT_UNIQUE_USER_ID, config.getUniqueUserIdentifier());
+    assertFalse(config.isSecureCookiesDisabled());
+    assertEquals("", config.getAdminGroup());
+    assertEquals(ServletConstants.DEFAULT_ADMIN_GROUP_ATTRIBUTE, config.getAdminGroupAttribute());
+  }
+
+  @Test
+  void testContextParameters() {
+    var config = ElmrConfig.reference(createServletContext(
+        Map.of(ServletConstants.LOGOUT_URL, "/Shibboleth.sso/Logout",
+            ServletConstants.UNIQUE_USER_ID_PARAM_NAME, "eppn",
+            ServletConstants.SESSION_KEY_DISABLE_SECURE, "true")))
+        .get();
+    assertEquals("/Shibboleth.sso/Logout", config.getLogoutUrl());
+    assertEquals("eppn", config.getUniqueUserIdentifier());
+    assertTrue(config.isSecureCookiesDisabled());
+  }
+
+  @Test
+  void testReferenceIsCreatedOnce() {
+    var servletContext = createServletContext(Map.of());
+    assertSame(ElmrConfig.reference(servletContext), ElmrConfig.reference(servletContext));
+  }
+
+  @Test
+  void testReloadReplacesSnapshot() {
+    var ref = ElmrConfig.reference(createServletContext(Map.of()));
+    var before = ref.get();
+    System.setProperty(ServletConstants.ADMIN_GROUP, "elmr-admins");
+
+    // A snapshot never changes once loaded.
+    assertEquals("", before.getAdminGroup());
+
+    var after = ref.reload();
+    assertNotSame(before, after);
+    assertSame(after, ref.get());
+    assertEquals("elmr-admins", after.getAdminGroup());
+    assertEquals("", before.getAdminGroup());
+  }
+
+  private static ServletContext createServletContext(Map<String, String> initParameters) {
+    return ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder().addInitParameters(initParameters).build());
+  }
+}
@@ -0,0 +1,68 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class HtmlSupportTest {
+
+  private static final String LOGOUT_URL = "/elmr/session?mode=logout";
+
+  private static final List<String> USER_ATTRIBUTES =
+      List.of("displayName", "uid", "eduPersonAffiliation", "mail", "iTrustSuppress");
+
+  private static final List<String> JK_ENV_VARS = List.of("uid", "mail", "isMemberOf");
+
+  @Test
+  void testAttributesPageMatchesDocument() throws Exception {
+    var reqAttrs = new HashMap<String, Object>();
+    reqAttrs.put("displayName", "Test User");
+    reqAttrs.put("uid", "testuser1");
+    reqAttrs.put("eduPersonAffiliation", List.of("member", "staff", "employee"));
+    reqAttrs.put("mail", "");
+
+    assertArrayEquals(HtmlSupport.renderAttributesDocument(LOGOUT_URL, USER_ATTRIBUTES, reqAttrs),
+        HtmlSupport.renderAttributesPage(LOGOUT_URL, USER_ATTRIBUTES, reqAttrs));
+    assertArrayEquals(HtmlSupport.renderAttributesDocument(LOGOUT_URL, List.of(), Map.of()),
+        HtmlSupport.renderAttributesPage(LOGOUT_URL, List.of(), Map.of()));
+  }
+
+  @Test
+  void testConfigPageMatchesDocument() throws Exception {
+    var allAttrs = new TreeSet<String>(USER_ATTRIBUTES);
+    allAttrs.addAll(JK_ENV_VARS);
+
+    assertArrayEquals(
+        HtmlSupport.renderConfigDocument(LOGOUT_URL, allAttrs, JK_ENV_VARS, USER_ATTRIBUTES),
+        HtmlSupport.renderConfigPage(LOGOUT_URL, allAttrs, JK_ENV_VARS, USER_ATTRIBUTES));
+  }
+
+  @Test
+  void testValuesAreEscaped() throws Exception {
+    var html = new String(HtmlSupport.renderAttributesPage("/logout?a=1&b=\"2\"", List.of("uid"),
+        Map.of("uid", "<script>alert('x')</script> é")), StandardCharsets.UTF_8);
+    assertTrue(html.contains(
+        "<td class=\"text-center\">&lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt; é</td>"), html);
+    assertTrue(html.contains("<a href=\"/logout?a=1&amp;b=&quot;2&quot;\">Logout</a>"), html);
+  }
+
+  @Test
+  void testTemplateSlots() throws Exception {
+    var template = HtmlTemplate.compile("<p>{{a}} and {{b}}</p>");
+    assertEquals(List.of("a", "b"), template.getSlotNames());
+
+    var bos = new ByteArrayOutputStream();
+    template.write(bos, "x", "y&z");
+    assertEquals("<p>x and y&amp;z</p>", bos.toString(StandardCharsets.UTF_8));
+
+    assertThrows(IllegalArgumentException.class, () -> template.write(bos, "x"));
+  }
+}
@@ -0,0 +1,46 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+
+class RecordingServletTest {
+
+  @Test
+  void testLimitsThatAreNotPositiveNumbersAreBadRequests() {
+    for (var parameters : List.of(Map.of("maxAge", "0"), Map.of("maxAge", "-1"),
+        Map.of("maxSize", "0"), Map.of("maxSize", "-1024"), Map.of("maxAge", "ten"))) {
+      var response = start(parameters);
+      assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatusCode(),
+          parameters.toString());
+    }
+  }
+
+  private static ServletApiInvocationHandler start(Map<String, String> limits) {
+    var parameters = new HashMap<String, List<String>>();
+    parameters.put("mode", List.of("start"));
+    limits.forEach((name, value) -> parameters.put(name, List.of(value)));
+    var servletConfig = ProxyFactories.createServletConfigProxy(
+        new ServletApiInvocationHandler.Builder().servletName("RecordingServlet").build());
+    var request = ProxyFactories.createHttpServletRequestProxy(
+        new ServletApiInvocationHandler.Builder().addRequestParameters(parameters)
+            .requestUri("/elmr/admin/recording").build());
+    var responseInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var response = ProxyFactories.createHttpServletResponseProxy(responseInvocationHandler);
+
+    var servlet = new RecordingServlet();
+    try {
+      servlet.init(servletConfig);
+      servlet.doPost(request, response);
+    } catch (Exception e) {
+      fail("Unexpected error!", e);
+    } finally {
+      servlet.destroy();
+    }
+    return responseInvocationHandler;
+  }
+}
@@ -0,0 +1,65 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import edu.illinois.techservices.elmr.RequestTimer;
+import org.junit.jupiter.api.Test;
+
+class ServerTimingFilterTest {
+
+  @Test
+  void testServerTimingHeaderAdded() throws Exception {
+    var request = ProxyFactories
+        .createHttpServletRequestProxy(new ServletApiInvocationHandler.Builder().build());
+    var responseInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var response = ProxyFactories.createHttpServletResponseProxy(responseInvocationHandler);
+    var chainInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var chain = ProxyFactories.createFilterChainProxy(chainInvocationHandler);
+
+    new ServerTimingFilter().doFilter(request, response, chain);
+
+    assertTrue(chainInvocationHandler.doFilterWasCalled());
+    var serverTiming =
+        responseInvocationHandler.getResponseHeader(ServerTimingFilter.SERVER_TIMING_HEADER);
+    assertNotNull(serverTiming);
+    assertTrue(serverTiming.startsWith("total;dur="), serverTiming);
+
+    // The timer stops with the request.
+    assertEquals("", RequestTimer.toServerTiming());
+  }
+
+  @Test
+  void testServerTimingOfAttributesPageIncludesRendering() throws Exception {
+    var servletContext = ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder()
+            .addAttributes(Map.of(ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME,
+                List.of("uid", "displayName")))
+            .build());
+    var servletConfig =
+        ProxyFactories.createServletConfigProxy(new ServletApiInvocationHandler.Builder()
+            .servletName("AttributesServlet").servletContext(servletContext).build());
+    var request = ProxyFactories.createHttpServletRequestProxy(
+        new ServletApiInvocationHandler.Builder().addAttributes(Map.of("uid", "testuser1"))
+            .requestUri("/elmr/attributes").servletContext(servletContext).build());
+    var responseInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var response = ProxyFactories.createHttpServletResponseProxy(responseInvocationHandler);
+    var servlet = new AttributesServlet();
+    servlet.init(servletConfig);
+
+    new ServerTimingFilter().doFilter(request, response,
+        (req, res) -> servlet.doGet((HttpServletRequest) req, (HttpServletResponse) res));
+
+    assertTrue(new String(responseInvocationHandler.getResponseBody(), StandardCharsets.UTF_8)
+        .contains("testuser1"));
+    var serverTiming =
+        responseInvocationHandler.getResponseHeader(ServerTimingFilter.SERVER_TIMING_HEADER);
+    assertNotNull(serverTiming);
+    assertTrue(serverTiming.contains("html;dur="), serverTiming);
+  }
+}
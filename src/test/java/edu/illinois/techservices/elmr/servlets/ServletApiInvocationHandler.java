@@ -1,9 +1,13 @@
 package edu.illinois.techservices.elmr.servlets;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -14,6 +18,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.Cookie;
 
 /**
@@ -45,8 +51,14 @@ class ServletApiInvocationHandler implements InvocationHandler {
 
   private final List<Cookie> responseCookies = new ArrayList<>();
 
+  private final Map<String, String> headers = new HashMap<>();
+
+  private final Map<String, List<String>> responseHeaders = new HashMap<>();
+
   private final Map<String, Object> attributes = new HashMap<>();
 
+  private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+
   private final Map<String, String> initParameters = new HashMap<>();
 
   private final Map<String, List<String>> requestParameters = new HashMap<>();
@@ -61,6 +73,8 @@ class ServletApiInvocationHandler implements InvocationHandler {
 
   private final String servletName;
 
+  private final String servletPath;
+
   private int addCookieCallCount = 0;
 
   private int doFilterCallCount = 0;
@@ -77,6 +91,8 @@ class ServletApiInvocationHandler implements InvocationHandler {
 
   private String redirect = "";
 
+  private Object filteredRequest = null;
+
   /**
    * Builder for instances of this InvocationHandler.
    * 
@@ -92,6 +108,8 @@ class ServletApiInvocationHandler implements InvocationHandler {
 
     private final Map<String, Object> attributes = new HashMap<>();
 
+    private final Map<String, String> headers = new HashMap<>();
+
     private final Map<String, String> initParameters = new HashMap<>();
 
     private final Map<String, List<String>> requestParameters = new HashMap<>();
@@ -106,11 +124,18 @@ class ServletApiInvocationHandler implements InvocationHandler {
 
     private String servletName = "";
 
+    private String servletPath = "";
+
     Builder addAttributes(Map<String, Object> attributes) {
       this.attributes.putAll(attributes);
       return this;
     }
 
+    Builder addHeaders(Map<String, String> headers) {
+      this.headers.putAll(headers);
+      return this;
+    }
+
     Builder addInitParameters(Map<String, String> initParameters) {
       this.initParameters.putAll(initParameters);
       return this;
@@ -156,6 +181,11 @@ class ServletApiInvocationHandler implements InvocationHandler {
       return this;
     }
 
+    Builder servletPath(String servletPath) {
+      this.servletPath = servletPath;
+      return this;
+    }
+
     ServletApiInvocationHandler build() {
       return new ServletApiInvocationHandler(this);
     }
@@ -169,6 +199,7 @@ class ServletApiInvocationHandler implements InvocationHandler {
   private ServletApiInvocationHandler(Builder builder) {
     this.cookies.addAll(builder.cookies);
     this.attributes.putAll(builder.attributes);
+    this.headers.putAll(builder.headers);
     this.initParameters.putAll(builder.initParameters);
     this.requestParameters.putAll(builder.requestParameters);
     this.servletContext = builder.servletContext;
@@ -176,6 +207,7 @@ class ServletApiInvocationHandler implements InvocationHandler {
     this.filterName = builder.filterName;
     this.requestUri = builder.requestUri;
     this.servletName = builder.servletName;
+    this.servletPath = builder.servletPath;
   }
 
   /**
@@ -190,9 +222,16 @@ class ServletApiInvocationHandler implements InvocationHandler {
       responseCookies.add((Cookie) args[0]);
       return null;
 
+    } else if (method.getName().equals("addHeader")) {
+
+      responseHeaders.computeIfAbsent(args[0].toString(), k -> new ArrayList<>())
+          .add(args[1].toString());
+      return null;
+
     } else if (method.getName().equals("doFilter")) {
 
       doFilterCallCount++;
+      filteredRequest = args[0];
       return null;
 
     } else if (method.getName().equals("getAttribute")) {
@@ -200,6 +239,15 @@ class ServletApiInvocationHandler implements InvocationHandler {
       String name = args[0].toString();
       return attributes.get(name);
 
+    } else if (method.getName().equals("getAttributeNames")) {
+
+      return new NamesEnumeration(attributes.keySet().iterator());
+
+    } else if (method.getName().equals("getBufferSize")) {
+
+      // Tomcat's default.
+      return 8192;
+
     } else if (method.getName().equals("getContextPath")) {
 
       // Following the API specification for ServletContext, with the assumption that if the path
@@ -220,6 +268,10 @@ class ServletApiInvocationHandler implements InvocationHandler {
 
       return filterName;
 
+    } else if (method.getName().equals("getHeader")) {
+
+      return headers.get(args[0].toString());
+
     } else if (method.getName().equals("getInitParameter")) {
 
       return initParameters.get(args[0].toString());
@@ -228,6 +280,30 @@ class ServletApiInvocationHandler implements InvocationHandler {
 
       return new NamesEnumeration(initParameters.keySet().iterator());
 
+    } else if (method.getName().equals("getOutputStream")) {
+
+      return new ServletOutputStream() {
+
+        @Override
+        public void write(int b) {
+          responseBody.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+          // Writes never block.
+        }
+      };
+
+    } else if (method.getName().equals("getWriter")) {
+
+      return new PrintWriter(new OutputStreamWriter(responseBody, StandardCharsets.UTF_8));
+
     } else if (method.getName().equals("getParameter")) {
 
       List<String> values = requestParameters.get(args[0].toString());
@@ -237,6 +313,11 @@ class ServletApiInvocationHandler implements InvocationHandler {
         return null;
       }
 
+    } else if (method.getName().equals("getParameterValues")) {
+
+      List<String> values = requestParameters.get(args[0].toString());
+      return values == null ? null : values.toArray(new String[0]);
+
     } else if (method.getName().equals("getRequestURI")) {
 
       return requestUri;
@@ -249,6 +330,14 @@ class ServletApiInvocationHandler implements InvocationHandler {
 
       return servletName;
 
+    } else if (method.getName().equals("getServletPath")) {
+
+      return servletPath;
+
+    } else if (method.getName().equals("isCommitted")) {
+
+      return false;
+
     } else if (method.getName().equals("sendError")) {
 
       sendErrorCallCount++;
@@ -275,6 +364,19 @@ class ServletApiInvocationHandler implements InvocationHandler {
       attributes.put(args[0].toString(), args[1]);
       return null;
 
+    } else if (method.getName().equals("setCharacterEncoding")
+        || method.getName().equals("setContentLength")
+        || method.getName().equals("setContentType")) {
+
+      return null;
+
+    } else if (method.getName().equals("setHeader")) {
+
+      var values = new ArrayList<String>();
+      values.add(args[1].toString());
+      responseHeaders.put(args[0].toString(), values);
+      return null;
+
     } else if (method.getName().equals("setStatus")) {
 
       setStatusCallCount++;
@@ -329,6 +431,15 @@ class ServletApiInvocationHandler implements InvocationHandler {
     return doFilterCallCount;
   }
 
+  /**
+   * Returns the request passed to the last call of
+   * {@link javax.servlet.FilterChain#doFilter(javax.servlet.ServletRequest, javax.servlet.ServletResponse)
+   * doFilter} or {@code null} if it was not called.
+   */
+  Object getFilteredRequest() {
+    return filteredRequest;
+  }
+
   /**
    * Returns {@code true} if {@code setAttribute} was called at least once.
    * 
@@ -353,6 +464,21 @@ class ServletApiInvocationHandler implements InvocationHandler {
     return redirect;
   }
 
+  /**
+   * Returns the first value of the named header set on the response or {@code null} if not set.
+   */
+  String getResponseHeader(String name) {
+    var values = responseHeaders.get(name);
+    return values == null ? null : values.get(0);
+  }
+
+  /**
+   * Returns the bytes written to the response's output stream or writer.
+   */
+  byte[] getResponseBody() {
+    return responseBody.toByteArray();
+  }
+
   /**
    * Returns the List of Cookies set on the response or an empty List if none set.
    */
@@ -0,0 +1,120 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.fail;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import edu.illinois.techservices.elmr.InMemorySessionData;
+import edu.illinois.techservices.elmr.Json;
+import edu.illinois.techservices.elmr.SessionData;
+
+class SessionAttributesServletTest {
+
+  private static final String DATA =
+      "{\"uid\":\"testuser1\",\"displayName\":\"Test User\",\"isMemberOf\":[\"staff\"]}";
+
+  @Test
+  void testStoredDataIsReturnedAsIsAndRevalidated() {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+
+    var first = get(sd, key, Map.of(), Map.of());
+    assertEquals(DATA, new String(first.getResponseBody(), StandardCharsets.UTF_8));
+    assertEquals("private, no-cache", first.getResponseHeader("Cache-Control"));
+    var etag = first.getResponseHeader(ETags.ETAG_HEADER);
+    assertNotNull(etag);
+
+    var conditional = get(sd, key, Map.of(), Map.of(ETags.IF_NONE_MATCH_HEADER, etag));
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, conditional.getStatusCode());
+    assertEquals(0, conditional.getResponseBody().length);
+
+    sd.update(key.getBytes(), "uid", Map.of("uid", "testuser1", "displayName", "Renamed User",
+        "isMemberOf", List.of("staff")));
+    var changed = get(sd, key, Map.of(), Map.of(ETags.IF_NONE_MATCH_HEADER, etag));
+    assertNotEquals(HttpServletResponse.SC_NOT_MODIFIED, changed.getStatusCode());
+    assertNotEquals(etag, changed.getResponseHeader(ETags.ETAG_HEADER));
+  }
+
+  @Test
+  void testFieldsSelectAttributes() {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+
+    var response = get(sd, key, Map.of("fields", List.of("uid,isMemberOf,mail")), Map.of());
+
+    var attributes = Json.marshal(new String(response.getResponseBody(), StandardCharsets.UTF_8));
+    assertEquals(2, attributes.size());
+    assertEquals("testuser1", attributes.get("uid"));
+    assertEquals(List.of("staff"), attributes.get("isMemberOf"));
+  }
+
+  @Test
+  void testFieldsAreReturnedInTheOrderRequested() {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+
+    var response = get(sd, key, Map.of("fields", List.of("isMemberOf,displayName,uid")), Map.of());
+
+    assertEquals("{\"isMemberOf\":[\"staff\"],\"displayName\":\"Test User\",\"uid\":\"testuser1\"}",
+        new String(response.getResponseBody(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testEntityTagIsTheDigestOfTheBody() throws Exception {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+
+    var response = get(sd, key, Map.of(), Map.of());
+
+    var digest = MessageDigest.getInstance("SHA-256").digest(response.getResponseBody());
+    assertEquals("\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"",
+        response.getResponseHeader(ETags.ETAG_HEADER));
+  }
+
+  @Test
+  void testNoSessionIsUnauthorized() {
+    var sd = new InMemorySessionData();
+    assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+        get(sd, null, Map.of(), Map.of()).getStatusCode());
+    assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+        get(sd, "MTIzNA==", Map.of(), Map.of()).getStatusCode());
+    assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+        get(sd, "not base64!", Map.of(), Map.of()).getStatusCode());
+  }
+
+  private static ServletApiInvocationHandler get(SessionData sd, String key,
+      Map<String, List<String>> parameters, Map<String, String> headers) {
+    var servletContext = ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder()
+            .addAttributes(Map.of(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME, sd)).build());
+    var servletConfig = ProxyFactories.createServletConfigProxy(
+        new ServletApiInvocationHandler.Builder().servletName("SessionAttributesServlet")
+            .servletContext(servletContext).build());
+    var requestBuilder = new ServletApiInvocationHandler.Builder()
+        .addRequestParameters(parameters).addHeaders(headers)
+        .requestUri("/elmr/session/attributes").servletContext(servletContext);
+    if (key != null) {
+      requestBuilder.cookies(List.of(new Cookie(ServletConstants.SESSION_KEY_COOKIE_NAME, key)));
+    }
+    var request = ProxyFactories.createHttpServletRequestProxy(requestBuilder.build());
+    var responseInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var response = ProxyFactories.createHttpServletResponseProxy(responseInvocationHandler);
+
+    var servlet = new SessionAttributesServlet();
+    try {
+      servlet.init(servletConfig);
+      servlet.doGet(request, response);
+    } catch (Exception e) {
+      fail("Unexpected error!", e);
+    }
+    return responseInvocationHandler;
+  }
+}
@@ -0,0 +1,106 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.fail;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import edu.illinois.techservices.elmr.InMemorySessionData;
+import edu.illinois.techservices.elmr.Json;
+import edu.illinois.techservices.elmr.SessionData;
+
+class SessionMemberServletTest {
+
+  private static final String DATA =
+      "{\"uid\":\"testuser1\",\"isMemberOf\":[\"staff\",\"everyone\"],\"affiliation\":\"staff\"}";
+
+  @Test
+  void testMembershipInListAttribute() {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+
+    var response = get(sd, key, Map.of("value", List.of("staff")));
+    assertFalse(response.sendErrorWasCalled(), "HttpServletResponse.sendError was called!");
+    assertEquals(true, member(response));
+    assertEquals("private, no-cache", response.getResponseHeader("Cache-Control"));
+    assertEquals(false, member(get(sd, key, Map.of("value", List.of("faculty")))));
+  }
+
+  @Test
+  void testMembershipFollowsUpdates() {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+    assertEquals(false, member(get(sd, key, Map.of("value", List.of("faculty")))));
+
+    sd.update(key.getBytes(), "uid",
+        Map.of("uid", "testuser1", "isMemberOf", List.of("faculty"), "affiliation", "staff"));
+    assertEquals(true, member(get(sd, key, Map.of("value", List.of("faculty")))));
+    assertEquals(false, member(get(sd, key, Map.of("value", List.of("staff")))));
+  }
+
+  @Test
+  void testMembershipInSingleValuedAttribute() {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+    assertEquals(true, member(get(sd, key,
+        Map.of("attribute", List.of("affiliation"), "value", List.of("staff")))));
+    assertEquals(false, member(get(sd, key,
+        Map.of("attribute", List.of("mail"), "value", List.of("staff")))));
+  }
+
+  @Test
+  void testNoSessionIsUnauthorized() {
+    var sd = new InMemorySessionData();
+    var parameters = Map.of("value", List.of("staff"));
+    assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+        get(sd, null, parameters).getStatusCode());
+    assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+        get(sd, "MTIzNA==", parameters).getStatusCode());
+    assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+        get(sd, "not base64!", parameters).getStatusCode());
+  }
+
+  @Test
+  void testMissingValueIsBadRequest() {
+    var sd = new InMemorySessionData();
+    var key = new String(sd.save(DATA));
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, get(sd, key, Map.of()).getStatusCode());
+  }
+
+  private static Object member(ServletApiInvocationHandler response) {
+    return Json.marshal(new String(response.getResponseBody(), StandardCharsets.UTF_8))
+        .get("member");
+  }
+
+  private static ServletApiInvocationHandler get(SessionData sd, String key,
+      Map<String, List<String>> parameters) {
+    var servletContext = ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder()
+            .addAttributes(Map.of(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME, sd)).build());
+    var servletConfig = ProxyFactories.createServletConfigProxy(
+        new ServletApiInvocationHandler.Builder().servletName("SessionMemberServlet")
+            .servletContext(servletContext).build());
+    var requestBuilder = new ServletApiInvocationHandler.Builder()
+        .addRequestParameters(parameters).requestUri("/elmr/session/member")
+        .servletContext(servletContext);
+    if (key != null) {
+      requestBuilder.cookies(List.of(new Cookie(ServletConstants.SESSION_KEY_COOKIE_NAME, key)));
+    }
+    var request = ProxyFactories.createHttpServletRequestProxy(requestBuilder.build());
+    var responseInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var response = ProxyFactories.createHttpServletResponseProxy(responseInvocationHandler);
+
+    var servlet = new SessionMemberServlet();
+    try {
+      servlet.init(servletConfig);
+      servlet.doGet(request, response);
+    } catch (Exception e) {
+      fail("Unexpected error!", e);
+    }
+    return responseInvocationHandler;
+  }
+}
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import java.util.List;
@@ -464,4 +465,78 @@ class SessionServletTest {
     // Session data was destroyed
     assertNull(sessionData.get(keyToDestroy.getBytes()));
   }
+
+  @Test
+  void testReturningUserWithChangedAttributesIsUpdated() {
+    var key = sessionData.save("{\"uid\":\"testuser1\",\"displayName\":\"Old Name\","
+        + "\"eduPersonAffiliation\":[\"person\",\"test\",\"staff\"],\"mail\":\"old@example.com\"}");
+
+    var responseInvocationHandler = createReturningUserSession(key);
+
+    assertEquals(HttpServletResponse.SC_FOUND, responseInvocationHandler.getStatusCode());
+    var attributes = sessionData.getAttributes(key);
+    assertEquals("Test User", attributes.get("displayName"));
+    assertEquals("testuser1@example.com", attributes.get("eduPersonPrincipalName"));
+    assertEquals(List.of("person", "test", "staff"), attributes.get("eduPersonAffiliation"));
+    assertFalse(attributes.containsKey("mail"), "Removed attribute still stored!");
+    assertEquals(new String(key), getSessionKeyCookieValue(responseInvocationHandler));
+    // Attributes kept stay where they were, and added ones go last.
+    var stored = sessionData.get(key);
+    assertTrue(stored.startsWith("{\"uid\":\"testuser1\",\"displayName\":\"Test User\","
+        + "\"eduPersonAffiliation\":[\"person\",\"test\",\"staff\"],"), stored);
+  }
+
+  @Test
+  void testReturningUserWithUnchangedAttributesIsNotWritten() {
+    var key = sessionData.save("{\"uid\":\"testuser1\",\"displayName\":\"Test User\","
+        + "\"eduPersonPrincipalName\":\"testuser1@example.com\","
+        + "\"eduPersonTargetedID\":\"testuser1@example.com-1234\","
+        + "\"eduPersonAffiliation\":[\"person\",\"test\",\"staff\"]}");
+    var stored = sessionData.get(key);
+
+    var responseInvocationHandler = createReturningUserSession(key);
+
+    assertEquals(HttpServletResponse.SC_FOUND, responseInvocationHandler.getStatusCode());
+    assertSame(stored, sessionData.get(key), "Unchanged session data was rewritten!");
+    assertEquals(new String(key), getSessionKeyCookieValue(responseInvocationHandler));
+  }
+
+  private ServletApiInvocationHandler createReturningUserSession(byte[] key) {
+    var servletContextInvocationHandler = new ServletApiInvocationHandler.Builder()
+        .addAttributes(SERVLET_CONTEXT_ATTRIBUTES)
+        .addInitParameters(Map.of(ServletConstants.UNIQUE_USER_ID_PARAM_NAME, "uid",
+            ServletConstants.SESSION_KEY_DISABLE_SECURE, "true"))
+        .contextPath(CONTEXT_PATH).build();
+    var servletContext = ProxyFactories.createServletContextProxy(servletContextInvocationHandler);
+
+    var servletConfigInvocationHandler = new ServletApiInvocationHandler.Builder()
+        .servletName(SESSION_SERVLET_NAME).servletContext(servletContext).build();
+    var servletConfig = ProxyFactories.createServletConfigProxy(servletConfigInvocationHandler);
+
+    var requestInvocationHandler = new ServletApiInvocationHandler.Builder()
+        .addAttributes(SHIBBOLETH_ATTRIBUTES_REQUEST_ATTRIBUTE).requestUri(REQUEST_URI)
+        .cookies(List.of(new Cookie(ServletConstants.SESSION_KEY_COOKIE_NAME, new String(key)),
+            new Cookie(ServletConstants.SERVICE_URL_COOKIE_NAME, SERVICE_URL)))
+        .servletContext(servletContext).build();
+    var httpServletRequest = ProxyFactories.createHttpServletRequestProxy(requestInvocationHandler);
+
+    var responseInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var httpServletResponse =
+        ProxyFactories.createHttpServletResponseProxy(responseInvocationHandler);
+
+    var sessionServlet = new SessionServlet();
+    try {
+      sessionServlet.init(servletConfig);
+      sessionServlet.service(httpServletRequest, httpServletResponse);
+    } catch (Exception e) {
+      fail("Unexpected error!", e);
+    }
+    return responseInvocationHandler;
+  }
+
+  private static String getSessionKeyCookieValue(ServletApiInvocationHandler handler) {
+    return handler.getResponseCookiesView().stream()
+        .filter(c -> c.getName().equals(ServletConstants.SESSION_KEY_COOKIE_NAME)).findAny()
+        .map(Cookie::getValue).orElse(null);
+  }
 }
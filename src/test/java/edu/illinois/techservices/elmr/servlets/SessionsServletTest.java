@@ -0,0 +1,101 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import edu.illinois.techservices.elmr.InMemorySessionData;
+import edu.illinois.techservices.elmr.Json;
+import edu.illinois.techservices.elmr.SessionData;
+
+class SessionsServletTest {
+
+  @Test
+  void testSessionsAreStreamedInTheOrderOfTheKeys() {
+    var sd = new InMemorySessionData();
+    var first = new String(sd.save("{\"uid\":\"testuser1\"}"));
+    var second = new String(sd.save("{\"uid\":\"testuser2\"}"));
+
+    var response = post(sd, Map.of(), List.of(second, "bm90LWEta2V5", first, "not base64!"));
+
+    assertFalse(response.sendErrorWasCalled(), "HttpServletResponse.sendError was called!");
+    var lines = new String(response.getResponseBody(), StandardCharsets.UTF_8).split("\n");
+    assertEquals(4, lines.length);
+    assertFound(lines[0], second, "testuser2");
+    assertNotFound(lines[1], "bm90LWEta2V5");
+    assertFound(lines[2], first, "testuser1");
+    assertNotFound(lines[3], "not base64!");
+  }
+
+  @Test
+  void testOnlyAdministratorsCanLookUpSessions() {
+    var adminPatterns = AdminFilter.class.getAnnotation(WebFilter.class).urlPatterns();
+    for (String pattern : SessionsServlet.class.getAnnotation(WebServlet.class).urlPatterns()) {
+      assertTrue(Arrays.stream(adminPatterns)
+          .anyMatch(p -> pattern.startsWith(p.substring(0, p.length() - 1))), pattern);
+    }
+  }
+
+  @Test
+  void testTooManyKeysAreRefused() {
+    var response = post(new InMemorySessionData(),
+        Map.of(ServletConstants.MAX_BATCH_SIZE, "2"), List.of("MTIz", "NDU2", "Nzg5"));
+    assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, response.getStatusCode());
+  }
+
+  @Test
+  void testNoKeysIsBadRequest() {
+    var response = post(new InMemorySessionData(), Map.of(), List.of());
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatusCode());
+  }
+
+  private static void assertFound(String line, String key, String uid) {
+    var session = Json.marshal(line);
+    assertEquals(key, session.get("key"));
+    assertEquals(Boolean.TRUE, session.get("found"));
+    @SuppressWarnings("unchecked")
+    var attributes = (Map<String, Object>) session.get("attributes");
+    assertEquals(uid, attributes.get("uid"));
+  }
+
+  private static void assertNotFound(String line, String key) {
+    var session = Json.marshal(line);
+    assertEquals(key, session.get("key"));
+    assertEquals(Boolean.FALSE, session.get("found"));
+    assertFalse(session.containsKey("attributes"));
+  }
+
+  private static ServletApiInvocationHandler post(SessionData sd,
+      Map<String, String> initParameters, List<String> keys) {
+    var servletContext = ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder()
+            .addAttributes(Map.of(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME, sd))
+            .addInitParameters(initParameters).build());
+    var servletConfig = ProxyFactories.createServletConfigProxy(
+        new ServletApiInvocationHandler.Builder().servletName("SessionsServlet")
+            .servletContext(servletContext).build());
+    var request = ProxyFactories.createHttpServletRequestProxy(
+        new ServletApiInvocationHandler.Builder()
+            .addRequestParameters(keys.isEmpty() ? Map.of() : Map.of("key", keys))
+            .requestUri("/elmr/admin/sessions/lookup").servletContext(servletContext).build());
+    var responseInvocationHandler = new ServletApiInvocationHandler.Builder().build();
+    var response = ProxyFactories.createHttpServletResponseProxy(responseInvocationHandler);
+
+    var servlet = new SessionsServlet();
+    try {
+      servlet.init(servletConfig);
+      servlet.doPost(request, response);
+    } catch (Exception e) {
+      fail("Unexpected error!", e);
+    }
+    return responseInvocationHandler;
+  }
+}
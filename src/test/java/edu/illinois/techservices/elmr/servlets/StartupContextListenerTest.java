@@ -0,0 +1,84 @@
+package edu.illinois.techservices.elmr.servlets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import edu.illinois.techservices.elmr.AttributeMapReader;
+import edu.illinois.techservices.elmr.Metrics;
+import edu.illinois.techservices.elmr.SessionData;
+import edu.illinois.techservices.elmr.SessionDataHealthMonitor;
+
+class StartupContextListenerTest {
+
+  private Path attributeMap;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    attributeMap = Files.createTempFile(StartupContextListenerTest.class.getSimpleName(), ".xml");
+    Files.writeString(attributeMap, "<Attributes><Attribute name=\"urn:test:uid\" id=\"uid\"/>"
+        + "<Attribute name=\"urn:test:mail\" id=\"mail\"/></Attributes>");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    Files.deleteIfExists(attributeMap);
+  }
+
+  @Test
+  void testStartsWithoutSessionDataStore() throws Exception {
+    // Nothing listens on port 1, so the store is unreachable for the whole test.
+    var context = createServletContext(Map.of(AttributeMapReader.FILE_SYSPROP,
+        attributeMap.toString(), AttributeMapReader.DISABLE_WATCH_SYSPROP, "true",
+        SessionData.SESSION_DATA_PORT_SYSPROP, "1"));
+    var sce = new ServletContextEvent(context);
+    var listener = new StartupContextListener();
+    listener.contextInitialized(sce);
+    try {
+      assertEquals(List.of("uid", "mail"),
+          context.getAttribute(ServletConstants.ATTRIBUTES_CONTEXT_PARAM_NAME));
+      assertNotNull(context.getAttribute(ServletConstants.APACHE_CONFIG_CONTEXT_PARAM_NAME));
+      assertNotNull(context.getAttribute(ServletConstants.SESSION_DATA_CONTEXT_PARAM_NAME));
+      var monitor = (SessionDataHealthMonitor) context
+          .getAttribute(ServletConstants.SESSION_DATA_HEALTH_CONTEXT_PARAM_NAME);
+      assertFalse(monitor.isReady());
+
+      var sb = new StringBuilder();
+      Metrics.writePrometheus(sb);
+      var text = sb.toString();
+      assertTrue(text.contains("elmr_startup_milliseconds{step=\"total\"} "), text);
+      assertTrue(text.contains("elmr_startup_milliseconds{step=\"session_data\"} "), text);
+    } finally {
+      listener.contextDestroyed(sce);
+    }
+  }
+
+  @Test
+  void testAttributeMapFailureFailsStartup() {
+    var context = createServletContext(Map.of(AttributeMapReader.FILE_SYSPROP,
+        attributeMap.resolveSibling("does-not-exist.xml").toString(),
+        SessionData.SESSION_DATA_PORT_SYSPROP, "1"));
+    var sce = new ServletContextEvent(context);
+    var listener = new StartupContextListener();
+    try {
+      assertThrows(RuntimeException.class, () -> listener.contextInitialized(sce));
+    } finally {
+      listener.contextDestroyed(sce);
+    }
+  }
+
+  private static ServletContext createServletContext(Map<String, String> initParameters) {
+    return ProxyFactories.createServletContextProxy(
+        new ServletApiInvocationHandler.Builder().addInitParameters(initParameters).build());
+  }
+}